@@ -0,0 +1,225 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.archivers;
+
+import org.xbib.io.archivers.tar.TarArchiveEntry;
+import org.xbib.io.archivers.tar.TarArchiveInputStream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the entries of a tar archive ahead on a dedicated thread.
+ * <p/>
+ * The thread decompresses the archive and copies the entries into buffers,
+ * which are put into a bounded queue, while consumers process earlier entries.
+ * The buffers are taken from a pool and must be released by the consumer
+ * after use, so the number of buffers is bounded by the queue capacity.
+ * Entries can be taken by several consumer threads.
+ * <p/>
+ * The thread owns the archive stream once it is started. Closing waits a
+ * bounded time for the thread to leave a blocking read, because the stream
+ * is not thread-safe; if the thread is still reading, it closes the stream
+ * itself when the read returns.
+ */
+final class TarReadAhead implements Runnable {
+
+    private final static Entry END = new Entry(null, null, 0);
+
+    private final static long CLOSE_WAIT_MILLIS = 1000L;
+
+    /**
+     * The most bytes read at once, so a close is seen between reads of large entries
+     */
+    private final static int READ_SIZE = 8192;
+
+    private final TarArchiveInputStream in;
+
+    private final BlockingQueue<Entry> queue;
+
+    private final BlockingQueue<byte[]> pool;
+
+    private final Thread thread;
+
+    private volatile IOException exception;
+
+    private volatile boolean closed;
+
+    private boolean inputClosed;
+
+    TarReadAhead(TarArchiveInputStream in, int capacity) {
+        this.in = in;
+        this.queue = new ArrayBlockingQueue<Entry>(capacity);
+        // the queue, the entry being read, and the entries being processed by consumers
+        this.pool = new ArrayBlockingQueue<byte[]>(capacity + 1);
+        this.thread = new Thread(this, "tar-read-ahead");
+        thread.setDaemon(true);
+    }
+
+    TarReadAhead start() {
+        thread.start();
+        return this;
+    }
+
+    @Override
+    public void run() {
+        try {
+            TarArchiveEntry tarEntry;
+            while (!closed && (tarEntry = in.getNextTarEntry()) != null) {
+                byte[] buf = pool.poll();
+                long size = tarEntry.getSize();
+                if (buf == null || buf.length < size) {
+                    buf = new byte[(int) Math.max(size, 8192)];
+                }
+                int len = 0;
+                while (!closed) {
+                    if (len == buf.length) {
+                        // a full buffer is grown only if the entry has more data than its header says
+                        int b = in.read();
+                        if (b == -1) {
+                            break;
+                        }
+                        buf = Arrays.copyOf(buf, buf.length * 2);
+                        buf[len++] = (byte) b;
+                    }
+                    int n = in.read(buf, len, Math.min(buf.length - len, READ_SIZE));
+                    if (n == -1) {
+                        break;
+                    }
+                    len += n;
+                }
+                if (!closed) {
+                    queue.put(new Entry(tarEntry.getName(), buf, len));
+                }
+            }
+        } catch (IOException e) {
+            exception = e;
+        } catch (InterruptedException e) {
+            // closed
+        } finally {
+            if (!closed) {
+                try {
+                    queue.put(END);
+                } catch (InterruptedException e) {
+                    // closed
+                }
+            }
+            if (closed) {
+                try {
+                    closeInput();
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }
+    }
+
+    /**
+     * Take the next entry.
+     *
+     * @return the entry, or null at the end of the archive
+     * @throws IOException if the archive can not be read
+     */
+    Entry take() throws IOException {
+        Entry entry;
+        try {
+            entry = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (entry == END) {
+            // let other consumers see the end as well
+            queue.offer(END);
+            if (exception != null) {
+                throw exception;
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Return the buffer of an entry to the pool.
+     *
+     * @param entry the entry
+     */
+    void release(Entry entry) {
+        pool.offer(entry.buf);
+    }
+
+    /**
+     * Stop reading ahead and close the archive stream.
+     *
+     * @throws IOException if the archive stream can not be closed
+     */
+    void close() throws IOException {
+        closed = true;
+        thread.interrupt();
+        queue.clear();
+        queue.offer(END);
+        try {
+            thread.join(CLOSE_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // a thread still blocked in a read closes the stream when the read returns
+        if (!thread.isAlive()) {
+            closeInput();
+        }
+    }
+
+    private synchronized void closeInput() throws IOException {
+        if (!inputClosed) {
+            inputClosed = true;
+            in.close();
+        }
+    }
+
+    static class Entry {
+
+        final String name;
+
+        final byte[] buf;
+
+        final int len;
+
+        Entry(String name, byte[] buf, int len) {
+            this.name = name;
+            this.buf = buf;
+            this.len = len;
+        }
+    }
+}
@@ -71,6 +71,10 @@ public class TarSession implements Session {
 
     private URI uri;
 
+    private int readAhead;
+
+    private volatile TarReadAhead readAheadEntries;
+
     protected TarSession() {
     }
 
@@ -79,6 +83,19 @@ public class TarSession implements Session {
         return this;
     }
 
+    /**
+     * Read entries ahead on a dedicated thread, so decompressing the archive
+     * and processing the entries overlap. In this mode, packets can be read by
+     * several threads. Must be set before the session is opened.
+     *
+     * @param entries the maximum number of entries read ahead, 0 for no read ahead
+     * @return this session
+     */
+    public TarSession setReadAhead(int entries) {
+        this.readAhead = entries;
+        return this;
+    }
+
     @Override
     public synchronized void open(Mode mode) throws IOException {
         if (isOpen) {
@@ -165,6 +182,9 @@ public class TarSession implements Session {
                         throw new FileNotFoundException("check existence or access rights: " + s);
                     }
                 }
+                if (isOpen && readAhead > 0) {
+                    this.readAheadEntries = new TarReadAhead(in, readAhead).start();
+                }
                 break;
             case WRITE:
                 if (scheme.equals("targz")) {
@@ -220,7 +240,11 @@ public class TarSession implements Session {
             out.close();
             out = null;
         }
-        if (in != null) {
+        if (readAheadEntries != null) {
+            // the read-ahead thread owns the input stream and closes it
+            readAheadEntries.close();
+            readAheadEntries = null;
+        } else if (in != null) {
             in.close();
         }
         this.isOpen = false;
@@ -268,6 +292,18 @@ public class TarSession implements Session {
         if (getInputStream() == null) {
             throw new IOException("no tar input stream");
         }
+        TarReadAhead entries = readAheadEntries;
+        if (entries != null) {
+            TarReadAhead.Entry entry = entries.take();
+            if (entry == null) {
+                return null;
+            }
+            ObjectPacket packet = new ObjectPacket();
+            packet.name(entry.name);
+            packet.packet(new String(entry.buf, 0, entry.len));
+            entries.release(entry);
+            return packet;
+        }
         TarArchiveEntry entry = getInputStream().getNextTarEntry();
         if (entry == null) {
             return null;
@@ -0,0 +1,88 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.compress;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of byte buffers of equal size, shared by all threads.
+ * <p/>
+ * Unlike {@link BufferRecycler}, which keeps buffers per thread behind soft
+ * references, the pool keeps at most a fixed number of idle buffers, no matter
+ * how many threads use it, so the heap used by buffers is predictable.
+ * If the pool is empty, a new buffer is allocated; if the pool is full,
+ * a released buffer is left to the garbage collector.
+ */
+public final class BufferPool {
+
+    private final int bufferSize;
+
+    private final BlockingQueue<byte[]> buffers;
+
+    /**
+     * @param bufferSize the size of the buffers
+     * @param capacity   the maximum number of idle buffers
+     */
+    public BufferPool(int bufferSize, int capacity) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<byte[]>(capacity);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Take a buffer from the pool, or allocate a new one.
+     */
+    public byte[] acquire() {
+        byte[] buf = buffers.poll();
+        return buf != null ? buf : new byte[bufferSize];
+    }
+
+    /**
+     * Return a buffer to the pool. Buffers of another size are ignored.
+     */
+    public void release(byte[] buf) {
+        if (buf != null && buf.length == bufferSize) {
+            buffers.offer(buf);
+        }
+    }
+
+    /**
+     * The number of idle buffers in the pool.
+     */
+    public int size() {
+        return buffers.size();
+    }
+}
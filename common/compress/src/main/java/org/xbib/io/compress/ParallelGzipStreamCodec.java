@@ -0,0 +1,105 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.xbib.io.StreamCodec;
+import org.xbib.io.compress.gzip.ParallelGZIPOutputStream;
+
+/**
+ * Gzip codec that compresses blocks on several threads, like pigz.
+ * Decompression is sequential, because a deflate stream can not be split.
+ */
+public class ParallelGzipStreamCodec implements StreamCodec<InputStream,OutputStream> {
+
+    private int workers = Runtime.getRuntime().availableProcessors();
+
+    private ExecutorService executor;
+
+    public synchronized ParallelGzipStreamCodec setWorkers(int workers) {
+        this.workers = workers;
+        // idle threads of a previous executor end by themselves
+        this.executor = null;
+        return this;
+    }
+
+    /**
+     * The executor shared by the parallel streams of this codec.
+     */
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = CodecExecutors.newExecutor("gz-codec-worker", workers);
+        }
+        return executor;
+    }
+
+    @Override
+    public String getName() {
+        return "gz";
+    }
+
+    @Override
+    public InputStream decode(InputStream in) throws IOException {
+        return new GZIPInputStream(in);
+    }
+
+    @Override
+    public InputStream decode(InputStream in, int bufsize) throws IOException {
+        return new GZIPInputStream(in, bufsize);
+    }
+
+    @Override
+    public OutputStream encode(OutputStream out) throws IOException {
+        return workers > 1 ? parallel(out) : new GZIPOutputStream(out);
+    }
+
+    /**
+     * Create a compressing stream. The buffer size is used for sequential
+     * compression only; parallel compression uses blocks of
+     * {@link ParallelGZIPOutputStream#DEFAULT_BLOCK_SIZE} bytes.
+     */
+    @Override
+    public OutputStream encode(OutputStream out, int bufsize) throws IOException {
+        return workers > 1 ? parallel(out) : new GZIPOutputStream(out, bufsize);
+    }
+
+    private OutputStream parallel(OutputStream out) throws IOException {
+        return new ParallelGZIPOutputStream(out, executor(), workers,
+                ParallelGZIPOutputStream.DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import org.xbib.io.StreamCodec;
+import org.xbib.io.compress.xz.LZMA2Options;
+import org.xbib.io.compress.xz.ParallelXZInputStream;
+import org.xbib.io.compress.xz.ParallelXZOutputStream;
+import org.xbib.io.compress.xz.XZInputStream;
+import org.xbib.io.compress.xz.XZOutputStream;
+
+/**
+ * XZ codec that compresses and decompresses independent blocks on several threads.
+ */
+public class ParallelXZStreamCodec implements StreamCodec<InputStream,OutputStream> {
+
+    private int workers = Runtime.getRuntime().availableProcessors();
+
+    private ExecutorService executor;
+
+    public synchronized ParallelXZStreamCodec setWorkers(int workers) {
+        this.workers = workers;
+        // idle threads of a previous executor end by themselves
+        this.executor = null;
+        return this;
+    }
+
+    /**
+     * The executor shared by the parallel streams of this codec.
+     */
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = CodecExecutors.newExecutor("xz-codec-worker", workers);
+        }
+        return executor;
+    }
+
+    @Override
+    public String getName() {
+        return "xz";
+    }
+
+    @Override
+    public InputStream decode(InputStream in) throws IOException {
+        return workers > 1 ? new ParallelXZInputStream(in, executor(), workers) : new XZInputStream(in);
+    }
+
+    /**
+     * Create a decompressing stream. The buffer size is the memory limit of
+     * sequential decompression only; parallel decompression works on whole blocks.
+     */
+    @Override
+    public InputStream decode(InputStream in, int bufsize) throws IOException {
+        return workers > 1 ? new ParallelXZInputStream(in, executor(), workers) : new XZInputStream(in, bufsize / 1024);
+    }
+
+    @Override
+    public OutputStream encode(OutputStream out) throws IOException {
+        return workers > 1 ? new ParallelXZOutputStream(out, new LZMA2Options(), executor(), workers) :
+                new XZOutputStream(out, new LZMA2Options());
+    }
+
+    @Override
+    public OutputStream encode(OutputStream out, int bufsize) throws IOException {
+        return encode(out); // ignore bufsize
+    }
+}
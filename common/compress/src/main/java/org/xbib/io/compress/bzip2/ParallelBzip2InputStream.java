@@ -0,0 +1,354 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.compress.bzip2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * BZip2 input stream that decodes the blocks of a BZip2 stream in parallel.
+ * <p/>
+ * BZip2 blocks are independent, but they are not byte aligned and their length
+ * is not stored. The reading thread scans the compressed bits for the 48 bit
+ * block magic and the end of stream magic, cuts out each block, and wraps it
+ * into a single-block BZip2 stream, with the block CRC as stream CRC. Workers
+ * decode these streams with {@link Bzip2InputStream}, so each block is checked
+ * against its CRC, and the results are returned in order. Concatenated streams,
+ * as written by pbzip2, are decoded as well.
+ * <p/>
+ * The block magic is not escaped in the compressed data. The probability that it
+ * occurs inside a block is about one per 2^48 bits, such a block fails its CRC check.
+ */
+public class ParallelBzip2InputStream extends InputStream {
+
+    private final static long MASK48 = 0xffffffffffffL;
+
+    private final static long BLOCK_MAGIC = 0x314159265359L;
+
+    private final static long EOS_MAGIC = 0x177245385090L;
+
+    /**
+     * Bytes that occur in the second-to-last byte of the scan window when
+     * a magic ends in the last byte, for all bit offsets.
+     */
+    private final static boolean[] CANDIDATES = new boolean[256];
+
+    static {
+        for (int shift = 0; shift < 8; shift++) {
+            CANDIDATES[(int) ((BLOCK_MAGIC << shift) >>> 8) & 0xff] = true;
+            CANDIDATES[(int) ((EOS_MAGIC << shift) >>> 8) & 0xff] = true;
+        }
+    }
+
+    private final InputStream in;
+
+    private final int maxPending;
+
+    private final ExecutorService executor;
+
+    private final boolean shutdown;
+
+    private final Queue<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+
+    private final byte[] input = new byte[64 * 1024];
+
+    private final byte[] single = new byte[1];
+
+    private int inputPos;
+
+    private int inputLen;
+
+    private long position;
+
+    private long window;
+
+    private byte[] block = new byte[1024 * 1024];
+
+    private int blockLen;
+
+    private int blockBitOffset;
+
+    private boolean inBlock;
+
+    private boolean inputDone;
+
+    private byte[] current;
+
+    private int currentPos;
+
+    private boolean closed;
+
+    public ParallelBzip2InputStream(InputStream in, int workers) throws IOException {
+        this(in, newExecutor(workers), true, workers);
+    }
+
+    /**
+     * Create a stream that decodes on a shared executor, which is not shut down by the stream.
+     *
+     * @param in the input stream
+     * @param executor the executor
+     * @param workers the number of blocks decoded at the same time
+     * @throws IOException if the input is not bzip2
+     */
+    public ParallelBzip2InputStream(InputStream in, ExecutorService executor, int workers) throws IOException {
+        this(in, executor, false, workers);
+    }
+
+    private ParallelBzip2InputStream(InputStream in, ExecutorService executor, boolean shutdown,
+                                     int workers) throws IOException {
+        this.in = in;
+        this.maxPending = 2 * workers;
+        this.executor = executor;
+        this.shutdown = shutdown;
+        int b0 = in.read();
+        int b1 = in.read();
+        int b2 = in.read();
+        int b3 = in.read();
+        if (b0 != 'B' || b1 != 'Z' || b2 != 'h' || b3 < '1' || b3 > '9') {
+            release();
+            throw new IOException("stream is not bzip2");
+        }
+        position = 4;
+        window = (b0 << 24) | (b1 << 16) | (b2 << 8) | b3;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (current == null || currentPos == current.length) {
+            fill();
+            if (pending.isEmpty()) {
+                return -1;
+            }
+            try {
+                current = pending.remove().get();
+                currentPos = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ?
+                        (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+        int n = Math.min(len, current.length - currentPos);
+        System.arraycopy(current, currentPos, b, off, n);
+        currentPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current != null ? current.length - currentPos : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            release();
+            pending.clear();
+            in.close();
+        }
+    }
+
+    private static ExecutorService newExecutor(int workers) {
+        return Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "bzip2-worker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Shut down an executor of this stream, or cancel the tasks left on a shared executor.
+     */
+    private void release() {
+        if (shutdown) {
+            executor.shutdownNow();
+        } else {
+            for (Future<?> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Scan ahead until enough blocks are being decoded.
+     */
+    private void fill() throws IOException {
+        while (pending.size() < maxPending && !inputDone) {
+            scan();
+        }
+    }
+
+    /**
+     * Scan the input until the end of the current block, or the end of the input.
+     */
+    private void scan() throws IOException {
+        while (true) {
+            if (inputPos == inputLen) {
+                inputLen = in.read(input, 0, input.length);
+                inputPos = 0;
+                if (inputLen <= 0) {
+                    inputLen = 0;
+                    inputDone = true;
+                    if (inBlock) {
+                        throw new IOException("unexpected end of bzip2 stream");
+                    }
+                    return;
+                }
+            }
+            int b = input[inputPos++] & 0xff;
+            window = (window << 8) | b;
+            position++;
+            if (inBlock) {
+                if (blockLen == block.length) {
+                    block = Arrays.copyOf(block, block.length * 2);
+                }
+                block[blockLen++] = (byte) b;
+            }
+            if (!CANDIDATES[(int) (window >>> 8) & 0xff]) {
+                continue;
+            }
+            for (int shift = 0; shift < 8; shift++) {
+                long magic = (window >>> shift) & MASK48;
+                if (magic == BLOCK_MAGIC || magic == EOS_MAGIC) {
+                    // the magic starts this many bits before the end of the window
+                    int back = shift + 48;
+                    boolean emitted = false;
+                    if (inBlock) {
+                        submit(blockLen * 8 - back);
+                        emitted = true;
+                    }
+                    inBlock = magic == BLOCK_MAGIC;
+                    if (inBlock) {
+                        // start the next block with the bytes of the window holding the magic
+                        int bytes = (back + 7) / 8;
+                        blockLen = 0;
+                        for (int i = bytes - 1; i >= 0; i--) {
+                            block[blockLen++] = (byte) (window >>> (i * 8));
+                        }
+                        blockBitOffset = bytes * 8 - back;
+                    }
+                    if (emitted) {
+                        return;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Wrap the current block into a single-block stream and decode it in a worker.
+     *
+     * @param endBit the bit position after the block in the block buffer
+     */
+    private void submit(int endBit) {
+        int bits = endBit - blockBitOffset;
+        final byte[] stream = new byte[4 + (bits + 80 + 7) / 8];
+        stream[0] = 'B';
+        stream[1] = 'Z';
+        stream[2] = 'h';
+        stream[3] = '9';
+        int pos = 32;
+        int full = bits / 8;
+        int shift = blockBitOffset;
+        if (shift == 0) {
+            System.arraycopy(block, 0, stream, 4, full);
+        } else {
+            for (int i = 0; i < full; i++) {
+                stream[4 + i] = (byte) ((block[i] << shift) | ((block[i + 1] & 0xff) >>> (8 - shift)));
+            }
+        }
+        pos += full * 8;
+        for (int i = full * 8; i < bits; i++) {
+            int bit = blockBitOffset + i;
+            putBits(stream, pos++, (block[bit >>> 3] >>> (7 - (bit & 7))) & 1, 1);
+        }
+        // the block CRC follows the block magic, and is the stream CRC of a single-block stream
+        long crc = 0;
+        for (int i = 48; i < 80; i++) {
+            int bit = blockBitOffset + i;
+            crc = (crc << 1) | ((block[bit >>> 3] >>> (7 - (bit & 7))) & 1);
+        }
+        putBits(stream, pos, EOS_MAGIC, 48);
+        putBits(stream, pos + 48, crc, 32);
+        pending.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                Bzip2InputStream decoder = new Bzip2InputStream(new ByteArrayInputStream(stream));
+                ByteArrayOutputStream out = new ByteArrayOutputStream(stream.length * 4);
+                byte[] buf = new byte[64 * 1024];
+                int n;
+                while ((n = decoder.read(buf, 0, buf.length)) != -1) {
+                    out.write(buf, 0, n);
+                }
+                return out.toByteArray();
+            }
+        }));
+    }
+
+    private static void putBits(byte[] b, int pos, long value, int n) {
+        for (int i = n - 1; i >= 0; i--, pos++) {
+            if (((value >>> i) & 1) != 0) {
+                b[pos >>> 3] |= 0x80 >>> (pos & 7);
+            }
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.compress.gzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * GZIP output stream that compresses blocks of the input in parallel, like pigz.
+ * <p/>
+ * The input is cut into blocks, each block is deflated by a worker with the
+ * last 32 KB of the previous block as preset dictionary and ends with a sync flush,
+ * so the compressed blocks can simply be concatenated into one deflate stream.
+ * The CRC is computed on the writing thread. The result is a single GZIP member
+ * that is readable by gzip and {@link java.util.zip.GZIPInputStream}.
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+    /**
+     * Default block size, as in pigz.
+     */
+    public final static int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    /**
+     * Size of the deflate window, the dictionary for the next block.
+     */
+    private final static int DICT_SIZE = 32 * 1024;
+
+    private final OutputStream out;
+
+    private final int level;
+
+    private final int blockSize;
+
+    private final int maxPending;
+
+    private final ExecutorService executor;
+
+    private final boolean shutdown;
+
+    private final Queue<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+
+    private final CRC32 crc = new CRC32();
+
+    private final byte[] single = new byte[1];
+
+    private byte[] buffer;
+
+    private int count;
+
+    private byte[] dict;
+
+    private long total;
+
+    private boolean finished;
+
+    public ParallelGZIPOutputStream(OutputStream out, int workers) throws IOException {
+        this(out, workers, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ParallelGZIPOutputStream(OutputStream out, int workers, int blockSize, int level) throws IOException {
+        this(out, newExecutor(workers), true, workers, blockSize, level);
+    }
+
+    /**
+     * Create a stream that compresses on a shared executor, which is not shut down by the stream.
+     *
+     * @param out the output stream
+     * @param executor the executor
+     * @param workers the number of blocks compressed at the same time
+     * @param blockSize the block size
+     * @param level the compression level
+     * @throws IOException if the header can not be written
+     */
+    public ParallelGZIPOutputStream(OutputStream out, ExecutorService executor, int workers,
+                                    int blockSize, int level) throws IOException {
+        this(out, executor, false, workers, blockSize, level);
+    }
+
+    private ParallelGZIPOutputStream(OutputStream out, ExecutorService executor, boolean shutdown, int workers,
+                                     int blockSize, int level) throws IOException {
+        if (blockSize < DICT_SIZE) {
+            throw new IllegalArgumentException("block size must be at least " + DICT_SIZE);
+        }
+        this.out = out;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.maxPending = 2 * workers;
+        this.executor = executor;
+        this.shutdown = shutdown;
+        this.buffer = new byte[blockSize];
+        out.write(OptimizedGZIPOutputStream.DEFAULT_HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("stream finished");
+        }
+        crc.update(b, off, len);
+        total += len;
+        while (len > 0) {
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == blockSize) {
+                submit(false);
+            }
+        }
+    }
+
+    /**
+     * Compress and write all buffered data. This ends the current block early.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (count > 0) {
+            submit(false);
+        }
+        while (!pending.isEmpty()) {
+            writePending();
+        }
+        out.flush();
+    }
+
+    /**
+     * Write the last block and the GZIP trailer, without closing the underlying stream.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        try {
+            submit(true);
+            while (!pending.isEmpty()) {
+                writePending();
+            }
+            byte[] trailer = new byte[8];
+            putInt(trailer, 0, (int) crc.getValue());
+            putInt(trailer, 4, (int) total);
+            out.write(trailer);
+            finished = true;
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private static ExecutorService newExecutor(int workers) {
+        return Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "gzip-worker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Shut down an executor of this stream, or cancel the tasks left on a shared executor.
+     */
+    private void release() {
+        if (shutdown) {
+            executor.shutdownNow();
+        } else {
+            for (Future<?> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void submit(boolean last) throws IOException {
+        final byte[] data = buffer;
+        final int len = count;
+        final byte[] preset = dict;
+        if (len >= DICT_SIZE) {
+            dict = new byte[DICT_SIZE];
+            System.arraycopy(data, len - DICT_SIZE, dict, 0, DICT_SIZE);
+        } else if (len > 0) {
+            // short block after a flush, keep the tail of the window
+            int keep = preset != null ? Math.min(preset.length, DICT_SIZE - len) : 0;
+            dict = new byte[keep + len];
+            if (keep > 0) {
+                System.arraycopy(preset, preset.length - keep, dict, 0, keep);
+            }
+            System.arraycopy(data, 0, dict, keep, len);
+        }
+        buffer = last ? null : new byte[blockSize];
+        count = 0;
+        final boolean finish = last;
+        pending.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return deflate(data, len, preset, finish);
+            }
+        }));
+        while (pending.size() > maxPending) {
+            writePending();
+        }
+    }
+
+    private byte[] deflate(byte[] data, int len, byte[] preset, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (preset != null) {
+                deflater.setDictionary(preset);
+            }
+            deflater.setInput(data, 0, len);
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(len / 2 + 64);
+            byte[] buf = new byte[16 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buf);
+                    bout.write(buf, 0, n);
+                }
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                    bout.write(buf, 0, n);
+                } while (n == buf.length);
+            }
+            return bout.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writePending() throws IOException {
+        try {
+            out.write(pending.remove().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void putInt(byte[] buf, int offset, int value) {
+        buf[offset++] = (byte) (value);
+        buf[offset++] = (byte) (value >> 8);
+        buf[offset++] = (byte) (value >> 16);
+        buf[offset] = (byte) (value >> 24);
+    }
+}
@@ -97,10 +97,30 @@ public final class ChunkEncoder {
         _encodeBuffer = null;
     }
 
+    /**
+     * Alternate constructor used when the caller pools encoders itself, so the
+     * hash table is allocated here and not taken from the per-thread recycler.
+     */
+    private ChunkEncoder(int totalLength, int[] hashTable) {
+        _recycler = null;
+        _hashTable = hashTable;
+        _hashModulo = _hashTable.length - 1;
+        _encodeBuffer = null;
+    }
+
     public static ChunkEncoder nonAllocatingEncoder(int totalLength) {
         return new ChunkEncoder(totalLength, true);
     }
 
+    /**
+     * Create an encoder like {@link #nonAllocatingEncoder} whose hash table
+     * is not recycled per thread, for encoders kept in a pool by the caller.
+     */
+    public static ChunkEncoder nonRecyclingEncoder(int totalLength) {
+        int largestChunkLen = Math.max(totalLength, LZFChunk.MAX_CHUNK_LEN);
+        return new ChunkEncoder(totalLength, new int[calcHashLen(largestChunkLen)]);
+    }
+
     /*
      ///////////////////////////////////////////////////////////////////////
      // Public API
@@ -119,7 +139,9 @@ public final class ChunkEncoder {
         int[] ibuf = _hashTable;
         if (ibuf != null) {
             _hashTable = null;
-            _recycler.releaseEncodingHash(ibuf);
+            if (_recycler != null) {
+                _recycler.releaseEncodingHash(ibuf);
+            }
         }
     }
 
@@ -165,6 +187,37 @@ public final class ChunkEncoder {
         out.write(data, offset, len);
     }
 
+    /**
+     * Method for encoding individual chunk, with its header, into given buffer,
+     * without allocating anything. The buffer must have room for the worst case,
+     * see {@link #maxEncodedLength(int)}.
+     *
+     * @return offset after the encoded chunk in the buffer
+     */
+    public int appendEncodedChunk(byte[] data, int offset, int len, byte[] out, int outPos)
+            throws IOException {
+        if (len >= MIN_BLOCK_TO_COMPRESS) {
+            // compressed data follows the 7 byte header
+            int compEnd = tryCompress(data, offset, offset + len, out, outPos + 7);
+            int compLen = compEnd - outPos - 7;
+            if (compLen < (len - 2)) {
+                LZFChunk.appendCompressedHeader(len, compLen, out, outPos);
+                return compEnd;
+            }
+        }
+        outPos = LZFChunk.appendNonCompressedHeader(len, out, outPos);
+        System.arraycopy(data, offset, out, outPos, len);
+        return outPos + len;
+    }
+
+    /**
+     * The maximum length of a chunk encoded by {@link #appendEncodedChunk}, including its header.
+     */
+    public static int maxEncodedLength(int len) {
+        // length indicator for each 32 literals
+        return LZFChunk.MAX_HEADER_LEN + len + ((len + 31) >> 5);
+    }
+
     /**
      * Main workhorse method that will try to compress given chunk, and return
      * end position (offset to byte after last included byte)
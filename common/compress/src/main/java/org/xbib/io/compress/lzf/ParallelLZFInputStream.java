@@ -0,0 +1,248 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.compress.lzf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import org.xbib.io.compress.BufferPool;
+import org.xbib.io.compress.lzf.util.ChunkDecoderFactory;
+
+/**
+ * LZF input stream that decodes chunks on several threads.
+ * <p/>
+ * The reading thread splits the input at the chunk headers, which carry the
+ * length of each chunk, workers decode the compressed chunks, and the results
+ * are returned in order. Chunks are read into buffers of a {@link BufferPool},
+ * shared by all streams by default, which are returned to the pool as soon as
+ * their content has been read.
+ */
+public class ParallelLZFInputStream extends InputStream {
+
+    private final InputStream in;
+
+    private final BufferPool pool;
+
+    private final ChunkDecoder decoder;
+
+    private final int maxPending;
+
+    private final ExecutorService executor;
+
+    private final Queue<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+
+    private final byte[] header = new byte[LZFChunk.MAX_HEADER_LEN];
+
+    private final byte[] single = new byte[1];
+
+    private boolean inputDone;
+
+    private Chunk current;
+
+    private int currentPos;
+
+    private boolean closed;
+
+    public ParallelLZFInputStream(InputStream in, int workers) {
+        this(in, workers, ParallelLZFOutputStream.SHARED_POOL);
+    }
+
+    public ParallelLZFInputStream(InputStream in, int workers, BufferPool pool) {
+        if (pool.getBufferSize() < LZFChunk.MAX_CHUNK_LEN + LZFChunk.MAX_HEADER_LEN) {
+            throw new IllegalArgumentException("buffer size must be at least "
+                    + (LZFChunk.MAX_CHUNK_LEN + LZFChunk.MAX_HEADER_LEN));
+        }
+        this.in = in;
+        this.pool = pool;
+        this.decoder = ChunkDecoderFactory.optimalInstance();
+        this.maxPending = 2 * workers;
+        this.executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "lzf-worker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException(getClass().getName() + " already closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (current == null || currentPos == current.len) {
+            if (current != null) {
+                pool.release(current.buf);
+                current = null;
+            }
+            fill();
+            if (pending.isEmpty()) {
+                return -1;
+            }
+            try {
+                current = pending.remove().get();
+                currentPos = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ?
+                        (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+        int n = Math.min(len, current.len - currentPos);
+        System.arraycopy(current.buf, currentPos, b, off, n);
+        currentPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current != null ? current.len - currentPos : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            executor.shutdownNow();
+            pending.clear();
+            if (current != null) {
+                pool.release(current.buf);
+                current = null;
+            }
+            in.close();
+        }
+    }
+
+    /**
+     * Read ahead until enough chunks are being decoded.
+     */
+    private void fill() throws IOException {
+        while (pending.size() < maxPending && !inputDone) {
+            readChunk();
+        }
+    }
+
+    private void readChunk() throws IOException {
+        int n = readFully(header, 0, 5);
+        if (n < 5) {
+            inputDone = true;
+            if (n > 0) {
+                throw new IOException("Corrupt input data: truncated chunk header");
+            }
+            return;
+        }
+        if (header[0] != LZFChunk.BYTE_Z || header[1] != LZFChunk.BYTE_V) {
+            throw new IOException("Corrupt input data: chunk did not start with 'ZV' signature bytes");
+        }
+        int type = header[2];
+        final int len = ((header[3] & 0xff) << 8) | (header[4] & 0xff);
+        if (type == LZFChunk.BLOCK_TYPE_NON_COMPRESSED) {
+            final byte[] buf = pool.acquire();
+            readChunkData(buf, 0, len);
+            // nothing to decode
+            pending.add(executor.submit(new Callable<Chunk>() {
+                @Override
+                public Chunk call() {
+                    return new Chunk(buf, len);
+                }
+            }));
+        } else if (type == LZFChunk.BLOCK_TYPE_COMPRESSED) {
+            readChunkData(header, 5, 2);
+            final int uncompLen = ((header[5] & 0xff) << 8) | (header[6] & 0xff);
+            final byte[] input = pool.acquire();
+            readChunkData(input, 0, len);
+            pending.add(executor.submit(new Callable<Chunk>() {
+                @Override
+                public Chunk call() throws IOException {
+                    try {
+                        byte[] output = pool.acquire();
+                        decoder.decodeChunk(input, 0, output, 0, uncompLen);
+                        return new Chunk(output, uncompLen);
+                    } finally {
+                        pool.release(input);
+                    }
+                }
+            }));
+        } else {
+            throw new IOException("Corrupt input data: unknown chunk type " + type);
+        }
+    }
+
+    private void readChunkData(byte[] buf, int off, int len) throws IOException {
+        if (readFully(buf, off, len) < len) {
+            throw new IOException("EOF in " + len + " byte chunk");
+        }
+    }
+
+    private int readFully(byte[] buf, int off, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            int n = in.read(buf, off + total, len - total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private static class Chunk {
+
+        final byte[] buf;
+
+        final int len;
+
+        Chunk(byte[] buf, int len) {
+            this.buf = buf;
+            this.len = len;
+        }
+    }
+}
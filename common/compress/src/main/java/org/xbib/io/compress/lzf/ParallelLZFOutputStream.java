@@ -0,0 +1,248 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.compress.lzf;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import org.xbib.io.compress.BufferPool;
+
+/**
+ * LZF output stream that encodes chunks on several threads.
+ * <p/>
+ * LZF chunks are independent, so chunks of {@link LZFChunk#MAX_CHUNK_LEN} bytes
+ * are encoded by workers and written in order, in the format read by
+ * {@link LZFInputStream}. Input and output chunks are buffers of a
+ * {@link BufferPool}, shared by all streams by default, and encoding does not
+ * allocate, so the heap used is bounded by the number of chunks in flight,
+ * which is twice the number of workers. The hash tables of the encoders are
+ * not recycled per thread either; encoders are taken from a bounded pool
+ * shared by all streams and returned to it when a stream is closed.
+ */
+public class ParallelLZFOutputStream extends OutputStream {
+
+    /**
+     * The size of chunk buffers, large enough for an encoded chunk with its header.
+     */
+    public final static int CHUNK_BUFFER_SIZE = ChunkEncoder.maxEncodedLength(LZFChunk.MAX_CHUNK_LEN);
+
+    /**
+     * The pool of chunk buffers shared by parallel LZF streams.
+     */
+    public final static BufferPool SHARED_POOL =
+            new BufferPool(CHUNK_BUFFER_SIZE, 4 * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The pool of idle encoders shared by parallel LZF streams.
+     */
+    private final static BlockingQueue<ChunkEncoder> SHARED_ENCODERS =
+            new ArrayBlockingQueue<ChunkEncoder>(4 * Runtime.getRuntime().availableProcessors());
+
+    private final OutputStream out;
+
+    private final BufferPool pool;
+
+    private final BlockingQueue<ChunkEncoder> encoders;
+
+    private final int maxPending;
+
+    private final ExecutorService executor;
+
+    private final Queue<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+
+    private byte[] buffer;
+
+    private int position;
+
+    private boolean closed;
+
+    public ParallelLZFOutputStream(OutputStream out, int workers) {
+        this(out, workers, SHARED_POOL);
+    }
+
+    public ParallelLZFOutputStream(OutputStream out, int workers, BufferPool pool) {
+        if (pool.getBufferSize() < CHUNK_BUFFER_SIZE) {
+            throw new IllegalArgumentException("buffer size must be at least " + CHUNK_BUFFER_SIZE);
+        }
+        this.out = out;
+        this.pool = pool;
+        this.encoders = new ArrayBlockingQueue<ChunkEncoder>(workers);
+        for (int i = 0; i < workers; i++) {
+            ChunkEncoder encoder = SHARED_ENCODERS.poll();
+            encoders.add(encoder != null ? encoder : ChunkEncoder.nonRecyclingEncoder(LZFChunk.MAX_CHUNK_LEN));
+        }
+        this.maxPending = 2 * workers;
+        this.executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "lzf-worker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.buffer = pool.acquire();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkNotClosed();
+        if (position == LZFChunk.MAX_CHUNK_LEN) {
+            submit();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkNotClosed();
+        while (len > 0) {
+            if (position == LZFChunk.MAX_CHUNK_LEN) {
+                submit();
+            }
+            int n = Math.min(len, LZFChunk.MAX_CHUNK_LEN - position);
+            System.arraycopy(b, off, buffer, position, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Complete the current chunk and write all chunks.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkNotClosed();
+        if (position > 0) {
+            submit();
+        }
+        drain(0);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            try {
+                if (position > 0) {
+                    submit();
+                }
+                drain(0);
+                out.flush();
+            } finally {
+                closed = true;
+                executor.shutdownNow();
+                pool.release(buffer);
+                buffer = null;
+                for (ChunkEncoder encoder : encoders) {
+                    if (!SHARED_ENCODERS.offer(encoder)) {
+                        encoder.close();
+                    }
+                }
+                out.close();
+            }
+        }
+    }
+
+    private void submit() throws IOException {
+        final byte[] input = buffer;
+        final int len = position;
+        pending.add(executor.submit(new Callable<Chunk>() {
+            @Override
+            public Chunk call() throws Exception {
+                ChunkEncoder encoder = encoders.take();
+                try {
+                    byte[] output = pool.acquire();
+                    int n = encoder.appendEncodedChunk(input, 0, len, output, 0);
+                    return new Chunk(input, output, n);
+                } finally {
+                    encoders.put(encoder);
+                }
+            }
+        }));
+        buffer = pool.acquire();
+        position = 0;
+        drain(maxPending);
+    }
+
+    /**
+     * Write chunks in order until no more than the given number of chunks are pending.
+     */
+    private void drain(int max) throws IOException {
+        while (pending.size() > max) {
+            Chunk chunk;
+            try {
+                chunk = pending.remove().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ?
+                        (IOException) e.getCause() : new IOException(e.getCause());
+            }
+            out.write(chunk.output, 0, chunk.len);
+            pool.release(chunk.input);
+            pool.release(chunk.output);
+        }
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (closed) {
+            throw new IOException(getClass().getName() + " already closed");
+        }
+    }
+
+    private static class Chunk {
+
+        final byte[] input;
+
+        final byte[] output;
+
+        final int len;
+
+        Chunk(byte[] input, byte[] output, int len) {
+            this.input = input;
+            this.output = output;
+            this.len = len;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.compress.xz;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.xbib.io.compress.xz.check.Check;
+import org.xbib.io.compress.xz.common.DecoderUtil;
+import org.xbib.io.compress.xz.common.StreamFlags;
+import org.xbib.io.compress.xz.index.IndexHash;
+
+/**
+ * XZ input stream that decodes the blocks of XZ streams in parallel.
+ * <p/>
+ * Blocks can be decoded independently if their block header stores the
+ * compressed and uncompressed sizes, as written by {@link ParallelXZOutputStream}
+ * and by <code>xz -T</code>. The reading thread reads the blocks one after
+ * another, workers decode them and the results are returned in order. The index
+ * and the stream footer are validated as usual.
+ * <p/>
+ * If the first block header does not store the sizes, which is the case for
+ * single-threaded <code>xz</code>, the input is decoded by {@link XZInputStream}
+ * on the calling thread.
+ */
+public class ParallelXZInputStream extends InputStream {
+
+    private final DataInputStream in;
+
+    private final InputStream fallback;
+
+    private final int maxPending;
+
+    private final ExecutorService executor;
+
+    private final boolean shutdown;
+
+    private final Queue<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+
+    private final byte[] single = new byte[1];
+
+    private StreamFlags streamFlags;
+
+    private IndexHash indexHash;
+
+    private boolean inputDone;
+
+    private byte[] current;
+
+    private int currentPos;
+
+    private boolean closed;
+
+    public ParallelXZInputStream(InputStream in, int workers) throws IOException {
+        this(in, null, workers);
+    }
+
+    /**
+     * Create a stream that decodes on a shared executor, which is not shut down by the stream.
+     *
+     * @param in the input stream
+     * @param executor the executor, or null for an executor of this stream
+     * @param workers the number of blocks decoded at the same time
+     * @throws IOException if the input is not xz
+     */
+    public ParallelXZInputStream(InputStream in, ExecutorService executor, int workers) throws IOException {
+        BufferedInputStream bin = new BufferedInputStream(in,
+                DecoderUtil.STREAM_HEADER_SIZE + DecoderUtil.BLOCK_HEADER_SIZE_MAX);
+        bin.mark(DecoderUtil.STREAM_HEADER_SIZE + DecoderUtil.BLOCK_HEADER_SIZE_MAX);
+        DataInputStream data = new DataInputStream(bin);
+        byte[] buf = new byte[DecoderUtil.STREAM_HEADER_SIZE];
+        data.readFully(buf);
+        DecoderUtil.decodeStreamHeader(buf);
+        byte[] header = new byte[DecoderUtil.BLOCK_HEADER_SIZE_MAX];
+        int n = data.read(header, 0, 1);
+        boolean parallel = n == 1 && (header[0] == 0x00 || hasSizes(data, header));
+        bin.reset();
+        if (parallel) {
+            this.in = data;
+            this.fallback = null;
+            this.maxPending = 2 * workers;
+            // the executor of this stream is created only for a parallel stream
+            this.executor = executor != null ? executor : newExecutor(workers);
+            this.shutdown = executor == null;
+        } else {
+            this.in = null;
+            this.fallback = new XZInputStream(bin);
+            this.maxPending = 0;
+            this.executor = null;
+            this.shutdown = false;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new XZIOException("Stream closed");
+        }
+        if (fallback != null) {
+            return fallback.read(b, off, len);
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (current == null || currentPos == current.length) {
+            fill();
+            if (pending.isEmpty()) {
+                return -1;
+            }
+            try {
+                current = pending.remove().get();
+                currentPos = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ?
+                        (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+        int n = Math.min(len, current.length - currentPos);
+        System.arraycopy(current, currentPos, b, off, n);
+        currentPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (fallback != null) {
+            return fallback.available();
+        }
+        return current != null ? current.length - currentPos : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            if (fallback != null) {
+                fallback.close();
+            } else {
+                release();
+                pending.clear();
+                in.close();
+            }
+        }
+    }
+
+    private static ExecutorService newExecutor(int workers) {
+        return Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "xz-worker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Shut down an executor of this stream, or cancel the tasks left on a shared executor.
+     */
+    private void release() {
+        if (shutdown) {
+            executor.shutdownNow();
+        } else {
+            for (Future<?> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static boolean hasSizes(DataInputStream in, byte[] header) throws IOException {
+        int headerSize = 4 * ((header[0] & 0xff) + 1);
+        in.readFully(header, 1, headerSize - 1);
+        return (header[1] & 0xc0) == 0xc0;
+    }
+
+    /**
+     * Read ahead until enough blocks are being decoded.
+     */
+    private void fill() throws IOException {
+        while (pending.size() < maxPending && !inputDone) {
+            readBlock();
+        }
+    }
+
+    /**
+     * Read the next block and submit it, or read index, footer and the next stream header.
+     */
+    private void readBlock() throws IOException {
+        if (streamFlags == null) {
+            if (!readStreamHeader()) {
+                inputDone = true;
+                return;
+            }
+        }
+        byte[] header = new byte[DecoderUtil.BLOCK_HEADER_SIZE_MAX];
+        in.readFully(header, 0, 1);
+        if (header[0] == 0x00) {
+            indexHash.validate(in);
+            byte[] buf = new byte[DecoderUtil.STREAM_HEADER_SIZE];
+            in.readFully(buf);
+            StreamFlags footerFlags = DecoderUtil.decodeStreamFooter(buf);
+            if (!DecoderUtil.areStreamFlagsEqual(streamFlags, footerFlags)
+                    || indexHash.getIndexSize() != footerFlags.backwardSize) {
+                throw new CorruptedInputException("XZ Stream Footer does not match Stream Header");
+            }
+            streamFlags = null;
+            return;
+        }
+        int headerSize = 4 * ((header[0] & 0xff) + 1);
+        in.readFully(header, 1, headerSize - 1);
+        if (!DecoderUtil.isCRC32Valid(header, 0, headerSize - 4, headerSize - 4)) {
+            throw new CorruptedInputException("XZ Block Header is corrupt");
+        }
+        if ((header[1] & 0xc0) != 0xc0) {
+            throw new UnsupportedOptionsException("XZ Block Header without sizes can not be decoded in parallel");
+        }
+        ByteArrayInputStream fields = new ByteArrayInputStream(header, 2, headerSize - 6);
+        long compressedSize = DecoderUtil.decodeVLI(fields);
+        final long uncompressedSize = DecoderUtil.decodeVLI(fields);
+        final Check check = Check.getInstance(streamFlags.checkType);
+        long blockSize = headerSize + ((compressedSize + 3) & ~3L) + check.getSize();
+        if (compressedSize <= 0 || blockSize > Integer.MAX_VALUE || uncompressedSize > Integer.MAX_VALUE) {
+            throw new UnsupportedOptionsException("XZ Block too large to be decoded in parallel");
+        }
+        final byte[] block = new byte[(int) blockSize];
+        System.arraycopy(header, 0, block, 0, headerSize);
+        in.readFully(block, headerSize, block.length - headerSize);
+        final long unpaddedSize = headerSize + compressedSize + check.getSize();
+        indexHash.add(unpaddedSize, uncompressedSize);
+        pending.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                BlockInputStream decoder;
+                try {
+                    decoder = new BlockInputStream(new ByteArrayInputStream(block), check, -1,
+                            unpaddedSize, uncompressedSize);
+                } catch (IndexIndicatorException e) {
+                    throw new CorruptedInputException();
+                }
+                byte[] buf = new byte[(int) uncompressedSize];
+                int off = 0;
+                while (off < buf.length) {
+                    int n = decoder.read(buf, off, buf.length - off);
+                    if (n == -1) {
+                        throw new CorruptedInputException();
+                    }
+                    off += n;
+                }
+                // reading the end verifies the check
+                if (decoder.read() != -1) {
+                    throw new CorruptedInputException();
+                }
+                return buf;
+            }
+        }));
+    }
+
+    /**
+     * Skip stream padding and read the next stream header.
+     *
+     * @return false if the end of the input is reached
+     */
+    private boolean readStreamHeader() throws IOException {
+        byte[] buf = new byte[DecoderUtil.STREAM_HEADER_SIZE];
+        boolean first = indexHash == null;
+        do {
+            int n = in.read(buf, 0, 1);
+            if (n == -1) {
+                if (first) {
+                    throw new CorruptedInputException();
+                }
+                return false;
+            }
+            in.readFully(buf, 1, 3);
+        } while (!first && buf[0] == 0 && buf[1] == 0 && buf[2] == 0 && buf[3] == 0);
+        in.readFully(buf, 4, DecoderUtil.STREAM_HEADER_SIZE - 4);
+        try {
+            streamFlags = DecoderUtil.decodeStreamHeader(buf);
+        } catch (XZFormatException e) {
+            if (first) {
+                throw e;
+            }
+            throw new CorruptedInputException("Garbage after a valid XZ Stream");
+        }
+        indexHash = new IndexHash();
+        return true;
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.compress.xz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.xbib.io.compress.xz.check.Check;
+import org.xbib.io.compress.xz.common.EncoderUtil;
+import org.xbib.io.compress.xz.index.IndexEncoder;
+
+/**
+ * XZ output stream that compresses blocks of the input in parallel.
+ * <p/>
+ * The input is cut into blocks of a fixed size, which are compressed
+ * independently by workers and written in order into one XZ stream, like
+ * <code>xz -T</code> does. The block headers store the compressed and
+ * uncompressed sizes, so {@link ParallelXZInputStream} can decode the blocks
+ * in parallel without seeking. Larger blocks compress better, the default is
+ * three times the dictionary size.
+ */
+public class ParallelXZOutputStream extends FinishableOutputStream {
+
+    private final OutputStream out;
+
+    private final FilterOptions[] filterOptions;
+
+    private final int checkType;
+
+    private final int blockSize;
+
+    private final int maxPending;
+
+    private final ExecutorService executor;
+
+    private final boolean shutdown;
+
+    private final Queue<Future<Block>> pending = new ArrayDeque<Future<Block>>();
+
+    private final IndexEncoder index = new IndexEncoder();
+
+    private final byte[] single = new byte[1];
+
+    private byte[] buffer;
+
+    private int count;
+
+    private boolean finished;
+
+    public ParallelXZOutputStream(OutputStream out, LZMA2Options options, int workers) throws IOException {
+        this(out, new FilterOptions[]{options}, XZ.CHECK_CRC64, workers,
+                (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1 << 20, 3L * options.getDictSize())));
+    }
+
+    public ParallelXZOutputStream(OutputStream out, FilterOptions[] filterOptions, int checkType,
+                                  int workers, int blockSize) throws IOException {
+        this(out, filterOptions, checkType, newExecutor(workers), true, workers, blockSize);
+    }
+
+    /**
+     * Create a stream that compresses on a shared executor, which is not shut down by the stream.
+     *
+     * @param out the output stream
+     * @param options the LZMA2 options
+     * @param executor the executor
+     * @param workers the number of blocks compressed at the same time
+     * @throws IOException if the header can not be written
+     */
+    public ParallelXZOutputStream(OutputStream out, LZMA2Options options, ExecutorService executor,
+                                  int workers) throws IOException {
+        this(out, new FilterOptions[]{options}, XZ.CHECK_CRC64, executor, false, workers,
+                (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1 << 20, 3L * options.getDictSize())));
+    }
+
+    private ParallelXZOutputStream(OutputStream out, FilterOptions[] filterOptions, int checkType,
+                                   ExecutorService executor, boolean shutdown,
+                                   int workers, int blockSize) throws IOException {
+        this.out = out;
+        this.filterOptions = filterOptions.clone();
+        this.checkType = checkType;
+        this.blockSize = blockSize;
+        this.maxPending = 2 * workers;
+        // fail early on unsupported options
+        Check.getInstance(checkType);
+        for (FilterOptions options : filterOptions) {
+            options.getFilterEncoder();
+        }
+        this.executor = executor;
+        this.shutdown = shutdown;
+        this.buffer = new byte[blockSize];
+        out.write(XZ.HEADER_MAGIC);
+        byte[] buf = new byte[2];
+        encodeStreamFlags(buf, 0);
+        out.write(buf);
+        EncoderUtil.writeCRC32(out, buf);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new XZIOException("Stream finished or closed");
+        }
+        while (len > 0) {
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == blockSize) {
+                submit();
+            }
+        }
+    }
+
+    /**
+     * Ends the current block early and writes all blocks.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (finished) {
+            throw new XZIOException("Stream finished or closed");
+        }
+        if (count > 0) {
+            submit();
+        }
+        while (!pending.isEmpty()) {
+            writePending();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        try {
+            if (count > 0) {
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                writePending();
+            }
+            index.encode(out);
+            byte[] buf = new byte[6];
+            long backwardSize = index.getIndexSize() / 4 - 1;
+            for (int i = 0; i < 4; ++i) {
+                buf[i] = (byte) (backwardSize >>> (i * 8));
+            }
+            encodeStreamFlags(buf, 4);
+            EncoderUtil.writeCRC32(out, buf);
+            out.write(buf);
+            out.write(XZ.FOOTER_MAGIC);
+            finished = true;
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private static ExecutorService newExecutor(int workers) {
+        return Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "xz-worker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Shut down an executor of this stream, or cancel the tasks left on a shared executor.
+     */
+    private void release() {
+        if (shutdown) {
+            executor.shutdownNow();
+        } else {
+            for (Future<?> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void encodeStreamFlags(byte[] buf, int off) {
+        buf[off] = 0x00;
+        buf[off + 1] = (byte) checkType;
+    }
+
+    private void submit() throws IOException {
+        final byte[] data = buffer;
+        final int len = count;
+        buffer = new byte[blockSize];
+        count = 0;
+        pending.add(executor.submit(new Callable<Block>() {
+            @Override
+            public Block call() throws IOException {
+                return encode(data, len);
+            }
+        }));
+        while (pending.size() > maxPending) {
+            writePending();
+        }
+    }
+
+    private void writePending() throws IOException {
+        try {
+            Block block = pending.remove().get();
+            out.write(block.bytes);
+            index.add(block.unpaddedSize, block.uncompressedSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ?
+                    (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Encode a complete block, with a block header that stores the sizes.
+     */
+    private Block encode(byte[] data, int len) throws IOException {
+        FilterEncoder[] filters = new FilterEncoder[filterOptions.length];
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = filterOptions[i].getFilterEncoder();
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(len / 4 + 64);
+        CountingOutputStream counted = new CountingOutputStream(compressed);
+        FinishableOutputStream filterChain = counted;
+        for (int i = filters.length - 1; i >= 0; --i) {
+            filterChain = filters[i].getOutputStream(filterChain);
+        }
+        filterChain.write(data, 0, len);
+        filterChain.finish();
+        long compressedSize = counted.getSize();
+        Check check = Check.getInstance(checkType);
+        check.update(data, 0, len);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        // Block Header Size, written when the size is known
+        header.write(0x00);
+        // Block Flags: compressed size and uncompressed size present
+        header.write(0x40 | 0x80 | (filters.length - 1));
+        EncoderUtil.encodeVLI(header, compressedSize);
+        EncoderUtil.encodeVLI(header, len);
+        for (FilterEncoder filter : filters) {
+            EncoderUtil.encodeVLI(header, filter.getFilterID());
+            byte[] filterProps = filter.getFilterProps();
+            EncoderUtil.encodeVLI(header, filterProps.length);
+            header.write(filterProps);
+        }
+        while ((header.size() & 3) != 0) {
+            header.write(0x00);
+        }
+        byte[] buf = header.toByteArray();
+        int headerSize = buf.length + 4;
+        if (headerSize > EncoderUtil.BLOCK_HEADER_SIZE_MAX) {
+            throw new UnsupportedOptionsException();
+        }
+        buf[0] = (byte) (buf.length / 4);
+
+        ByteArrayOutputStream block = new ByteArrayOutputStream(headerSize + (int) compressedSize + 3 + check.getSize());
+        block.write(buf);
+        EncoderUtil.writeCRC32(block, buf);
+        compressed.writeTo(block);
+        for (long i = compressedSize; (i & 3) != 0; ++i) {
+            block.write(0x00);
+        }
+        block.write(check.finish());
+        return new Block(block.toByteArray(), headerSize + compressedSize + check.getSize(), len);
+    }
+
+    private static class Block {
+
+        final byte[] bytes;
+
+        final long unpaddedSize;
+
+        final long uncompressedSize;
+
+        Block(byte[] bytes, long unpaddedSize, long uncompressedSize) {
+            this.bytes = bytes;
+            this.unpaddedSize = unpaddedSize;
+            this.uncompressedSize = uncompressedSize;
+        }
+    }
+}
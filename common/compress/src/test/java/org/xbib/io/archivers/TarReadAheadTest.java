@@ -0,0 +1,94 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ * 
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses/
+ *
+ */
+package org.xbib.io.archivers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+import org.xbib.io.archivers.tar.TarArchiveEntry;
+import org.xbib.io.archivers.tar.TarArchiveInputStream;
+import org.xbib.io.archivers.tar.TarArchiveOutputStream;
+
+public class TarReadAheadTest {
+
+    @Test
+    public void testCloseWhileReading() throws Exception {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        TarArchiveOutputStream out = new TarArchiveOutputStream(bout);
+        byte[] data = new byte[1024 * 1024];
+        TarArchiveEntry entry = new TarArchiveEntry("data");
+        entry.setSize(data.length);
+        out.putArchiveEntry(entry);
+        out.write(data);
+        out.closeArchiveEntry();
+        out.close();
+        SlowInputStream slow = new SlowInputStream(new ByteArrayInputStream(bout.toByteArray()));
+        TarReadAhead readAhead = new TarReadAhead(new TarArchiveInputStream(slow), 1).start();
+        Thread.sleep(100L);
+        assertTrue(slow.reading);
+        readAhead.close();
+        // the stream was not closed under the read, and the read-ahead thread left it closed
+        assertFalse(slow.closedWhileReading);
+        assertTrue(slow.closed);
+    }
+
+    /**
+     * A stream whose reads take a while, recording if it is closed during a read.
+     */
+    static class SlowInputStream extends FilterInputStream {
+
+        volatile boolean reading;
+
+        volatile boolean closed;
+
+        volatile boolean closedWhileReading;
+
+        SlowInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            reading = true;
+            try {
+                long t0 = System.currentTimeMillis();
+                // interrupting does not end blocking stream I/O
+                while (System.currentTimeMillis() - t0 < 50L) {
+                    Thread.yield();
+                }
+                return super.read(b, off, len);
+            } finally {
+                reading = false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closedWhileReading = reading;
+            closed = true;
+            super.close();
+        }
+    }
+}
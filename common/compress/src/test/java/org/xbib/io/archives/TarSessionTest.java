@@ -20,11 +20,17 @@
 package org.xbib.io.archives;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 import org.testng.annotations.Test;
 import org.xbib.io.Connection;
 import org.xbib.io.ConnectionService;
 import org.xbib.io.Session;
 import org.xbib.io.ObjectPacket;
+import org.xbib.io.Packet;
+import org.xbib.io.archivers.TarSession;
 import org.xbib.logging.Logger;
 import org.xbib.logging.LoggerFactory;
 
@@ -46,4 +52,34 @@ public class TarSessionTest {
         session.close();
         c.close();
     }
+
+    @Test
+    public void readFromTarWithReadAhead() throws Exception {
+        URI uri = URI.create("tarbz2:src/test/resources/test");
+        Connection<TarSession> c = ConnectionService.getInstance()
+                .getFactory(uri)
+                .getConnection(uri);
+        TarSession session = c.createSession();
+        session.open(Session.Mode.READ);
+        List<Packet> expected = new ArrayList<Packet>();
+        Packet message;
+        while ((message = session.read()) != null) {
+            expected.add(message);
+        }
+        session.close();
+        session = c.createSession();
+        session.setReadAhead(4);
+        session.open(Session.Mode.READ);
+        int count = 0;
+        while ((message = session.read()) != null) {
+            logger.info("name = {} object = {}", message.name(), message.packet());
+            assertEquals(message.name(), expected.get(count).name());
+            assertEquals(message.packet(), expected.get(count).packet());
+            count++;
+        }
+        session.close();
+        c.close();
+        assertTrue(count > 0);
+        assertEquals(count, expected.size());
+    }
 }
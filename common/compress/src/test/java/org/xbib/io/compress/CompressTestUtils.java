@@ -0,0 +1,38 @@
+package org.xbib.io.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * Helpers for the codec tests.
+ */
+public class CompressTestUtils {
+
+    /**
+     * Generate compressible text, the same for each size.
+     */
+    public static byte[] text(int size) {
+        Random random = new Random(42L);
+        StringBuilder sb = new StringBuilder(size);
+        while (sb.length() < size) {
+            sb.append(Integer.toString(random.nextInt(100000), 36)).append(random.nextInt(10) == 0 ? '\n' : ' ');
+        }
+        return sb.toString().getBytes();
+    }
+
+    /**
+     * Read a stream to the end and close it.
+     */
+    public static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
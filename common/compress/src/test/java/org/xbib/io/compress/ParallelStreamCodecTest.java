@@ -0,0 +1,76 @@
+package org.xbib.io.compress;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import static org.xbib.io.compress.CompressTestUtils.text;
+import static org.xbib.io.compress.CompressTestUtils.readAll;
+
+public class ParallelStreamCodecTest extends Assert {
+
+    @Test
+    public void testSharedGzipExecutor() throws Exception {
+        ParallelGzipStreamCodec codec = new ParallelGzipStreamCodec().setWorkers(2);
+        byte[] data = text(1024 * 1024);
+        ByteArrayOutputStream out1 = new ByteArrayOutputStream();
+        ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+        OutputStream zOut1 = codec.encode(out1);
+        OutputStream zOut2 = codec.encode(out2, 8192);
+        zOut1.write(data, 0, data.length / 2);
+        zOut2.write(data, 0, data.length / 2);
+        zOut1.write(data, data.length / 2, data.length - data.length / 2);
+        // closing one stream leaves the executor to the other
+        zOut1.close();
+        zOut2.write(data, data.length / 2, data.length - data.length / 2);
+        zOut2.close();
+        assertEquals(readAll(new GZIPInputStream(new ByteArrayInputStream(out1.toByteArray()))), data);
+        assertEquals(readAll(new GZIPInputStream(new ByteArrayInputStream(out2.toByteArray()))), data);
+        // a stream which is never closed
+        codec.encode(new ByteArrayOutputStream()).write(data);
+        assertTrue(threads("gz-codec-worker") <= 2);
+    }
+
+    @Test
+    public void testSharedBzip2Executor() throws Exception {
+        ParallelBzip2StreamCodec codec = new ParallelBzip2StreamCodec().setWorkers(2);
+        byte[] data = text(2 * 1024 * 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream zOut = codec.encode(out);
+        zOut.write(data);
+        zOut.close();
+        for (int i = 0; i < 3; i++) {
+            InputStream in = codec.decode(new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(readAll(in), data);
+        }
+        assertTrue(threads("bz2-codec-worker") <= 2);
+    }
+
+    @Test
+    public void testSharedXZExecutor() throws Exception {
+        ParallelXZStreamCodec codec = new ParallelXZStreamCodec().setWorkers(2);
+        byte[] data = text(4 * 1024 * 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream zOut = codec.encode(out);
+        zOut.write(data);
+        zOut.close();
+        for (int i = 0; i < 3; i++) {
+            InputStream in = codec.decode(new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(readAll(in), data);
+        }
+        assertTrue(threads("xz-codec-worker") <= 2);
+    }
+
+    private static int threads(String name) {
+        int n = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(t.getName())) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
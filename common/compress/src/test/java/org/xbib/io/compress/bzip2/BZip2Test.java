@@ -23,8 +23,11 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.Arrays;
 import org.testng.Assert;
 import org.testng.annotations.Test;
+import static org.xbib.io.compress.CompressTestUtils.text;
+import static org.xbib.io.compress.CompressTestUtils.readAll;
 
 public class BZip2Test extends Assert {
 
@@ -42,4 +45,19 @@ public class BZip2Test extends Assert {
         assertEquals("Hello World!", objIn.readObject());
     }
 
+    @Test
+    public void testParallelDecompression() throws Exception {
+        // more than one 900k block, and two concatenated streams
+        byte[] data = text(2 * 1024 * 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Bzip2OutputStream zOut = new Bzip2OutputStream(out)) {
+            zOut.write(data);
+        }
+        byte[] compressed = out.toByteArray();
+        out.write(compressed);
+        byte[] result = readAll(new ParallelBzip2InputStream(new ByteArrayInputStream(out.toByteArray()), 4));
+        assertEquals(result.length, 2 * data.length);
+        assertEquals(Arrays.copyOfRange(result, 0, data.length), data);
+        assertEquals(Arrays.copyOfRange(result, data.length, result.length), data);
+    }
 }
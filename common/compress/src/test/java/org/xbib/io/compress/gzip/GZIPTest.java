@@ -5,10 +5,13 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.Arrays;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import static org.testng.AssertJUnit.*;
 import org.testng.annotations.Test;
+import static org.xbib.io.compress.CompressTestUtils.text;
+import static org.xbib.io.compress.CompressTestUtils.readAll;
 
 public class GZIPTest {
 
@@ -26,4 +29,16 @@ public class GZIPTest {
         assertEquals("Hello World!", objIn.readObject());
     }
 
+    @Test
+    public void testParallelCompression() throws Exception {
+        byte[] data = text(1024 * 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ParallelGZIPOutputStream zOut = new ParallelGZIPOutputStream(out, 4, 64 * 1024, 6)) {
+            zOut.write(data, 0, 1000);
+            zOut.flush();
+            zOut.write(data, 1000, data.length - 1000);
+        }
+        byte[] result = readAll(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())));
+        assertTrue(Arrays.equals(data, result));
+    }
 }
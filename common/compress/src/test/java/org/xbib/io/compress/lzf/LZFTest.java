@@ -37,6 +37,8 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import org.testng.Assert;
 import org.testng.annotations.Test;
+import static org.xbib.io.compress.CompressTestUtils.text;
+import static org.xbib.io.compress.CompressTestUtils.readAll;
 
 public class LZFTest extends Assert {
 
@@ -53,5 +55,32 @@ public class LZFTest extends Assert {
         ObjectInputStream objIn = new ObjectInputStream(zIn);
         assertEquals("Hello World!", objIn.readObject());
     }
-    
+
+    @Test
+    public void testParallelChunks() throws Exception {
+        byte[] data = text(1024 * 1024 + 17);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (LZFOutputStream zOut = new LZFOutputStream(out)) {
+            zOut.write(data);
+        }
+        byte[] sequential = out.toByteArray();
+        out = new ByteArrayOutputStream();
+        try (ParallelLZFOutputStream zOut = new ParallelLZFOutputStream(out, 4)) {
+            zOut.write(data, 0, 100);
+            zOut.flush();
+            zOut.write(data, 100, data.length - 100);
+        }
+        byte[] parallel = out.toByteArray();
+        assertEquals(readAll(new LZFInputStream(new ByteArrayInputStream(parallel))), data);
+        assertEquals(readAll(new ParallelLZFInputStream(new ByteArrayInputStream(parallel), 4)), data);
+        assertEquals(readAll(new ParallelLZFInputStream(new ByteArrayInputStream(sequential), 4)), data);
+        // encoders of the closed stream are reused from the shared pool
+        out = new ByteArrayOutputStream();
+        try (ParallelLZFOutputStream zOut = new ParallelLZFOutputStream(out, 4)) {
+            zOut.write(data, 0, 100);
+            zOut.flush();
+            zOut.write(data, 100, data.length - 100);
+        }
+        assertEquals(out.toByteArray(), parallel);
+    }
 }
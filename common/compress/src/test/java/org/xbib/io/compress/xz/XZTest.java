@@ -37,6 +37,8 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import org.testng.Assert;
 import org.testng.annotations.Test;
+import static org.xbib.io.compress.CompressTestUtils.text;
+import static org.xbib.io.compress.CompressTestUtils.readAll;
 
 public class XZTest extends Assert {
 
@@ -53,5 +55,28 @@ public class XZTest extends Assert {
         ObjectInputStream objIn = new ObjectInputStream(zIn);
         assertEquals("Hello World!", objIn.readObject());
     }
-    
+
+    @Test
+    public void testParallelBlocks() throws Exception {
+        byte[] data = text(3 * 1024 * 1024);
+        LZMA2Options options = new LZMA2Options();
+        options.setDictSize(256 * 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ParallelXZOutputStream zOut = new ParallelXZOutputStream(out, options, 4)) {
+            zOut.write(data);
+        }
+        byte[] compressed = out.toByteArray();
+        assertEquals(readAll(new XZInputStream(new ByteArrayInputStream(compressed))), data);
+        assertEquals(readAll(new ParallelXZInputStream(new ByteArrayInputStream(compressed), 4)), data);
+    }
+
+    @Test
+    public void testParallelDecompressionOfSingleBlock() throws Exception {
+        byte[] data = text(100 * 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (XZOutputStream zOut = new XZOutputStream(out, new LZMA2Options())) {
+            zOut.write(data);
+        }
+        assertEquals(readAll(new ParallelXZInputStream(new ByteArrayInputStream(out.toByteArray()), 4)), data);
+    }
 }
@@ -5,26 +5,48 @@ import org.xbib.morph.fsa.FSABuilder;
 import org.xbib.morph.fsa.FSAFinalStatesIterator;
 import org.xbib.morph.fsa.FSATraversal;
 import org.xbib.morph.fsa.MatchResult;
+import org.xbib.morph.fsa.io.FSAUtils;
 import static org.xbib.morph.fsa.MatchResult.*;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * A dictionary of forms and their base forms, e.g. for lemmatization or
+ * normalization.
+ * <p/>
+ * Lookups are thread-safe and do not lock. Each thread keeps its own encoder,
+ * traversal state and, if a cache size is set, a bounded cache of recent results,
+ * so a dictionary can be shared by all pipeline threads.
+ */
 public class Dictionary {
 
-    private final Charset UTF8 = Charset.forName("UTF-8");
+    private final static Charset UTF8 = Charset.forName("UTF-8");
 
-    private FSA fsa;
+    /**
+     * Maximum number of base form hops, guards against cycles in the dictionary source.
+     */
+    private final static int MAX_HOPS = 16;
 
-    private FSATraversal matcher;
+    private final ThreadLocal<Lookup> lookups = new ThreadLocal<Lookup>();
+
+    private volatile FSA fsa;
+
+    private volatile int cacheSize;
 
     public Dictionary load(Reader in) throws IOException {
         BufferedReader reader = new BufferedReader(in);
@@ -40,38 +62,172 @@ public class Dictionary {
             builder.add(b, 0, b.length);
         }
         this.fsa = builder.complete();
-        this.matcher = new FSATraversal(fsa);
         return this;
     }
 
+    /**
+     * Map a dictionary automaton file built by {@link DictionaryBuilder}
+     * read-only into memory. Nothing is sorted or built at startup, and
+     * lookups run off the mapped buffer.
+     *
+     * @param file the automaton file in FSA5 or CFSA2 format
+     * @return this dictionary
+     * @throws IOException if the file can not be mapped
+     */
+    public Dictionary map(File file) throws IOException {
+        this.fsa = FSAUtils.map(file);
+        return this;
+    }
+
+    /**
+     * Set the size of the result cache of each lookup thread. Default is 0, no cache.
+     *
+     * @param cacheSize the maximum number of cached results per thread
+     * @return this dictionary
+     */
+    public Dictionary setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    /**
+     * Look up the base form of a term.
+     *
+     * @param prefix the term
+     * @return the base form, or the term itself if the dictionary has no base form for it
+     * @throws CharacterCodingException if the term can not be encoded
+     */
     public String lookup(CharSequence prefix) throws CharacterCodingException {
-        return lookup(UTF8.newEncoder().encode(CharBuffer.wrap(prefix)), prefix.toString());
+        return lookup().lookup(prefix);
+    }
+
+    /**
+     * Look up the base forms of many terms in one call.
+     *
+     * @param terms the terms
+     * @return the base forms, in the order of the terms
+     * @throws CharacterCodingException if a term can not be encoded
+     */
+    public List<String> lookup(Collection<? extends CharSequence> terms) throws CharacterCodingException {
+        Lookup lookup = lookup();
+        List<String> list = new ArrayList<String>(terms.size());
+        for (CharSequence term : terms) {
+            list.add(lookup.lookup(term));
+        }
+        return list;
     }
 
     public String lookup(ByteBuffer buf, String result) {
-        MatchResult match = matcher.match(buf.array(), buf.position(), buf.remaining(), fsa.getRootNode());
-        switch (match.kind) {
-            case SEQUENCE_IS_A_PREFIX: {
-                final int arc = fsa.getArc(match.node, (byte)'+');
-                if (arc != 0 && !fsa.isArcFinal(arc)) {
-                    FSAFinalStatesIterator finalStatesIterator = new FSAFinalStatesIterator(fsa, fsa.getRootNode());
-                    finalStatesIterator.restartFrom(fsa.getEndNode(arc));
-                    if (finalStatesIterator.hasNext()) {
-                        buf = finalStatesIterator.next();
-                        String s = new String(buf.array(), buf.position(), buf.remaining(), UTF8);
-                        return s.equals(result) ? s : lookup(buf, s);
-                    }
+        return lookup().resolve(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining(), result);
+    }
+
+    private Lookup lookup() {
+        Lookup lookup = lookups.get();
+        FSA fsa = this.fsa;
+        if (lookup == null || lookup.fsa != fsa || lookup.cacheSize != cacheSize) {
+            lookup = new Lookup(fsa, cacheSize);
+            lookups.set(lookup);
+        }
+        return lookup;
+    }
+
+    /**
+     * The reusable lookup state of a thread.
+     */
+    private static class Lookup {
+
+        private final FSA fsa;
+
+        private final int root;
+
+        private final FSATraversal matcher;
+
+        private final MatchResult match = new MatchResult();
+
+        private final FSAFinalStatesIterator iterator;
+
+        private final CharsetEncoder encoder = UTF8.newEncoder();
+
+        private final int cacheSize;
+
+        private final Map<String, String> cache;
+
+        private ByteBuffer bytes = ByteBuffer.allocate(64);
+
+        Lookup(FSA fsa, final int cacheSize) {
+            this.fsa = fsa;
+            this.root = fsa.getRootNode();
+            this.matcher = new FSATraversal(fsa);
+            this.iterator = new FSAFinalStatesIterator(fsa, root);
+            this.cacheSize = cacheSize;
+            this.cache = cacheSize > 0 ? new LinkedHashMap<String, String>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > cacheSize;
                 }
-                break;
+            } : null;
+        }
+
+        String lookup(CharSequence term) throws CharacterCodingException {
+            String s = term.toString();
+            if (cache != null) {
+                String result = cache.get(s);
+                if (result != null) {
+                    return result;
+                }
+            }
+            encode(s);
+            String result = resolve(bytes.array(), 0, bytes.limit(), s);
+            if (cache != null) {
+                cache.put(s, result);
+            }
+            return result;
+        }
+
+        private void encode(String s) throws CharacterCodingException {
+            int max = (int) (s.length() * encoder.maxBytesPerChar());
+            if (bytes.capacity() < max) {
+                bytes = ByteBuffer.allocate(max);
             }
-            case EXACT_MATCH: {
-                break;
+            bytes.clear();
+            encoder.reset();
+            CoderResult cr = encoder.encode(CharBuffer.wrap(s), bytes, true);
+            if (!cr.isUnderflow()) {
+                cr.throwException();
             }
-            case NO_MATCH: {
-                break;
+            cr = encoder.flush(bytes);
+            if (!cr.isUnderflow()) {
+                cr.throwException();
             }
+            bytes.flip();
         }
-        return result;
-    }
 
+        String resolve(byte[] b, int off, int len, String result) {
+            for (int hops = 0; hops < MAX_HOPS; hops++) {
+                matcher.match(match, b, off, len, root);
+                if (match.kind != SEQUENCE_IS_A_PREFIX) {
+                    break;
+                }
+                final int arc = fsa.getArc(match.node, (byte) '+');
+                if (arc == 0 || fsa.isArcFinal(arc)) {
+                    break;
+                }
+                iterator.restartFrom(fsa.getEndNode(arc));
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                // the base form may have a base form itself
+                ByteBuffer buf = iterator.next();
+                String s = new String(buf.array(), buf.position(), buf.remaining(), UTF8);
+                if (s.equals(result)) {
+                    return s;
+                }
+                b = buf.array();
+                off = buf.position();
+                len = buf.remaining();
+                result = s;
+            }
+            return result;
+        }
+    }
 }
@@ -0,0 +1,227 @@
+package org.xbib.dict;
+
+import org.xbib.morph.fsa.FSA;
+import org.xbib.morph.fsa.FSABuilder;
+import org.xbib.morph.fsa.io.FSA5Codec;
+import org.xbib.morph.fsa.io.FSACodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Offline builder for dictionary automaton files.
+ * <p/>
+ * The lines of the dictionary source are read in runs of limited size, each
+ * run is sorted and spilled to a temporary file, and the runs are merged in
+ * lexical byte order into a {@link FSABuilder}. The automaton is serialized with
+ * a codec, by default {@link FSA5Codec}, and can be mapped by {@link Dictionary#map(File)}.
+ * <p/>
+ * Only one run and the automaton, which is much smaller than the sorted
+ * input, are held in memory at a time. Duplicate lines are dropped.
+ */
+public class DictionaryBuilder {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private final static Comparator<Run> RUN_ORDERING = new Comparator<Run>() {
+        @Override
+        public int compare(Run r1, Run r2) {
+            return FSABuilder.LEXICAL_ORDERING.compare(r1.current, r2.current);
+        }
+    };
+
+    private long runSize = 64L * 1024 * 1024;
+
+    private File tmpdir;
+
+    private FSACodec codec = new FSA5Codec();
+
+    /**
+     * Set the number of bytes of lines that are sorted in memory before they
+     * are spilled to a temporary file. Default is 64 MB.
+     */
+    public DictionaryBuilder setRunSize(long runSize) {
+        this.runSize = runSize;
+        return this;
+    }
+
+    /**
+     * Set the directory for temporary files. Default is the system temporary directory.
+     */
+    public DictionaryBuilder setTempDirectory(File tmpdir) {
+        this.tmpdir = tmpdir;
+        return this;
+    }
+
+    /**
+     * Set the codec for writing the automaton, e.g. a CFSA2 codec for a more compact file.
+     */
+    public DictionaryBuilder setCodec(FSACodec codec) {
+        this.codec = codec;
+        return this;
+    }
+
+    /**
+     * Build a dictionary automaton file from dictionary source lines.
+     *
+     * @param in     the dictionary source, a tab separates a form from its base form
+     * @param target the automaton file
+     * @return the number of distinct lines in the automaton
+     * @throws IOException if the source can not be read or the automaton can not be written
+     */
+    public long build(Reader in, File target) throws IOException {
+        List<File> runs = new ArrayList<File>();
+        try {
+            BufferedReader reader = new BufferedReader(in);
+            List<byte[]> lines = new ArrayList<byte[]>();
+            long size = 0L;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                byte[] b = line.replace('\t', '+').getBytes(UTF8);
+                lines.add(b);
+                size += b.length;
+                if (size >= runSize) {
+                    runs.add(spill(lines));
+                    lines.clear();
+                    size = 0L;
+                }
+            }
+            reader.close();
+            FSABuilder builder = new FSABuilder();
+            long count;
+            if (runs.isEmpty()) {
+                // everything fits into one run, no need for temporary files
+                Collections.sort(lines, FSABuilder.LEXICAL_ORDERING);
+                count = addDistinct(builder, lines);
+            } else {
+                if (!lines.isEmpty()) {
+                    runs.add(spill(lines));
+                    lines.clear();
+                }
+                count = merge(builder, runs);
+            }
+            FSA fsa = builder.complete();
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(target));
+            try {
+                codec.write(fsa, out);
+            } finally {
+                out.close();
+            }
+            return count;
+        } finally {
+            for (File run : runs) {
+                run.delete();
+            }
+        }
+    }
+
+    private File spill(List<byte[]> lines) throws IOException {
+        Collections.sort(lines, FSABuilder.LEXICAL_ORDERING);
+        File file = File.createTempFile("dict", ".run", tmpdir);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        try {
+            for (byte[] b : lines) {
+                out.writeInt(b.length);
+                out.write(b);
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private long addDistinct(FSABuilder builder, List<byte[]> lines) {
+        long count = 0L;
+        byte[] previous = null;
+        for (byte[] b : lines) {
+            if (previous == null || !Arrays.equals(previous, b)) {
+                builder.add(b, 0, b.length);
+                previous = b;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long merge(FSABuilder builder, List<File> files) throws IOException {
+        PriorityQueue<Run> queue = new PriorityQueue<Run>(files.size(), RUN_ORDERING);
+        long count = 0L;
+        try {
+            for (File file : files) {
+                Run run = new Run(file);
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            byte[] previous = null;
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                byte[] b = run.current;
+                if (previous == null || !Arrays.equals(previous, b)) {
+                    builder.add(b, 0, b.length);
+                    previous = b;
+                    count++;
+                }
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+        } finally {
+            for (Run run : queue) {
+                run.close();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A sorted run in a temporary file.
+     */
+    private static class Run {
+
+        private final DataInputStream in;
+
+        private byte[] current;
+
+        Run(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+        }
+
+        boolean next() throws IOException {
+            int len;
+            try {
+                len = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            current = new byte[len];
+            in.readFully(current);
+            return true;
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+}
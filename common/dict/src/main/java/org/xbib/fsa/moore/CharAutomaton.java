@@ -0,0 +1,146 @@
+package org.xbib.fsa.moore;
+
+import org.xbib.fsa.moore.levenshtein.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled, immutable automaton over characters.
+ * <p/>
+ * The states of a mutable automaton hold their transitions in hash maps
+ * keyed by boxed characters. A compiled automaton numbers the states and
+ * keeps the transitions of all states in two arrays, the labels sorted per
+ * state, so a transition is found by a binary search over chars, and all
+ * transitions of a state can be walked without boxing or hashing.
+ * <p/>
+ * The state with number 0 is the initial state. The transitions of a state
+ * s are the indexes from first(s) inclusive to first(s + 1) exclusive.
+ *
+ * @param <E> an element attached to an input
+ */
+public final class CharAutomaton<E> {
+
+    private final int[] first;
+
+    private final char[] labels;
+
+    private final int[] targets;
+
+    private final Object[] elements;
+
+    private CharAutomaton(int[] first, char[] labels, int[] targets, Object[] elements) {
+        this.first = first;
+        this.labels = labels;
+        this.targets = targets;
+        this.elements = elements;
+    }
+
+    /**
+     * Compile an automaton. Later changes of the automaton are not seen by
+     * the compiled automaton.
+     *
+     * @param automaton the automaton
+     * @return the compiled automaton
+     */
+    public static <E> CharAutomaton<E> compile(Automaton<Character, E> automaton) {
+        Map<State<Character, E>, Integer> numbers = new IdentityHashMap();
+        List<State<Character, E>> states = new ArrayList();
+        State<Character, E> root = automaton.getCurrentState();
+        numbers.put(root, 0);
+        states.add(root);
+        int transitions = 0;
+        // breadth first, numbering states when they are reached
+        for (int i = 0; i < states.size(); i++) {
+            State<Character, E> state = states.get(i);
+            for (Character c : state.getTransitionSymbols()) {
+                State<Character, E> next = state.getNextState(c);
+                if (!numbers.containsKey(next)) {
+                    numbers.put(next, states.size());
+                    states.add(next);
+                }
+                transitions++;
+            }
+        }
+        int n = states.size();
+        int[] first = new int[n + 1];
+        char[] labels = new char[transitions];
+        int[] targets = new int[transitions];
+        Object[] elements = new Object[n];
+        int t = 0;
+        for (int i = 0; i < n; i++) {
+            State<Character, E> state = states.get(i);
+            first[i] = t;
+            elements[i] = state.getElement();
+            int start = t;
+            for (Character c : state.getTransitionSymbols()) {
+                labels[t++] = c;
+            }
+            Arrays.sort(labels, start, t);
+            for (int j = start; j < t; j++) {
+                targets[j] = numbers.get(state.getNextState(labels[j]));
+            }
+        }
+        first[n] = t;
+        return new CharAutomaton<E>(first, labels, targets, elements);
+    }
+
+    /**
+     * The number of states.
+     */
+    public int size() {
+        return elements.length;
+    }
+
+    /**
+     * Get the next state.
+     *
+     * @param state the state
+     * @param c     the character
+     * @return the next state, or -1 if there is no transition for the character
+     */
+    public int next(int state, char c) {
+        int i = Arrays.binarySearch(labels, first[state], first[state + 1], c);
+        return i >= 0 ? targets[i] : -1;
+    }
+
+    /**
+     * The index of the first transition of a state.
+     */
+    public int first(int state) {
+        return first[state];
+    }
+
+    /**
+     * The index after the last transition of a state.
+     */
+    public int last(int state) {
+        return first[state + 1];
+    }
+
+    /**
+     * The character of a transition.
+     */
+    public char label(int transition) {
+        return labels[transition];
+    }
+
+    /**
+     * The state a transition leads to.
+     */
+    public int target(int transition) {
+        return targets[transition];
+    }
+
+    public boolean isAccept(int state) {
+        return elements[state] != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E getElement(int state) {
+        return (E) elements[state];
+    }
+}
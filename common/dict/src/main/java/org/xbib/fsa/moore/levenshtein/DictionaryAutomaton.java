@@ -1,6 +1,7 @@
 package org.xbib.fsa.moore.levenshtein;
 
 import org.xbib.fsa.moore.AbstractAutomaton;
+import org.xbib.fsa.moore.CharAutomaton;
 import org.xbib.fsa.moore.CompactState;
 
 import java.util.Iterator;
@@ -52,6 +53,16 @@ public class DictionaryAutomaton extends AbstractAutomaton<Character, CharSequen
         return this;
     }
 
+    /**
+     * Compile the dictionary automaton into an immutable automaton with
+     * primitive transition tables. Words added later are not contained.
+     *
+     * @return the compiled automaton
+     */
+    public CharAutomaton<CharSequence> compile() {
+        return CharAutomaton.compile(this);
+    }
+
     /**
      * Gets the list of all unique characters in the dictionary, which
      * is also known as the alphabet.
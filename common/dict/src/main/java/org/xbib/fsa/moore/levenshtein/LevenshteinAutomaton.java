@@ -1,6 +1,7 @@
 package org.xbib.fsa.moore.levenshtein;
 
 import org.xbib.fsa.moore.AbstractAutomaton;
+import org.xbib.fsa.moore.CharAutomaton;
 import org.xbib.fsa.moore.CompactState;
 import org.xbib.util.FixedLengthBitSet;
 
@@ -8,6 +9,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -30,6 +32,16 @@ public final class LevenshteinAutomaton
 
     private int editDistance;
 
+    /**
+     * The transitions as a table, with a row for each state, indexed by the
+     * characteristic vector as a number, see key(). -1 means no transition.
+     */
+    private int[] table;
+
+    private boolean[] accept;
+
+    private int shift;
+
     public LevenshteinAutomaton name(String name) {
         setName(name);
         return this;
@@ -85,6 +97,122 @@ public final class LevenshteinAutomaton
                 }
             }
         }
+        compileTable();
+    }
+
+    /**
+     * Number the states and build the transition table.
+     */
+    private void compileTable() {
+        this.shift = 2 * editDistance + 3;
+        Map<State<FixedLengthBitSet, Boolean>, Integer> numbers = new IdentityHashMap();
+        List<State<FixedLengthBitSet, Boolean>> states = new ArrayList();
+        numbers.put(getCurrentState(), 0);
+        states.add(getCurrentState());
+        for (int i = 0; i < states.size(); i++) {
+            for (State<FixedLengthBitSet, Boolean> next : states.get(i).getFollowers()) {
+                if (!numbers.containsKey(next)) {
+                    numbers.put(next, states.size());
+                    states.add(next);
+                }
+            }
+        }
+        this.table = new int[states.size() << shift];
+        Arrays.fill(table, -1);
+        this.accept = new boolean[states.size()];
+        for (int i = 0; i < states.size(); i++) {
+            State<FixedLengthBitSet, Boolean> state = states.get(i);
+            accept[i] = state.isAccept();
+            for (FixedLengthBitSet b : state.getTransitionSymbols()) {
+                table[(i << shift) | key(b)] = numbers.get(state.getNextState(b));
+            }
+        }
+    }
+
+    /**
+     * A characteristic vector as a number: the bits, and a leading one bit
+     * for the length.
+     */
+    private static int key(FixedLengthBitSet b) {
+        int key = 1 << b.fixedLength();
+        for (int j = 0; j < b.fixedLength(); j++) {
+            if (b.get(j)) {
+                key |= 1 << j;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Simultaneously traverses a compiled dictionary automaton and this
+     * automaton to find all words within the edit distance. Gives the same
+     * words in the same order as recognize() with a DictionaryAutomaton, but
+     * walks the transitions of the dictionary states only, and looks up the
+     * characteristic vectors in a table, without boxing, hashing or building
+     * strings for candidates that are not accepted.
+     *
+     * @param input used to search for other string within an edit distance
+     * @param dict  compiled automaton representing all the words to search
+     * @return Collection containing all the words within the edit distance
+     *         matching the input word
+     */
+    public Set<CharSequence> recognize(CharSequence input, CharAutomaton<CharSequence> dict) {
+        Set<CharSequence> result = new LinkedHashSet<CharSequence>();
+        int n = editDistance;
+        int len = input.length() + n;
+        char[] s = new char[len];
+        Arrays.fill(s, 0, n, NONALPHABET_CHARACTER);
+        for (int i = 0; i < input.length(); i++) {
+            s[n + i] = input.charAt(i);
+        }
+        int window = 2 * n + 2;
+        char[] path = new char[16];
+        // stack of dictionary state, levenshtein state, depth, and the character leading there
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = 0;
+        stack[top++] = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            char ch = (char) stack[--top];
+            int depth = stack[--top];
+            int levstate = stack[--top];
+            int dictstate = stack[--top];
+            if (depth > 0) {
+                path[depth - 1] = ch;
+            }
+            if (depth >= path.length) {
+                path = Arrays.copyOf(path, path.length * 2);
+            }
+            int vlen = Math.min(window, Math.max(0, len - depth));
+            int row = levstate << shift;
+            for (int t = dict.first(dictstate); t < dict.last(dictstate); t++) {
+                char c = dict.label(t);
+                int key = 1 << vlen;
+                for (int i = 0; i < vlen; i++) {
+                    if (c == s[depth + i]) {
+                        key |= 1 << (vlen - 1 - i);
+                    }
+                }
+                int levnext = table[row | key];
+                if (levnext >= 0) {
+                    int dictnext = dict.target(t);
+                    if (dict.isAccept(dictnext) && accept[levnext]) {
+                        path[depth] = c;
+                        result.add(new String(path, 0, depth + 1));
+                    }
+                    if (top + 4 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top++] = dictnext;
+                    stack[top++] = levnext;
+                    stack[top++] = depth + 1;
+                    stack[top++] = c;
+                }
+            }
+        }
+        return result;
     }
 
     /**
@@ -1,6 +1,7 @@
 package org.xbib.fsa.moore.levenshtein;
 
 import org.xbib.fsa.moore.Automaton;
+import org.xbib.fsa.moore.CharAutomaton;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -58,6 +59,11 @@ public class LevenshteinAutomatonSuggester {
      * The dictionary automaton constructed form the dictionary.
      */
     private DictionaryAutomaton automaton;
+    /**
+     * The compiled dictionary automaton, null if words have been added since
+     * the last compilation.
+     */
+    private volatile CharAutomaton<CharSequence> compiled;
 
     public LevenshteinAutomatonSuggester(Iterable<CharSequence> sequence) {
         //this.dictionary = dict;
@@ -73,8 +79,22 @@ public class LevenshteinAutomatonSuggester {
      *
      * @param input
      */
-    public void add(CharSequence input) {
+    public synchronized void add(CharSequence input) {
         automaton.add(input);
+        compiled = null;
+    }
+
+    private CharAutomaton<CharSequence> compiled() {
+        CharAutomaton<CharSequence> c = compiled;
+        if (c == null) {
+            synchronized (this) {
+                if (compiled == null) {
+                    compiled = automaton.compile();
+                }
+                c = compiled;
+            }
+        }
+        return c;
     }
 
     /**
@@ -86,15 +106,16 @@ public class LevenshteinAutomatonSuggester {
      */
     public Collection<CharSequence> getSuggestionsFor(CharSequence input, boolean withexact, int maxlevel) {
         Collection<CharSequence> suggestions = new ArrayList();
+        CharAutomaton<CharSequence> dict = compiled();
         if (withexact) {
-            suggestions.addAll(ls0.recognize(input, automaton));
+            suggestions.addAll(ls0.recognize(input, dict));
         }
         if (suggestions.isEmpty() && maxlevel > 0) {
-            suggestions.addAll(ls1.recognize(input, automaton));
+            suggestions.addAll(ls1.recognize(input, dict));
             if (suggestions.isEmpty() && maxlevel > 1) {
-                suggestions.addAll(ls2.recognize(input, automaton));
+                suggestions.addAll(ls2.recognize(input, dict));
                 if (suggestions.isEmpty() && maxlevel > 2) {
-                    suggestions.addAll(ls3.recognize(input, automaton));
+                    suggestions.addAll(ls3.recognize(input, dict));
                 }
             }
         }
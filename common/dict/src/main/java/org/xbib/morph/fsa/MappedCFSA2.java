@@ -0,0 +1,173 @@
+package org.xbib.morph.fsa;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * CFSA binary format version 2, read from a byte buffer instead of a byte array.
+ * <p/>
+ * The arcs are the same as in {@link CFSA2}, but they stay in the buffer, which
+ * is usually a read-only buffer mapped from an automaton file. The buffer is
+ * only read by absolute positions, so an instance can be shared by many threads.
+ *
+ * @see org.xbib.morph.fsa.io.CFSA2Codec#map(java.nio.ByteBuffer)
+ */
+public final class MappedCFSA2 extends FSA {
+
+    /**
+     * The arcs, the first arc at position 0.
+     */
+    private final ByteBuffer arcs;
+
+    private final byte[] labelMapping;
+
+    private final Set<FSAFlags> flags;
+
+    private final boolean hasNumbers;
+
+    public MappedCFSA2(ByteBuffer arcs, byte[] labelMapping, Set<FSAFlags> flags) {
+        this.arcs = arcs;
+        this.labelMapping = labelMapping;
+        this.flags = Collections.unmodifiableSet(flags);
+        this.hasNumbers = flags.contains(FSAFlags.NUMBERS);
+    }
+
+    /**
+     * The size of the arcs in bytes.
+     */
+    public int size() {
+        return arcs.limit();
+    }
+
+    @Override
+    public int getRootNode() {
+        int epsilon = 0;
+        return getDestinationNodeOffset(getFirstArc(epsilon));
+    }
+
+    @Override
+    public final int getFirstArc(int node) {
+        if (hasNumbers) {
+            return skipVInt(node);
+        } else {
+            return node;
+        }
+    }
+
+    @Override
+    public final int getNextArc(int arc) {
+        if (isArcLast(arc)) {
+            return 0;
+        } else {
+            return skipArc(arc);
+        }
+    }
+
+    @Override
+    public int getArc(int node, byte label) {
+        for (int arc = getFirstArc(node); arc != 0; arc = getNextArc(arc)) {
+            if (getArcLabel(arc) == label) {
+                return arc;
+            }
+        }
+        // An arc labeled with "label" not found.
+        return 0;
+    }
+
+    @Override
+    public int getEndNode(int arc) {
+        final int nodeOffset = getDestinationNodeOffset(arc);
+        assert nodeOffset != 0 : "can't follow a terminal arc: " + arc;
+        assert nodeOffset < arcs.limit() : "node out of bounds";
+        return nodeOffset;
+    }
+
+    @Override
+    public byte getArcLabel(int arc) {
+        int index = arcs.get(arc) & CFSA2.LABEL_INDEX_MASK;
+        if (index > 0) {
+            return this.labelMapping[index];
+        } else {
+            return arcs.get(arc + 1);
+        }
+    }
+
+    @Override
+    public int getRightLanguageCount(int node) {
+        assert getFlags().contains(FSAFlags.NUMBERS) : "this FSA was not compiled with NUMBERS";
+        return readVInt(node);
+    }
+
+    @Override
+    public boolean isArcFinal(int arc) {
+        return (arcs.get(arc) & CFSA2.BIT_FINAL_ARC) != 0;
+    }
+
+    @Override
+    public boolean isArcTerminal(int arc) {
+        return (0 == getDestinationNodeOffset(arc));
+    }
+
+    /**
+     * @see CFSA2#BIT_LAST_ARC
+     */
+    public boolean isArcLast(int arc) {
+        return (arcs.get(arc) & CFSA2.BIT_LAST_ARC) != 0;
+    }
+
+    /**
+     * @see CFSA2#BIT_TARGET_NEXT
+     */
+    public boolean isNextSet(int arc) {
+        return (arcs.get(arc) & CFSA2.BIT_TARGET_NEXT) != 0;
+    }
+
+    @Override
+    public Set<FSAFlags> getFlags() {
+        return flags;
+    }
+
+    private int getDestinationNodeOffset(int arc) {
+        if (isNextSet(arc)) {
+            /* Follow until the last arc of this state. */
+            while (!isArcLast(arc)) {
+                arc = getNextArc(arc);
+            }
+            /* And return the byte right after it. */
+            return skipArc(arc);
+        } else {
+            return readVInt(arc + ((arcs.get(arc) & CFSA2.LABEL_INDEX_MASK) == 0 ? 2 : 1));
+        }
+    }
+
+    private int skipArc(int offset) {
+        int flag = arcs.get(offset++);
+        // Explicit label?
+        if ((flag & CFSA2.LABEL_INDEX_MASK) == 0) {
+            offset++;
+        }
+        // Explicit goto?
+        if ((flag & CFSA2.BIT_TARGET_NEXT) == 0) {
+            offset = skipVInt(offset);
+        }
+        return offset;
+    }
+
+    private int readVInt(int offset) {
+        byte b = arcs.get(offset);
+        int value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = arcs.get(++offset);
+            value |= (b & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    private int skipVInt(int offset) {
+        while (arcs.get(offset++) < 0) {
+            ;
+        }
+        return offset;
+    }
+}
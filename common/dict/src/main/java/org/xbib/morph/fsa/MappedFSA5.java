@@ -0,0 +1,161 @@
+package org.xbib.morph.fsa;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * FSA binary format version 5, read from a byte buffer instead of a byte array.
+ * <p/>
+ * The arcs are the same as in {@link FSA5}, but they stay in the buffer, which
+ * is usually a read-only buffer mapped from an automaton file, so the automaton
+ * is not copied to the heap and the pages are shared by all threads and processes
+ * mapping the same file. The buffer is only read by absolute positions, so
+ * an instance can be shared by many threads.
+ *
+ * @see org.xbib.morph.fsa.io.FSA5Codec#map(java.nio.ByteBuffer)
+ */
+public final class MappedFSA5 extends FSA {
+
+    /**
+     * The arcs, the first arc at position 0.
+     */
+    private final ByteBuffer arcs;
+
+    private final int nodeDataLength;
+
+    private final int gtl;
+
+    private final Set<FSAFlags> flags;
+
+    private final byte filler;
+
+    private final byte annotation;
+
+    public MappedFSA5(ByteBuffer arcs, int nodeDataLength, int gtl, Set<FSAFlags> flags,
+                      byte filler, byte annotation) {
+        this.arcs = arcs;
+        this.nodeDataLength = nodeDataLength;
+        this.gtl = gtl;
+        this.flags = Collections.unmodifiableSet(flags);
+        this.filler = filler;
+        this.annotation = annotation;
+    }
+
+    public byte getFiller() {
+        return filler;
+    }
+
+    public byte getAnnotation() {
+        return annotation;
+    }
+
+    /**
+     * The size of the arcs in bytes.
+     */
+    public int size() {
+        return arcs.limit();
+    }
+
+    @Override
+    public int getRootNode() {
+        // Skip dummy node marking terminating state.
+        final int epsilonNode = skipArc(getFirstArc(0));
+        // And follow the epsilon node's first (and only) arc.
+        return getDestinationNodeOffset(getFirstArc(epsilonNode));
+    }
+
+    @Override
+    public final int getFirstArc(int node) {
+        return nodeDataLength + node;
+    }
+
+    @Override
+    public final int getNextArc(int arc) {
+        if (isArcLast(arc)) {
+            return 0;
+        } else {
+            return skipArc(arc);
+        }
+    }
+
+    @Override
+    public int getArc(int node, byte label) {
+        for (int arc = getFirstArc(node); arc != 0; arc = getNextArc(arc)) {
+            if (getArcLabel(arc) == label) {
+                return arc;
+            }
+        }
+        // An arc labeled with "label" not found.
+        return 0;
+    }
+
+    @Override
+    public int getEndNode(int arc) {
+        final int nodeOffset = getDestinationNodeOffset(arc);
+        assert nodeOffset != 0 : "No target node for terminal arcs.";
+        return nodeOffset;
+    }
+
+    @Override
+    public byte getArcLabel(int arc) {
+        return arcs.get(arc);
+    }
+
+    @Override
+    public boolean isArcFinal(int arc) {
+        return (arcs.get(arc + FSA5.ADDRESS_OFFSET) & FSA5.BIT_FINAL_ARC) != 0;
+    }
+
+    @Override
+    public boolean isArcTerminal(int arc) {
+        return (0 == getDestinationNodeOffset(arc));
+    }
+
+    @Override
+    public int getRightLanguageCount(int node) {
+        assert getFlags().contains(FSAFlags.NUMBERS) : "This FSA was not compiled with NUMBERS.";
+        return decodeFromBytes(node, nodeDataLength);
+    }
+
+    @Override
+    public Set<FSAFlags> getFlags() {
+        return flags;
+    }
+
+    /**
+     * @see FSA5#BIT_LAST_ARC
+     */
+    public boolean isArcLast(int arc) {
+        return (arcs.get(arc + FSA5.ADDRESS_OFFSET) & FSA5.BIT_LAST_ARC) != 0;
+    }
+
+    /**
+     * @see FSA5#BIT_TARGET_NEXT
+     */
+    public boolean isNextSet(int arc) {
+        return (arcs.get(arc + FSA5.ADDRESS_OFFSET) & FSA5.BIT_TARGET_NEXT) != 0;
+    }
+
+    private int decodeFromBytes(final int start, final int n) {
+        int r = 0;
+        for (int i = n; --i >= 0; ) {
+            r = r << 8 | (arcs.get(start + i) & 0xff);
+        }
+        return r;
+    }
+
+    private int getDestinationNodeOffset(int arc) {
+        if (isNextSet(arc)) {
+            return skipArc(arc);
+        } else {
+            return decodeFromBytes(arc + FSA5.ADDRESS_OFFSET, gtl) >>> 3;
+        }
+    }
+
+    private int skipArc(int offset) {
+        return offset + (isNextSet(offset)
+                ? 1 + 1 /* label + flags */
+                : 1 + gtl /* label + flags/address */);
+    }
+}
@@ -9,12 +9,14 @@ import com.carrotsearch.hppc.cursors.IntIntCursor;
 import org.xbib.morph.fsa.CFSA2;
 import org.xbib.morph.fsa.FSA;
 import org.xbib.morph.fsa.FSAFlags;
+import org.xbib.morph.fsa.MappedCFSA2;
 import org.xbib.morph.fsa.io.FSAUtils.IntIntHolder;
 import org.xbib.morph.fsa.StateVisitor;
 import org.xbib.util.FileUtils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.BitSet;
 import java.util.Comparator;
@@ -98,6 +100,33 @@ public final class CFSA2Codec implements FSACodec {
         return this;
     }
 
+    /**
+     * Wrap an automaton held by a byte buffer, usually a buffer mapped
+     * from a file. The arcs are not copied.
+     */
+    public MappedCFSA2 map(ByteBuffer buffer) throws IOException {
+        if (FSAHeader.FSA_MAGIC != buffer.getInt()) {
+            throw new IOException("Invalid file header magic bytes.");
+        }
+        final int version = buffer.get();
+        if (version != CFSA2.VERSION) {
+            throw new IOException("This class can only read FSA version: " + CFSA2.VERSION);
+        }
+        short flagBits = buffer.getShort();
+        EnumSet<FSAFlags> flags = EnumSet.noneOf(FSAFlags.class);
+        for (FSAFlags f : FSAFlags.values()) {
+            if (FSAFlags.isSet(flagBits, f)) {
+                flags.add(f);
+            }
+        }
+        if (flagBits != FSAFlags.asShort(flags)) {
+            throw new IOException("Unrecognized flags remained: 0x" + Integer.toHexString(flagBits));
+        }
+        byte[] labelMapping = new byte[buffer.get() & 0xff];
+        buffer.get(labelMapping);
+        return new MappedCFSA2(buffer.slice(), labelMapping, flags);
+    }
+
     /**
      * Reads an automaton from a byte stream.
      */
@@ -14,6 +14,7 @@ import com.carrotsearch.hppc.IntStack;
 import org.xbib.morph.fsa.FSA;
 import org.xbib.morph.fsa.FSA5;
 import org.xbib.morph.fsa.FSAFlags;
+import org.xbib.morph.fsa.MappedFSA5;
 import org.xbib.util.FileUtils;
 
 import static org.xbib.morph.fsa.FSAFlags.FLEXIBLE;
@@ -116,6 +117,23 @@ public final class FSA5Codec implements FSACodec {
         return fsa5;
     }
 
+    /**
+     * Wrap a binary automaton in FSA version 5 held by a byte buffer, usually
+     * a buffer mapped from a file. The arcs are not copied.
+     */
+    public MappedFSA5 map(ByteBuffer buffer) throws IOException {
+        final FSAHeader header = FSAUtils.readHeader(buffer);
+        if (header.version != FSA5.VERSION) {
+            throw new IOException("This class can read FSA version 5 only: " + header.version);
+        }
+        EnumSet<FSAFlags> flags = EnumSet.of(FLEXIBLE, STOPBIT, NEXTBIT);
+        if ((header.gtl & 0xf0) != 0) {
+            flags.add(NUMBERS);
+        }
+        return new MappedFSA5(buffer.slice(), (header.gtl >>> 4) & 0x0f, header.gtl & 0x0f, flags,
+                header.filler, header.annotation);
+    }
+
     /**
      * Serialize the automaton with the number of right-language sequences in
      * each node. This is required to implement perfect hashing. The numbering
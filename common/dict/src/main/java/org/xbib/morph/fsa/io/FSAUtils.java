@@ -9,10 +9,15 @@ import org.xbib.morph.fsa.StateVisitor;
 import org.xbib.util.FileUtils;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
@@ -49,6 +54,54 @@ public class FSAUtils {
                 + header.version);
     }
 
+    /**
+     * Map an automaton file of any of the supported versions read-only into
+     * memory. Lookups read the arcs directly from the mapped buffer, the
+     * pages are loaded by the operating system on demand and shared by all
+     * threads and processes mapping the same file.
+     *
+     * @param file the automaton file
+     * @return the automaton
+     * @throws IOException if the file can not be mapped
+     */
+    public static FSA map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("automaton too large, arc offsets are limited to 2 GB: " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+        if (buffer.limit() < 5) {
+            throw new IOException("Invalid file header: " + file);
+        }
+        byte version = buffer.get(4);
+        if (version == FSA5.VERSION) {
+            return new FSA5Codec().map(buffer);
+        }
+        if (version == CFSA2.VERSION) {
+            return new CFSA2Codec().map(buffer);
+        }
+        throw new IOException("Unsupported automaton version: " + version);
+    }
+
+    public static FSAHeader readHeader(ByteBuffer buffer) throws IOException {
+        if (FSAHeader.FSA_MAGIC != buffer.getInt()) {
+            throw new IOException("Invalid file header magic bytes.");
+        }
+        final FSAHeader h = new FSAHeader();
+        h.version = buffer.get();
+        h.filler = buffer.get();
+        h.annotation = buffer.get();
+        h.gtl = buffer.get();
+        return h;
+    }
+
     public static FSAHeader readHeader(InputStream in) throws IOException {
         if (FSAHeader.FSA_MAGIC != FileUtils.readInt(in)) {
             throw new IOException("Invalid file header magic bytes.");
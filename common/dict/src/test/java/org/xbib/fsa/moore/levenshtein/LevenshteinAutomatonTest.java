@@ -0,0 +1,69 @@
+package org.xbib.fsa.moore.levenshtein;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.fsa.moore.CharAutomaton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests {@link LevenshteinAutomaton} with compiled dictionary automata.
+ */
+public final class LevenshteinAutomatonTest extends Assert {
+
+    @Test
+    public void testCompiled() {
+        List<CharSequence> words = Arrays.<CharSequence>asList("meier", "meyer", "maier", "mayer", "schmidt", "schmitt");
+        DictionaryAutomaton dict = new DictionaryAutomaton(words);
+        CharAutomaton<CharSequence> compiled = dict.compile();
+        int state = 0;
+        for (char c : "meyer".toCharArray()) {
+            state = compiled.next(state, c);
+        }
+        assertTrue(compiled.isAccept(state));
+        assertEquals(compiled.getElement(state), "meyer");
+        assertEquals(compiled.next(0, 'x'), -1);
+        LevenshteinAutomaton ls2 = new LevenshteinAutomaton(2);
+        assertEquals(new ArrayList(ls2.recognize("schmid", compiled)), Arrays.asList("schmidt"));
+        assertEquals(new ArrayList(ls2.recognize("xmeier", compiled)), Arrays.asList("meier", "maier"));
+    }
+
+    @Test
+    public void testSameAsDictionaryAutomaton() {
+        Random random = new Random(7);
+        String alphabet = "aeiourstlnm";
+        List<CharSequence> words = new ArrayList();
+        for (int i = 0; i < 2000; i++) {
+            int len = 3 + random.nextInt(6);
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < len; j++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            words.add(sb.toString());
+        }
+        DictionaryAutomaton dict = new DictionaryAutomaton(words);
+        CharAutomaton<CharSequence> compiled = dict.compile();
+        for (int k = 0; k < 3; k++) {
+            LevenshteinAutomaton automaton = new LevenshteinAutomaton(k);
+            for (int i = 0; i < 50; i++) {
+                StringBuilder sb = new StringBuilder(words.get(random.nextInt(words.size())));
+                sb.setCharAt(random.nextInt(sb.length()), 'x');
+                String input = sb.toString();
+                assertEquals(new ArrayList(automaton.recognize(input, compiled)),
+                        new ArrayList(automaton.recognize(input, dict)), input);
+            }
+        }
+    }
+
+    @Test
+    public void testSuggester() {
+        LevenshteinAutomatonSuggester suggester = new LevenshteinAutomatonSuggester(
+                Arrays.<CharSequence>asList("meier", "schmidt"));
+        assertEquals(new ArrayList(suggester.getSuggestionsFor("meir", false, 2)), Arrays.asList("meier"));
+        suggester.add("meir");
+        assertEquals(new ArrayList(suggester.getSuggestionsFor("meir", true, 2)), Arrays.asList("meir"));
+    }
+}
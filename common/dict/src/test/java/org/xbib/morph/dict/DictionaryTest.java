@@ -3,12 +3,23 @@ package org.xbib.morph.dict;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import org.xbib.dict.Dictionary;
+import org.xbib.dict.DictionaryBuilder;
 import org.xbib.logging.Logger;
 import org.xbib.logging.LoggerFactory;
+import org.xbib.morph.fsa.io.CFSA2Codec;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DictionaryTest extends Assert {
 
@@ -26,4 +37,77 @@ public class DictionaryTest extends Assert {
         assertEquals("Auto", db.lookup("Autos"));
         assertEquals("Nudel", db.lookup("Nudeln"));
     }
+
+    private final static String LEMMAS = "die\tder\ndas\tder\nder\tder\nAutos\tAuto\n"
+            + "Nudeln\tNudel\nHäuser\tHaus\nHäusern\tHaus\ndie\tder\nBäume\tBaum\n";
+
+    @Test
+    public void testMappedDictionary() throws Exception {
+        File file = File.createTempFile("dict", ".fsa");
+        try {
+            // a tiny run size forces spilling and merging of sorted runs
+            long count = new DictionaryBuilder().setRunSize(16).build(new StringReader(LEMMAS), file);
+            assertEquals(count, 8L);
+            Dictionary mapped = new Dictionary().map(file);
+            Dictionary loaded = new Dictionary().load(new StringReader(LEMMAS));
+            for (String s : new String[]{"die", "das", "der", "Autos", "Nudeln", "Häusern", "Bäume", "Baum", "xyz"}) {
+                assertEquals(mapped.lookup(s), loaded.lookup(s));
+            }
+            assertEquals(mapped.lookup("die"), "der");
+            assertEquals(mapped.lookup("Häusern"), "Haus");
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testMappedCFSA2Dictionary() throws Exception {
+        File file = File.createTempFile("dict", ".cfsa2");
+        try {
+            new DictionaryBuilder().setCodec(new CFSA2Codec()).build(new StringReader(LEMMAS), file);
+            Dictionary mapped = new Dictionary().map(file);
+            assertEquals(mapped.lookup("das"), "der");
+            assertEquals(mapped.lookup("Autos"), "Auto");
+            assertEquals(mapped.lookup("Bäume"), "Baum");
+            assertEquals(mapped.lookup("xyz"), "xyz");
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testBatchLookup() throws Exception {
+        Dictionary db = new Dictionary().load(new StringReader(LEMMAS)).setCacheSize(4);
+        List<String> terms = Arrays.asList("die", "Autos", "Häuser", "xyz", "die", "Nudeln", "Bäume");
+        assertEquals(db.lookup(terms), Arrays.asList("der", "Auto", "Haus", "xyz", "der", "Nudel", "Baum"));
+        // again, served partly from the cache
+        assertEquals(db.lookup(terms), Arrays.asList("der", "Auto", "Haus", "xyz", "der", "Nudel", "Baum"));
+    }
+
+    @Test
+    public void testConcurrentLookup() throws Exception {
+        final Dictionary db = new Dictionary().load(new StringReader(LEMMAS));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        for (int j = 0; j < 1000; j++) {
+                            if (!"Haus".equals(db.lookup("Häusern")) || !"der".equals(db.lookup("das"))) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
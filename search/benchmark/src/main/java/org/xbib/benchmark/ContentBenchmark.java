@@ -0,0 +1,97 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xbib.common.io.stream.BytesStreamOutput;
+import org.xbib.rdf.context.ResourceContext;
+import org.xbib.rdf.xcontent.DefaultContentBuilder;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the JSON content of resources with the default content builder.
+ *
+ * The resources of the sample are mapped once. The content is built into a reused byte buffer,
+ * like the sinks do, or into strings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ContentBenchmark {
+
+    private final DefaultContentBuilder builder = new DefaultContentBuilder();
+
+    private final BytesStreamOutput buffer = new BytesStreamOutput(8192);
+
+    private List<ResourceContext> contexts;
+
+    @Setup
+    public void setup() throws IOException, SAXException {
+        contexts = MarcSample.contexts(MarcSample.keyValues(MarcSample.events(MarcSample.load())));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MarcSample.RECORDS)
+    public void buildBytes(Blackhole blackhole) throws IOException {
+        for (ResourceContext context : contexts) {
+            buffer.reset();
+            builder.build(context, context.resource(), buffer);
+            blackhole.consume(buffer.size());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MarcSample.RECORDS)
+    public void buildString(Blackhole blackhole) throws IOException {
+        for (ResourceContext context : contexts) {
+            blackhole.consume(builder.build(context, context.resource()));
+        }
+    }
+}
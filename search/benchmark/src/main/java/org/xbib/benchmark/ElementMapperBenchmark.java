@@ -0,0 +1,122 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xbib.elements.ElementOutput;
+import org.xbib.elements.marc.MARCElementMapper;
+import org.xbib.keyvalue.KeyValue;
+import org.xbib.marc.FieldCollection;
+import org.xbib.rdf.Resource;
+import org.xbib.rdf.context.ResourceContext;
+import org.xbib.rdf.xcontent.ContentBuilder;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mapping key/value streams to resources with the MARC element mapper and its pipelines.
+ *
+ * The key/value streams of the sample are recorded once and replayed. The resources
+ * are only counted. A mapper is started for each invocation, an invocation ends
+ * when the pipelines have processed all records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ElementMapperBenchmark {
+
+    @Param({"1", "4"})
+    public int pipelines;
+
+    private List<List<KeyValue<FieldCollection, String>>> records;
+
+    private MARCElementMapper mapper;
+
+    private final AtomicLong counter = new AtomicLong();
+
+    @Setup
+    public void setup() throws IOException, SAXException {
+        records = MarcSample.keyValues(MarcSample.events(MarcSample.load()));
+    }
+
+    @Setup(Level.Invocation)
+    public void startMapper() {
+        counter.set(0L);
+        mapper = MarcSample.mapper(pipelines, new ElementOutput<ResourceContext, Resource>() {
+            @Override
+            public boolean enabled() {
+                return true;
+            }
+
+            @Override
+            public void enabled(boolean enabled) {
+            }
+
+            @Override
+            public void output(ResourceContext context, ContentBuilder<ResourceContext, Resource> builder) {
+                counter.incrementAndGet();
+            }
+
+            @Override
+            public long getCounter() {
+                return counter.get();
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MarcSample.RECORDS)
+    public long map() {
+        MarcSample.replay(records, mapper);
+        mapper.close();
+        return counter.get();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xbib.marc.Field;
+import org.xbib.marc.MarcXchangeListener;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing ISO 2709 records, on characters or on bytes with lazy decoding.
+ *
+ * The field data is decoded for each field, like the key/value conversion does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class Iso2709Benchmark {
+
+    @Param({"false", "true"})
+    public boolean lazyDecoding;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws IOException {
+        bytes = MarcSample.load();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MarcSample.RECORDS)
+    public void parse(Blackhole blackhole) throws IOException, SAXException {
+        MarcSample.parse(bytes, new Consumer(blackhole), lazyDecoding);
+    }
+
+    private static class Consumer implements MarcXchangeListener {
+
+        private final Blackhole blackhole;
+
+        Consumer(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void beginRecord(String format, String type) {
+        }
+
+        @Override
+        public void leader(String label) {
+            blackhole.consume(label);
+        }
+
+        @Override
+        public void beginControlField(Field field) {
+        }
+
+        @Override
+        public void endControlField(Field field) {
+            blackhole.consume(field.data());
+        }
+
+        @Override
+        public void beginDataField(Field field) {
+            blackhole.consume(field.tag());
+        }
+
+        @Override
+        public void beginSubField(Field field) {
+        }
+
+        @Override
+        public void endSubField(Field field) {
+            blackhole.consume(field.data());
+        }
+
+        @Override
+        public void endDataField(Field field) {
+            if (field != null) {
+                blackhole.consume(field.data());
+            }
+        }
+
+        @Override
+        public void trailer(String trailer) {
+        }
+
+        @Override
+        public void endRecord() {
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.benchmark;
+
+import org.xbib.elements.ElementOutput;
+import org.xbib.elements.marc.MARCElementBuilder;
+import org.xbib.elements.marc.MARCElementBuilderFactory;
+import org.xbib.elements.marc.MARCElementMapper;
+import org.xbib.iri.IRI;
+import org.xbib.keyvalue.KeyValue;
+import org.xbib.keyvalue.KeyValueStreamListener;
+import org.xbib.marc.FieldCollection;
+import org.xbib.marc.Iso2709Reader;
+import org.xbib.marc.MarcXchange2KeyValue;
+import org.xbib.marc.MarcXchangeEventBuffer;
+import org.xbib.marc.MarcXchangeListener;
+import org.xbib.rdf.Resource;
+import org.xbib.rdf.context.ResourceContext;
+import org.xbib.rdf.xcontent.ContentBuilder;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The sample data of the benchmarks, and the stages of the MARC ingest path
+ * for preparing the input of a single stage.
+ *
+ * The sample is the MARC file of the Stadtbibliothek Bonn which is also used by the
+ * element tests. It is read into memory once, so the benchmarks do not measure I/O.
+ */
+public final class MarcSample {
+
+    public final static String RESOURCE = "stb-bonn.mrc";
+
+    /**
+     * The number of records in the sample. Benchmarks use it as the number
+     * of operations per invocation, so scores are in records.
+     */
+    public final static int RECORDS = 8676;
+
+    public final static String ENCODING = "UTF-8";
+
+    public final static String ELEMENTS = "marc";
+
+    private MarcSample() {
+    }
+
+    public static byte[] load() throws IOException {
+        InputStream in = MarcSample.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            throw new IOException("sample not found: " + RESOURCE);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4 * 1024 * 1024);
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Parse the sample like the ingest tools do.
+     *
+     * @param bytes the sample
+     * @param listener the listener for the records
+     * @param lazyDecoding true if the records should be parsed on bytes, false if on characters
+     */
+    public static void parse(byte[] bytes, MarcXchangeListener listener, boolean lazyDecoding)
+            throws IOException, SAXException {
+        Iso2709Reader reader = new Iso2709Reader().setMarcXchangeListener(listener);
+        reader.setProperty(Iso2709Reader.FORMAT, "MARC");
+        reader.setProperty(Iso2709Reader.TYPE, "Bibliographic");
+        reader.setProperty(Iso2709Reader.LAZY_DECODING, lazyDecoding);
+        InputStream in = new ByteArrayInputStream(bytes);
+        InputSource source;
+        if (lazyDecoding) {
+            source = new InputSource(in);
+            source.setEncoding(ENCODING);
+        } else {
+            source = new InputSource(new InputStreamReader(in, ENCODING));
+        }
+        reader.parse(source);
+    }
+
+    /**
+     * Parse the sample into a buffer of MarcXchange events.
+     */
+    public static MarcXchangeEventBuffer events(byte[] bytes) throws IOException, SAXException {
+        MarcXchangeEventBuffer events = new MarcXchangeEventBuffer();
+        parse(bytes, events, false);
+        check(events.getRecords());
+        return events;
+    }
+
+    /**
+     * Convert MarcXchange events into key/value streams, one list per record.
+     * An end marker with an information object is kept as a key/value with a null key,
+     * like the element mapper does.
+     */
+    public static List<List<KeyValue<FieldCollection, String>>> keyValues(MarcXchangeEventBuffer events) {
+        KeyValueRecorder recorder = new KeyValueRecorder();
+        events.replay(new MarcXchange2KeyValue().addListener(recorder));
+        check(recorder.records.size());
+        return recorder.records;
+    }
+
+    /**
+     * Replay recorded key/value streams to a listener.
+     */
+    public static void replay(List<List<KeyValue<FieldCollection, String>>> records,
+                              KeyValueStreamListener<FieldCollection, String> listener) {
+        for (List<KeyValue<FieldCollection, String>> record : records) {
+            listener.begin();
+            boolean end = false;
+            for (KeyValue<FieldCollection, String> kv : record) {
+                if (kv.key() == null) {
+                    listener.end(kv.value());
+                    end = true;
+                } else {
+                    listener.keyValue(kv.key(), kv.value());
+                }
+            }
+            if (!end) {
+                listener.end();
+            }
+        }
+    }
+
+    /**
+     * Create and start a MARC element mapper which writes to the given output.
+     */
+    public static MARCElementMapper mapper(int pipelines, final ElementOutput output) {
+        return new MARCElementMapper(ELEMENTS)
+                .pipelines(pipelines)
+                .start(new MARCElementBuilderFactory() {
+                    public MARCElementBuilder newBuilder() {
+                        return new MARCElementBuilder().addOutput(output);
+                    }
+                });
+    }
+
+    /**
+     * Map recorded key/value streams to resource contexts, in record order.
+     * The resources get IDs for the bulk format.
+     */
+    public static List<ResourceContext> contexts(List<List<KeyValue<FieldCollection, String>>> records) {
+        final List<ResourceContext> contexts = Collections.synchronizedList(new ArrayList<ResourceContext>());
+        MARCElementMapper mapper = mapper(1, new Identify(new ElementOutput<ResourceContext, Resource>() {
+            @Override
+            public boolean enabled() {
+                return true;
+            }
+
+            @Override
+            public void enabled(boolean enabled) {
+            }
+
+            @Override
+            public void output(ResourceContext context, ContentBuilder<ResourceContext, Resource> builder) {
+                contexts.add(context);
+            }
+
+            @Override
+            public long getCounter() {
+                return contexts.size();
+            }
+        }));
+        replay(records, mapper);
+        mapper.close();
+        check(contexts.size());
+        return contexts;
+    }
+
+    private static void check(int records) {
+        if (records != RECORDS) {
+            throw new IllegalStateException("expected " + RECORDS + " records in sample, but found " + records);
+        }
+    }
+
+    /**
+     * Collect key/value streams.
+     */
+    private static class KeyValueRecorder implements KeyValueStreamListener<FieldCollection, String> {
+
+        final List<List<KeyValue<FieldCollection, String>>> records = new ArrayList();
+
+        private List<KeyValue<FieldCollection, String>> record;
+
+        @Override
+        public void begin() {
+            record = new ArrayList();
+        }
+
+        @Override
+        public void keyValue(FieldCollection key, String value) {
+            if (record != null) {
+                record.add(new KeyValue(key, value));
+            }
+        }
+
+        @Override
+        public void end() {
+            if (record != null) {
+                records.add(record);
+                record = null;
+            }
+        }
+
+        @Override
+        public void end(Object info) {
+            if (record != null) {
+                record.add(new KeyValue(null, info));
+                end();
+            }
+        }
+    }
+
+    /**
+     * Give each resource an ID with index, type and document ID, like the ingest tools do,
+     * and pass it to an output.
+     */
+    public static class Identify implements ElementOutput<ResourceContext, Resource> {
+
+        private final ElementOutput output;
+
+        private final AtomicLong counter = new AtomicLong();
+
+        public Identify(ElementOutput output) {
+            this.output = output;
+        }
+
+        @Override
+        public boolean enabled() {
+            return true;
+        }
+
+        @Override
+        public void enabled(boolean enabled) {
+        }
+
+        @Override
+        public void output(ResourceContext context, ContentBuilder<ResourceContext, Resource> builder)
+                throws IOException {
+            IRI id = IRI.builder().scheme("http")
+                    .host("sample")
+                    .query("title")
+                    .fragment(Long.toString(counter.incrementAndGet())).build();
+            context.resource().id(id);
+            output.output(context, builder);
+        }
+
+        @Override
+        public long getCounter() {
+            return counter.get();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xbib.iri.IRI;
+import org.xbib.rdf.Triple;
+import org.xbib.rdf.io.TripleListener;
+import org.xbib.rdf.io.turtle.TurtleReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing Turtle with the Turtle reader.
+ *
+ * The input is generated once and looks like the GND authority dumps, with prefixed
+ * names for classes and predicates, IRIs for subjects and links, literals with
+ * non-ASCII characters, and nested blank nodes. The throughput is in triples per second.
+ * Run the benchmark on an older revision to compare readers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TurtleBenchmark {
+
+    public final static int RECORDS = 2000;
+
+    public final static int TRIPLES = RECORDS * 11;
+
+    private final static IRI BASE = IRI.create("http://d-nb.info/gnd/");
+
+    private String turtle;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder sb = new StringBuilder()
+                .append("@prefix gnd: <http://d-nb.info/standards/elementset/gnd#> .\n")
+                .append("@prefix owl: <http://www.w3.org/2002/07/owl#> .\n\n");
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append("<http://d-nb.info/gnd/").append(1000 + i).append("-").append(i % 10).append(">\n")
+                    .append("      a       gnd:CorporateBody ;\n")
+                    .append("      gnd:gndIdentifier \"").append(1000 + i).append("-").append(i % 10).append("\" ;\n")
+                    .append("      gnd:oldAuthorityNumber\n")
+                    .append("              \"(DE-588b)").append(1000 + i).append("\" ;\n")
+                    .append("      gnd:preferredNameForTheCorporateBody\n")
+                    .append("              \"Verband des Pfälzischen Gemüse-, Obst- und Gartenbaues ")
+                    .append(i).append("\" ;\n")
+                    .append("      gnd:variantNameForTheCorporateBody\n")
+                    .append("              \"Gesellschaft für Nephrologie\" , \"GfN\" ;\n")
+                    .append("      gnd:geographicAreaCode\n")
+                    .append("              <http://d-nb.info/standards/vocab/gnd/geographic-area-code#XA-DE> ;\n")
+                    .append("      gnd:placeOfBusiness [ gnd:name \"Köln\" ; gnd:code 51 ] ;\n")
+                    .append("      owl:sameAs <http://viaf.org/viaf/").append(i).append("> .\n\n");
+        }
+        turtle = sb.toString();
+        bytes = turtle.getBytes("UTF-8");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIPLES)
+    public void parseString(Blackhole blackhole) throws IOException {
+        new TurtleReader(BASE)
+                .setTripleListener(new Consumer(blackhole))
+                .parse(new StringReader(turtle));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIPLES)
+    public void parseBytes(Blackhole blackhole) throws IOException {
+        new TurtleReader(BASE)
+                .setTripleListener(new Consumer(blackhole))
+                .parse(new ByteArrayInputStream(bytes));
+    }
+
+    private static class Consumer implements TripleListener {
+
+        private final Blackhole blackhole;
+
+        Consumer(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public TripleListener startPrefixMapping(String prefix, String uri) {
+            return this;
+        }
+
+        @Override
+        public TripleListener endPrefixMapping(String prefix) {
+            return this;
+        }
+
+        @Override
+        public TripleListener newIdentifier(IRI identifier) {
+            blackhole.consume(identifier);
+            return this;
+        }
+
+        @Override
+        public TripleListener triple(Triple triple) {
+            blackhole.consume(triple);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+/**
+ * JMH benchmarks of the MARC ingest path.
+ *
+ * Each stage of the path is measured separately on a prepared input, and the whole
+ * path is measured by {@link org.xbib.benchmark.IngestBenchmark}. No Elasticsearch
+ * is needed, the bulk format is written to a null output stream.
+ *
+ * All benchmarks process the records of {@link org.xbib.benchmark.MarcSample} in one
+ * invocation and declare them as operations, so the throughput is in records per second,
+ * and the normalized allocation rate <code>gc.alloc.rate.norm</code> is in bytes per record.
+ * Benchmarks which start an element mapper for each invocation include the setup
+ * of the mapper in the allocation.
+ *
+ * {@link org.xbib.benchmark.TurtleBenchmark} does not use the MARC sample, it measures
+ * the Turtle reader in triples per second on a generated input which looks like the GND dumps.
+ *
+ * Build and run with
+ *
+ * <pre>
+ * mvn -pl search/benchmark -am package
+ * java -jar search/benchmark/target/benchmarks.jar
+ * java -jar search/benchmark/target/benchmarks.jar IngestBenchmark -p pipelines=4
+ * </pre>
+ */
+package org.xbib.benchmark;
@@ -31,49 +31,53 @@
  */
 package org.xbib.rdf.io.ntriple;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.io.Reader;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
-import org.xbib.iri.IRI;
-import org.xbib.rdf.Triple;
-import org.xbib.rdf.io.TripleListener;
-import org.xbib.rdf.simple.SimpleFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.xbib.rdf.Identifier;
 import org.xbib.rdf.Node;
 import org.xbib.rdf.Property;
+import org.xbib.rdf.io.TripleListener;
 import org.xbib.rdf.io.Triplifier;
-import org.xbib.rdf.simple.SimpleTriple;
 
 /**
  * Parser for NTriple RDF format
  *
  * See also the <a href="http://www.w3.org/TR/rdf-testcases/#convert">NTriple
  * specification</a>
+ *
+ * N-Triples is line-oriented, so a file can also be split into ranges at line
+ * boundaries, which are parsed in parallel, see {@link #parse(File, List)}.
  */
 public class NTripleReader<S extends Identifier, P extends Property, O extends Node>
     implements Triplifier<S,P,O> {
 
-    private static final String resourceExpression = "(<[^<]+?>)";
-    private static final String literalValueExpression = "(\"([^\"]|\\\")*\")";
-    private static final String anonymousExpression = "(_:[^\\s]+?)";
-    private static final String datatypeExpression = "(\\^\\^" + resourceExpression + ")";
-    private static final String languageExpression = "(@([a-z]{2}?))";
-    private static final String literalExpression = "(" + literalValueExpression + "(" + datatypeExpression + "|" + languageExpression + ")??" + ")";
-    private static final String subjectExpression = "(" + anonymousExpression + "|" + resourceExpression + ")";
-    private static final String predicateExpression = "(" + resourceExpression + ")";
-    private static final String objectExpression = "(" + anonymousExpression + "|" + resourceExpression + "|" + literalExpression + ")";
-    public static final String tripleExpression = subjectExpression + "\\s+" + predicateExpression + "\\s+" + objectExpression + "\\s*\\.";
-    public static final Pattern NTRIPLE_PATTERN = Pattern.compile(tripleExpression);
-    private BufferedReader reader;
-    private boolean eof;
-    private final SimpleFactory<S,P,O> simpleFactory = SimpleFactory.getInstance();
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The maximum size of a range of a file parsed by a thread, ranges are memory-mapped
+     */
+    private final static long MAX_RANGE_SIZE = 256L * 1024 * 1024;
+
     private TripleListener<S, P, O> listener;
 
+    private long tripleCounter;
+
     @Override
     public NTripleReader setTripleListener(TripleListener<S, P, O> listener) {
         this.listener = listener;
@@ -82,85 +86,142 @@ public class NTripleReader<S extends Identifier, P extends Property, O extends N
 
     @Override
     public NTripleReader parse(InputStream in) throws IOException {
-        return parse(new InputStreamReader(in, "UTF-8"));
+        return parse(new InputStreamReader(in, UTF8));
     }
 
     @Override
     public NTripleReader parse(Reader reader) throws IOException {
-        this.reader = new BufferedReader(reader);
-        this.eof = false;
         try {
-            while (!eof) {
-                parseLine(this.reader.readLine());
-                if (eof) {
-                    break;
-                }
-            }
+            tripleCounter += new NTripleScanner<>(listener).scan(reader, null);
         } finally {
-            this.reader.close();
+            reader.close();
         }
         return this;
     }
 
-    /*
-     * Groups in the regular expression are identified by round brackets. There
-     * are actually 21 groups in the regex. They are defined as follows:
+    /**
+     * Parse an N-Triples file in parallel, with one thread per listener.
+     *
+     * The file is split into ranges at line boundaries, and the ranges are
+     * memory-mapped and parsed by the threads. A listener receives the triples of
+     * the ranges parsed by its thread, in file order within a range, so listeners
+     * need not be thread-safe, but the triples of the file are spread over all listeners.
      *
-     * 0	the whole triple 1	subject 2	anonymous subject 3	resource subject 4
-     * predicate 5	resource predicate 6	object 7	anonymous subject 8	resource
-     * object 9	literal object 10	literal value 11	string with quotes in literal
-     * value 12	string without quotes in literal value 13	last character in
-     * string 14	string with apostrophes in literal value 15	string without
-     * apostrophes in literal value 16	last character in string 17	datatype or
-     * language 18	datatype with ^^ 19	datatype without ^^ (resource) 20
-     * language with @ 21	language without @
+     * @param file the N-Triples file, in UTF-8
+     * @param listeners the listeners, one per thread
+     * @return this reader
+     * @throws IOException if the file can not be read or a line is not a valid triple
      */
-    private void parseLine(String line) throws IOException {
-        if (line == null) {
-            eof = true;
-            return;
+    public NTripleReader parse(File file, List<? extends TripleListener<S, P, O>> listeners) throws IOException {
+        if (listeners.isEmpty()) {
+            throw new IllegalArgumentException("no listeners");
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            final FileChannel channel = raf.getChannel();
+            final Queue<long[]> ranges = new ConcurrentLinkedQueue<>(split(channel, listeners.size()));
+            ExecutorService executor = Executors.newFixedThreadPool(listeners.size());
+            try {
+                List<Future<Long>> futures = new ArrayList<>();
+                for (final TripleListener<S, P, O> l : listeners) {
+                    futures.add(executor.submit(new Callable<Long>() {
+                        @Override
+                        public Long call() throws IOException {
+                            NTripleScanner<S, P, O> scanner = new NTripleScanner<>(l);
+                            long count = 0L;
+                            long[] range;
+                            while ((range = ranges.poll()) != null) {
+                                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                                        range[0], range[1] - range[0]);
+                                count += scanner.scan(new InputStreamReader(new ByteBufferInputStream(buffer), UTF8),
+                                        "range at byte " + range[0]);
+                            }
+                            return count;
+                        }
+                    }));
+                }
+                for (Future<Long> future : futures) {
+                    tripleCounter += future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ?
+                        (IOException) e.getCause() : new IOException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
         }
-        String s = line.trim();
-        if (s.length() == 0 || s.startsWith("#")) {
-            return;
+        return this;
+    }
+
+    public long getTripleCounter() {
+        return tripleCounter;
+    }
+
+    /**
+     * Split a file into ranges which start at line boundaries. There are more ranges
+     * than threads, so threads finishing early can take over more ranges.
+     */
+    private static List<long[]> split(FileChannel channel, int threads) throws IOException {
+        long size = channel.size();
+        int count = (int) Math.max(4L * threads, (size + MAX_RANGE_SIZE - 1) / MAX_RANGE_SIZE);
+        long rangeSize = Math.max(1L, size / count);
+        List<long[]> ranges = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long start = 0L;
+        while (start < size) {
+            long end = Math.min(size, start + rangeSize);
+            // move the end behind the next line break
+            while (end < size && end > start) {
+                buffer.clear();
+                int n = channel.read(buffer, end - 1);
+                int i = 0;
+                while (i < n && buffer.get(i) != '\n') {
+                    i++;
+                }
+                if (i < n) {
+                    end += i;
+                    break;
+                }
+                end += n;
+            }
+            end = Math.min(size, end);
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("line too long at byte " + start);
+            }
+            ranges.add(new long[]{start, end});
+            start = end;
         }
-        Matcher matcher = NTRIPLE_PATTERN.matcher(s);
-        S subject;
-        P predicate;
-        O object;
-        if (!matcher.matches()) {
-            throw new PatternSyntaxException("The given pattern " + tripleExpression + " doesn't match the expression:", s, -1);
+        return ranges;
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
         }
-        // subject
-        if (matcher.group(2) != null) {
-            subject = (S) simpleFactory.newBlankNode(matcher.group(1));
-        } else {
-            // resource node
-            String subj = matcher.group(1);
-            IRI subjURI = IRI.create(subj.substring(1, subj.length() - 1));
-            subject = simpleFactory.asSubject(subjURI);
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
         }
-        // predicate
-        String p = matcher.group(4);
-        predicate = (P) IRI.create(p.substring(1, p.length() - 1));
-        // object
-        if (matcher.group(7) != null) {
-            // anonymous node
-            object = (O) simpleFactory.newBlankNode(matcher.group(6));
-        } else if (matcher.group(8) != null) {
-            // resource node
-            String obj = matcher.group(6);
-            object = simpleFactory.asObject(IRI.create(obj.substring(1, obj.length() - 1)));
-        } else {
-            // literal node
-            // 10 is without quotes or apostrophs
-            // with quotes or apostrophes. to have the value without them you need to look at groups 12 and 15
-            String literal = matcher.group(10);
-            object = (O) simpleFactory.newLiteral(literal);
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
         }
-        if (listener != null) {
-            Triple stmt = new SimpleTriple<>(subject, predicate, object);
-            listener.triple(stmt);
+
+        @Override
+        public int available() {
+            return buffer.remaining();
         }
     }
 }
@@ -0,0 +1,375 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.rdf.io.ntriple;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.xbib.iri.IRI;
+import org.xbib.rdf.Identifier;
+import org.xbib.rdf.Node;
+import org.xbib.rdf.Property;
+import org.xbib.rdf.io.TripleListener;
+import org.xbib.rdf.simple.SimpleFactory;
+import org.xbib.rdf.simple.SimpleLiteral;
+import org.xbib.rdf.simple.SimpleTriple;
+
+/**
+ * Scanner for N-Triples lines.
+ *
+ * Lines are found in a character buffer and scanned character by character,
+ * without regular expressions and without creating a string per line. Strings
+ * are only created for the terms of a triple. Predicates and datatypes are
+ * cached, because dumps use a small vocabulary over and over again.
+ *
+ * A scanner is not thread-safe, but can scan several inputs one after another.
+ */
+final class NTripleScanner<S extends Identifier, P extends Property, O extends Node> {
+
+    private final static int MAX_CACHED = 4096;
+
+    private final SimpleFactory<S, P, O> simpleFactory = SimpleFactory.getInstance();
+
+    private final TripleListener<S, P, O> listener;
+
+    private final Map<String, P> predicates = new HashMap<>();
+
+    private final Map<String, IRI> types = new HashMap<>();
+
+    private final StringBuilder sb = new StringBuilder();
+
+    private char[] buf = new char[64 * 1024];
+
+    private String source;
+
+    private long lineNumber;
+
+    private int lineStart;
+
+    private int lineEnd;
+
+    private String token;
+
+    NTripleScanner(TripleListener<S, P, O> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Scan all lines of a reader.
+     *
+     * @param reader the reader
+     * @param source a description of the input for error messages, or null
+     * @return the number of triples
+     * @throws IOException if the input can not be read or a line is not a valid triple
+     */
+    long scan(Reader reader, String source) throws IOException {
+        this.source = source;
+        this.lineNumber = 1L;
+        long count = 0L;
+        int start = 0;
+        int limit = 0;
+        int search = 0;
+        boolean eof = false;
+        while (true) {
+            int nl = search;
+            while (nl < limit && buf[nl] != '\n' && buf[nl] != '\r') {
+                nl++;
+            }
+            if (nl < limit) {
+                if (parseLine(start, nl)) {
+                    count++;
+                }
+                if (buf[nl] == '\n') {
+                    lineNumber++;
+                }
+                start = nl + 1;
+                search = start;
+                continue;
+            }
+            if (eof) {
+                if (start < limit && parseLine(start, limit)) {
+                    count++;
+                }
+                return count;
+            }
+            if (start > 0) {
+                System.arraycopy(buf, start, buf, 0, limit - start);
+                limit -= start;
+                start = 0;
+            }
+            if (limit == buf.length) {
+                // line longer than the buffer
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            search = limit;
+            int n = reader.read(buf, limit, buf.length - limit);
+            if (n == -1) {
+                eof = true;
+            } else {
+                limit += n;
+            }
+        }
+    }
+
+    /**
+     * Parse a line.
+     *
+     * @return true if the line is a triple, false if the line is empty or a comment
+     */
+    private boolean parseLine(int i, int end) throws IOException {
+        lineStart = i;
+        lineEnd = end;
+        i = skipWhitespace(i, end);
+        if (i == end || buf[i] == '#') {
+            return false;
+        }
+        S subject;
+        if (buf[i] == '<') {
+            i = scanIRI(i, end);
+            subject = simpleFactory.asSubject(IRI.create(token));
+        } else if (buf[i] == '_') {
+            i = scanBlankNode(i, end);
+            subject = (S) simpleFactory.newBlankNode(token);
+        } else {
+            throw error("subject expected", i);
+        }
+        i = skipWhitespace(i, end);
+        if (i == end || buf[i] != '<') {
+            throw error("predicate expected", i);
+        }
+        i = scanIRI(i, end);
+        P predicate = predicates.get(token);
+        if (predicate == null) {
+            if (predicates.size() >= MAX_CACHED) {
+                predicates.clear();
+            }
+            predicate = simpleFactory.asPredicate(IRI.create(token));
+            predicates.put(token, predicate);
+        }
+        i = skipWhitespace(i, end);
+        O object;
+        if (i == end) {
+            throw error("object expected", i);
+        } else if (buf[i] == '<') {
+            i = scanIRI(i, end);
+            object = simpleFactory.asObject(IRI.create(token));
+        } else if (buf[i] == '_') {
+            i = scanBlankNode(i, end);
+            object = (O) simpleFactory.newBlankNode(token);
+        } else if (buf[i] == '"') {
+            i = scanLiteral(i, end);
+            SimpleLiteral literal = new SimpleLiteral(token);
+            if (i < end && buf[i] == '@') {
+                int j = ++i;
+                while (j < end && (Character.isLetterOrDigit(buf[j]) || buf[j] == '-')) {
+                    j++;
+                }
+                if (j == i) {
+                    throw error("language tag expected", i);
+                }
+                literal.language(new String(buf, i, j - i));
+                i = j;
+            } else if (i + 1 < end && buf[i] == '^' && buf[i + 1] == '^') {
+                i += 2;
+                if (i == end || buf[i] != '<') {
+                    throw error("datatype expected", i);
+                }
+                i = scanIRI(i, end);
+                IRI type = types.get(token);
+                if (type == null) {
+                    if (types.size() >= MAX_CACHED) {
+                        types.clear();
+                    }
+                    type = IRI.create(token);
+                    types.put(token, type);
+                }
+                literal.type(type);
+            }
+            object = (O) literal;
+        } else {
+            throw error("object expected", i);
+        }
+        i = skipWhitespace(i, end);
+        if (i == end || buf[i] != '.') {
+            throw error("'.' expected", i);
+        }
+        i = skipWhitespace(i + 1, end);
+        if (i < end && buf[i] != '#') {
+            throw error("end of line expected", i);
+        }
+        if (listener != null) {
+            listener.triple(new SimpleTriple<>(subject, predicate, object));
+        }
+        return true;
+    }
+
+    private int skipWhitespace(int i, int end) {
+        while (i < end && (buf[i] == ' ' || buf[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Scan an IRI in angle brackets into the token.
+     */
+    private int scanIRI(int i, int end) throws IOException {
+        int j = i + 1;
+        boolean escaped = false;
+        while (j < end && buf[j] != '>') {
+            if (buf[j] == '\\') {
+                escaped = true;
+                j++;
+            }
+            j++;
+        }
+        if (j >= end) {
+            throw error("unterminated IRI", i);
+        }
+        token = escaped ? unescape(i + 1, j) : new String(buf, i + 1, j - i - 1);
+        return j + 1;
+    }
+
+    /**
+     * Scan a blank node label into the token, without the "_:" prefix.
+     */
+    private int scanBlankNode(int i, int end) throws IOException {
+        if (i + 1 >= end || buf[i + 1] != ':') {
+            throw error("blank node expected", i);
+        }
+        int j = i + 2;
+        while (j < end && buf[j] != ' ' && buf[j] != '\t') {
+            j++;
+        }
+        // a label does not end with a dot, the dot ends the triple
+        if (j > i + 2 && buf[j - 1] == '.') {
+            j--;
+        }
+        if (j == i + 2) {
+            throw error("blank node label expected", i);
+        }
+        token = new String(buf, i + 2, j - i - 2);
+        return j;
+    }
+
+    /**
+     * Scan a quoted literal value into the token.
+     */
+    private int scanLiteral(int i, int end) throws IOException {
+        int j = i + 1;
+        boolean escaped = false;
+        while (j < end && buf[j] != '"') {
+            if (buf[j] == '\\') {
+                escaped = true;
+                j++;
+            }
+            j++;
+        }
+        if (j >= end) {
+            throw error("unterminated literal", i);
+        }
+        token = escaped ? unescape(i + 1, j) : new String(buf, i + 1, j - i - 1);
+        return j + 1;
+    }
+
+    private String unescape(int i, int end) throws IOException {
+        sb.setLength(0);
+        while (i < end) {
+            char ch = buf[i++];
+            if (ch != '\\') {
+                sb.append(ch);
+                continue;
+            }
+            ch = buf[i++];
+            switch (ch) {
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case '"':
+                case '\'':
+                case '\\':
+                case '>':
+                    sb.append(ch);
+                    break;
+                case 'u':
+                    sb.appendCodePoint(hex(i, 4, end));
+                    i += 4;
+                    break;
+                case 'U':
+                    sb.appendCodePoint(hex(i, 8, end));
+                    i += 8;
+                    break;
+                default:
+                    throw error("illegal escape sequence '\\" + ch + "'", i - 2);
+            }
+        }
+        return sb.toString();
+    }
+
+    private int hex(int i, int len, int end) throws IOException {
+        if (i + len > end) {
+            throw error("incomplete Unicode escape sequence", i - 2);
+        }
+        int value = 0;
+        for (int j = i; j < i + len; j++) {
+            int digit = Character.digit(buf[j], 16);
+            if (digit < 0) {
+                throw error("illegal Unicode escape sequence", i - 2);
+            }
+            value = (value << 4) | digit;
+        }
+        if (!Character.isValidCodePoint(value)) {
+            throw error("illegal Unicode code point", i - 2);
+        }
+        return value;
+    }
+
+    private IOException error(String message, int i) {
+        return new IOException((source != null ? source + ", " : "") + "line " + lineNumber
+                + ", column " + (i - lineStart + 1) + ": " + message + ": "
+                + new String(buf, lineStart, lineEnd - lineStart));
+    }
+}
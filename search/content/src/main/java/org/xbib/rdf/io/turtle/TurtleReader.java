@@ -35,11 +35,14 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PushbackReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Stack;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import org.xbib.common.xcontent.xml.XmlNamespaceContext;
 import org.xbib.iri.IRI;
@@ -62,6 +65,12 @@ import org.xbib.rdf.simple.SimpleTriple;
 /**
  * Turtle - Terse RDF Triple Parser
  *
+ * The input is read in blocks into a character window, which is reused by
+ * all inputs parsed by this reader. Tokens are scanned in the window and
+ * copied out once, and the IRIs and predicates of prefixed names are cached,
+ * so a prefixed name is resolved only once as long as its prefix is bound to
+ * the same namespace, also across inputs declaring the same prefixes.
+ *
  * @see <a href="http://www.w3.org/TeamSubmission/turtle/">Turtle - Terse RDF
  * Triple Language</a>
  *
@@ -69,6 +78,18 @@ import org.xbib.rdf.simple.SimpleTriple;
 public class TurtleReader<S extends Identifier, P extends Property, O extends Node>
         implements Triplifier<S, P, O> {
 
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    private final static int MAX_CACHED = 4096;
+
+    private final static IRI XSD_BOOLEAN = IRI.create("xsd:boolean");
+
+    private final static IRI XSD_INTEGER = IRI.create("xsd:integer");
+
+    private final static IRI XSD_DECIMAL = IRI.create("xsd:decimal");
+
+    private final static IRI XSD_DOUBLE = IRI.create("xsd:double");
+
     private final Logger logger = LoggerFactory.getLogger(TurtleReader.class.getName());
 
     private final SimpleFactory<S,P,O> simpleFactory = SimpleFactory.getInstance();
@@ -77,9 +98,20 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
      */
     private IRI baseIRI;
     /**
-     * The push back reader for reading input streams of turtle statements.
+     * The reader for input streams of turtle statements.
+     */
+    private Reader reader;
+    /**
+     * The character window, chars from pos to limit are not read yet
+     */
+    private char[] buf = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    /**
+     * The start of the token in the window, or -1. Chars from the mark on are
+     * kept in the window when it is refilled.
      */
-    private PushbackReader reader;
+    private int mark;
     /**
      * The parsed subject
      */
@@ -98,17 +130,17 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
      */
     private S lastsubject;
     /**
-     * String builder for parsing
+     * String builder for decoding
      */
-    private StringBuilder sb;
+    private final StringBuilder sb = new StringBuilder();
     /**
      * Indicate if end of stream is reached
      */
     private boolean eof;
     /**
-     * Stack for resource statements
+     * Triples with blank node subjects, waiting for the triple of their parent resource
      */
-    private Stack<Triple> triples;
+    private final List<Triple> triples = new ArrayList<>();
     /**
      * Counter for parsed triples
      */
@@ -117,6 +149,26 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
      * The namespace context
      */
     private XmlNamespaceContext context = XmlNamespaceContext.getDefaultInstance();
+    /**
+     * The prefixes declared in the input, before the namespace context
+     */
+    private final Map<String, String> prefixes = new HashMap<>();
+    /**
+     * The IRIs of prefixed names
+     */
+    private final Map<String, IRI> qnames = new HashMap<>();
+    /**
+     * The predicates of prefixed names
+     */
+    private final Map<String, P> predicates = new HashMap<>();
+    /**
+     * The namespaces the cached prefixed names were resolved with, by prefix
+     */
+    private final Map<String, String> cachedNamespaces = new HashMap<>();
+    /**
+     * Indicate if the cached prefixed names were checked against the prefixes of this input
+     */
+    private boolean cacheChecked;
     /**
      * An optional triple listener
      */
@@ -129,6 +181,7 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
 
     public TurtleReader context(XmlNamespaceContext context) {
         this.context = context;
+        clearCaches();
         return this;
     }
 
@@ -161,10 +214,14 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
      */
     @Override
     public TurtleReader parse(Reader reader) throws IOException {
-        this.reader = new PushbackReader(reader, 2);
-        this.sb = new StringBuilder();
+        this.reader = reader;
+        this.pos = 0;
+        this.limit = 0;
+        this.mark = -1;
         this.eof = false;
-        this.triples = new Stack();
+        this.triples.clear();
+        this.prefixes.clear();
+        this.cacheChecked = false;
         try {
             while (!eof) {
                 char ch = skipWhitespace();
@@ -174,6 +231,9 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
                 if (ch == '@') {
                     parseDirective();
                 } else {
+                    if (!cacheChecked) {
+                        checkCaches();
+                    }
                     parseTriple();
                     tripleCounter++;
                 }
@@ -209,39 +269,36 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
      * @throws IOException
      */
     private void parseDirective() throws IOException {
-        String directive;
-        sb.setLength(0);
-        boolean b;
-        do {
-            char ch = read();
-            b = !isWhitespace(ch);
-            if (b) {
-                sb.append(ch);
-            }
-        } while (b);
-        directive = sb.toString();
+        mark = pos;
+        while (!isWhitespace(read())) {
+        }
+        String directive = token(pos - 1);
         skipWhitespace();
-        sb.setLength(0);
         if ("@prefix".equalsIgnoreCase(directive)) {
-            char ch = read();
-            while (ch != ':') {
-                sb.append(ch);
-                ch = read();
+            mark = pos;
+            while (read() != ':') {
             }
-            String prefix = sb.toString();
-            reader.read();
+            String prefix = token(pos - 1);
             skipWhitespace();
             IRI nsURI = parseURI();
             if ("".equals(prefix)) {
                 this.baseIRI = nsURI;
             }
+            String ns = nsURI.toString();
+            if (!ns.equals(cachedNamespaces.get(prefix))) {
+                removeCached(prefix);
+            }
+            prefixes.put(prefix, ns);
+            if (listener != null) {
+                listener.startPrefixMapping(prefix, nsURI.toString());
+            }
         } else if ("@base".equalsIgnoreCase(directive)) {
             this.baseIRI = parseURI();
         } else {
             throw new IOException(baseIRI + ": unknown directive: " + directive);
         }
         skipWhitespace();
-        validate(reader.read(), '.');
+        validate(next(), '.');
     }
 
     private void parseTriple() throws IOException {
@@ -252,7 +309,7 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
         skipWhitespace();
         parsePredicateObjectList();
         skipWhitespace();
-        validate(reader.read(), '.');
+        validate(next(), '.');
     }
 
     private void parsePredicateObjectList() throws IOException {
@@ -261,7 +318,7 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
         parseObjectList();
         char ch = skipWhitespace();
         while (ch == ';') {
-            reader.read();
+            pos++;
             ch = skipWhitespace();
             if (ch == '.' || ch == ']') {
                 break;
@@ -277,7 +334,7 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
         parseObject();
         char ch = skipWhitespace();
         while (ch == ',') {
-            reader.read();
+            pos++;
             skipWhitespace();
             parseObject();
             ch = skipWhitespace();
@@ -301,18 +358,27 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
     }
 
     private P parsePredicate() throws IOException {
-        char ch = read();
-        if (ch == 'a') {
-            char ch2 = read();
-            if (isWhitespace(ch2)) {
-                return simpleFactory.asPredicate("rdf:type");
+        char ch = peek();
+        if (ch == 'a' && isWhitespace(peek(1))) {
+            pos += 2;
+            return simpleFactory.asPredicate("rdf:type");
+        }
+        if (ch == ':' || isPrefixStartChar(ch)) {
+            // predicates are mostly prefixed names, resolve them once
+            String qname = scanQName();
+            P p = predicates.get(qname);
+            if (p == null) {
+                p = simpleFactory.asPredicate(resolveQName(qname));
+                if (predicates.size() >= MAX_CACHED) {
+                    predicates.clear();
+                }
+                predicates.put(qname, p);
             }
-            reader.unread(ch2);
+            return p;
         }
-        reader.unread(ch);
         O obj = parseValue();
         if (obj instanceof Resource) {
-            return simpleFactory.asPredicate(obj.toString());
+            return simpleFactory.asPredicate(((Resource) obj).id());
         } else {
             throw new IOException(baseIRI + ": illegal predicate value: " + obj);
         }
@@ -333,12 +399,12 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
             object = parseValue();
         }
         Triple stmt = new SimpleTriple(subject, predicate, object);
-        if (subject instanceof Identifier) {
-            // Push triples with blank node subjects on stack.
+        if (!(subject instanceof Resource)) {
+            // Keep triples with blank node subjects in order.
             // The idea for having ordered resource properties is:
             // All resource property triples should be serialized
             // after the resource parent triple.
-            triples.add(0, stmt);
+            triples.add(stmt);
         } else {
             // Send record events. A record is grouped by a sequence of same non-blank subjects
             if (lastsubject == null) {
@@ -354,13 +420,11 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
             }
             if (listener != null) {
                 listener.triple(stmt);
-            }
-            while (!triples.isEmpty()) {
-                Triple<S, P, O> s = triples.pop();
-                if (listener != null) {
-                    listener.triple(s);
+                for (Triple t : triples) {
+                    listener.triple(t);
                 }
             }
+            triples.clear();
         }
     }
 
@@ -394,28 +458,25 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
      * @throws IOException
      */
     private IRI parseURI() throws IOException {
-        char ch = read();
-        validate(ch, '<');
-        sb.setLength(0);
-        ch = read();
-        boolean ended;
-        do {
-            while (ch != '>') {
-                sb.append(ch);
-                if (ch == '\\') {
-                    ch = read();
-                    sb.append(ch);
+        validate(read(), '<');
+        mark = pos;
+        int length;
+        while (true) {
+            char ch = read();
+            if (ch == '\\') {
+                read();
+            } else if (ch == '>') {
+                length = pos - 1 - mark;
+                // '>' not escaped?
+                ch = peek();
+                if (isWhitespace(ch) || isDelimiter(ch)) {
+                    break;
                 }
-                ch = read();
-            }
-            // '>' not escaped?
-            ch = read();
-            ended = (ch == ' ' || ch == '\n' || ch == '\t' || ch == '\r');
-            if (!ended) {
-                logger.warn("{} unescaped ''>'' in URI: {}", subject, sb);
+                logger.warn("{} unescaped ''>'' in URI: {}", subject, new String(buf, mark, length));
             }
-        } while (!ended);
-        String decoded = decode(sb.toString(), "UTF-8");
+        }
+        String s = token(mark + length);
+        String decoded = isDecoded(s) ? s : decode(s, "UTF-8");
         IRI u = IRI.create(decoded);
         u = baseIRI.resolve(u);
         return u;
@@ -428,46 +489,127 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
      * @throws IOException
      */
     private O parseQNameOrBoolean() throws IOException {
+        String qname = scanQName();
+        if (qname.indexOf(':') < 0 && (qname.equals("true") || qname.equals("false"))) {
+            return (O) simpleFactory.newLiteral(qname).type(XSD_BOOLEAN);
+        }
+        // namespace is already resolved
+        return (O) new SimpleResource().id(resolveQName(qname));
+    }
+
+    /**
+     * Scan a prefixed name
+     *
+     * @return the prefixed name, with a colon unless it is not a prefixed name
+     * @throws IOException
+     */
+    private String scanQName() throws IOException {
+        mark = pos;
         char ch = read();
         if (ch != ':' && !isPrefixStartChar(ch)) {
             throw new IOException(baseIRI + ": expected colon or letter, not: '" + ch + "'");
         }
-        sb.setLength(0);
-        String ns;
-        if (ch == ':') {
-            ns = context.getNamespaceURI("");
-        } else {
-            sb.append(ch);
-            ch = read();
+        if (ch != ':') {
+            ch = peek();
             while (Character.isLetter(ch) || Character.isDigit(ch) || ch == '-' || ch == '_') {
-                sb.append(ch);
-                ch = read();
+                pos++;
+                ch = peek();
             }
             if (ch != ':') {
-                String value = sb.toString();
-                if (value.equals("true") || value.equals("false")) {
-                    return (O) simpleFactory.newLiteral(value).type(IRI.create("xsd:boolean"));
-                }
-            }
-            validate(ch, ':');
-            ns = context.getNamespaceURI(sb.toString());
-            if (ns == null) {
-                throw new IOException(baseIRI + ": namespace not found: " + sb.toString());
+                return token(pos);
             }
+            pos++;
         }
-        sb.setLength(0);
-        ch = read();
+        ch = peek();
         if (Character.isLetter(ch) || ch == '_') {
-            sb.append(ch);
-            ch = read();
+            pos++;
+            ch = peek();
             while (Character.isLetter(ch) || Character.isDigit(ch) || ch == '-' || ch == '_') {
-                sb.append(ch);
-                ch = read();
+                pos++;
+                ch = peek();
             }
         }
-        reader.unread(ch);
-        // namespace is already resolved
-        return (O) new SimpleResource().id(IRI.create(ns + sb));
+        return token(pos);
+    }
+
+    /**
+     * Resolve a prefixed name by the prefixes and the namespace context
+     *
+     * @param qname the prefixed name
+     * @return the IRI
+     * @throws IOException if the prefix is not declared
+     */
+    private IRI resolveQName(String qname) throws IOException {
+        IRI iri = qnames.get(qname);
+        if (iri != null) {
+            return iri;
+        }
+        int i = qname.indexOf(':');
+        if (i < 0) {
+            validate(next(), ':');
+            i = qname.length();
+        }
+        String prefix = qname.substring(0, i);
+        String ns = prefixes.get(prefix);
+        if (ns == null) {
+            ns = context.getNamespaceURI(prefix);
+        }
+        if (ns == null) {
+            throw new IOException(baseIRI + ": namespace not found: " + prefix);
+        }
+        iri = IRI.create(i < qname.length() ? ns + qname.substring(i + 1) : ns);
+        if (qnames.size() >= MAX_CACHED) {
+            qnames.clear();
+        }
+        qnames.put(qname, iri);
+        cachedNamespaces.put(prefix, ns);
+        return iri;
+    }
+
+    /**
+     * Remove the cached prefixed names whose prefix is now bound to another
+     * namespace, or to none, because the prefixes of the previous input are gone.
+     */
+    private void checkCaches() {
+        Iterator<Map.Entry<String, String>> it = cachedNamespaces.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, String> entry = it.next();
+            String prefix = entry.getKey();
+            String ns = prefixes.get(prefix);
+            if (ns == null) {
+                ns = context.getNamespaceURI(prefix);
+            }
+            if (!entry.getValue().equals(ns)) {
+                it.remove();
+                removeCached(qnames, prefix);
+                removeCached(predicates, prefix);
+            }
+        }
+        cacheChecked = true;
+    }
+
+    private void removeCached(String prefix) {
+        if (cachedNamespaces.remove(prefix) != null) {
+            removeCached(qnames, prefix);
+            removeCached(predicates, prefix);
+        }
+    }
+
+    private static void removeCached(Map<String, ?> cache, String prefix) {
+        Iterator<String> it = cache.keySet().iterator();
+        while (it.hasNext()) {
+            String qname = it.next();
+            if (qname.length() > prefix.length() && qname.charAt(prefix.length()) == ':'
+                    && qname.startsWith(prefix)) {
+                it.remove();
+            }
+        }
+    }
+
+    private void clearCaches() {
+        qnames.clear();
+        predicates.clear();
+        cachedNamespaces.clear();
     }
 
     /**
@@ -481,17 +623,18 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
         if (ch == '_') {
             return parseNodeID();
         } else if (ch == '[') {
-            reader.read();
+            pos++;
             Identifier bnode = new IdentifiableNode();
-            ch = read();
-            if (ch != ']') {
+            ch = skipWhitespace();
+            if (ch == ']') {
+                pos++;
+            } else {
                 S oldsubject = subject;
                 P oldpredicate = predicate;
                 subject = (S) bnode;
-                skipWhitespace();
                 parsePredicateObjectList();
                 skipWhitespace();
-                validate(reader.read(), ']');
+                validate(next(), ']');
                 subject = oldsubject;
                 predicate = oldpredicate;
             }
@@ -508,10 +651,10 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
      * @throws IOException
      */
     private Resource<S, P, O> parseCollection() throws IOException {
-        validate(reader.read(), '(');
+        validate(next(), '(');
         char ch = skipWhitespace();
         if (ch == ')') {
-            reader.read();
+            pos++;
             SimpleResource<S, P, O> r = new SimpleResource();
             r.id(IRI.create("rdf:nil"));
             return r;
@@ -534,7 +677,7 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
                 parseObject();
                 ch = skipWhitespace();
             }
-            reader.read();
+            pos++;
             if (listener != null) {
                 listener.triple(new SimpleTriple(blanknode,
                         simpleFactory.asPredicate("rdf:rest"),
@@ -553,20 +696,19 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
      * @throws IOException
      */
     private Identifier parseNodeID() throws IOException {
-        validate(reader.read(), '_');
-        validate(reader.read(), ':');
-        char ch = read();
-        sb.setLength(0);
+        validate(next(), '_');
+        validate(next(), ':');
+        mark = pos;
+        char ch = peek();
         if (Character.isLetter(ch) || ch == '_') {
-            sb.append(ch);
-            ch = read();
+            pos++;
+            ch = peek();
             while (Character.isLetter(ch) || Character.isDigit(ch) || ch == '-' || ch == '_') {
-                sb.append(ch);
-                ch = read();
+                pos++;
+                ch = peek();
             }
         }
-        reader.unread(ch);
-        String nodeID = sb.toString();
+        String nodeID = token(pos);
         Identifier bnode = bnodes.get(nodeID);
         if (bnode != null) {
             return bnode;
@@ -587,24 +729,25 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
         String value = parseQuotedString();
         char ch = peek();
         if (ch == '@') {
-            reader.read();
-            sb.setLength(0);
+            pos++;
+            mark = pos;
             ch = read();
             if (!Character.isLowerCase(ch)) {
                 throw new IOException(baseIRI + ": lower case character expected: " + ch);
             }
-            sb.append(ch);
-            ch = read();
+            ch = peek();
             while (Character.isLowerCase(ch) || Character.isDigit(ch) || ch == '-') {
-                sb.append(ch);
-                ch = read();
+                pos++;
+                ch = peek();
             }
-            reader.unread(ch);
-            return new SimpleLiteral(value).language(sb.toString());
+            return new SimpleLiteral(value).language(token(pos));
         } else if (ch == '^') {
-            reader.read();
-            validate(reader.read(), '^');
-            return new SimpleLiteral(value).type(parseURI());
+            pos++;
+            validate(next(), '^');
+            if (peek() == '<') {
+                return new SimpleLiteral(value).type(parseURI());
+            }
+            return new SimpleLiteral(value).type(resolveQName(scanQName()));
         } else {
             return new SimpleLiteral(value);
         }
@@ -616,14 +759,11 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
      */
     private String parseQuotedString() throws IOException {
         String result;
-        validate(reader.read(), '\"');
-        char c2 = read();
-        char c3 = read();
-        if (c2 == '"' && c3 == '"') {
+        validate(next(), '\"');
+        if (peek() == '"' && peek(1) == '"') {
+            pos += 2;
             result = parseLongString();
         } else {
-            reader.unread(c3);
-            reader.unread(c2);
             result = parseString();
         }
         return decodeTurtleString(result);
@@ -634,19 +774,17 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
      * has already been parsed.
      */
     private String parseString() throws IOException {
-        sb.setLength(0);
+        mark = pos;
         while (true) {
             char ch = read();
             if (ch == '"') {
                 break;
             }
-            sb.append(ch);
             if (ch == '\\') {
-                ch = read();
-                sb.append(ch);
+                read();
             }
         }
-        return sb.toString();
+        return token(pos - 1);
     }
 
     /**
@@ -654,7 +792,7 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
      * double quotes have already been parsed.
      */
     protected String parseLongString() throws IOException {
-        sb.setLength(0);
+        mark = pos;
         int doubleQuoteCount = 0;
         char ch;
         while (doubleQuoteCount < 3) {
@@ -664,115 +802,166 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
             } else {
                 doubleQuoteCount = 0;
             }
-            sb.append(ch);
             if (ch == '\\') {
                 // This escapes the next character, which might be a '"'
-                ch = read();
-                sb.append(ch);
+                read();
             }
         }
-
-        return sb.substring(0, sb.length() - 3);
+        return token(pos - 3);
     }
 
     private Literal<O> parseNumber() throws IOException {
-        sb.setLength(0);
-        IRI datatype = IRI.create("xsd:integer");
-        char ch = read();
+        mark = pos;
+        IRI datatype = XSD_INTEGER;
+        char ch = peek();
         if (ch == '+' || ch == '-') {
-            sb.append(ch);
-            ch = read();
+            pos++;
+            ch = peek();
         }
         while (Character.isDigit(ch)) {
-            sb.append(ch);
-            ch = read();
+            pos++;
+            ch = peek();
         }
         if (ch == '.' || ch == 'e' || ch == 'E') {
-            datatype = IRI.create("xsd:decimal");
+            datatype = XSD_DECIMAL;
             if (ch == '.') {
-                sb.append(ch);
-                ch = read();
+                pos++;
+                ch = peek();
                 while (Character.isDigit(ch)) {
-                    sb.append(ch);
-                    ch = read();
+                    pos++;
+                    ch = peek();
                 }
-                if (sb.length() == 1) {
-                    throw new IOException(" incomplete decimal: " + sb);
+                if (pos - mark == 1) {
+                    throw new IOException(" incomplete decimal: " + token(pos));
                 }
             } else {
-                if (sb.length() == 0) {
-                    throw new IOException("in complete fraction: " + sb);
+                if (pos == mark) {
+                    throw new IOException("in complete fraction: " + token(pos));
                 }
             }
             if (ch == 'e' || ch == 'E') {
-                datatype = IRI.create("xsd:double");
-                sb.append(ch);
-                ch = read();
+                datatype = XSD_DOUBLE;
+                pos++;
+                ch = peek();
                 if (ch == '+' || ch == '-') {
-                    sb.append(ch);
-                    ch = read();
+                    pos++;
+                    ch = peek();
                 }
                 if (!Character.isDigit(ch)) {
-                    throw new IOException("exponent value missing: " + sb);
+                    throw new IOException("exponent value missing: " + token(pos));
                 }
-                sb.append(ch);
-                ch = read();
                 while (Character.isDigit(ch)) {
-                    sb.append(ch);
-                    ch = read();
+                    pos++;
+                    ch = peek();
                 }
             }
         }
-        reader.unread(ch);
-        return new SimpleLiteral(sb.toString()).type(datatype);
+        return new SimpleLiteral(token(pos)).type(datatype);
     }
 
     private char skipWhitespace() throws IOException {
-        int ch = reader.read();
-        while (isWhitespace((char) ch) || ch == '#') {
+        char ch = peek();
+        while (isWhitespace(ch) || ch == '#') {
             if (ch == '#') {
                 skipLine();
+            } else {
+                pos++;
             }
-            ch = reader.read();
+            ch = peek();
         }
-        if (ch == -1) {
-            eof = true;
-        }
-        reader.unread(ch);
-        return (char) ch;
+        return ch;
     }
 
     private void skipLine() throws IOException {
-        int ch = reader.read();
-        while (ch != 0xd && ch != 0xa && ch != -1) {
-            ch = reader.read();
-        }
-        if (ch == 0xd) {
-            ch = reader.read();
-            if (ch != 0xa) {
-                reader.unread(ch);
-            }
-        }
-        if (ch == -1) {
-            eof = true;
+        char ch = peek();
+        while (ch != 0xd && ch != 0xa && !eof) {
+            pos++;
+            ch = peek();
         }
     }
 
+    /**
+     * The next character, without reading it
+     *
+     * @return the next character, or (char)-1 at the end of the stream
+     * @throws IOException
+     */
     private char peek() throws IOException {
-        int ch = reader.read();
-        if (ch == -1) {
-            eof = true;
+        if (pos < limit || fill(1)) {
+            return buf[pos];
+        }
+        eof = true;
+        return (char) -1;
+    }
+
+    /**
+     * A character ahead of the next character, without reading it
+     *
+     * @param offset the offset from the next character
+     * @return the character, or (char)-1 at the end of the stream
+     * @throws IOException
+     */
+    private char peek(int offset) throws IOException {
+        if (pos + offset < limit || fill(offset + 1)) {
+            return buf[pos + offset];
         }
-        reader.unread(ch);
-        return (char) ch;
+        return (char) -1;
     }
 
     private char read() throws IOException {
-        int ch = reader.read();
-        if (ch == -1) {
-            throw new EOFException();
+        if (pos < limit || fill(1)) {
+            return buf[pos++];
+        }
+        throw new EOFException();
+    }
+
+    private int next() throws IOException {
+        if (pos < limit || fill(1)) {
+            return buf[pos++];
+        }
+        eof = true;
+        return -1;
+    }
+
+    /**
+     * Fill the window with characters from the reader. The characters from the
+     * mark, or the next character, are moved to the start of the window, and
+     * the window grows if a token does not fit into it.
+     *
+     * @param n the number of characters needed after the next character
+     * @return true if the characters are available, false at the end of the stream
+     * @throws IOException
+     */
+    private boolean fill(int n) throws IOException {
+        int start = mark >= 0 ? mark : pos;
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, limit - start);
+            limit -= start;
+            pos -= start;
+            if (mark >= 0) {
+                mark = 0;
+            }
         }
-        return (char) ch;
+        while (limit - pos < n) {
+            if (limit == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            int len = reader.read(buf, limit, buf.length - limit);
+            if (len < 0) {
+                return false;
+            }
+            limit += len;
+        }
+        return true;
+    }
+
+    /**
+     * The token from the mark to the end position. The mark is released.
+     */
+    private String token(int end) {
+        String s = new String(buf, mark, end - mark);
+        mark = -1;
+        return s;
     }
 
     private void validate(int ch, char v) throws IOException {
@@ -790,6 +979,13 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
         return ch == 0x20 || ch == 0x9 || ch == 0xA || ch == 0xD;
     }
 
+    /**
+     * Characters which may follow an IRI without white space
+     */
+    private boolean isDelimiter(char ch) {
+        return ch == '.' || ch == ';' || ch == ',' || ch == ')' || ch == ']' || ch == '#' || ch == (char) -1;
+    }
+
     private boolean isPrefixStartChar(char ch) {
         return Character.isLetter(ch) || ch >= 0x00C0 && ch <= 0x00D6
                 || ch >= 0x00D8 && ch <= 0x00F6 || ch >= 0x00F8 && ch <= 0x02FF
@@ -800,6 +996,20 @@ public class TurtleReader<S extends Identifier, P extends Property, O extends No
                 || ch >= 0x10000 && ch <= 0xEFFFF;
     }
 
+    /**
+     * True if decoding would not change the string, that is, it has only
+     * ASCII characters and no '%' or '+'.
+     */
+    private static boolean isDecoded(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '%' || ch == '+' || ch >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Decodes an encoded Turtle string. Any \-escape sequences are substituted
      * with their decoded sb.
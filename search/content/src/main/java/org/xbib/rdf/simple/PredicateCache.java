@@ -0,0 +1,113 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.rdf.simple;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.xbib.iri.IRI;
+import org.xbib.rdf.IdentifiableProperty;
+import org.xbib.rdf.Property;
+
+/**
+ * A bounded, concurrent cache of predicates, keyed by compact IRI strings.
+ *
+ * Mappings use a small vocabulary of predicates over and over again, so parsing
+ * the IRI and creating a property for each statement is a waste. Properties are immutable
+ * and can be shared by all threads.
+ */
+public class PredicateCache {
+
+    private final LoadingCache<String, Property> cache;
+
+    public PredicateCache(long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build(new CacheLoader<String, Property>() {
+                    @Override
+                    public Property load(String predicate) {
+                        return new IdentifiableProperty(IRI.builder().curi(predicate).build());
+                    }
+                });
+    }
+
+    /**
+     * Get the shared property for a compact IRI.
+     *
+     * @param predicate the compact IRI
+     * @return the property
+     */
+    public Property get(String predicate) {
+        try {
+            return cache.getUnchecked(predicate);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public String toString() {
+        CacheStats stats = cache.stats();
+        return "[size=" + cache.size()
+                + ",hits=" + stats.hitCount()
+                + ",misses=" + stats.missCount()
+                + ",hitrate=" + stats.hitRate()
+                + ",evictions=" + stats.evictionCount()
+                + "]";
+    }
+}
@@ -45,6 +45,13 @@ public final class SimpleFactory<S,P,O> implements XSD {
 
     private final static transient SimpleFactory instance = new SimpleFactory();
 
+    /**
+     * The maximum number of cached predicates, can be set by the system property
+     * "org.xbib.rdf.simple.predicatecache.size"
+     */
+    private final static PredicateCache predicates =
+            new PredicateCache(Long.getLong("org.xbib.rdf.simple.predicatecache.size", 8192L));
+
     private SimpleFactory() {
     }
     
@@ -62,7 +69,16 @@ public final class SimpleFactory<S,P,O> implements XSD {
         return predicate == null ? null :
                 predicate instanceof Property ? (P)predicate :
                 predicate instanceof IRI ?  (P)new IdentifiableProperty((IRI)predicate) :
-                (P)new IdentifiableProperty(IRI.builder().curi(predicate.toString()).build());
+                (P)predicates.get(predicate.toString());
+    }
+
+    /**
+     * The cache of predicates created from strings, shared by all threads.
+     *
+     * @return the predicate cache
+     */
+    public PredicateCache predicateCache() {
+        return predicates;
     }
 
     public O asObject(Object object) {
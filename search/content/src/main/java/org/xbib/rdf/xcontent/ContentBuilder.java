@@ -31,6 +31,7 @@
  */
 package org.xbib.rdf.xcontent;
 
+import org.xbib.common.io.stream.BytesStreamOutput;
 import org.xbib.rdf.Identifier;
 import org.xbib.rdf.Node;
 import org.xbib.rdf.Property;
@@ -58,4 +59,16 @@ public interface ContentBuilder<C extends ResourceContext, R extends Resource> {
 
     <S extends Identifier, P extends Property, O extends Node> String build(C context, R resource)
             throws IOException;
+
+    /**
+     * Build the content of a resource into a byte stream, without creating a string.
+     * The stream can be reused for many resources.
+     *
+     * @param context the resource context
+     * @param resource the resource
+     * @param out the byte stream where the content is appended
+     * @throws IOException if the content can not be built
+     */
+    <S extends Identifier, P extends Property, O extends Node> void build(C context, R resource, BytesStreamOutput out)
+            throws IOException;
 }
@@ -40,6 +40,7 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
 
+import org.xbib.common.io.stream.BytesStreamOutput;
 import org.xbib.common.xcontent.XContentBuilder;
 import org.xbib.rdf.Identifier;
 import org.xbib.rdf.Node;
@@ -87,11 +88,18 @@ public class DefaultContentBuilder<C extends ResourceContext, R extends Resource
 
     public <S extends Identifier, P extends Property, O extends Node> String build(C context, R resource)
             throws IOException {
-        XContentBuilder builder = jsonBuilder();
+        BytesStreamOutput out = new BytesStreamOutput();
+        build(context, resource, out);
+        return out.bytes().toUtf8();
+    }
+
+    public <S extends Identifier, P extends Property, O extends Node> void build(C context, R resource, BytesStreamOutput out)
+            throws IOException {
+        XContentBuilder builder = jsonBuilder(out);
         builder.startObject();
         build(builder, context, resource);
         builder.endObject();
-        return builder.string();
+        builder.close();
     }
 
     protected <S extends Identifier, P extends Property, O extends Node> void build(XContentBuilder builder, C resourceContext, Resource<S, P, O> resource)
@@ -31,6 +31,7 @@
  */
 package org.xbib.rdf.xcontent;
 
+import org.xbib.common.io.stream.BytesStreamOutput;
 import org.xbib.common.xcontent.XContentBuilder;
 import org.xbib.iri.CompactingNamespaceContext;
 import org.xbib.rdf.Identifier;
@@ -108,7 +109,14 @@ public class KibanaContentBuilder<C extends ResourceContext, R extends Resource>
 
     public <S extends Identifier, P extends Property, O extends Node> String build(C context, R resource)
             throws IOException {
-        XContentBuilder builder = jsonBuilder();
+        BytesStreamOutput out = new BytesStreamOutput();
+        build(context, resource, out);
+        return out.bytes().toUtf8();
+    }
+
+    public <S extends Identifier, P extends Property, O extends Node> void build(C context, R resource, BytesStreamOutput out)
+            throws IOException {
+        XContentBuilder builder = jsonBuilder(out);
         builder.startObject();
         if (timestamp != null) {
             builder.field("@timestamp", timestamp);
@@ -134,7 +142,7 @@ public class KibanaContentBuilder<C extends ResourceContext, R extends Resource>
         builder.startObject("@fields");
         build(builder, context, resource);
         builder.endObject().endObject();
-        return builder.string();
+        builder.close();
     }
 
     protected <S extends Identifier, P extends Property, O extends Node> void build(XContentBuilder builder, C resourceContext, Resource<S, P, O> resource)
@@ -31,7 +31,15 @@
  */
 package org.xbib.rdf.io.ntriple;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import org.xbib.iri.IRI;
@@ -39,6 +47,8 @@ import org.xbib.rdf.Identifier;
 import org.xbib.rdf.Node;
 import org.xbib.rdf.Property;
 import org.xbib.rdf.Resource;
+import org.xbib.rdf.Triple;
+import org.xbib.rdf.io.TripleListener;
 import org.xbib.rdf.simple.SimpleLiteral;
 import org.xbib.rdf.simple.SimpleResource;
 
@@ -82,4 +92,88 @@ public class NTripleTest<S extends Identifier, P extends Property, O extends Nod
         r.add("http://purl.org/dc/elements/1.1/title", "title");
         return m;
     }
+
+    @Test
+    public void testNTripleRead() throws Exception {
+        String s = "# comment\n"
+                + "<urn:doc1> <http://purl.org/dc/elements/1.1/title> \"A \\\"sample\\\" title\\u00e9\"@en .\n"
+                + "\n"
+                + "<urn:doc1> <http://purl.org/dc/elements/1.1/date> \"2010\"^^<http://www.w3.org/2001/XMLSchema#integer> .\r\n"
+                + "_:b1 <http://purl.org/dc/elements/1.1/creator> <urn:person1>.\n"
+                + "<urn:doc1>\t<http://purl.org/dc/terms/hasPart> _:b1 . # part\n";
+        Collector c = new Collector();
+        NTripleReader reader = new NTripleReader().setTripleListener(c);
+        reader.parse(new StringReader(s));
+        Assert.assertEquals(reader.getTripleCounter(), 4L);
+        Assert.assertEquals(c.triples.size(), 4);
+        Triple t = c.triples.get(0);
+        Assert.assertEquals(t.subject().toString(), "urn:doc1");
+        Assert.assertTrue(t.predicate() instanceof Property);
+        Assert.assertEquals(t.object().toString(), "A \"sample\" title\u00e9@en");
+        Assert.assertEquals(c.triples.get(1).object().toString(), "2010^^http://www.w3.org/2001/XMLSchema#integer");
+        Assert.assertEquals(c.triples.get(2).subject().toString(), c.triples.get(3).object().toString());
+    }
+
+    @Test(expectedExceptions = java.io.IOException.class)
+    public void testNTripleReadInvalid() throws Exception {
+        new NTripleReader().parse(new StringReader("<urn:doc1> <urn:p> \"unterminated .\n"));
+    }
+
+    @Test
+    public void testNTripleParallelRead() throws Exception {
+        File file = File.createTempFile("ntriple", ".nt");
+        file.deleteOnExit();
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            for (int i = 0; i < 10000; i++) {
+                w.write("<urn:doc" + i + "> <http://purl.org/dc/elements/1.1/title> \"Titel \u00fc " + i + "\" .\n");
+            }
+        }
+        Collector sequential = new Collector();
+        new NTripleReader().setTripleListener(sequential).parse(new java.io.FileInputStream(file));
+        List<Collector> collectors = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            collectors.add(new Collector());
+        }
+        NTripleReader reader = new NTripleReader().parse(file, collectors);
+        Assert.assertEquals(reader.getTripleCounter(), 10000L);
+        List<String> expected = new ArrayList<>();
+        for (Triple t : sequential.triples) {
+            expected.add(t.toString());
+        }
+        List<String> actual = new ArrayList<>();
+        for (Collector c : collectors) {
+            for (Triple t : c.triples) {
+                actual.add(t.toString());
+            }
+        }
+        Collections.sort(expected);
+        Collections.sort(actual);
+        Assert.assertEquals(actual, expected);
+    }
+
+    private static class Collector implements TripleListener {
+
+        final List<Triple> triples = new ArrayList<>();
+
+        @Override
+        public TripleListener startPrefixMapping(String prefix, String uri) {
+            return this;
+        }
+
+        @Override
+        public TripleListener endPrefixMapping(String prefix) {
+            return this;
+        }
+
+        @Override
+        public TripleListener newIdentifier(IRI identifier) {
+            return this;
+        }
+
+        @Override
+        public TripleListener triple(Triple triple) {
+            triples.add(triple);
+            return this;
+        }
+    }
 }
@@ -35,7 +35,10 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import org.xbib.iri.IRI;
@@ -45,7 +48,9 @@ import org.xbib.rdf.Identifier;
 import org.xbib.rdf.Node;
 import org.xbib.rdf.Property;
 import org.xbib.rdf.Resource;
+import org.xbib.rdf.Triple;
 import org.xbib.rdf.context.IRINamespaceContext;
+import org.xbib.rdf.io.TripleListener;
 import org.xbib.rdf.simple.SimpleResource;
 
 public class TurtleTest<S extends Identifier, P extends Property, O extends Node>
@@ -59,6 +64,77 @@ public class TurtleTest<S extends Identifier, P extends Property, O extends Node
         reader.parse(in);
     }
 
+    @Test
+    public void testTurtleReaderTriples() throws Exception {
+        String s = "@prefix ex: <http://example.org/ns#> .\n"
+                + "# comment\n"
+                + "<urn:doc1> a ex:Document ;\n"
+                + "    ex:title \"A \\\"sample\\\" title\"@en , \"\"\"long\n\"title\"\\u00e9\"\"\" ;\n"
+                + "    ex:date \"2009\"^^ex:year ; ex:pages 42 ;\n"
+                + "    ex:part [ ex:title \"Part\" ] .\n";
+        List<Triple> triples = new ArrayList<>();
+        TurtleReader reader = new TurtleReader(IRI.create("urn:base")).setTripleListener(collect(triples));
+        reader.parse(new StringReader(s));
+        assertEquals(reader.getTripleCounter(), 1L);
+        assertEquals(triples.size(), 7);
+        assertEquals(triples.get(0).object().toString(), "<http://example.org/ns#Document>");
+        assertEquals(triples.get(1).predicate().toString(), "http://example.org/ns#title");
+        assertEquals(triples.get(1).object().toString(), "A \"sample\" title@en");
+        assertEquals(triples.get(2).object().toString(), "long\n\"title\"\u00e9");
+        assertEquals(triples.get(3).object().toString(), "2009^^http://example.org/ns#year");
+        assertEquals(triples.get(4).object().toString(), "42^^xsd:integer");
+        assertEquals(triples.get(6).object().toString(), "Part");
+        assertEquals(triples.get(6).subject(), triples.get(5).object());
+    }
+
+    @Test
+    public void testTurtleReaderPrefixes() throws Exception {
+        IRINamespaceContext context = IRINamespaceContext.newInstance();
+        context.addNamespace("dc", "http://purl.org/dc/elements/1.1/");
+        List<Triple> triples = new ArrayList<>();
+        TurtleReader reader = new TurtleReader(IRI.create("urn:base")).context(context)
+                .setTripleListener(collect(triples));
+        reader.parse(new StringReader("@prefix ex: <http://a.org/> .\n<urn:s> ex:p dc:title .\n"));
+        reader.parse(new StringReader("@prefix ex: <http://a.org/> .\n<urn:s> ex:p dc:title .\n"));
+        reader.parse(new StringReader("@prefix ex: <http://b.org/> .\n@prefix dc: <http://c.org/> .\n"
+                + "<urn:s> ex:p dc:title .\n"));
+        reader.parse(new StringReader("@prefix ex: <http://b.org/> .\n<urn:s> ex:p dc:title .\n"
+                + "@prefix ex: <http://d.org/> .\n<urn:s> ex:p dc:title .\n"));
+        assertEquals(triples.size(), 5);
+        assertEquals(triples.get(1).predicate().toString(), "http://a.org/p");
+        assertEquals(triples.get(1).object().toString(), "<http://purl.org/dc/elements/1.1/title>");
+        assertEquals(triples.get(2).predicate().toString(), "http://b.org/p");
+        assertEquals(triples.get(2).object().toString(), "<http://c.org/title>");
+        assertEquals(triples.get(3).predicate().toString(), "http://b.org/p");
+        assertEquals(triples.get(3).object().toString(), "<http://purl.org/dc/elements/1.1/title>");
+        assertEquals(triples.get(4).predicate().toString(), "http://d.org/p");
+    }
+
+    private static TripleListener collect(final List<Triple> triples) {
+        return new TripleListener() {
+            @Override
+            public TripleListener startPrefixMapping(String prefix, String uri) {
+                return this;
+            }
+
+            @Override
+            public TripleListener endPrefixMapping(String prefix) {
+                return this;
+            }
+
+            @Override
+            public TripleListener newIdentifier(IRI identifier) {
+                return this;
+            }
+
+            @Override
+            public TripleListener triple(Triple triple) {
+                triples.add(triple);
+                return this;
+            }
+        };
+    }
+
     public void testTurtleReader() throws Exception {
         StringBuilder sb = new StringBuilder();
         String filename = "turtle-demo.ttl";
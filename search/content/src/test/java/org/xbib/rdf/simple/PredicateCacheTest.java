@@ -0,0 +1,28 @@
+package org.xbib.rdf.simple;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.iri.IRI;
+import org.xbib.rdf.Property;
+
+public class PredicateCacheTest extends Assert {
+
+    @Test
+    public void testSharedPredicates() {
+        PredicateCache cache = new PredicateCache(16);
+        Property p1 = cache.get("dc:title");
+        Property p2 = cache.get("dc:title");
+        assertSame(p1, p2);
+        assertEquals(p1.id().toString(), IRI.builder().curi("dc:title").build().toString());
+        assertEquals(cache.getMissCount(), 1L);
+        assertEquals(cache.getHitCount(), 1L);
+        assertEquals(cache.size(), 1L);
+    }
+
+    @Test
+    public void testFactory() {
+        SimpleFactory<?, Property, ?> factory = SimpleFactory.getInstance();
+        assertSame(factory.asPredicate("dc:creator"), factory.asPredicate("dc:creator"));
+        assertNull(factory.asPredicate(null));
+    }
+}
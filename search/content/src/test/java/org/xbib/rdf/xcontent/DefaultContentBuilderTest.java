@@ -2,6 +2,7 @@ package org.xbib.rdf.xcontent;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
+import org.xbib.common.io.stream.BytesStreamOutput;
 import org.xbib.iri.IRI;
 import org.xbib.logging.Logger;
 import org.xbib.logging.Loggers;
@@ -52,4 +53,21 @@ public class DefaultContentBuilderTest<S extends Identifier, P extends Property,
         logger.info("embbeded: {}", result);
     }
 
+    @Test
+    public void testBuildIntoBuffer() throws Exception {
+        Resource<S, P, O> resource = new SimpleResource<>();
+        resource.id(IRI.create("urn:resource"))
+                .add("urn:property", "Hello World")
+                .add("urn:link", IRI.create("urn:pointer"));
+        ResourceContext context = resource.context();
+        DefaultContentBuilder defaultContentBuilder = new DefaultContentBuilder();
+        String result = defaultContentBuilder.build(context, resource);
+        BytesStreamOutput out = new BytesStreamOutput();
+        defaultContentBuilder.build(context, resource, out);
+        defaultContentBuilder.build(context, resource, out);
+        assertEquals(out.bytes().toUtf8(), result + result);
+        out.reset();
+        defaultContentBuilder.build(context, resource, out);
+        assertEquals(out.bytes().toUtf8(), result);
+    }
 }
@@ -31,6 +31,7 @@
  */
 package org.xbib.elasticsearch;
 
+import org.xbib.common.io.stream.BytesStreamOutput;
 import org.xbib.elements.ElementOutput;
 import org.xbib.logging.Logger;
 import org.xbib.logging.LoggerFactory;
@@ -39,12 +40,17 @@ import org.xbib.rdf.context.ResourceContext;
 import org.xbib.rdf.xcontent.ContentBuilder;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Write RDF resources as Elasticsearch bulk format
  *
+ * If the sink writes to an output stream, each bulk entry is built in a byte buffer
+ * of the calling thread, which is reused for the next entry, and copied to the
+ * stream in one piece. No strings are created for the resource content.
  *
  * @param <C>
  * @param <R>
@@ -56,14 +62,29 @@ public class BulkFormatSink<C extends ResourceContext, R extends Resource>
 
     private final AtomicInteger resourceCounter = new AtomicInteger(0);
 
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ThreadLocal<BytesStreamOutput> buffers = new ThreadLocal<BytesStreamOutput>() {
+        @Override
+        protected BytesStreamOutput initialValue() {
+            return new BytesStreamOutput(8192);
+        }
+    };
+
     private Writer writer;
 
+    private OutputStream out;
+
     private boolean enabled;
 
     public BulkFormatSink(Writer writer) {
         this.writer = writer;
     }
 
+    public BulkFormatSink(OutputStream out) {
+        this.out = out;
+    }
+
     @Override
     public boolean enabled() {
         this.enabled = Boolean.parseBoolean(System.getProperty(getClass().getName())) || enabled;
@@ -124,9 +145,53 @@ public class BulkFormatSink<C extends ResourceContext, R extends Resource>
                     .append(index).append("\",\"_type\":\"")
                     .append(type).append("\",\"_id\":\"")
                     .append(id).append("\"}}\n");
+            if (out != null) {
+                write(sb.toString().getBytes(UTF8));
+            } else {
+                writer.write(sb.toString());
+            }
         }
     };
 
+    /**
+     * Build a bulk index entry into the byte buffer of the current thread
+     * and write it to the output stream.
+     */
+    private void index(C context, R resource, ContentBuilder<C, R> contentBuilder) throws IOException {
+        String index = makeIndex(resource);
+        if (index == null) {
+            throw new IOException("index must not be null, no host set in IRI?");
+        }
+        String type = makeType(resource);
+        if (type == null) {
+            throw new IOException("type must not be null, no query set in IRI?");
+        }
+        String id = makeId(resource);
+        if (id == null) {
+            throw new IOException("id must not be null, no fragment set in IRI?");
+        }
+        BytesStreamOutput buffer = buffers.get();
+        buffer.reset();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"index\":{\"_index\":\"")
+                .append(index).append("\",\"_type\":\"")
+                .append(type).append("\",\"_id\":\"")
+                .append(id).append("\"}}\n");
+        byte[] b = sb.toString().getBytes(UTF8);
+        buffer.writeBytes(b, 0, b.length);
+        contentBuilder.build(context, resource, buffer);
+        buffer.writeByte((byte) '\n');
+        synchronized (out) {
+            buffer.bytes().writeTo(out);
+        }
+    }
+
+    private void write(byte[] b) throws IOException {
+        synchronized (out) {
+            out.write(b);
+        }
+    }
+
     @Override
     public void output(C context, ContentBuilder<C, R> contentBuilder) throws IOException {
         R resource = (R)context.resource();
@@ -138,6 +203,8 @@ public class BulkFormatSink<C extends ResourceContext, R extends Resource>
         }
         if (resource.isDeleted()) {
             resourceIndexer.delete(resource);
+        } else if (out != null) {
+            index(context, resource, contentBuilder);
         } else {
             resourceIndexer.index(resource, contentBuilder.build(context, resource));
         }
@@ -146,7 +213,13 @@ public class BulkFormatSink<C extends ResourceContext, R extends Resource>
 
     public void flush() {
         try {
-            writer.flush();
+            if (out != null) {
+                synchronized (out) {
+                    out.flush();
+                }
+            } else {
+                writer.flush();
+            }
         } catch (IOException e) {
             logger.error(e.getMessage(), e);
         }
@@ -34,6 +34,7 @@ package org.xbib.elasticsearch;
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.xbib.common.io.stream.BytesStreamOutput;
 import org.xbib.elasticsearch.support.client.DocumentIngest;
 import org.xbib.elements.ElementOutput;
 import org.xbib.rdf.Resource;
@@ -43,6 +44,9 @@ import org.xbib.rdf.xcontent.ContentBuilder;
 /**
  * Index RDF resources into Elasticsearch
  *
+ * The resource content is built in a byte buffer of the calling thread which is reused
+ * for the next resource. The document ingest accepts the source only as a string,
+ * so the buffer is still decoded into one string per document.
  *
  * @param <C>
  * @param <R>
@@ -54,6 +58,13 @@ public class ResourceSink<C extends ResourceContext, R extends Resource>
 
     private final AtomicInteger resourceCounter = new AtomicInteger(0);
 
+    private final ThreadLocal<BytesStreamOutput> buffers = new ThreadLocal<BytesStreamOutput>() {
+        @Override
+        protected BytesStreamOutput initialValue() {
+            return new BytesStreamOutput(8192);
+        }
+    };
+
     private boolean enabled;
 
     public ResourceSink(final DocumentIngest ingester) {
@@ -124,7 +135,11 @@ public class ResourceSink<C extends ResourceContext, R extends Resource>
         if (resource.isDeleted()) {
             resourceIndexer.delete(resource);
         } else {
-            resourceIndexer.index(resource, contentBuilder.build(context, resource));
+            BytesStreamOutput buffer = buffers.get();
+            buffer.reset();
+            contentBuilder.build(context, resource, buffer);
+            // the document ingest takes the source as string
+            resourceIndexer.index(resource, buffer.bytes().toUtf8());
         }
         resourceCounter.incrementAndGet();
     }
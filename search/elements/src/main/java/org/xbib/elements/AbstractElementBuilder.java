@@ -35,6 +35,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.xbib.elements.metrics.ElementMapperMetrics;
 import org.xbib.logging.Logger;
 import org.xbib.logging.LoggerFactory;
 import org.xbib.rdf.context.ResourceContext;
@@ -56,6 +57,8 @@ public abstract class AbstractElementBuilder<K, V, E extends Element, C extends
 
     private final List<ElementOutput> outputs = new ArrayList();
 
+    private ElementMapperMetrics metrics;
+
     @Override
     public void build(E element, K key, V value) {
     }
@@ -79,7 +82,11 @@ public abstract class AbstractElementBuilder<K, V, E extends Element, C extends
         for (ElementOutput output : outputs) {
             if (output.enabled()) {
                 try {
-                   output.output(context, context.contentBuilder() );
+                    long t0 = System.nanoTime();
+                    output.output(context, context.contentBuilder() );
+                    if (metrics != null) {
+                        metrics.output(output.getClass()).update(System.nanoTime() - t0);
+                    }
                 } catch (IOException e) {
                     logger.error("output failed: " + e.getMessage(), e);
                     output.enabled(false);
@@ -93,6 +100,17 @@ public abstract class AbstractElementBuilder<K, V, E extends Element, C extends
         return contexts.get();
     }
 
+    /**
+     * Measure the latency of the outputs.
+     *
+     * @param metrics the metrics
+     * @return this builder
+     */
+    public AbstractElementBuilder<K, V, E, C> metrics(ElementMapperMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
     @Override
     public AbstractElementBuilder<K, V, E, C> addOutput(ElementOutput output) {
         outputs.add(output);
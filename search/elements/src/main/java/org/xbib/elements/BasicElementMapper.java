@@ -32,30 +32,38 @@
 package org.xbib.elements;
 
 import org.xbib.classloader.URIClassLoader;
+import org.xbib.elements.metrics.ElementMapperMetrics;
 import org.xbib.keyvalue.KeyValue;
 import org.xbib.keyvalue.KeyValueStreamListener;
 import org.xbib.logging.Logger;
 import org.xbib.logging.LoggerFactory;
 import org.xbib.rdf.context.ResourceContext;
+import org.xbib.rdf.simple.SimpleFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Basic element mapper
  *
+ * Records are collected into batches which are handed over to the pipelines
+ * through a bounded queue. The batch size and the queue capacity can be configured,
+ * a batch size of 1 hands over each record as soon as it is complete.
+ *
+ * Metrics of the pipelines, the elements and the outputs are registered as MBean,
+ * and can be written to the log periodically.
+ *
  * @param <K>
  * @param <V>
  * @param <E>
@@ -68,7 +76,7 @@ public class BasicElementMapper<K, V, E extends Element, C extends ResourceConte
 
     protected AbstractSpecification specification;
 
-    protected final BlockingQueue<List<KeyValue>> queue;
+    protected KeyValueQueue queue;
 
     protected final Map map;
 
@@ -78,10 +86,22 @@ public class BasicElementMapper<K, V, E extends Element, C extends ResourceConte
 
     private ExecutorService service;
 
-    private LinkedList<KeyValue> keyvalues;
+    private ScheduledExecutorService reporter;
+
+    private ElementMapperMetrics metrics;
+
+    private long metricsInterval;
+
+    private KeyValueBatch batch;
+
+    private List<KeyValue> keyvalues;
 
     private int numPipelines;
 
+    private int batchSize = 64;
+
+    private int queueSize;
+
     private boolean detectUnknownKeys;
 
     public BasicElementMapper(String path, String format, AbstractSpecification specification) {
@@ -90,8 +110,8 @@ public class BasicElementMapper<K, V, E extends Element, C extends ResourceConte
 
     public BasicElementMapper(ClassLoader cl, String path, String format, AbstractSpecification specification) {
         this.specification = specification;
-        this.queue = new SynchronousQueue<>(true);
         this.pipelines = new HashSet();
+        this.metrics = new ElementMapperMetrics(format);
         try {
             this.map = specification.getElementMap(cl, path, format);
         } catch (IOException | ClassNotFoundException | InstantiationException | IllegalAccessException | NoSuchMethodException | IllegalArgumentException | InvocationTargetException e) {
@@ -108,15 +128,62 @@ public class BasicElementMapper<K, V, E extends Element, C extends ResourceConte
         return this;
     }
 
+    /**
+     * Set the number of records per batch.
+     *
+     * @param batchSize the batch size
+     * @return this mapper
+     */
+    public BasicElementMapper batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of batches waiting for the pipelines.
+     * Default is twice the number of pipelines.
+     *
+     * @param queueSize the queue size
+     * @return this mapper
+     */
+    public BasicElementMapper queueSize(int queueSize) {
+        this.queueSize = queueSize;
+        return this;
+    }
+
     public BasicElementMapper detectUnknownKeys(boolean enabled) {
         this.detectUnknownKeys = enabled;
         return this;
     }
 
+    /**
+     * Set the interval for writing metrics to the log. Default is 0, no metrics in the log.
+     *
+     * @param seconds the interval in seconds
+     * @return this mapper
+     */
+    public BasicElementMapper metricsInterval(long seconds) {
+        this.metricsInterval = seconds;
+        return this;
+    }
+
+    public ElementMapperMetrics metrics() {
+        return metrics;
+    }
+
     public Set<KeyValuePipeline> pipelines() {
         return pipelines;
     }
 
+    /**
+     * The queue to the pipelines. Useful for queue depth and backpressure statistics.
+     *
+     * @return the queue, or null if the mapper is not started
+     */
+    public KeyValueQueue queue() {
+        return queue;
+    }
+
     public BasicElementMapper start(ElementBuilderFactory factory) {
         if (numPipelines == 0) {
             numPipelines = 1;
@@ -125,17 +192,38 @@ public class BasicElementMapper<K, V, E extends Element, C extends ResourceConte
         if (numPipelines >= 256) {
             numPipelines = 256;
         }
+        if (batchSize < 1) {
+            batchSize = 1;
+        }
+        if (queueSize < 1) {
+            queueSize = 2 * numPipelines;
+        }
         if (service == null) {
             this.service = Executors.newFixedThreadPool(numPipelines);
         }
+        this.queue = new KeyValueQueue(queueSize, batchSize);
+        this.batch = queue.newBatch();
         this.factory = factory;
+        metrics.queue(queue);
         for (int i = 0; i < numPipelines; i++) {
             KeyValuePipeline pipeline = createPipeline(i)
-                    .detectUnknownKeys(detectUnknownKeys);
+                    .detectUnknownKeys(detectUnknownKeys)
+                    .metrics(metrics);
             pipelines.add(pipeline);
             service.submit(pipeline);
         }
-        logger.info("starting element mapper with {} pipelines", numPipelines);
+        metrics.register();
+        if (metricsInterval > 0 && reporter == null) {
+            this.reporter = Executors.newSingleThreadScheduledExecutor();
+            reporter.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    metrics.log();
+                }
+            }, metricsInterval, metricsInterval, TimeUnit.SECONDS);
+        }
+        logger.info("starting element mapper with {} pipelines, batch size {}, queue size {}",
+                numPipelines, batchSize, queueSize);
         return this;
     }
 
@@ -143,32 +231,64 @@ public class BasicElementMapper<K, V, E extends Element, C extends ResourceConte
         if (service == null) {
             return;
         }
-        for (int i = 0; i < numPipelines; i++) {
-            try {
-                queue.put(new LinkedList()); // send poison element to all numPipelines
-            } catch (InterruptedException e) {
-                logger.error("interrupted while close()");
+        try {
+            flush();
+            for (int i = 0; i < numPipelines; i++) {
+                queue.put(queue.poison()); // send poison element to all numPipelines
             }
+            service.shutdown();
+            // the queue is bounded, so the pipelines may still be busy with the last batches
+            if (!service.awaitTermination(60L, TimeUnit.SECONDS)) {
+                logger.warn("pipelines did not terminate in time");
+                service.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            logger.error("interrupted while close()");
+            service.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+        logger.info("pipelines closed, queue: {}", queue);
+        logger.info("predicate cache: {}", SimpleFactory.getInstance().predicateCache());
+        metrics.log();
+        metrics.unregister();
+    }
+
+    /**
+     * Hand over the records collected so far, even if the current batch is not full.
+     */
+    public void flush() throws InterruptedException {
+        if (batch != null && !batch.isEmpty()) {
+            queue.put(batch);
+            batch = queue.newBatch();
         }
-        service.shutdownNow();
-        logger.info("pipelines closed");
     }
 
     @Override
     public void begin() {
-        keyvalues = new LinkedList();
+        if (keyvalues != null) {
+            // previous record was not ended, discard it
+            keyvalues.clear();
+        } else {
+            keyvalues = batch.next();
+        }
     }
 
     @Override
     public void keyValue(K key, V value) {
+        if (keyvalues == null) {
+            throw new IllegalStateException("key/value outside of a record, begin() was not called");
+        }
         keyvalues.add(new KeyValue(key, value));
     }
 
     @Override
     public void end() {
         try {
-            queue.put((List<KeyValue>) keyvalues.clone());
-            keyvalues.clear();
+            complete();
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
         }
@@ -180,15 +300,31 @@ public class BasicElementMapper<K, V, E extends Element, C extends ResourceConte
             // add marker element
             if (keyvalues != null) {
                 keyvalues.add(new KeyValue(null, info));
-                // move shallow copy of key/values to pipeline, this ensures thread safety
-                queue.put((List<KeyValue>) keyvalues.clone());
-                keyvalues.clear();
+                complete();
             }
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
         }
     }
 
+    /**
+     * The current record is complete. Move the batch to the pipelines if it is full.
+     * After a handover, the batch belongs to the pipelines, this ensures thread safety.
+     */
+    private void complete() throws InterruptedException {
+        if (keyvalues == null) {
+            return;
+        }
+        if (keyvalues.isEmpty()) {
+            batch.drop();
+        }
+        keyvalues = null;
+        if (batch.isFull()) {
+            queue.put(batch);
+            batch = queue.newBatch();
+        }
+    }
+
     /**
      * Helper method for diagnosing unknown keys.
      *
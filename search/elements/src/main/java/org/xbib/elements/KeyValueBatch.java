@@ -0,0 +1,116 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.elements;
+
+import org.xbib.keyvalue.KeyValue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A batch of key/value records for handing over to pipelines.
+ *
+ * The record buffers of a batch are kept when the batch is recycled,
+ * so a producer can fill them again without allocating new lists.
+ */
+public class KeyValueBatch {
+
+    private final List<KeyValue>[] records;
+
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public KeyValueBatch(int capacity) {
+        this.records = new List[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * Get the next free record buffer of this batch.
+     *
+     * @return an empty record buffer
+     * @throws IllegalStateException if the batch is full
+     */
+    public List<KeyValue> next() {
+        if (size >= records.length) {
+            throw new IllegalStateException("batch is full");
+        }
+        List<KeyValue> record = records[size];
+        if (record == null) {
+            record = new ArrayList<>();
+            records[size] = record;
+        } else {
+            record.clear();
+        }
+        size++;
+        return record;
+    }
+
+    /**
+     * Drop the last record buffer obtained by next(), e.g. if it remained empty.
+     */
+    public void drop() {
+        if (size > 0) {
+            records[--size].clear();
+        }
+    }
+
+    public List<KeyValue> get(int i) {
+        return records[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return records.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == records.length;
+    }
+
+    /**
+     * Reset this batch for reuse. The record buffers are retained.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            records[i].clear();
+        }
+        size = 0;
+    }
+}
@@ -32,18 +32,18 @@
 
 package org.xbib.elements;
 
+import org.xbib.elements.metrics.ElementMapperMetrics;
+import org.xbib.elements.metrics.PipelineMetrics;
 import org.xbib.keyvalue.KeyValue;
 import org.xbib.logging.Logger;
 import org.xbib.logging.LoggerFactory;
 import org.xbib.rdf.context.ResourceContext;
 
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
-import java.util.concurrent.BlockingQueue;
 
 /**
  * A key/value pipeline for threaded processing of elements
@@ -59,7 +59,7 @@ public class KeyValuePipeline<K,V,E extends Element,C extends ResourceContext>
 
     protected final AbstractSpecification specification;
 
-    private final BlockingQueue<List<KeyValue>> queue;
+    private final KeyValueQueue queue;
 
     private final ElementBuilder<K,V,E,C> builder;
 
@@ -67,18 +67,25 @@ public class KeyValuePipeline<K,V,E extends Element,C extends ResourceContext>
 
     private final Logger logger;
 
+    private final int number;
+
     private long counter;
 
+    private ElementMapperMetrics mapperMetrics;
+
+    private PipelineMetrics metrics;
+
     protected boolean detectUnknownKeys;
 
     protected Set<String> unknownKeys;
 
     public KeyValuePipeline(int i,
                             AbstractSpecification specification,
-                            BlockingQueue<List<KeyValue>> queue,
+                            KeyValueQueue queue,
                             Map map,
                             ElementBuilderFactory<K, V, E, C> factory) {
         this.logger = LoggerFactory.getLogger("pipeline" + i);
+        this.number = i;
         this.specification = specification;
         this.queue = queue;
         this.map = map;
@@ -92,40 +99,43 @@ public class KeyValuePipeline<K,V,E extends Element,C extends ResourceContext>
         return this;
     }
 
+    /**
+     * Collect metrics of this pipeline and of the element builder.
+     *
+     * @param mapperMetrics the metrics of the element mapper
+     * @return this pipeline
+     */
+    public KeyValuePipeline metrics(ElementMapperMetrics mapperMetrics) {
+        this.mapperMetrics = mapperMetrics;
+        this.metrics = mapperMetrics.newPipeline(number);
+        if (builder instanceof AbstractElementBuilder) {
+            ((AbstractElementBuilder) builder).metrics(mapperMetrics);
+        }
+        return this;
+    }
+
+    public PipelineMetrics metrics() {
+        return metrics;
+    }
+
     public Boolean call() {
         try {
             logger.info("key/value pipeline {} starting", getClass().getName());
             while(true) {
-                List<KeyValue> e = queue.take();
+                long t0 = System.nanoTime();
+                KeyValueBatch batch = queue.take();
+                if (metrics != null) {
+                    metrics.takeWait(System.nanoTime() - t0);
+                }
                 // poison element? then quit
-                if (e.isEmpty()) {
+                if (batch.isEmpty()) {
                     logger.info("key/value pipeline ending {}", getClass());
                     break;
                 }
-                // only a single marker element in list? then skip
-                if (e.size() == 1) {
-                    if (e.get(0).key() == null) {
-                        continue;
-                    }
-                }
-                builder.begin();
-                boolean end = false;
-                Iterator<KeyValue> it = e.iterator();
-                while (it.hasNext()) {
-                    KeyValue<K, V> kv = it.next();
-                    K key = kv.key();
-                    V value = kv.value();
-                    if (key == null) {
-                        builder.end(value);
-                        end = true;
-                    } else {
-                        build(key, value);
-                    }
-                    counter++;
-                }
-                if (!end) {
-                    builder.end();
+                for (int i = 0; i < batch.size(); i++) {
+                    process(batch.get(i));
                 }
+                queue.recycle(batch);
             }
         } catch (InterruptedException ex) {
             logger.warn("key/value pipeline {} interrupted", getClass());
@@ -137,6 +147,44 @@ public class KeyValuePipeline<K,V,E extends Element,C extends ResourceContext>
         return true;
     }
 
+    private void process(List<KeyValue> e) {
+        if (e.isEmpty()) {
+            return;
+        }
+        // only a single marker element in list? then skip
+        if (e.size() == 1) {
+            if (e.get(0).key() == null) {
+                return;
+            }
+        }
+        long t0 = System.nanoTime();
+        long t1 = t0;
+        builder.begin();
+        boolean end = false;
+        // indexed access, record buffers are array lists
+        for (int i = 0; i < e.size(); i++) {
+            KeyValue<K, V> kv = e.get(i);
+            K key = kv.key();
+            V value = kv.value();
+            if (key == null) {
+                t1 = System.nanoTime();
+                builder.end(value);
+                end = true;
+            } else {
+                build(key, value);
+            }
+            counter++;
+        }
+        if (!end) {
+            t1 = System.nanoTime();
+            builder.end();
+        }
+        if (metrics != null) {
+            long t2 = System.nanoTime();
+            metrics.record(e.size(), t1 - t0, t2 - t1);
+        }
+    }
+
     public long getCounter() {
         return counter;
     }
@@ -152,4 +200,25 @@ public class KeyValuePipeline<K,V,E extends Element,C extends ResourceContext>
     protected void build(K key, V value) {
     }
 
+    /**
+     * Count a key which is not mapped to an element.
+     */
+    protected void unknownKey() {
+        if (metrics != null) {
+            metrics.unknownKey();
+        }
+    }
+
+    /**
+     * Add the mapping time of an element.
+     *
+     * @param element the element
+     * @param nanos the time in nanoseconds
+     */
+    protected void elementTime(Element element, long nanos) {
+        if (mapperMetrics != null && element != null) {
+            mapperMetrics.element(element.getClass()).update(nanos);
+        }
+    }
+
 }
@@ -0,0 +1,207 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.elements;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue of key/value batches between an element mapper and its pipelines.
+ *
+ * Consumed batches are returned to a pool for reuse. The queue keeps counters
+ * about depth and wait times, so backpressure can be observed: a high put wait
+ * means the pipelines are too slow, a high take wait means the producer is too slow.
+ */
+public class KeyValueQueue {
+
+    private final BlockingQueue<KeyValueBatch> queue;
+
+    private final BlockingQueue<KeyValueBatch> pool;
+
+    private final int batchSize;
+
+    private final AtomicLong puts = new AtomicLong();
+
+    private final AtomicLong takes = new AtomicLong();
+
+    private final AtomicLong putWaits = new AtomicLong();
+
+    private final AtomicLong takeWaits = new AtomicLong();
+
+    private final AtomicLong putWaitNanos = new AtomicLong();
+
+    private final AtomicLong takeWaitNanos = new AtomicLong();
+
+    private final AtomicLong records = new AtomicLong();
+
+    private volatile int maxDepth;
+
+    public KeyValueQueue(int capacity, int batchSize) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        // the pool must hold all batches in flight: queued, in the pipelines, and the one being filled
+        this.pool = new ArrayBlockingQueue<>(2 * capacity + 1);
+        this.batchSize = batchSize;
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Obtain an empty batch, preferably a recycled one.
+     *
+     * @return an empty batch
+     */
+    public KeyValueBatch newBatch() {
+        KeyValueBatch batch = pool.poll();
+        return batch != null ? batch : new KeyValueBatch(batchSize);
+    }
+
+    /**
+     * Return a consumed batch to the pool.
+     *
+     * @param batch the batch
+     */
+    public void recycle(KeyValueBatch batch) {
+        batch.clear();
+        pool.offer(batch);
+    }
+
+    public void put(KeyValueBatch batch) throws InterruptedException {
+        if (!queue.offer(batch)) {
+            long t0 = System.nanoTime();
+            queue.put(batch);
+            putWaitNanos.addAndGet(System.nanoTime() - t0);
+            putWaits.incrementAndGet();
+        }
+        puts.incrementAndGet();
+        records.addAndGet(batch.size());
+        int depth = queue.size();
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    public KeyValueBatch take() throws InterruptedException {
+        KeyValueBatch batch = queue.poll();
+        if (batch == null) {
+            long t0 = System.nanoTime();
+            batch = queue.take();
+            takeWaitNanos.addAndGet(System.nanoTime() - t0);
+            takeWaits.incrementAndGet();
+        }
+        takes.incrementAndGet();
+        return batch;
+    }
+
+    /**
+     * The poison batch. It is empty and tells a pipeline to stop.
+     *
+     * @return a poison batch
+     */
+    public KeyValueBatch poison() {
+        return new KeyValueBatch(1);
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    public int remainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    public long getPuts() {
+        return puts.get();
+    }
+
+    public long getTakes() {
+        return takes.get();
+    }
+
+    public long getRecords() {
+        return records.get();
+    }
+
+    /**
+     * The number of times the producer was blocked because the queue was full.
+     *
+     * @return number of blocked puts
+     */
+    public long getPutWaits() {
+        return putWaits.get();
+    }
+
+    public long getPutWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(putWaitNanos.get());
+    }
+
+    /**
+     * The number of times a pipeline was blocked because the queue was empty.
+     *
+     * @return number of blocked takes
+     */
+    public long getTakeWaits() {
+        return takeWaits.get();
+    }
+
+    public long getTakeWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(takeWaitNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "depth=" + depth()
+                + " maxDepth=" + maxDepth
+                + " remainingCapacity=" + remainingCapacity()
+                + " batchSize=" + batchSize
+                + " records=" + records.get()
+                + " puts=" + puts.get()
+                + " putWaits=" + putWaits.get()
+                + " putWaitMillis=" + getPutWaitMillis()
+                + " takes=" + takes.get()
+                + " takeWaits=" + takeWaits.get()
+                + " takeWaitMillis=" + getTakeWaitMillis();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.elements.marc;
+
+import org.xbib.elements.AbstractSpecification;
+import org.xbib.elements.Element;
+import org.xbib.marc.Field;
+import org.xbib.marc.FieldCollection;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compiled, immutable index over an element map.
+ *
+ * Three-digit numeric tags are resolved by an array indexed from 000 to 999, other tags
+ * by a hash map. Below the tags, indicator and subfield levels form a trie.
+ *
+ * A field collection is resolved directly, with the same result as looking up the key
+ * from FieldCollection.toSpec() with AbstractSpecification.getElement(), but
+ * without building and parsing the spec string. Only field collections with more than one tag,
+ * which are very unlikely in MARC, take the string-based path.
+ */
+public class ElementIndex {
+
+    private final static int MAX_INDICATORS = 8;
+
+    private final static String[] SINGLE_CHARS = new String[128];
+
+    static {
+        for (char ch = 0; ch < 128; ch++) {
+            SINGLE_CHARS[ch] = String.valueOf(ch).intern();
+        }
+    }
+
+    private final Object[] numericTags = new Object[1000];
+
+    private final Map<String, Object> otherTags = new HashMap<>();
+
+    private final AbstractSpecification specification;
+
+    private final Map map;
+
+    public ElementIndex(AbstractSpecification specification, Map map) {
+        this.specification = specification;
+        this.map = map;
+        for (Object o : map.entrySet()) {
+            Map.Entry me = (Map.Entry) o;
+            String tag = me.getKey().toString();
+            Object node = compile(me.getValue());
+            int n = numericTag(tag);
+            if (n >= 0) {
+                numericTags[n] = node;
+            } else {
+                otherTags.put(tag, node);
+            }
+        }
+    }
+
+    /**
+     * Resolve the element for a field collection.
+     *
+     * @param fields the field collection
+     * @return the element, or null if no element is mapped to the field collection
+     */
+    public Element getElement(FieldCollection fields) {
+        if (fields.isEmpty()) {
+            return null;
+        }
+        String tag = fields.getFirst().tag();
+        if (tag == null) {
+            return specification.getElement(fields.toSpec(), map);
+        }
+        // two bit masks for each indicator position and for the subfield IDs, in that order
+        long[] masks = new long[2 * (MAX_INDICATORS + 1)];
+        int l = -1;
+        for (Field field : fields) {
+            if (!tag.equals(field.tag())) {
+                return specification.getElement(fields.toSpec(), map);
+            }
+            String indicator = field.indicator();
+            int len = indicator != null ? indicator.length() : 0;
+            if (l < 0 && len > 0) {
+                if (len > MAX_INDICATORS) {
+                    return specification.getElement(fields.toSpec(), map);
+                }
+                l = len;
+            }
+            for (int i = 0; i < len && i < l; i++) {
+                if (!set(masks, i, indicator.charAt(i))) {
+                    return specification.getElement(fields.toSpec(), map);
+                }
+            }
+            String subfieldId = field.subfieldId();
+            if (subfieldId != null) {
+                for (int i = 0; i < subfieldId.length(); i++) {
+                    if (!set(masks, MAX_INDICATORS, subfieldId.charAt(i))) {
+                        return specification.getElement(fields.toSpec(), map);
+                    }
+                }
+            }
+        }
+        if (l < 0) {
+            l = 0;
+        }
+        int n = numericTag(tag);
+        Object node = n >= 0 ? numericTags[n] : otherTags.get(tag);
+        // walk down the indicator positions and the subfield IDs
+        for (int i = 0; i <= l; i++) {
+            if (node == null) {
+                return null;
+            }
+            if (node instanceof Element) {
+                return (Element) node;
+            }
+            int pos = i < l ? i : MAX_INDICATORS;
+            node = ((Map<String, Object>) node).get(segment(masks, pos));
+        }
+        return node instanceof Element ? (Element) node : null;
+    }
+
+    private static Object compile(Object o) {
+        if (o instanceof Map) {
+            Map<String, Object> m = new HashMap<>();
+            for (Object e : ((Map) o).entrySet()) {
+                Map.Entry me = (Map.Entry) e;
+                m.put(me.getKey().toString(), compile(me.getValue()));
+            }
+            return Collections.unmodifiableMap(m);
+        }
+        return o;
+    }
+
+    private static int numericTag(String tag) {
+        if (tag.length() != 3) {
+            return -1;
+        }
+        int n = 0;
+        for (int i = 0; i < 3; i++) {
+            char ch = tag.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+            n = n * 10 + (ch - '0');
+        }
+        return n;
+    }
+
+    private static boolean set(long[] masks, int pos, char ch) {
+        if (ch >= 128) {
+            return false;
+        }
+        masks[2 * pos + (ch >> 6)] |= 1L << (ch & 63);
+        return true;
+    }
+
+    /**
+     * Build the segment for a position from the bit mask. Like in FieldCollection.toSpec(),
+     * the characters are unique and sorted.
+     */
+    private static String segment(long[] masks, int pos) {
+        long lo = masks[2 * pos];
+        long hi = masks[2 * pos + 1];
+        int count = Long.bitCount(lo) + Long.bitCount(hi);
+        if (count == 0) {
+            return "";
+        }
+        if (count == 1) {
+            return lo != 0 ? SINGLE_CHARS[Long.numberOfTrailingZeros(lo)] :
+                    SINGLE_CHARS[64 + Long.numberOfTrailingZeros(hi)];
+        }
+        char[] chars = new char[count];
+        int k = 0;
+        while (lo != 0) {
+            chars[k++] = (char) Long.numberOfTrailingZeros(lo);
+            lo &= lo - 1;
+        }
+        while (hi != 0) {
+            chars[k++] = (char) (64 + Long.numberOfTrailingZeros(hi));
+            hi &= hi - 1;
+        }
+        return new String(chars);
+    }
+}
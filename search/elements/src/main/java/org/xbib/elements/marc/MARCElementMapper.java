@@ -54,6 +54,21 @@ public class MARCElementMapper extends BasicElementMapper {
         return this;
     }
 
+    public MARCElementMapper batchSize(int batchSize) {
+        super.batchSize(batchSize);
+        return this;
+    }
+
+    public MARCElementMapper queueSize(int queueSize) {
+        super.queueSize(queueSize);
+        return this;
+    }
+
+    public MARCElementMapper metricsInterval(long seconds) {
+        super.metricsInterval(seconds);
+        return this;
+    }
+
     public MARCElementMapper detectUnknownKeys(boolean enabled) {
         super.detectUnknownKeys(enabled);
         return this;
@@ -37,13 +37,61 @@ import org.xbib.logging.Logger;
 import org.xbib.logging.LoggerFactory;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MARCSpecification extends AbstractSpecification {
 
     private final static Logger logger = LoggerFactory.getLogger(MARCSpecification.class.getName());
 
+    private final static Map<Element, MappingPlan> plans = new ConcurrentHashMap();
+
+    private final static Map<Map, ElementIndex> indexes = new IdentityHashMap();
+
+    /**
+     * Get the compiled index of an element map. The index is built once per element map
+     * and shared by all pipelines.
+     *
+     * @param map the element map
+     * @return the element index
+     */
+    public ElementIndex getIndex(Map map) {
+        synchronized (indexes) {
+            ElementIndex index = indexes.get(map);
+            if (index == null) {
+                index = new ElementIndex(this, map);
+                indexes.put(map, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Get the mapping plan of an element. Plans are compiled when the element map is loaded.
+     * If the settings of the element have been replaced since, the plan is compiled again.
+     *
+     * @param element the element
+     * @return the mapping plan
+     */
+    public MappingPlan getPlan(Element element) {
+        MappingPlan plan = plans.get(element);
+        if (plan == null || plan.settings() != element.getSettings()) {
+            plan = compile(element);
+        }
+        return plan;
+    }
+
+    private MappingPlan compile(Element element) {
+        MappingPlan plan = MappingPlan.compile(element.getSettings(), element.getClass().getSimpleName());
+        plans.put(element, plan);
+        return plan;
+    }
+
     protected Map addSpec(String value, Element element, Map map) {
+        if (element != null) {
+            getPlan(element);
+        }
         int pos = value.indexOf('$');
         String h = pos > 0 ? value.substring(0,pos) : null;
         String t = pos > 0 ? value.substring(pos+1) : value;
@@ -0,0 +1,246 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.elements.marc;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A mapping plan is the compiled form of the JSON settings of a MARC element.
+ *
+ * The settings are resolved once when the specification is loaded. Subfield maps,
+ * tag predicates, indicator maps, value maps and value patterns are kept in
+ * typed, immutable form, so the pipelines do not have to walk the settings
+ * or compile regular expressions for each field.
+ */
+public class MappingPlan {
+
+    private final Map<String, Object> settings;
+
+    private final String predicate;
+
+    private final Map<String, Object> subfields;
+
+    private final Map<String, Object> indicators;
+
+    private final Map<String, String> tags;
+
+    private final Map<String, Map<String, Object>> subfieldsByPredicate;
+
+    private final Map<String, ValueMapping> valueMappings;
+
+    private MappingPlan(Map<String, Object> settings, String defaultPredicate) {
+        this.settings = settings;
+        Map<String, Object> s = settings != null ? settings : Collections.<String, Object>emptyMap();
+        Object o = s.get("_predicate");
+        this.predicate = o instanceof String ? (String) o : defaultPredicate;
+        this.subfields = asMap(s.get("subfields"));
+        this.indicators = asMap(s.get("indicators"));
+        Map<String, Object> t = asMap(s.get("tags"));
+        Map<String, String> tagMap = null;
+        if (s.containsKey("tags")) {
+            tagMap = new HashMap<>();
+            if (t != null) {
+                for (Map.Entry<String, Object> me : t.entrySet()) {
+                    if (me.getValue() != null) {
+                        tagMap.put(me.getKey(), me.getValue().toString());
+                    }
+                }
+            }
+        }
+        this.tags = tagMap != null ? Collections.unmodifiableMap(tagMap) : null;
+        Map<String, Map<String, Object>> byPredicate = new HashMap<>();
+        Map<String, ValueMapping> mappings = new HashMap<>();
+        for (Map.Entry<String, Object> me : s.entrySet()) {
+            String key = me.getKey();
+            Map<String, Object> m = asMap(me.getValue());
+            if (m != null) {
+                byPredicate.put(key, m);
+            }
+            if (key.endsWith("pattern") && me.getValue() instanceof List) {
+                String name = key.substring(0, key.length() - "pattern".length());
+                if (!mappings.containsKey(name)) {
+                    mappings.put(name, new ValueMapping(s.containsKey(name), asMap(s.get(name)), (List) me.getValue()));
+                }
+            } else if (!mappings.containsKey(key)) {
+                Object patterns = s.get(key + "pattern");
+                mappings.put(key, new ValueMapping(true, m, patterns instanceof List ? (List) patterns : null));
+            }
+        }
+        this.subfieldsByPredicate = Collections.unmodifiableMap(byPredicate);
+        this.valueMappings = Collections.unmodifiableMap(mappings);
+    }
+
+    /**
+     * Compile element settings into a mapping plan.
+     *
+     * @param settings the element settings, may be null
+     * @param defaultPredicate the predicate if the settings do not declare a _predicate
+     * @return the mapping plan
+     */
+    public static MappingPlan compile(Map<String, Object> settings, String defaultPredicate) {
+        return new MappingPlan(settings, defaultPredicate);
+    }
+
+    /**
+     * The settings this plan was compiled from.
+     *
+     * @return the settings
+     */
+    public Map<String, Object> settings() {
+        return settings;
+    }
+
+    /**
+     * The predicate for the resource, either the _predicate setting or the default predicate.
+     *
+     * @return the predicate
+     */
+    public String predicate() {
+        return predicate;
+    }
+
+    /**
+     * The default subfield map, null if the element has no subfield mapping.
+     *
+     * @return the subfield map or null
+     */
+    public Map<String, Object> subfields() {
+        return subfields;
+    }
+
+    /**
+     * The subfield map declared for a predicate, or the default subfield map.
+     *
+     * @param predicate the predicate
+     * @return the subfield map
+     */
+    public Map<String, Object> subfields(String predicate) {
+        Map<String, Object> m = predicate != null ? subfieldsByPredicate.get(predicate) : null;
+        return m != null ? m : subfields;
+    }
+
+    public Map<String, Object> indicators() {
+        return indicators;
+    }
+
+    /**
+     * The tag predicates, or null if the element does not use tag predicates.
+     *
+     * @return the tag map or null
+     */
+    public Map<String, String> tags() {
+        return tags;
+    }
+
+    /**
+     * Look up the value mapping for a property or an indicator field name.
+     *
+     * @param name the name
+     * @return the value mapping, or null if there is no such setting
+     */
+    public ValueMapping valueMapping(String name) {
+        return name != null ? valueMappings.get(name) : null;
+    }
+
+    private static Map<String, Object> asMap(Object o) {
+        return o instanceof Map ? (Map<String, Object>) o : null;
+    }
+
+    /**
+     * A value mapping, consisting of a value map and a list of value patterns with relations.
+     */
+    public static class ValueMapping {
+
+        private final boolean declared;
+
+        private final Map<String, Object> values;
+
+        private final Pattern[] patterns;
+
+        private final String[] relations;
+
+        ValueMapping(boolean declared, Map<String, Object> values, List<Map<String, String>> patternList) {
+            this.declared = declared;
+            this.values = values;
+            int n = patternList != null ? patternList.size() : 0;
+            this.patterns = new Pattern[n];
+            this.relations = new String[n];
+            for (int i = 0; i < n; i++) {
+                Map.Entry<String, String> me = patternList.get(i).entrySet().iterator().next();
+                patterns[i] = Pattern.compile(me.getKey(), Pattern.CASE_INSENSITIVE);
+                relations[i] = me.getValue();
+            }
+        }
+
+        /**
+         * True if the name of this mapping is declared in the settings.
+         *
+         * @return true if declared
+         */
+        public boolean isDeclared() {
+            return declared;
+        }
+
+        /**
+         * Map a value. First, the whole value is looked up in the value map, then
+         * the value up to the first blank, then the value patterns are tried in order.
+         *
+         * @param value the value
+         * @return the mapped value, or null if nothing matched
+         */
+        public String map(String value) {
+            if (values != null) {
+                Object o = values.get(value);
+                if (o != null) {
+                    return o.toString();
+                }
+                int pos = value.indexOf(' ');
+                if (pos > 0) {
+                    o = values.get(value.substring(0, pos));
+                    if (o != null) {
+                        return o.toString();
+                    }
+                }
+            }
+            for (int i = 0; i < patterns.length; i++) {
+                if (patterns[i].matcher(value).matches()) {
+                    return relations[i];
+                }
+            }
+            return null;
+        }
+    }
+}
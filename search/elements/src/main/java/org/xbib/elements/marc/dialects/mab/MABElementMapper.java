@@ -48,6 +48,21 @@ public class MABElementMapper
         return this;
     }
 
+    public MABElementMapper batchSize(int batchSize) {
+        super.batchSize(batchSize);
+        return this;
+    }
+
+    public MABElementMapper queueSize(int queueSize) {
+        super.queueSize(queueSize);
+        return this;
+    }
+
+    public MABElementMapper metricsInterval(long seconds) {
+        super.metricsInterval(seconds);
+        return this;
+    }
+
     public MABElementMapper detectUnknownKeys(boolean enabled) {
         super.detectUnknownKeys(enabled);
         return this;
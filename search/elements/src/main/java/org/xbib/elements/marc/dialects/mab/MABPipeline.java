@@ -34,9 +34,12 @@ package org.xbib.elements.marc.dialects.mab;
 import org.xbib.elements.AbstractSpecification;
 import org.xbib.elements.ElementBuilderFactory;
 import org.xbib.elements.KeyValuePipeline;
+import org.xbib.elements.KeyValueQueue;
+import org.xbib.elements.marc.ElementIndex;
+import org.xbib.elements.marc.MARCSpecification;
+import org.xbib.elements.marc.MappingPlan;
 import org.xbib.elements.marc.SubfieldValueMapper;
 import org.xbib.elements.marc.TagValueMapper;
-import org.xbib.keyvalue.KeyValue;
 import org.xbib.logging.Logger;
 import org.xbib.logging.LoggerFactory;
 import org.xbib.marc.Field;
@@ -44,22 +47,25 @@ import org.xbib.marc.FieldCollection;
 import org.xbib.rdf.Resource;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class MABPipeline extends KeyValuePipeline<FieldCollection, String, MABElement, MABContext> {
 
     private final Logger logger = LoggerFactory.getLogger(MABPipeline.class.getName());
 
+    private final MARCSpecification plans;
+
+    private final ElementIndex index;
+
     public MABPipeline(int i,
                        AbstractSpecification specification,
-                       BlockingQueue<List<KeyValue>> queue,
+                       KeyValueQueue queue,
                        Map map,
                        ElementBuilderFactory<FieldCollection, String, MABElement, MABContext> factory) {
         super(i, specification, queue, map, factory);
+        this.plans = specification instanceof MARCSpecification ?
+                (MARCSpecification) specification : new MARCSpecification();
+        this.index = plans.getIndex(map);
     }
 
     @Override
@@ -67,26 +73,31 @@ public class MABPipeline extends KeyValuePipeline<FieldCollection, String, MABEl
         if (fields == null) {
             return;
         }
-        String key = fields.toSpec();
+        long t0 = System.nanoTime();
         MABElement element = null;
         try {
-            element = (MABElement) specification.getElement(key, map());
+            element = (MABElement) index.getElement(fields);
         } catch (ClassCastException e) {
-            logger.error("no MABElement instance for key: '{}' class={}", key, element != null ? element.getClass() : null);
+            logger.error("no MABElement instance for key: '{}' class={}", fields, element != null ? element.getClass() : null);
         }
         if (element != null) {
+            if (value == null) {
+                // the value of lazily decoded fields is decoded here, when it is needed
+                value = fields.data();
+            }
             // element-based processing
             boolean done = element.fields(builder(), fields, value);
             if (done) {
                 return;
             }
-            Map<String, Object> subfields = (Map<String, Object>) element.getSettings().get("subfields");
-            if (subfields != null) {
-                Map<String, Object> defaultSubfields = subfields;
+            MappingPlan plan = plans.getPlan(element);
+            Map<String, Object> defaultSubfields = plan.subfields();
+            if (defaultSubfields != null) {
                 // optional indicator configuration
-                Map<String, Object> indicators = (Map<String, Object>) element.getSettings().get("indicators");
-                Map<Field, String> fieldNames = new HashMap();
+                Map<String, Object> indicators = plan.indicators();
+                Map<Field, String> fieldNames = null;
                 if (indicators != null) {
+                    fieldNames = new HashMap();
                     for (Field field : fields) {
                         Map.Entry<String, Object> me = TagValueMapper.map(indicators, field);
                         if (me.getKey() != null) {
@@ -94,94 +105,42 @@ public class MABPipeline extends KeyValuePipeline<FieldCollection, String, MABEl
                         }
                     }
                 }
+                Map<String, String> tags = plan.tags();
                 // lookup the current resource
                 Resource resource = builder().context().resource();
                 // create another anoymous resource
                 Resource newResource = builder().context().newResource();
+                // the _predicate field allows to select a field to name the resource by a coded value,
                 // default predicate is the name of the element class
-                String predicate = element.getClass().getSimpleName();
-                // the _predicate field allows to select a field to name the resource by a coded value
-                if (element.getSettings().containsKey("_predicate")) {
-                    predicate = (String) element.getSettings().get("_predicate");
-                }
+                String predicate = plan.predicate();
                 boolean predicateFound = false;
                 // put all found fields with configured subfield names to this resource
                 for (Field field : fields) {
-                    subfields = defaultSubfields;
+                    Map<String, Object> subfields = defaultSubfields;
                     // tag predicates?
-                    if (element.getSettings().containsKey("tags")) {
-                        Map<String, Object> tags = (Map<String, Object>) element.getSettings().get("tags");
-                        if (tags.containsKey(field.tag())) {
+                    if (tags != null) {
+                        String tagPredicate = tags.get(field.tag());
+                        if (tagPredicate != null) {
                             if (!predicateFound) {
-                                predicate = (String) tags.get(field.tag());
-                            }
-                            subfields = (Map<String, Object>) element.getSettings().get(predicate);
-                            if (subfields == null) {
-                                subfields = defaultSubfields;
+                                predicate = tagPredicate;
                             }
+                            subfields = plan.subfields(predicate);
                         }
                     }
                     // is there a subfield value decoder?
                     Map.Entry<String, Object> me = SubfieldValueMapper.map(subfields, field);
                     if (me.getKey() != null) {
                         String v = me.getValue().toString();
-                        if (fieldNames.containsKey(field)) {
-                            // field-specific subfield map?
-                            Map<String, Object> vm = (Map<String, Object>) element.getSettings().get(fieldNames.get(field));
-                            int pos = v.indexOf(' ');
-                            String vv = pos > 0 ? v.substring(0,pos) : v;
-                            if (vm.containsKey(v)) {
-                                newResource.add(me.getKey() + "Source", v);
-                                v =  (String)vm.get(v);
-                            } else if (vm.containsKey(vv)) {
+                        String fieldName = fieldNames != null ? fieldNames.get(field) : null;
+                        // field-specific subfield map, or default subfield map
+                        MappingPlan.ValueMapping mapping = fieldName != null ?
+                                plan.valueMapping(fieldName) : plan.valueMapping(me.getKey());
+                        if (mapping != null && (fieldName != null || mapping.isDeclared())) {
+                            // value map, or relation by pattern
+                            String mapped = mapping.map(v);
+                            if (mapped != null) {
                                 newResource.add(me.getKey() + "Source", v);
-                                v = (String)vm.get(vv);
-                            } else {
-                                // relation by pattern?
-                                List<Map<String,String>> patterns = (List<Map<String, String>>) element.getSettings().get(fieldNames.get(field)+"pattern");
-                                if (patterns != null) {
-                                    for (Map<String,String> pattern : patterns) {
-                                        Map.Entry<String,String> mme = pattern.entrySet().iterator().next();
-                                        String p = mme.getKey();
-                                        String rel = mme.getValue();
-                                        Matcher m = Pattern.compile(p, Pattern.CASE_INSENSITIVE).matcher(v);
-                                        if (m.matches()) {
-                                            newResource.add(me.getKey() + "Source", v);
-                                            v = rel;
-                                            break;
-                                        }
-                                    }
-                                }
-                            }
-                        } else {
-                            // default subfield map
-                            if (element.getSettings().containsKey(me.getKey())) {
-                                Map<String, Object> vm = (Map<String, Object>) element.getSettings().get(me.getKey());
-                                int pos = v.indexOf(' ');
-                                String vv = pos > 0 ? v.substring(0,pos) : v;
-                                if (vm.containsKey(v)) {
-                                    newResource.add(me.getKey() + "Source", v);
-                                    v =  (String)vm.get(v);
-                                } else if (vm.containsKey(vv)) {
-                                    newResource.add(me.getKey() + "Source", v);
-                                    v = (String)vm.get(vv);
-                                } else {
-                                    // relation by pattern?
-                                    List<Map<String,String>> patterns = (List<Map<String, String>>) element.getSettings().get(me.getKey()+"pattern");
-                                    if (patterns != null) {
-                                        for (Map<String,String> pattern : patterns) {
-                                            Map.Entry<String,String> mme = pattern.entrySet().iterator().next();
-                                            String p = mme.getKey();
-                                            String rel = mme.getValue();
-                                            Matcher m = Pattern.compile(p, Pattern.CASE_INSENSITIVE).matcher(v);
-                                            if (m.matches()) {
-                                                newResource.add(me.getKey() + "Source", v);
-                                                v = rel;
-                                                break;
-                                            }
-                                        }
-                                    }
-                                }
+                                v = mapped;
                             }
                         }
                         // is this the predicate field or a value?
@@ -219,14 +178,16 @@ public class MABPipeline extends KeyValuePipeline<FieldCollection, String, MABEl
                 builder().context().setResource(resource);
             }
         } else {
+            unknownKey();
             if (detectUnknownKeys) {
-                unknownKeys.add(key);
+                unknownKeys.add(fields.toSpec());
                 if (logger.isDebugEnabled()) {
                     logger.debug("unknown key detected: {} {}", fields, value);
                 }
             }
         }
         builder().build(element, fields, value);
+        elementTime(element, System.nanoTime() - t0);
     }
 
 }
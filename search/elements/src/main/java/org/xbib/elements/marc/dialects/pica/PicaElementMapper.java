@@ -47,6 +47,21 @@ public class PicaElementMapper
         return this;
     }
 
+    public PicaElementMapper batchSize(int batchSize) {
+        super.batchSize(batchSize);
+        return this;
+    }
+
+    public PicaElementMapper queueSize(int queueSize) {
+        super.queueSize(queueSize);
+        return this;
+    }
+
+    public PicaElementMapper metricsInterval(long seconds) {
+        super.metricsInterval(seconds);
+        return this;
+    }
+
     public PicaElementMapper detectUnknownKeys(boolean enabled) {
         super.detectUnknownKeys(enabled);
         return this;
@@ -35,16 +35,14 @@ import org.xbib.elements.AbstractSpecification;
 import org.xbib.elements.marc.SubfieldValueMapper;
 import org.xbib.elements.ElementBuilderFactory;
 import org.xbib.elements.KeyValuePipeline;
-import org.xbib.keyvalue.KeyValue;
+import org.xbib.elements.KeyValueQueue;
 import org.xbib.logging.Logger;
 import org.xbib.logging.LoggerFactory;
 import org.xbib.marc.Field;
 import org.xbib.marc.FieldCollection;
 import org.xbib.rdf.Resource;
 
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
 
 public class PicaPipeline extends KeyValuePipeline<FieldCollection, String, PicaElement, PicaContext> {
 
@@ -52,7 +50,7 @@ public class PicaPipeline extends KeyValuePipeline<FieldCollection, String, Pica
 
     public PicaPipeline(int i,
                         AbstractSpecification specification,
-                        BlockingQueue<List<KeyValue>> queue,
+                        KeyValueQueue queue,
                         Map map,
                         ElementBuilderFactory<FieldCollection, String, PicaElement, PicaContext> factory) {
         super(i, specification, queue, map, factory);
@@ -63,9 +61,14 @@ public class PicaPipeline extends KeyValuePipeline<FieldCollection, String, Pica
         if (fields == null) {
             return;
         }
+        long t0 = System.nanoTime();
         String key = fields.toSpec();
         PicaElement element = (PicaElement) specification.getElement(key, map());
         if (element != null) {
+            if (value == null) {
+                // the value of lazily decoded fields is decoded here, when it is needed
+                value = fields.data();
+            }
             // element-based processing
             element.fields(builder(), fields, value);
             // optional indicator configuration
@@ -114,6 +117,7 @@ public class PicaPipeline extends KeyValuePipeline<FieldCollection, String, Pica
                 builder().context().setResource(resource); // switch back to old resource
             }
         } else {
+            unknownKey();
             if (detectUnknownKeys) {
                 unknownKeys.add(key);
                 if (logger.isDebugEnabled()) {
@@ -122,6 +126,7 @@ public class PicaPipeline extends KeyValuePipeline<FieldCollection, String, Pica
             }
         }
         builder().build(element, fields, value);
+        elementTime(element, System.nanoTime() - t0);
     }
 
 }
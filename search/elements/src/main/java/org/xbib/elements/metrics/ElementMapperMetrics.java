@@ -0,0 +1,311 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.elements.metrics;
+
+import org.xbib.elements.KeyValueQueue;
+import org.xbib.logging.Logger;
+import org.xbib.logging.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of an element mapper and its pipelines.
+ *
+ * Records per second and unknown keys are counted per pipeline, the time for mapping and output
+ * is measured per record, per element class and per element output class. The metrics can be
+ * registered as MBean, and reported to the log.
+ */
+public class ElementMapperMetrics implements ElementMapperMetricsMBean {
+
+    private final static Logger logger = LoggerFactory.getLogger(ElementMapperMetrics.class.getName());
+
+    private final static AtomicLong ids = new AtomicLong();
+
+    private final long id;
+
+    private final String name;
+
+    private final long started;
+
+    private final List<PipelineMetrics> pipelines = new CopyOnWriteArrayList();
+
+    private final ConcurrentMap<Class, Histogram> elements = new ConcurrentHashMap();
+
+    private final ConcurrentMap<Class, Histogram> outputs = new ConcurrentHashMap();
+
+    private final Histogram mapping = new Histogram();
+
+    private final Histogram output = new Histogram();
+
+    private KeyValueQueue queue;
+
+    private ObjectName objectName;
+
+    public ElementMapperMetrics(String name) {
+        this.id = ids.incrementAndGet();
+        this.name = name;
+        this.started = System.nanoTime();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ElementMapperMetrics queue(KeyValueQueue queue) {
+        this.queue = queue;
+        return this;
+    }
+
+    public PipelineMetrics newPipeline(int number) {
+        PipelineMetrics metrics = new PipelineMetrics(number, mapping, output);
+        pipelines.add(metrics);
+        return metrics;
+    }
+
+    /**
+     * The histogram of mapping times of an element class.
+     *
+     * @param element the element class
+     * @return the histogram
+     */
+    public Histogram element(Class element) {
+        return histogram(elements, element);
+    }
+
+    /**
+     * The histogram of output times of an element output class.
+     *
+     * @param output the output class
+     * @return the histogram
+     */
+    public Histogram output(Class output) {
+        return histogram(outputs, output);
+    }
+
+    /**
+     * The name under which these metrics are registered. Several mappers may map the same format,
+     * so the name carries the id of this instance.
+     *
+     * @return the object name, or null if not registered
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Register these metrics at the platform MBean server.
+     */
+    public synchronized void register() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName("org.xbib.elements:type=ElementMapper,name="
+                    + ObjectName.quote(name) + ",id=" + id);
+            server.registerMBean(this, on);
+            this.objectName = on;
+        } catch (JMException e) {
+            logger.warn("can not register metrics: " + e.getMessage());
+        }
+    }
+
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warn("can not unregister metrics: " + e.getMessage());
+        }
+        objectName = null;
+    }
+
+    @Override
+    public long getRecords() {
+        long n = 0L;
+        for (PipelineMetrics p : pipelines) {
+            n += p.getRecords();
+        }
+        return n;
+    }
+
+    @Override
+    public double getRecordsPerSecond() {
+        long nanos = System.nanoTime() - started;
+        return nanos > 0 ? getRecords() * 1e9 / nanos : 0.0;
+    }
+
+    @Override
+    public long getKeyValues() {
+        long n = 0L;
+        for (PipelineMetrics p : pipelines) {
+            n += p.getKeyValues();
+        }
+        return n;
+    }
+
+    @Override
+    public long getUnknownKeys() {
+        long n = 0L;
+        for (PipelineMetrics p : pipelines) {
+            n += p.getUnknownKeys();
+        }
+        return n;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queue != null ? queue.depth() : 0;
+    }
+
+    @Override
+    public int getQueueMaxDepth() {
+        return queue != null ? queue.maxDepth() : 0;
+    }
+
+    @Override
+    public long getQueuePutWaitMillis() {
+        return queue != null ? queue.getPutWaitMillis() : 0L;
+    }
+
+    @Override
+    public long getQueueTakeWaitMillis() {
+        return queue != null ? queue.getTakeWaitMillis() : 0L;
+    }
+
+    @Override
+    public long getMappingMeanMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(mapping.getMeanNanos());
+    }
+
+    @Override
+    public long getMappingP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(mapping.getPercentileNanos(0.99));
+    }
+
+    @Override
+    public long getOutputMeanMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(output.getMeanNanos());
+    }
+
+    @Override
+    public long getOutputP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(output.getPercentileNanos(0.99));
+    }
+
+    @Override
+    public String[] getPipelines() {
+        List<String> list = new ArrayList();
+        for (PipelineMetrics p : pipelines) {
+            list.add(p.toString());
+        }
+        return list.toArray(new String[list.size()]);
+    }
+
+    /**
+     * The element mapping times, the elements with the most time first.
+     *
+     * @return the element mapping times
+     */
+    @Override
+    public String[] getElements() {
+        return report(elements);
+    }
+
+    @Override
+    public String[] getOutputs() {
+        return report(outputs);
+    }
+
+    /**
+     * Write the metrics to the log.
+     */
+    public void log() {
+        logger.info("{}: records={} records/s={} keyvalues={} unknownkeys={} queue={} mapping={} output={}",
+                name, getRecords(), Math.round(getRecordsPerSecond()), getKeyValues(), getUnknownKeys(),
+                queue, mapping, output);
+        for (String s : getPipelines()) {
+            logger.info("{}: {}", name, s);
+        }
+        for (String s : getElements()) {
+            logger.info("{}: element {}", name, s);
+        }
+        for (String s : getOutputs()) {
+            logger.info("{}: output {}", name, s);
+        }
+    }
+
+    private static Histogram histogram(ConcurrentMap<Class, Histogram> map, Class key) {
+        Histogram histogram = map.get(key);
+        if (histogram == null) {
+            histogram = new Histogram();
+            Histogram h = map.putIfAbsent(key, histogram);
+            if (h != null) {
+                histogram = h;
+            }
+        }
+        return histogram;
+    }
+
+    private static String[] report(Map<Class, Histogram> map) {
+        List<Map.Entry<Class, Histogram>> list = new ArrayList(map.entrySet());
+        Collections.sort(list, new Comparator<Map.Entry<Class, Histogram>>() {
+            @Override
+            public int compare(Map.Entry<Class, Histogram> e1, Map.Entry<Class, Histogram> e2) {
+                long t1 = e1.getValue().getSumNanos();
+                long t2 = e2.getValue().getSumNanos();
+                return t1 < t2 ? 1 : t1 > t2 ? -1 : 0;
+            }
+        });
+        String[] s = new String[list.size()];
+        for (int i = 0; i < s.length; i++) {
+            Map.Entry<Class, Histogram> me = list.get(i);
+            s[i] = me.getKey().getSimpleName() + " " + me.getValue();
+        }
+        return s;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.elements.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of a single key/value pipeline.
+ */
+public class PipelineMetrics {
+
+    private final int number;
+
+    private final long started;
+
+    private final AtomicLong records = new AtomicLong();
+
+    private final AtomicLong keyValues = new AtomicLong();
+
+    private final AtomicLong unknownKeys = new AtomicLong();
+
+    private final AtomicLong takeWaitNanos = new AtomicLong();
+
+    private final Histogram mapping;
+
+    private final Histogram output;
+
+    /**
+     * Create pipeline metrics.
+     *
+     * @param number the pipeline number
+     * @param mapping the histogram for mapping times, may be shared by pipelines
+     * @param output the histogram for output times, may be shared by pipelines
+     */
+    public PipelineMetrics(int number, Histogram mapping, Histogram output) {
+        this.number = number;
+        this.started = System.nanoTime();
+        this.mapping = mapping;
+        this.output = output;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * A record was mapped.
+     *
+     * @param keyValues the number of key/values of the record
+     * @param mappingNanos the time for mapping the key/values to elements
+     * @param outputNanos the time for ending the record, which includes the output
+     */
+    public void record(int keyValues, long mappingNanos, long outputNanos) {
+        this.records.incrementAndGet();
+        this.keyValues.addAndGet(keyValues);
+        this.mapping.update(mappingNanos);
+        this.output.update(outputNanos);
+    }
+
+    public void unknownKey() {
+        unknownKeys.incrementAndGet();
+    }
+
+    public void takeWait(long nanos) {
+        takeWaitNanos.addAndGet(nanos);
+    }
+
+    public long getRecords() {
+        return records.get();
+    }
+
+    public long getKeyValues() {
+        return keyValues.get();
+    }
+
+    public long getUnknownKeys() {
+        return unknownKeys.get();
+    }
+
+    public long getTakeWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(takeWaitNanos.get());
+    }
+
+    public double getRecordsPerSecond() {
+        long nanos = System.nanoTime() - started;
+        return nanos > 0 ? records.get() * 1e9 / nanos : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return "[pipeline=" + number
+                + ",records=" + getRecords()
+                + ",records/s=" + Math.round(getRecordsPerSecond())
+                + ",keyvalues=" + getKeyValues()
+                + ",unknownkeys=" + getUnknownKeys()
+                + ",takewait=" + getTakeWaitMillis()
+                + "ms]";
+    }
+}
@@ -31,6 +31,8 @@
  */
 package org.xbib.marc;
 
+import java.nio.charset.Charset;
+
 /**
  * A field in ISO 2709 records.
  */
@@ -52,6 +54,16 @@ public class Field implements Comparable {
 
     private String data;
 
+    private byte[] bytes;
+
+    private int offset;
+
+    private int count;
+
+    private Charset charset;
+
+    private MarcXchange2KeyValue.FieldDataTransformer transformer;
+
     public Field() {
         this(null, null, null);
     }
@@ -163,7 +175,7 @@ public class Field implements Comparable {
     }
 
     public boolean isEmpty() {
-        return tag == null || (data != null && data.isEmpty());
+        return tag == null || (data != null ? data.isEmpty() : bytes != null && count == 0);
     }
 
     public final boolean isControlField() {
@@ -262,15 +274,70 @@ public class Field implements Comparable {
      */
     public Field data(String data) {
         this.data = data;
+        this.bytes = null;
+        this.transformer = null;
         return this;
     }
 
+    /**
+     * Set data for a field as a range of undecoded octets. The octets are
+     * decoded on the first access to the data, so data which is never
+     * asked for is never decoded.
+     *
+     * @param bytes the octets
+     * @param offset the offset of the data in the octets
+     * @param count the length of the data in octets
+     * @param charset the character set for decoding
+     * @return this Field object
+     */
+    public Field data(byte[] bytes, int offset, int count, Charset charset) {
+        this.data = null;
+        this.bytes = bytes;
+        this.offset = offset;
+        this.count = count;
+        this.charset = charset;
+        this.transformer = null;
+        return this;
+    }
+
+    /**
+     * Transform the field data. Undecoded data is transformed when it is decoded.
+     *
+     * @param transformer the transformer
+     * @return this Field object
+     */
+    public Field transform(MarcXchange2KeyValue.FieldDataTransformer transformer) {
+        if (bytes != null && this.transformer == null) {
+            this.transformer = transformer;
+        } else if (data() != null) {
+            this.data = transformer.transform(data);
+        }
+        return this;
+    }
+
+    /**
+     * Check if the field data is decoded.
+     *
+     * @return false if the data is still a range of undecoded octets
+     */
+    public boolean isDecoded() {
+        return bytes == null;
+    }
+
     /**
      * Get the field data.
      *
      * @return the data
      */
     public String data() {
+        if (data == null && bytes != null) {
+            data = new String(bytes, offset, count, charset);
+            bytes = null;
+            if (transformer != null) {
+                data = transformer.transform(data);
+                transformer = null;
+            }
+        }
         return data;
     }
 
@@ -286,7 +353,7 @@ public class Field implements Comparable {
         StringBuilder sb = new StringBuilder();
         sb.append(tag).append(indicator != null ? indicator : "")
                 .append(subfieldId != null ? subfieldId : "")
-                .append(data != null ? "=" + data : "");
+                .append(data() != null ? "=" + data() : "");
         return sb.toString();
     }
 
@@ -194,4 +194,14 @@ public class FieldCollection extends LinkedList<Field> {
         return toSpec();
     }
 
+    /**
+     * The data of the only field of this collection, which is the value of the collection
+     * in a key/value stream.
+     *
+     * @return the data, or null if there is not exactly one field
+     */
+    public String data() {
+        return size() == 1 ? getFirst().data() : null;
+    }
+
 }
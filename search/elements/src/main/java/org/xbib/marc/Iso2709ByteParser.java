@@ -0,0 +1,429 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.marc;
+
+import org.xbib.logging.Logger;
+import org.xbib.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * An ISO 2709 parser working on octets.
+ *
+ * The record label and the field directory are parsed as ASCII octets, fields and
+ * subfields are sliced as ranges of octets. Field data is decoded to strings only when
+ * it is asked for, so data which is not used by a mapping is never decoded. Because
+ * directory positions are octet positions, this parser also works with multibyte
+ * encodings like UTF-8.
+ *
+ * The parser emits the same events to a MarcXchange listener as the MarcXchange SaX adapter.
+ * Use the adapter as listener for SaX output.
+ */
+public class Iso2709ByteParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(Iso2709ByteParser.class.getName());
+
+    /**
+     * The field terminator, equal to the record separator
+     */
+    public final static byte FIELD_TERMINATOR = 0x1e;
+
+    /**
+     * The subfield delimiter, equal to the unit separator
+     */
+    public final static byte SUBFIELD_DELIMITER = 0x1f;
+
+    private final static String[] NUMERIC_TAGS = new String[1000];
+
+    private final static String[] ASCII = new String[128];
+
+    static {
+        for (int i = 0; i < NUMERIC_TAGS.length; i++) {
+            NUMERIC_TAGS[i] = String.format("%03d", i);
+        }
+        for (int i = 0; i < ASCII.length; i++) {
+            ASCII[i] = String.valueOf((char) i);
+        }
+    }
+
+    private final MarcXchangeListener listener;
+
+    private final Charset charset;
+
+    private String format;
+
+    private String type;
+
+    private boolean fatalerrors;
+
+    private boolean silenterrors;
+
+    private long recordCounter;
+
+    private RecordLabel label;
+
+    private String[] tags = new String[64];
+
+    private int[] positions = new int[64];
+
+    private int[] lengths = new int[64];
+
+    private int entries;
+
+    private int cursor;
+
+    private Field designator;
+
+    private boolean datafieldOpen;
+
+    private boolean subfieldOpen;
+
+    /**
+     * Create a parser.
+     *
+     * @param listener the listener for the events, for example a MarcXchange SaX adapter
+     * @param charset the character set of the field data
+     */
+    public Iso2709ByteParser(MarcXchangeListener listener, Charset charset) {
+        this.listener = listener;
+        this.charset = charset;
+    }
+
+    public Iso2709ByteParser setFormat(String format) {
+        this.format = format;
+        return this;
+    }
+
+    public Iso2709ByteParser setType(String type) {
+        this.type = type;
+        return this;
+    }
+
+    public Iso2709ByteParser setFatalErrors(Boolean fatalerrors) {
+        this.fatalerrors = fatalerrors;
+        return this;
+    }
+
+    public Iso2709ByteParser setSilentErrors(Boolean silenterrors) {
+        this.silenterrors = silenterrors;
+        return this;
+    }
+
+    public long getRecordCounter() {
+        return recordCounter;
+    }
+
+    /**
+     * Parse all records of an ISO 2709 byte stream. The stream is not closed.
+     *
+     * @param in the byte stream
+     * @param recordsPerChunk the number of records which are read at once
+     * @throws IOException if reading fails or if errors are fatal
+     */
+    public void parse(InputStream in, int recordsPerChunk) throws IOException {
+        Iso2709Splitter splitter = new Iso2709Splitter(in, recordsPerChunk);
+        Iso2709Splitter.Chunk chunk;
+        while ((chunk = splitter.nextChunk()) != null) {
+            parseRecords(chunk.bytes(), 0, chunk.bytes().length);
+        }
+        if (splitter.getTruncatedCounter() > 0) {
+            logger.warn("truncated record at end of stream, no record terminator");
+        }
+    }
+
+    /**
+     * Parse the records in a range of octets. The octets must not be modified afterwards,
+     * because field data refers to them until it is decoded.
+     *
+     * @param b the octets
+     * @param off the offset of the first record
+     * @param len the length of the records
+     * @throws IOException if errors are fatal
+     */
+    public void parseRecords(byte[] b, int off, int len) throws IOException {
+        int end = off + len;
+        int start = off;
+        while (start < end) {
+            int i = start;
+            while (i < end && b[i] != Iso2709Splitter.RECORD_TERMINATOR) {
+                i++;
+            }
+            parseRecord(b, start, i);
+            start = i + 1;
+        }
+    }
+
+    /**
+     * Parse a record.
+     *
+     * @param b the octets
+     * @param start the start of the record
+     * @param end the position of the record terminator, or the end of the octets
+     */
+    private void parseRecord(byte[] b, int start, int end) throws IOException {
+        // skip line-feed (OCLC PICA quirk)
+        if (start < end && b[start] == '\n') {
+            start++;
+        }
+        int i = nextSeparator(b, start, end);
+        if (i - start < RecordLabel.LENGTH) {
+            if (i > start) {
+                error("record label too short: " + (i - start) + " octets");
+            }
+            return;
+        }
+        char[] chars = new char[RecordLabel.LENGTH];
+        for (int n = 0; n < RecordLabel.LENGTH; n++) {
+            chars[n] = (char) (b[start + n] & 0xff);
+        }
+        listener.beginRecord(format, type);
+        label = new RecordLabel(chars);
+        // auto-repair label
+        listener.leader(label.getFixed());
+        designator = null;
+        datafieldOpen = false;
+        subfieldOpen = false;
+        boolean valid = true;
+        try {
+            parseDirectory(b, start, i);
+        } catch (InvalidFieldDirectoryException e) {
+            error(e.getMessage());
+            valid = false;
+        }
+        if (valid) {
+            if (entries == 0 && i > start + RecordLabel.LENGTH) {
+                beginField(b, start + RecordLabel.LENGTH, i, -1);
+            }
+            while (i < end) {
+                byte separator = b[i];
+                int from = i + 1;
+                i = nextSeparator(b, from, end);
+                if (separator == FIELD_TERMINATOR) {
+                    endField();
+                    if (from < i) {
+                        beginField(b, from, i, from - start);
+                    }
+                } else if (separator == SUBFIELD_DELIMITER && from < i && designator != null) {
+                    subField(b, from, i);
+                }
+            }
+            endField();
+        }
+        listener.endRecord();
+        listener.trailer(null);
+        recordCounter++;
+    }
+
+    /**
+     * Parse the directory from the octets between record label and the first separator.
+     */
+    private void parseDirectory(byte[] b, int start, int end) throws InvalidFieldDirectoryException {
+        entries = 0;
+        cursor = 0;
+        int directoryLength = label.getBaseAddressOfData() - (RecordLabel.LENGTH + 1);
+        // assume that negative values means prohibiting directory access
+        if (directoryLength <= 0
+                || label.getDataFieldLength() <= 0
+                || label.getStartingCharacterPositionLength() <= 0
+                || label.getSegmentIdentifierLength() < 0) {
+            return;
+        }
+        int keylength = 3;
+        int lengthlength = label.getDataFieldLength();
+        int positionlength = label.getStartingCharacterPositionLength();
+        int entrysize = keylength + lengthlength + positionlength + label.getSegmentIdentifierLength();
+        if (directoryLength % entrysize != 0 || start + RecordLabel.LENGTH + directoryLength > end) {
+            throw new InvalidFieldDirectoryException("invalid ISO 2709 directory length: "
+                    + directoryLength + ", definitions in record label: "
+                    + " data field length = " + label.getDataFieldLength()
+                    + " starting character position length = " + label.getStartingCharacterPositionLength()
+                    + " segment identifier length = " + label.getSegmentIdentifierLength());
+        }
+        int count = directoryLength / entrysize;
+        if (count > tags.length) {
+            tags = new String[count];
+            positions = new int[count];
+            lengths = new int[count];
+        }
+        for (int i = start + RecordLabel.LENGTH; entries < count; i += entrysize) {
+            int length = digits(b, i + keylength, lengthlength);
+            int position = digits(b, i + keylength + lengthlength, positionlength);
+            if (length < 0 || position < 0) {
+                throw new InvalidFieldDirectoryException("directory corrupt? key = "
+                        + decode(b, i, keylength) + " length = " + directoryLength);
+            }
+            tags[entries] = tag(b, i);
+            lengths[entries] = length;
+            positions[entries] = label.getBaseAddressOfData() + position;
+            entries++;
+        }
+    }
+
+    /**
+     * Begin a field.
+     *
+     * @param position the octet position of the field in the record, or -1 if the field carries its tag
+     */
+    private void beginField(byte[] b, int from, int to, int position) throws IOException {
+        if (position < 0 || entries == 0) {
+            // the tag is part of the field
+            if (to - from < 3) {
+                designator = new Field(Field.ERROR_TAG, -1, -1);
+                beginField(designator);
+                return;
+            }
+            designator = new Field(tag(b, from), -1, -1);
+            from += 3;
+            if (!designator.isControlField() && to - from < label.getIndicatorLength()) {
+                beginField(designator);
+                return;
+            }
+        } else {
+            int n = find(position);
+            if (n < 0) {
+                designator = null;
+                error("byte position not found in directory: " + position);
+                return;
+            }
+            designator = new Field(tags[n], positions[n], lengths[n]);
+        }
+        if (!designator.isControlField()) {
+            int indlen = Math.min(label.getIndicatorLength(), to - from);
+            designator.indicator(decode(b, from, indlen));
+            from += indlen;
+        }
+        designator.data(b, from, to - from, charset);
+        beginField(designator);
+    }
+
+    private void beginField(Field field) {
+        if (field.isControlField()) {
+            listener.beginControlField(field);
+            listener.endControlField(field);
+        } else {
+            listener.beginDataField(field);
+            datafieldOpen = true;
+        }
+    }
+
+    private void subField(byte[] b, int from, int to) {
+        Field field = new Field(designator.tag(), designator.position(), designator.length());
+        field.indicator(designator.indicator());
+        int idlen = label.getSubfieldIdentifierLength() - 1;
+        if (idlen > 0) {
+            idlen = Math.min(idlen, to - from);
+            field.subfieldId(decode(b, from, idlen));
+            from += idlen;
+        }
+        field.data(b, from, to - from, charset);
+        if (!subfieldOpen) {
+            subfieldOpen = true;
+            if (!datafieldOpen) {
+                listener.beginDataField(designator);
+                datafieldOpen = true;
+            }
+        }
+        listener.beginSubField(field);
+        listener.endSubField(field);
+    }
+
+    private void endField() {
+        if (subfieldOpen) {
+            listener.endDataField(null);
+        } else if (datafieldOpen) {
+            listener.endDataField(designator);
+        }
+        datafieldOpen = false;
+        subfieldOpen = false;
+    }
+
+    /**
+     * Find the directory entry of a position. Fields are mostly in directory order,
+     * so the search starts at the entry following the last one found.
+     */
+    private int find(int position) {
+        for (int i = cursor; i < entries; i++) {
+            if (positions[i] == position) {
+                cursor = i + 1;
+                return i;
+            }
+        }
+        for (int i = 0; i < cursor && i < entries; i++) {
+            if (positions[i] == position) {
+                cursor = i + 1;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String tag(byte[] b, int off) {
+        int n = digits(b, off, 3);
+        return n >= 0 ? NUMERIC_TAGS[n] : decode(b, off, 3);
+    }
+
+    private String decode(byte[] b, int off, int len) {
+        if (len == 1 && b[off] >= 0) {
+            return ASCII[b[off]];
+        }
+        return new String(b, off, len, charset);
+    }
+
+    private void error(String message) throws IOException {
+        if (fatalerrors) {
+            throw new IOException(message);
+        } else if (!silenterrors) {
+            logger.warn(message);
+        }
+    }
+
+    private static int digits(byte[] b, int off, int len) {
+        int n = 0;
+        for (int i = off; i < off + len; i++) {
+            if (b[i] < '0' || b[i] > '9') {
+                return -1;
+            }
+            n = n * 10 + (b[i] - '0');
+        }
+        return n;
+    }
+
+    private static int nextSeparator(byte[] b, int from, int end) {
+        int i = from;
+        while (i < end && b[i] != FIELD_TERMINATOR && b[i] != SUBFIELD_DELIMITER) {
+            i++;
+        }
+        return i;
+    }
+}
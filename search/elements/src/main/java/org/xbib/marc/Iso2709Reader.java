@@ -32,6 +32,7 @@
 package org.xbib.marc;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
 import org.xml.sax.ContentHandler;
@@ -78,6 +79,28 @@ public class Iso2709Reader implements XMLReader {
      * The schema property
      */
     public static String SCHEMA = "schema";
+
+    /**
+     * Number of threads for parsing records. With more than one thread,
+     * byte stream input is split into records and parsed in parallel.
+     */
+    public static String PARALLEL = "parallel";
+
+    /**
+     * Should records be emitted in input order when parsing in parallel
+     */
+    public static String ORDERED = "ordered";
+
+    /**
+     * Number of records per chunk when parsing in parallel
+     */
+    public static String RECORDS_PER_CHUNK = "records_per_chunk";
+
+    /**
+     * Should byte stream input be parsed on octets, with field data decoded
+     * only when it is asked for
+     */
+    public static String LAZY_DECODING = "lazy_decoding";
     /**
      * The SaX service
      */
@@ -109,6 +132,10 @@ public class Iso2709Reader implements XMLReader {
             put(FATAL_ERRORS, Boolean.FALSE);
             put(SILENT_ERRORS, Boolean.FALSE);
             put(BUFFER_SIZE, 65536);
+            put(PARALLEL, 1);
+            put(ORDERED, Boolean.TRUE);
+            put(RECORDS_PER_CHUNK, 256);
+            put(LAZY_DECODING, Boolean.FALSE);
         }
     };
 
@@ -197,6 +224,15 @@ public class Iso2709Reader implements XMLReader {
 
     @Override
     public void parse(InputSource input) throws IOException, SAXException {
+        Integer parallel = (Integer) properties.get(PARALLEL);
+        if (parallel != null && parallel > 1 && input.getByteStream() != null) {
+            parseParallel(input, parallel);
+            return;
+        }
+        if (Boolean.TRUE.equals(properties.get(LAZY_DECODING)) && input.getByteStream() != null) {
+            parseBytes(input);
+            return;
+        }
         this.adapter = new MarcXchangeSaxAdapter()
                 .buffersize((Integer)properties.get(BUFFER_SIZE))
                 .inputSource(input)
@@ -211,6 +247,57 @@ public class Iso2709Reader implements XMLReader {
         adapter.parse();
     }
 
+    /**
+     * Split the byte stream into records and parse them on several threads.
+     * The events are emitted on the calling thread.
+     */
+    private void parseParallel(InputSource input, int parallel) throws IOException, SAXException {
+        this.adapter = new MarcXchangeSaxAdapter()
+                .setContentHandler(contentHandler)
+                .setListener(listener)
+                .setSchema((String) properties.get(SCHEMA))
+                .setFormat((String) properties.get(FORMAT))
+                .setType((String) properties.get(TYPE))
+                .setFatalErrors((Boolean)properties.get(FATAL_ERRORS))
+                .setSilentErrors((Boolean)properties.get(SILENT_ERRORS));
+        String encoding = input.getEncoding() != null ? input.getEncoding() : "ANSEL";
+        new ParallelIso2709Parser(adapter)
+                .threads(parallel)
+                .ordered((Boolean) properties.get(ORDERED))
+                .lazyDecoding(Boolean.TRUE.equals(properties.get(LAZY_DECODING)))
+                .recordsPerChunk((Integer) properties.get(RECORDS_PER_CHUNK))
+                .buffersize((Integer) properties.get(BUFFER_SIZE))
+                .setSchema((String) properties.get(SCHEMA))
+                .setFormat((String) properties.get(FORMAT))
+                .setType((String) properties.get(TYPE))
+                .setFatalErrors((Boolean) properties.get(FATAL_ERRORS))
+                .setSilentErrors((Boolean) properties.get(SILENT_ERRORS))
+                .parse(input.getByteStream(), encoding);
+    }
+
+    /**
+     * Parse the octets of the byte stream. Field data is decoded when it is asked for.
+     */
+    private void parseBytes(InputSource input) throws IOException, SAXException {
+        this.adapter = new MarcXchangeSaxAdapter()
+                .setContentHandler(contentHandler)
+                .setListener(listener)
+                .setSchema((String) properties.get(SCHEMA))
+                .setFormat((String) properties.get(FORMAT))
+                .setType((String) properties.get(TYPE))
+                .setFatalErrors((Boolean)properties.get(FATAL_ERRORS))
+                .setSilentErrors((Boolean)properties.get(SILENT_ERRORS));
+        String encoding = input.getEncoding() != null ? input.getEncoding() : "ANSEL";
+        adapter.beginCollection();
+        new Iso2709ByteParser(adapter, Charset.forName(encoding))
+                .setFormat((String) properties.get(FORMAT))
+                .setType((String) properties.get(TYPE))
+                .setFatalErrors((Boolean) properties.get(FATAL_ERRORS))
+                .setSilentErrors((Boolean) properties.get(SILENT_ERRORS))
+                .parse(input.getByteStream(), (Integer) properties.get(RECORDS_PER_CHUNK));
+        adapter.endCollection();
+    }
+
     /**
      * We do not support system ID based parsing.
      * @param systemId
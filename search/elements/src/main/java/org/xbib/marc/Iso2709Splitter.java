@@ -0,0 +1,224 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.marc;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Splits an ISO 2709 byte stream into chunks of complete records, without decoding characters.
+ *
+ * The record length is taken from the first five positions of the leader. If the length
+ * is not valid, or the record does not end with a record terminator at that position,
+ * the bytes are scanned for the record terminator instead.
+ */
+public class Iso2709Splitter {
+
+    /**
+     * The record terminator, equal to the group separator
+     */
+    public final static byte RECORD_TERMINATOR = 0x1d;
+
+    private final static int LENGTH_DIGITS = 5;
+
+    private final static int MAX_RECORD_LENGTH = 99999;
+
+    private final InputStream in;
+
+    private final int recordsPerChunk;
+
+    private byte[] buf;
+
+    private long chunkCounter;
+
+    private long recordCounter;
+
+    private long truncatedCounter;
+
+    private boolean eof;
+
+    public Iso2709Splitter(InputStream in, int recordsPerChunk) {
+        this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in, 65536);
+        this.recordsPerChunk = recordsPerChunk > 0 ? recordsPerChunk : 1;
+        this.buf = new byte[65536];
+    }
+
+    /**
+     * Read the next chunk of records.
+     *
+     * @return the next chunk, or null if there are no more records
+     * @throws IOException if reading fails
+     */
+    public Chunk nextChunk() throws IOException {
+        if (eof) {
+            return null;
+        }
+        int len = 0;
+        int records = 0;
+        while (records < recordsPerChunk) {
+            int n = nextRecord(len);
+            if (n == 0) {
+                eof = true;
+                break;
+            }
+            len += n;
+            records++;
+        }
+        if (records == 0) {
+            return null;
+        }
+        recordCounter += records;
+        return new Chunk(chunkCounter++, Arrays.copyOf(buf, len), records);
+    }
+
+    public long getChunkCounter() {
+        return chunkCounter;
+    }
+
+    public long getRecordCounter() {
+        return recordCounter;
+    }
+
+    /**
+     * The number of truncated records, that is, trailing bytes at the end of the
+     * stream without a record terminator. A truncated record is passed on like the
+     * other records, so the parser can decide what is left of it. Trailing white space,
+     * like a final line feed, is not a record and is dropped.
+     *
+     * @return the number of truncated records
+     */
+    public long getTruncatedCounter() {
+        return truncatedCounter;
+    }
+
+    /**
+     * Read a record into the buffer at the given offset.
+     *
+     * @return the number of bytes read, 0 at end of stream or if only white space
+     * is left
+     */
+    private int nextRecord(int off) throws IOException {
+        in.mark(MAX_RECORD_LENGTH + 1);
+        ensureCapacity(off + LENGTH_DIGITS);
+        int n = readFully(off, LENGTH_DIGITS);
+        int length = n < LENGTH_DIGITS ? -1 : 0;
+        for (int i = 0; i < LENGTH_DIGITS && length >= 0; i++) {
+            byte b = buf[off + i];
+            if (b < '0' || b > '9') {
+                length = -1;
+                break;
+            }
+            length = length * 10 + (b - '0');
+        }
+        if (length > RecordLabel.LENGTH) {
+            ensureCapacity(off + length);
+            n += readFully(off + LENGTH_DIGITS, length - LENGTH_DIGITS);
+            if (n == length && buf[off + length - 1] == RECORD_TERMINATOR) {
+                return n;
+            }
+        }
+        // no valid record length, go back and scan for the record terminator
+        in.reset();
+        n = 0;
+        int ch;
+        while ((ch = in.read()) != -1) {
+            ensureCapacity(off + n + 1);
+            buf[off + n++] = (byte) ch;
+            if (ch == RECORD_TERMINATOR) {
+                return n;
+            }
+        }
+        // end of stream without a record terminator, white space is not a record
+        for (int i = 0; i < n; i++) {
+            if (!Character.isWhitespace(buf[off + i])) {
+                truncatedCounter++;
+                return n;
+            }
+        }
+        return 0;
+    }
+
+    private int readFully(int off, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            int count = in.read(buf, off + n, len - n);
+            if (count < 0) {
+                break;
+            }
+            n += count;
+        }
+        return n;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+        }
+    }
+
+    /**
+     * A chunk of complete ISO 2709 records.
+     */
+    public static class Chunk {
+
+        private final long number;
+
+        private final byte[] bytes;
+
+        private final int records;
+
+        Chunk(long number, byte[] bytes, int records) {
+            this.number = number;
+            this.bytes = bytes;
+            this.records = records;
+        }
+
+        /**
+         * The sequence number of this chunk in the stream, starting with 0.
+         *
+         * @return the chunk number
+         */
+        public long number() {
+            return number;
+        }
+
+        public byte[] bytes() {
+            return bytes;
+        }
+
+        public int records() {
+            return records;
+        }
+    }
+}
@@ -39,6 +39,9 @@ import org.xbib.keyvalue.KeyValueStreamListener;
  * Convert a MarcXchange stream to a key/value stream. With optional value
  * string transformation.
  *
+ * Fields with undecoded data, as parsed with lazy decoding, stay undecoded. Their
+ * value is passed as null, and the transformation is applied to the field when
+ * it is decoded, so the value must be taken from {@link FieldCollection#data()}.
  */
 public class MarcXchange2KeyValue implements
         MarcXchangeListener,
@@ -126,6 +129,10 @@ public class MarcXchange2KeyValue implements
 
     @Override
     public void endControlField(Field field) {
+        if (isUndecoded(field)) {
+            keyValue(fields, null);
+            return;
+        }
         String data = field != null ? field.data() : null;
         // transform field data?
         if (transformer != null && data != null) {
@@ -142,8 +149,17 @@ public class MarcXchange2KeyValue implements
 
     @Override
     public void endDataField(Field field) {
+        if (field == null) {
+            // put data into the emitter if there is only one sub field, it is already transformed
+            keyValue(fields, fields.size() == 1 && !fields.getFirst().isDecoded() ? null : fields.data());
+            return;
+        }
+        if (isUndecoded(field)) {
+            keyValue(fields, null);
+            return;
+        }
         // put data into the emitter if the only have one field
-        String data = field != null ? field.data() : null;
+        String data = field.data();
         if (data == null && fields.size() == 1) {
             data = fields.getFirst().data();
         }
@@ -168,10 +184,24 @@ public class MarcXchange2KeyValue implements
                 fields.removeLast();
             }            
             // transform field data?
-            if (transformer != null && field.data() != null) {
-                field.data(transformer.transform(field.data()));
+            if (transformer != null) {
+                field.transform(transformer);
             }
             fields.add(field);
         }
     }
+
+    /**
+     * Check if a field is the only field of the key and its data is undecoded.
+     * The transformation is then left to the decoding.
+     */
+    private boolean isUndecoded(Field field) {
+        if (field == null || field.isDecoded() || fields.size() != 1 || fields.getFirst() != field) {
+            return false;
+        }
+        if (transformer != null) {
+            field.transform(transformer);
+        }
+        return true;
+    }
 }
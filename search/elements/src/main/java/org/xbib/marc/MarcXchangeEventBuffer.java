@@ -0,0 +1,180 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.marc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A MarcXchange listener that records events for replaying them later, possibly on another thread.
+ */
+public class MarcXchangeEventBuffer implements MarcXchangeListener {
+
+    private final static int BEGIN_RECORD = 0;
+    private final static int LEADER = 1;
+    private final static int BEGIN_CONTROLFIELD = 2;
+    private final static int END_CONTROLFIELD = 3;
+    private final static int BEGIN_DATAFIELD = 4;
+    private final static int BEGIN_SUBFIELD = 5;
+    private final static int END_SUBFIELD = 6;
+    private final static int END_DATAFIELD = 7;
+    private final static int TRAILER = 8;
+    private final static int END_RECORD = 9;
+
+    private final List<Object> events;
+
+    private int records;
+
+    public MarcXchangeEventBuffer() {
+        this.events = new ArrayList<>();
+    }
+
+    @Override
+    public void beginRecord(String format, String type) {
+        add(BEGIN_RECORD, new String[]{format, type});
+    }
+
+    @Override
+    public void leader(String label) {
+        add(LEADER, label);
+    }
+
+    @Override
+    public void beginControlField(Field field) {
+        add(BEGIN_CONTROLFIELD, field);
+    }
+
+    @Override
+    public void endControlField(Field field) {
+        add(END_CONTROLFIELD, field);
+    }
+
+    @Override
+    public void beginDataField(Field field) {
+        add(BEGIN_DATAFIELD, field);
+    }
+
+    @Override
+    public void beginSubField(Field field) {
+        add(BEGIN_SUBFIELD, field);
+    }
+
+    @Override
+    public void endSubField(Field field) {
+        add(END_SUBFIELD, field);
+    }
+
+    @Override
+    public void endDataField(Field field) {
+        add(END_DATAFIELD, field);
+    }
+
+    @Override
+    public void trailer(String trailer) {
+        add(TRAILER, trailer);
+    }
+
+    @Override
+    public void endRecord() {
+        add(END_RECORD, null);
+        records++;
+    }
+
+    /**
+     * The number of completed records in this buffer.
+     *
+     * @return the number of records
+     */
+    public int getRecords() {
+        return records;
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    /**
+     * Replay the recorded events to a listener, in the order they were recorded.
+     *
+     * @param listener the listener
+     */
+    public void replay(MarcXchangeListener listener) {
+        for (int i = 0; i < events.size(); i += 2) {
+            int type = (Integer) events.get(i);
+            Object arg = events.get(i + 1);
+            switch (type) {
+                case BEGIN_RECORD: {
+                    String[] s = (String[]) arg;
+                    listener.beginRecord(s[0], s[1]);
+                    break;
+                }
+                case LEADER:
+                    listener.leader((String) arg);
+                    break;
+                case BEGIN_CONTROLFIELD:
+                    listener.beginControlField((Field) arg);
+                    break;
+                case END_CONTROLFIELD:
+                    listener.endControlField((Field) arg);
+                    break;
+                case BEGIN_DATAFIELD:
+                    listener.beginDataField((Field) arg);
+                    break;
+                case BEGIN_SUBFIELD:
+                    listener.beginSubField((Field) arg);
+                    break;
+                case END_SUBFIELD:
+                    listener.endSubField((Field) arg);
+                    break;
+                case END_DATAFIELD:
+                    listener.endDataField((Field) arg);
+                    break;
+                case TRAILER:
+                    listener.trailer((String) arg);
+                    break;
+                case END_RECORD:
+                    listener.endRecord();
+                    break;
+            }
+        }
+    }
+
+    public void clear() {
+        events.clear();
+        records = 0;
+    }
+
+    private void add(int type, Object arg) {
+        events.add(type);
+        events.add(arg);
+    }
+}
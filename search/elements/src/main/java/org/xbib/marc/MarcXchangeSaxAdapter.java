@@ -170,12 +170,20 @@ public class MarcXchangeSaxAdapter implements MarcXchangeConstants, MarcXchangeL
      */
     public void parse() throws IOException, SAXException {
         beginCollection();
+        parseRecords();
+        endCollection();
+    }
+
+    /**
+     * Parse the records of the ISO 2709 input and emit events, without
+     * collection events. Useful for parsing parts of a stream.
+     */
+    public void parseRecords() throws IOException {
         String chunk;
         do {
             chunk = stream.readData();
         } while (chunk != null);
         stream.close();
-        endCollection();
     }
 
     public void beginCollection() throws SAXException {
@@ -606,7 +614,12 @@ public class MarcXchangeSaxAdapter implements MarcXchangeConstants, MarcXchangeL
         public void markFile() {
             mark = Separable.FS;
             position++;
-            endDataField(null);
+            // close the last record like a record which is followed by another record
+            if (subfieldOpen) {
+                subfieldOpen = false;
+                endDataField(null);
+            }
+            endDataField(designator);
             endRecord();
         }
     }
@@ -0,0 +1,253 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.marc;
+
+import org.xbib.logging.Logger;
+import org.xbib.logging.LoggerFactory;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A parallel ISO 2709 parser.
+ *
+ * The byte stream is split into chunks of records by the record length in the leader,
+ * on the calling thread. The chunks are decoded and parsed by worker threads. The events
+ * of the workers are buffered and replayed on the calling thread to a MarcXchange SaX adapter,
+ * so content handlers and listeners do not have to be thread safe.
+ *
+ * In ordered mode, the records are emitted in input order. Otherwise, chunks are emitted
+ * as soon as they are parsed.
+ *
+ * With lazy decoding, the workers parse the octets of the records and leave the decoding of
+ * field data to the consumer of the events.
+ */
+public class ParallelIso2709Parser {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelIso2709Parser.class.getName());
+
+    private final MarcXchangeSaxAdapter adapter;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private int recordsPerChunk = 256;
+
+    private boolean ordered = true;
+
+    private boolean lazyDecoding;
+
+    private int buffersize = 8192;
+
+    private String schema;
+
+    private String format;
+
+    private String type;
+
+    private boolean fatalerrors;
+
+    private boolean silenterrors;
+
+    /**
+     * Create a parallel parser.
+     *
+     * @param adapter the adapter on the calling thread which receives the events of all records
+     */
+    public ParallelIso2709Parser(MarcXchangeSaxAdapter adapter) {
+        this.adapter = adapter;
+    }
+
+    public ParallelIso2709Parser threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public ParallelIso2709Parser recordsPerChunk(int recordsPerChunk) {
+        this.recordsPerChunk = recordsPerChunk;
+        return this;
+    }
+
+    public ParallelIso2709Parser ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    public ParallelIso2709Parser lazyDecoding(boolean lazyDecoding) {
+        this.lazyDecoding = lazyDecoding;
+        return this;
+    }
+
+    public ParallelIso2709Parser buffersize(int buffersize) {
+        this.buffersize = buffersize;
+        return this;
+    }
+
+    public ParallelIso2709Parser setSchema(String schema) {
+        this.schema = schema;
+        return this;
+    }
+
+    public ParallelIso2709Parser setFormat(String format) {
+        this.format = format;
+        return this;
+    }
+
+    public ParallelIso2709Parser setType(String type) {
+        this.type = type;
+        return this;
+    }
+
+    public ParallelIso2709Parser setFatalErrors(Boolean fatalerrors) {
+        this.fatalerrors = fatalerrors;
+        return this;
+    }
+
+    public ParallelIso2709Parser setSilentErrors(Boolean silenterrors) {
+        this.silenterrors = silenterrors;
+        return this;
+    }
+
+    /**
+     * Parse an ISO 2709 byte stream.
+     *
+     * @param in the byte stream
+     * @param encoding the character encoding of the records
+     */
+    public void parse(InputStream in, String encoding) throws IOException, SAXException {
+        int numThreads = threads > 0 ? threads : 1;
+        // limit the chunks in flight, so memory stays bounded if the workers are faster than the consumer
+        int window = 2 * numThreads;
+        Iso2709Splitter splitter = new Iso2709Splitter(in, recordsPerChunk);
+        Charset charset = lazyDecoding ? Charset.forName(encoding) : null;
+        ExecutorService service = Executors.newFixedThreadPool(numThreads);
+        CompletionService<MarcXchangeEventBuffer> completionService = new ExecutorCompletionService<>(service);
+        LinkedList<Future<MarcXchangeEventBuffer>> futures = new LinkedList<>();
+        adapter.beginCollection();
+        try {
+            int inflight = 0;
+            Iso2709Splitter.Chunk chunk;
+            while ((chunk = splitter.nextChunk()) != null) {
+                ChunkParser parser = new ChunkParser(chunk, encoding, charset);
+                if (ordered) {
+                    futures.add(service.submit(parser));
+                } else {
+                    completionService.submit(parser);
+                }
+                inflight++;
+                if (inflight >= window) {
+                    emit(ordered ? futures.removeFirst() : completionService.take());
+                    inflight--;
+                }
+            }
+            while (inflight > 0) {
+                emit(ordered ? futures.removeFirst() : completionService.take());
+                inflight--;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            service.shutdownNow();
+        }
+        adapter.endCollection();
+        logger.debug("{} records in {} chunks parsed", splitter.getRecordCounter(), splitter.getChunkCounter());
+        if (splitter.getTruncatedCounter() > 0) {
+            logger.warn("truncated record at end of stream, no record terminator");
+        }
+    }
+
+    private void emit(Future<MarcXchangeEventBuffer> future) throws IOException, InterruptedException {
+        try {
+            future.get().replay(adapter);
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            }
+            throw new IOException(t);
+        }
+    }
+
+    private class ChunkParser implements Callable<MarcXchangeEventBuffer> {
+
+        private final Iso2709Splitter.Chunk chunk;
+
+        private final String encoding;
+
+        private final Charset charset;
+
+        ChunkParser(Iso2709Splitter.Chunk chunk, String encoding, Charset charset) {
+            this.chunk = chunk;
+            this.encoding = encoding;
+            this.charset = charset;
+        }
+
+        @Override
+        public MarcXchangeEventBuffer call() throws Exception {
+            MarcXchangeEventBuffer buffer = new MarcXchangeEventBuffer();
+            if (charset != null) {
+                new Iso2709ByteParser(buffer, charset)
+                        .setFormat(format)
+                        .setType(type)
+                        .setFatalErrors(fatalerrors)
+                        .setSilentErrors(silenterrors)
+                        .parseRecords(chunk.bytes(), 0, chunk.bytes().length);
+                return buffer;
+            }
+            InputSource source = new InputSource(new InputStreamReader(new ByteArrayInputStream(chunk.bytes()), encoding));
+            new MarcXchangeSaxAdapter()
+                    .buffersize(buffersize)
+                    .inputSource(source)
+                    .setListener(buffer)
+                    .setSchema(schema)
+                    .setFormat(format)
+                    .setType(type)
+                    .setFatalErrors(fatalerrors)
+                    .setSilentErrors(silenterrors)
+                    .parseRecords();
+            return buffer;
+        }
+    }
+}
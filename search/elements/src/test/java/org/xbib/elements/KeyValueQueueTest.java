@@ -0,0 +1,71 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.elements;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.keyvalue.KeyValue;
+
+import java.util.List;
+
+public class KeyValueQueueTest extends Assert {
+
+    @Test
+    public void testBatchHandover() throws Exception {
+        KeyValueQueue queue = new KeyValueQueue(2, 3);
+        KeyValueBatch batch = queue.newBatch();
+        for (int i = 0; i < 3; i++) {
+            List<KeyValue> record = batch.next();
+            record.add(new KeyValue("key", Integer.toString(i)));
+        }
+        assertTrue(batch.isFull());
+        queue.put(batch);
+        assertEquals(queue.depth(), 1);
+        KeyValueBatch b = queue.take();
+        assertSame(b, batch);
+        assertEquals(b.size(), 3);
+        assertEquals(b.get(2).get(0).value(), "2");
+        List<KeyValue> buffer = b.get(0);
+        queue.recycle(b);
+        assertTrue(b.isEmpty());
+        // recycled batch and its record buffers are reused
+        KeyValueBatch c = queue.newBatch();
+        assertSame(c, batch);
+        assertSame(c.next(), buffer);
+        assertTrue(buffer.isEmpty());
+        assertEquals(queue.getPuts(), 1L);
+        assertEquals(queue.getTakes(), 1L);
+        assertEquals(queue.getRecords(), 3L);
+        assertTrue(queue.poison().isEmpty());
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.elements.marc;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.elements.Element;
+import org.xbib.elements.NullElement;
+import org.xbib.marc.Field;
+import org.xbib.marc.FieldCollection;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ElementIndexTest extends Assert {
+
+    @Test
+    public void testElementIndex() {
+        MARCSpecification specification = new MARCSpecification();
+        Map map = new HashMap();
+        Element e1 = new NullElement();
+        Element e2 = new NullElement();
+        Element e3 = new NullElement();
+        Element e4 = new NullElement();
+        specification.addSpec("100$0$1$ab", e1, map);
+        specification.addSpec("245", e2, map);
+        specification.addSpec("001$", e3, map);
+        specification.addSpec("LDR$", e4, map);
+        ElementIndex index = new ElementIndex(specification, map);
+
+        FieldCollection fields = new FieldCollection();
+        fields.add(new Field("100", "01", "b"));
+        fields.add(new Field("100", "01", "a"));
+        assertSame(index.getElement(fields), e1);
+        assertSame(index.getElement(fields), specification.getElement(fields.toSpec(), map));
+
+        fields = new FieldCollection();
+        fields.add(new Field("100", "01", "a"));
+        fields.add(new Field("100", "01", "c"));
+        assertNull(index.getElement(fields));
+        assertNull(specification.getElement(fields.toSpec(), map));
+
+        fields = new FieldCollection();
+        fields.add(new Field("245", "00", "a"));
+        assertSame(index.getElement(fields), e2);
+
+        fields = new FieldCollection();
+        fields.add(new Field("001", null, null));
+        assertSame(index.getElement(fields), e3);
+        assertSame(index.getElement(fields), specification.getElement(fields.toSpec(), map));
+
+        fields = new FieldCollection();
+        fields.add(new Field("LDR", null, null));
+        assertSame(index.getElement(fields), e4);
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.elements.marc;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.elements.ElementOutput;
+import org.xbib.marc.Field;
+import org.xbib.marc.FieldCollection;
+import org.xbib.rdf.Resource;
+import org.xbib.rdf.context.ResourceContext;
+import org.xbib.rdf.xcontent.ContentBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MARCPipelineTest extends Assert {
+
+    @Test
+    public void testFieldWithoutSubfields() throws Exception {
+        Map<String, Object> subfields = new HashMap();
+        subfields.put("", "text");
+        subfields.put("a", "title");
+        Map<String, Object> settings = new HashMap();
+        settings.put("subfields", subfields);
+        NoteElement element = new NoteElement();
+        element.setSettings(settings);
+        MARCSpecification specification = new MARCSpecification();
+        Map map = new HashMap();
+        specification.addSpec("500$0$1$", element, map);
+        final List<String> outputs = new ArrayList();
+        final MARCElementBuilder builder = new MARCElementBuilder();
+        builder.addOutput(new ElementOutput<ResourceContext, Resource>() {
+            @Override
+            public boolean enabled() {
+                return true;
+            }
+
+            @Override
+            public void enabled(boolean enabled) {
+            }
+
+            @Override
+            public void output(ResourceContext context, ContentBuilder<ResourceContext, Resource> builder) throws IOException {
+                // the field resources, by predicate, with their properties
+                for (Object o : context.resource().resources().entrySet()) {
+                    Map.Entry<Object, Collection<Resource>> e = (Map.Entry<Object, Collection<Resource>>) o;
+                    for (Resource r : e.getValue()) {
+                        outputs.add(e.getKey() + " " + r.nodeMap());
+                    }
+                }
+            }
+
+            @Override
+            public long getCounter() {
+                return outputs.size();
+            }
+        });
+        MARCElementBuilderFactory factory = new MARCElementBuilderFactory() {
+            public MARCElementBuilder newBuilder() {
+                return builder;
+            }
+        };
+        MARCPipeline pipeline = new MARCPipeline(0, specification, null, map, factory);
+        // a data field without subfields has no subfield ID, it is indexed under the empty subfield
+        FieldCollection fields = new FieldCollection();
+        fields.add(new Field("500", "01", null).data("A note"));
+        builder.begin();
+        pipeline.build(fields, null);
+        builder.end();
+        assertEquals(outputs.size(), 1);
+        assertEquals(outputs.get(0), "NoteElement {text=[A note]}");
+    }
+
+    static class NoteElement extends MARCElement {
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.elements.marc;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MappingPlanTest extends Assert {
+
+    @Test
+    public void testPlan() {
+        Map<String, Object> subfields = new HashMap();
+        subfields.put("a", "identifier");
+        subfields.put("b", "relation");
+        Map<String, Object> relation = new HashMap();
+        relation.put("ed", "editor");
+        List<Map<String, String>> patterns = Collections.singletonList(Collections.singletonMap("hrsg.*", "editor"));
+        Map<String, Object> tags = new HashMap();
+        tags.put("700", "person");
+        Map<String, Object> settings = new HashMap();
+        settings.put("subfields", subfields);
+        settings.put("relation", relation);
+        settings.put("relationpattern", patterns);
+        settings.put("tags", tags);
+        MappingPlan plan = MappingPlan.compile(settings, "Creator");
+        assertSame(plan.settings(), settings);
+        assertEquals(plan.predicate(), "Creator");
+        assertSame(plan.subfields(), subfields);
+        assertEquals(plan.tags().get("700"), "person");
+        // no subfield map for predicate 'person', fall back to default
+        assertSame(plan.subfields("person"), subfields);
+        MappingPlan.ValueMapping mapping = plan.valueMapping("relation");
+        assertTrue(mapping.isDeclared());
+        assertEquals(mapping.map("ed"), "editor");
+        assertEquals(mapping.map("ed. 2"), "editor");
+        assertEquals(mapping.map("Hrsg."), "editor");
+        assertNull(mapping.map("author"));
+        assertNull(plan.valueMapping("unknown"));
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.elements.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.management.MBeanServer;
+import java.lang.management.ManagementFactory;
+
+public class ElementMapperMetricsTest extends Assert {
+
+    @Test
+    public void testRegisterSameName() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ElementMapperMetrics first = new ElementMapperMetrics("marc");
+        ElementMapperMetrics second = new ElementMapperMetrics("marc");
+        first.register();
+        second.register();
+        assertNotNull(first.getObjectName());
+        assertNotNull(second.getObjectName());
+        assertNotEquals(first.getObjectName(), second.getObjectName());
+        assertTrue(server.isRegistered(first.getObjectName()));
+        assertTrue(server.isRegistered(second.getObjectName()));
+        // closing one mapper must not evict the metrics of the other
+        first.unregister();
+        assertTrue(server.isRegistered(second.getObjectName()));
+        second.unregister();
+        assertNull(second.getObjectName());
+    }
+}
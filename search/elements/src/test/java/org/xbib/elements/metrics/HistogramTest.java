@@ -0,0 +1,62 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.elements.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class HistogramTest extends Assert {
+
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+        assertEquals(histogram.getCount(), 0L);
+        assertEquals(histogram.getMeanNanos(), 0L);
+        assertEquals(histogram.getPercentileNanos(0.99), 0L);
+    }
+
+    @Test
+    public void testPercentiles() {
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.update(1000L);
+        }
+        histogram.update(1000000L);
+        assertEquals(histogram.getCount(), 100L);
+        assertEquals(histogram.getMaxNanos(), 1000000L);
+        assertEquals(histogram.getSumNanos(), 99000L + 1000000L);
+        // 1000 falls into the bucket up to 1023
+        assertEquals(histogram.getPercentileNanos(0.5), 1023L);
+        assertEquals(histogram.getPercentileNanos(0.99), 1023L);
+        assertEquals(histogram.getPercentileNanos(1.0), 1000000L);
+    }
+}
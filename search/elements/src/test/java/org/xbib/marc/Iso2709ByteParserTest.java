@@ -0,0 +1,123 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.marc;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xbib.keyvalue.KeyValueStreamAdapter;
+import org.xml.sax.InputSource;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Iso2709ByteParserTest extends Assert {
+
+    @Test
+    public void testBytesEqualsChars() throws Exception {
+        String chars = parse(1, false);
+        String bytes = parse(1, true);
+        assertEquals(bytes, chars);
+        String parallel = parse(4, true);
+        assertEquals(parallel, chars);
+    }
+
+    @Test
+    public void testLazyData() throws Exception {
+        byte[] b = "xxJörg".getBytes("UTF-8");
+        Field field = new Field("100").data(b, 2, b.length - 2, Charset.forName("UTF-8"));
+        assertFalse(field.isEmpty());
+        assertEquals(field.data(), "Jörg");
+        field.data("Prante");
+        assertEquals(field.data(), "Prante");
+        assertTrue(new Field("100").data(b, 0, 0, Charset.forName("UTF-8")).isEmpty());
+    }
+
+    @Test
+    public void testLazyKeyValues() throws Exception {
+        final List<FieldCollection> keys = new ArrayList<>();
+        MarcXchange2KeyValue kv = new MarcXchange2KeyValue()
+                .transformer(new MarcXchange2KeyValue.FieldDataTransformer() {
+                    @Override
+                    public String transform(String value) {
+                        return "\u0001" + value;
+                    }
+                })
+                .addListener(new KeyValueStreamAdapter<FieldCollection, String>() {
+                    @Override
+                    public void keyValue(FieldCollection key, String value) {
+                        if (key != FieldCollection.FORMAT_KEY && key != FieldCollection.TYPE_KEY
+                                && key != FieldCollection.LEADER_KEY && key.size() == 1) {
+                            // not decoded until asked for
+                            assertNull(value);
+                            assertFalse(key.getFirst().isDecoded());
+                            keys.add(key);
+                        }
+                    }
+                });
+        Iso2709Reader reader = new Iso2709Reader().setMarcXchangeListener(kv);
+        reader.setProperty(Iso2709Reader.LAZY_DECODING, true);
+        InputStream in = getClass().getResourceAsStream("zdblokutf8.mrc");
+        InputSource source = new InputSource(in);
+        source.setEncoding("UTF-8");
+        reader.parse(source);
+        in.close();
+        assertFalse(keys.isEmpty());
+        for (FieldCollection key : keys) {
+            // transformed once when decoded
+            String data = key.data();
+            assertTrue(data.startsWith("\u0001") && !data.startsWith("\u0001\u0001"), data);
+            assertTrue(key.getFirst().isDecoded());
+        }
+    }
+
+    private String parse(int threads, boolean lazy) throws Exception {
+        ParallelIso2709ParserTest.Trace trace = new ParallelIso2709ParserTest().new Trace();
+        Iso2709Reader reader = new Iso2709Reader().setMarcXchangeListener(trace);
+        reader.setProperty(Iso2709Reader.PARALLEL, threads);
+        reader.setProperty(Iso2709Reader.LAZY_DECODING, lazy);
+        reader.setProperty(Iso2709Reader.RECORDS_PER_CHUNK, 16);
+        InputStream in = getClass().getResourceAsStream("zdblokutf8.mrc");
+        InputSource source;
+        if (lazy) {
+            source = new InputSource(in);
+            source.setEncoding("ISO-8859-1");
+        } else {
+            source = new InputSource(new InputStreamReader(in, "ISO-8859-1"));
+        }
+        reader.parse(source);
+        in.close();
+        return trace.toString();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.marc;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xml.sax.InputSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+public class ParallelIso2709ParserTest extends Assert {
+
+    @Test
+    public void testParallelEqualsSequential() throws Exception {
+        String sequential = parse(1, true);
+        String parallel = parse(4, true);
+        assertEquals(parallel, sequential);
+        String unordered = parse(4, false);
+        assertEquals(unordered.length(), sequential.length());
+    }
+
+    @Test
+    public void testSplitterTrailingBytes() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(read("zdblokutf8.mrc"));
+        // the sample ends with a record without record terminator
+        out.write(Iso2709Splitter.RECORD_TERMINATOR);
+        Iso2709Splitter splitter = split(out.toByteArray());
+        long count = splitter.getRecordCounter();
+        assertTrue(count > 0);
+        assertEquals(splitter.getTruncatedCounter(), 0L);
+        // a final line feed is not a record
+        out.write('\n');
+        splitter = split(out.toByteArray());
+        assertEquals(splitter.getRecordCounter(), count);
+        assertEquals(splitter.getTruncatedCounter(), 0L);
+        // a record without record terminator is passed on and counted
+        out.write("00042nam".getBytes("US-ASCII"));
+        splitter = split(out.toByteArray());
+        assertEquals(splitter.getRecordCounter(), count + 1);
+        assertEquals(splitter.getTruncatedCounter(), 1L);
+    }
+
+    private byte[] read(String name) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = getClass().getResourceAsStream(name);
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private Iso2709Splitter split(byte[] b) throws Exception {
+        Iso2709Splitter splitter = new Iso2709Splitter(new ByteArrayInputStream(b), 16);
+        while (splitter.nextChunk() != null) {
+        }
+        return splitter;
+    }
+
+    private String parse(int threads, boolean ordered) throws Exception {
+        Trace trace = new Trace();
+        Iso2709Reader reader = new Iso2709Reader().setMarcXchangeListener(trace);
+        reader.setProperty(Iso2709Reader.PARALLEL, threads);
+        reader.setProperty(Iso2709Reader.ORDERED, ordered);
+        reader.setProperty(Iso2709Reader.RECORDS_PER_CHUNK, 16);
+        InputStream in = getClass().getResourceAsStream("zdblokutf8.mrc");
+        InputSource source;
+        if (threads > 1) {
+            source = new InputSource(in);
+            source.setEncoding("UTF-8");
+        } else {
+            source = new InputSource(new InputStreamReader(in, "UTF-8"));
+        }
+        reader.parse(source);
+        in.close();
+        return trace.toString();
+    }
+
+    class Trace implements MarcXchangeListener {
+
+        StringBuilder sb = new StringBuilder();
+
+        @Override
+        public void beginRecord(String format, String type) {
+            sb.append("beginRecord\n");
+        }
+
+        @Override
+        public void leader(String label) {
+            sb.append(label).append('\n');
+        }
+
+        @Override
+        public void beginControlField(Field field) {
+        }
+
+        @Override
+        public void endControlField(Field field) {
+            sb.append(field.tag()).append(field.data()).append('\n');
+        }
+
+        @Override
+        public void beginDataField(Field field) {
+            sb.append(field.tag()).append(field.indicator()).append('\n');
+        }
+
+        @Override
+        public void beginSubField(Field field) {
+        }
+
+        @Override
+        public void endSubField(Field field) {
+            sb.append(field.subfieldId()).append(field.data()).append('\n');
+        }
+
+        @Override
+        public void endDataField(Field field) {
+            sb.append("endDataField\n");
+        }
+
+        @Override
+        public void trailer(String trailer) {
+        }
+
+        @Override
+        public void endRecord() {
+            sb.append("endRecord\n");
+        }
+
+        public String toString() {
+            return sb.toString();
+        }
+    }
+}
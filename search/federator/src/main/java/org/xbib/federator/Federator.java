@@ -54,6 +54,9 @@ public class Federator {
     private final static Federator instance = new Federator();
     private ExecutorService executorService;
     private String base;
+    private long timeout;
+    private long deadline;
+    private int merge;
 
     private Federator() {
     }
@@ -79,6 +82,37 @@ public class Federator {
         return this;
     }
 
+    /**
+     * Set the default time a target may take when streaming.
+     * @param millis the time in milliseconds, or 0 for no limit
+     * @return this federator
+     */
+    public Federator setTimeout(long millis) {
+        this.timeout = millis;
+        return this;
+    }
+
+    /**
+     * Set the time a streaming request may take.
+     * @param millis the time in milliseconds, or 0 for no limit
+     * @return this federator
+     */
+    public Federator setDeadline(long millis) {
+        this.deadline = millis;
+        return this;
+    }
+
+    /**
+     * Merge the records of streaming requests.
+     * @param keys the number of group keys remembered for detecting
+     * duplicates, or 0 for no merge
+     * @return this federator
+     */
+    public Federator setMerge(int keys) {
+        this.merge = keys;
+        return this;
+    }
+
     public void shutdown(long millisToWait) throws InterruptedException {
         if (executorService != null) {
             executorService.awaitTermination(millisToWait, TimeUnit.MILLISECONDS);
@@ -151,7 +185,10 @@ public class Federator {
         if (executorService == null) {
             throw new ExecutionException("no executor service", null);
         }
-        FederatorRequest federatorRequest = new FederatorRequest(jobId, executorService);
+        FederatorRequest federatorRequest = new FederatorRequest(jobId, executorService)
+                .setTimeout(timeout)
+                .setDeadline(deadline)
+                .setMerge(merge);
         for (Action action : actions) {
             //LinkedList<XMLEvent> events = new LinkedList();
             //SearchRetrieveResponse response = new SearchRetrieveResponse();
@@ -0,0 +1,169 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.federator;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import org.xbib.federator.action.Action;
+
+/**
+ * Merges the records of the targets of a streamed federator request.
+ *
+ * The records are handed out in turns, one record of each target, so no
+ * target can push the others off the first page. A target without waiting
+ * records holds the turn until it delivers or finishes, unless the merge is
+ * forced. A record sharing a group key with a record handed out before is a
+ * duplicate and dropped, so the surviving record of a group does not depend
+ * on which target was faster. The keys are held in a hash index of bounded
+ * size which forgets the oldest keys first.
+ *
+ * The merge is used by the writing thread only and is not thread safe.
+ */
+class FederatorMerge {
+
+    private final List<Action> actions;
+
+    private final Map<Action, LinkedList<FederatorRequest.Message>> queues;
+
+    private final Set<Action> finished;
+
+    private final Map<String, Boolean> index;
+
+    private final Semaphore permits;
+
+    private int turn;
+
+    private int size;
+
+    private int duplicates;
+
+    /**
+     * @param actions the targets, in the order of their turns
+     * @param maxKeys the size of the key index
+     * @param permits the permits of the waiting records, released for dropped records
+     */
+    FederatorMerge(List<Action> actions, final int maxKeys, Semaphore permits) {
+        this.actions = actions;
+        this.permits = permits;
+        this.queues = new HashMap();
+        for (Action action : actions) {
+            queues.put(action, new LinkedList<FederatorRequest.Message>());
+        }
+        this.finished = new HashSet();
+        this.index = new LinkedHashMap<String, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    /**
+     * Add a record.
+     *
+     * @param m the record message, with the keys of the record
+     */
+    void offer(FederatorRequest.Message m) {
+        queues.get(m.action).add(m);
+        size++;
+    }
+
+    /**
+     * The target will not deliver any more records.
+     */
+    void finish(Action action) {
+        finished.add(action);
+    }
+
+    /**
+     * Take the next record.
+     *
+     * @param force if true, skip targets without waiting records
+     * @return the record, or null if the turn is at a target that may still
+     * deliver, or if there are no records
+     */
+    FederatorRequest.Message poll(boolean force) {
+        int n = actions.size();
+        for (int i = 0; i < n; i++) {
+            int t = (turn + i) % n;
+            LinkedList<FederatorRequest.Message> queue = queues.get(actions.get(t));
+            while (!queue.isEmpty()) {
+                FederatorRequest.Message m = queue.removeFirst();
+                size--;
+                if (duplicate(m.keys)) {
+                    duplicates++;
+                    permits.release();
+                } else {
+                    turn = (t + 1) % n;
+                    return m;
+                }
+            }
+            if (!force && !finished.contains(actions.get(t))) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private boolean duplicate(Collection<String> keys) {
+        if (keys == null) {
+            return false;
+        }
+        boolean found = false;
+        for (String key : keys) {
+            // remember all keys of the group, also of duplicates
+            found = index.put(key, Boolean.TRUE) != null || found;
+        }
+        return found;
+    }
+
+    /**
+     * The number of waiting records.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * The number of dropped duplicates.
+     */
+    int duplicates() {
+        return duplicates;
+    }
+}
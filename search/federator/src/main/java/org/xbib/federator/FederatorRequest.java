@@ -31,16 +31,40 @@
  */
 package org.xbib.federator;
 
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.XMLEvent;
 import org.xbib.federator.action.Action;
+import org.xbib.federator.action.ActionListener;
+import org.xbib.logging.Logger;
+import org.xbib.logging.LoggerFactory;
+import org.xbib.sru.Diagnostics;
 
 public class FederatorRequest {
 
+    private final static Logger logger = LoggerFactory.getLogger(FederatorRequest.class.getName());
+
+    private final static XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
     private final String id;
 
     private final ExecutorService service;
@@ -49,6 +73,14 @@ public class FederatorRequest {
 
     private List<ResponseListener<Action>> listeners;
 
+    private long timeout;
+
+    private long deadline;
+
+    private int capacity = 64;
+
+    private int merge;
+
     public FederatorRequest(String id, ExecutorService service) {
         this.id = id;
         this.service = service;
@@ -60,6 +92,47 @@ public class FederatorRequest {
         return id;
     }
 
+    /**
+     * Set the default time a target may take in streaming mode. Actions can
+     * override it by their timeout parameter.
+     *
+     * @param millis the time in milliseconds, or 0 for no limit
+     */
+    public FederatorRequest setTimeout(long millis) {
+        this.timeout = millis;
+        return this;
+    }
+
+    /**
+     * Set the time the whole request may take in streaming mode.
+     *
+     * @param millis the time in milliseconds, or 0 for no limit
+     */
+    public FederatorRequest setDeadline(long millis) {
+        this.deadline = millis;
+        return this;
+    }
+
+    /**
+     * Set the number of records that may wait for the writer in streaming mode.
+     */
+    public FederatorRequest setCapacity(int capacity) {
+        this.capacity = capacity;
+        return this;
+    }
+
+    /**
+     * Merge the records in streaming mode: drop duplicates and take turns
+     * between the targets.
+     *
+     * @param keys the number of group keys remembered for detecting
+     * duplicates, or 0 for no merge
+     */
+    public FederatorRequest setMerge(int keys) {
+        this.merge = keys;
+        return this;
+    }
+
     public FederatorRequest add(Action action) {
         actions.add(action);
         return this;
@@ -111,4 +184,257 @@ public class FederatorRequest {
         }
         return new FederatorResponse(count, events);
     }
+
+    public FederatorResponse stream(String version, Writer writer)
+            throws InterruptedException, XMLStreamException {
+        return stream(version, outputFactory.createXMLEventWriter(writer));
+    }
+
+    /**
+     * Invoke job and write the SRU response while the responses arrive.
+     *
+     * The records are written in the order the targets deliver them. The
+     * response header is written as soon as every target reported its number
+     * of records, so records of fast targets wait only for the searches of the
+     * slow ones, and at most a fixed number of records wait for the writer,
+     * the targets are blocked otherwise. Targets exceeding their timeout or
+     * the deadline are cancelled and, like failed targets, reported as SRU
+     * diagnostics after the records. If merging is enabled, duplicate records
+     * are dropped and the records are written in turns of the targets.
+     *
+     * @param version the SRU version
+     * @param ew the writer
+     * @return the response, with the number of records and the diagnostics
+     * @throws InterruptedException
+     * @throws XMLStreamException
+     */
+    public FederatorResponse stream(String version, XMLEventWriter ew)
+            throws InterruptedException, XMLStreamException {
+        Stream stream = new Stream();
+        long start = System.currentTimeMillis();
+        long end = deadline > 0 ? start + deadline : Long.MAX_VALUE;
+        Map<Action, Future<Action>> futures = new HashMap();
+        Map<Action, Long> deadlines = new HashMap();
+        for (final Action action : actions) {
+            action.setListener(stream);
+            final Stream s = stream;
+            FutureTask<Action> task = new FutureTask<Action>(action) {
+                @Override
+                protected void done() {
+                    s.messages.offer(new Message(action, Message.DONE));
+                }
+            };
+            futures.put(action, task);
+            long t = action.getTimeout() > 0 ? action.getTimeout() : timeout;
+            deadlines.put(action, t > 0 ? Math.min(end, start + t) : end);
+            service.execute(task);
+        }
+        FederatorResponse response = new FederatorResponse();
+        List<Diagnostics> diagnostics = new LinkedList();
+        Set<Action> pending = new HashSet(actions);
+        Set<Action> counted = new HashSet();
+        LinkedList<Message> held = new LinkedList();
+        FederatorMerge merger = merge > 0 ? new FederatorMerge(actions, merge, stream.permits) : null;
+        boolean header = false;
+        long count = 0L;
+        try {
+            while (!pending.isEmpty()) {
+                long now = System.currentTimeMillis();
+                long next = Long.MAX_VALUE;
+                Iterator<Action> it = pending.iterator();
+                while (it.hasNext()) {
+                    Action action = it.next();
+                    long d = deadlines.get(action);
+                    if (now >= d) {
+                        it.remove();
+                        if (merger != null) {
+                            merger.finish(action);
+                        }
+                        stream.expired.add(action);
+                        futures.get(action).cancel(true);
+                        diagnostics.add(new Diagnostics(2, "no response within " + (d - start) + " ms", action.getName()));
+                        logger.warn("{}: no response within {} ms", action.getName(), d - start);
+                    } else {
+                        next = Math.min(next, d);
+                    }
+                }
+                if (!header && counted.containsAll(pending)) {
+                    response.writeHeader(version, count, ew);
+                    header = true;
+                    while (!held.isEmpty()) {
+                        write(response, stream, held.removeFirst(), ew);
+                    }
+                }
+                if (header && merger != null) {
+                    drain(response, stream, merger, false, ew);
+                }
+                if (pending.isEmpty()) {
+                    break;
+                }
+                Message m = next == Long.MAX_VALUE ? stream.messages.take()
+                        : stream.messages.poll(next - now, TimeUnit.MILLISECONDS);
+                if (m == null) {
+                    continue;
+                }
+                if (!pending.contains(m.action)) {
+                    // late message of a cancelled target
+                    if (m.type == Message.RECORD) {
+                        stream.permits.release();
+                    }
+                    continue;
+                }
+                switch (m.type) {
+                    case Message.COUNT:
+                        if (counted.add(m.action)) {
+                            count += m.count;
+                        }
+                        break;
+                    case Message.RECORD:
+                        if (merger != null) {
+                            merger.offer(m);
+                        } else if (header) {
+                            write(response, stream, m, ew);
+                        } else {
+                            held.add(m);
+                        }
+                        break;
+                    case Message.FAILED:
+                        diagnostics.add(new Diagnostics(1, String.valueOf(m.failure.getMessage()), m.action.getName()));
+                        break;
+                    case Message.DONE:
+                        pending.remove(m.action);
+                        if (merger != null) {
+                            merger.finish(m.action);
+                        }
+                        for (ResponseListener<Action> listener : listeners) {
+                            listener.onResponse(m.action);
+                        }
+                        break;
+                }
+            }
+            if (!header) {
+                response.writeHeader(version, count, ew);
+            }
+            while (!held.isEmpty()) {
+                write(response, stream, held.removeFirst(), ew);
+            }
+            if (merger != null) {
+                drain(response, stream, merger, true, ew);
+            }
+            response.setDiagnostics(diagnostics).writeFooter(ew);
+        } finally {
+            stream.close();
+            for (Future<Action> future : futures.values()) {
+                future.cancel(true);
+            }
+        }
+        logger.info("{}: {} records of {} in {} ms, {} duplicates, {} diagnostics",
+                id, response.written(), count, System.currentTimeMillis() - start,
+                merger != null ? merger.duplicates() : 0, diagnostics.size());
+        return response.setCount(count);
+    }
+
+    private void write(FederatorResponse response, Stream stream, Message m, XMLEventWriter ew)
+            throws XMLStreamException {
+        try {
+            response.writeRecord(m.record.iterator(), ew);
+            ew.flush();
+        } finally {
+            stream.permits.release();
+        }
+    }
+
+    /**
+     * Write the merged records. If all permits are taken by waiting records,
+     * no target can deliver, and the turn passes over the targets without
+     * records.
+     */
+    private void drain(FederatorResponse response, Stream stream, FederatorMerge merger,
+                       boolean force, XMLEventWriter ew) throws XMLStreamException {
+        Message m;
+        while ((m = merger.poll(force || merger.size() >= capacity)) != null) {
+            write(response, stream, m, ew);
+        }
+    }
+
+    /**
+     * Passes the results of the actions to the writing thread. A record takes
+     * a permit, which is given back when it has been written.
+     */
+    class Stream implements ActionListener {
+
+        final LinkedBlockingQueue<Message> messages = new LinkedBlockingQueue();
+
+        final Semaphore permits = new Semaphore(capacity);
+
+        final Set<Action> expired = Collections.newSetFromMap(new ConcurrentHashMap<Action, Boolean>());
+
+        volatile boolean closed;
+
+        @Override
+        public void count(Action action, long count) {
+            Message m = new Message(action, Message.COUNT);
+            m.count = count;
+            messages.offer(m);
+        }
+
+        @Override
+        public void record(Action action, List<XMLEvent> record) throws InterruptedException {
+            if (closed || expired.contains(action)) {
+                return;
+            }
+            // computed by the target thread, the writer only looks them up
+            Collection<String> keys = merge > 0 ? RecordKeys.keys(record) : null;
+            permits.acquire();
+            if (closed || expired.contains(action)) {
+                permits.release();
+                return;
+            }
+            Message m = new Message(action, Message.RECORD);
+            m.record = record;
+            m.keys = keys;
+            messages.offer(m);
+        }
+
+        @Override
+        public void failed(Action action, Throwable t) {
+            Message m = new Message(action, Message.FAILED);
+            m.failure = t;
+            messages.offer(m);
+        }
+
+        void close() {
+            closed = true;
+            // wake up the targets waiting for a permit
+            permits.release(capacity);
+        }
+    }
+
+    static class Message {
+
+        final static int COUNT = 0;
+
+        final static int RECORD = 1;
+
+        final static int FAILED = 2;
+
+        final static int DONE = 3;
+
+        final Action action;
+
+        final int type;
+
+        long count;
+
+        List<XMLEvent> record;
+
+        Collection<String> keys;
+
+        Throwable failure;
+
+        Message(Action action, int type) {
+            this.action = action;
+            this.type = type;
+        }
+    }
 }
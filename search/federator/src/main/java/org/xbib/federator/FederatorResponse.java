@@ -32,8 +32,10 @@
 package org.xbib.federator;
 
 import java.io.Writer;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.regex.Pattern;
 import javax.xml.stream.XMLEventFactory;
 import javax.xml.stream.XMLEventWriter;
@@ -44,6 +46,7 @@ import javax.xml.stream.events.ProcessingInstruction;
 import javax.xml.stream.events.XMLEvent;
 import org.xbib.logging.Logger;
 import org.xbib.logging.LoggerFactory;
+import org.xbib.sru.Diagnostics;
 import org.xbib.sru.SRUConstants;
 
 public class FederatorResponse {
@@ -58,15 +61,50 @@ public class FederatorResponse {
 
     private LinkedList<XMLEvent> events;
 
+    private List<Diagnostics> diagnostics;
+
+    private int pos = 1;
+
+    private boolean inElement;
+
     FederatorResponse(long count, LinkedList<XMLEvent> events) {
         this.count = count;
         this.events = events;
+        this.diagnostics = Collections.emptyList();
+    }
+
+    FederatorResponse() {
+        this(0L, new LinkedList<XMLEvent>());
+    }
+
+    FederatorResponse setCount(long count) {
+        this.count = count;
+        return this;
+    }
+
+    FederatorResponse setDiagnostics(List<Diagnostics> diagnostics) {
+        this.diagnostics = diagnostics;
+        return this;
     }
 
     public long getCount() {
         return count;
     }
 
+    /**
+     * The number of records written.
+     */
+    int written() {
+        return pos - 1;
+    }
+
+    /**
+     * The diagnostics of the targets that failed or did not respond in time.
+     */
+    public List<Diagnostics> getDiagnostics() {
+        return diagnostics;
+    }
+
     public LinkedList<XMLEvent> getEvents() {
         return events;
     }
@@ -76,6 +114,12 @@ public class FederatorResponse {
     }
 
     public void toSRUResponse(String version, XMLEventWriter ew) throws XMLStreamException {
+        writeHeader(version, count, ew);
+        writeRecord(events.iterator(), ew);
+        writeFooter(ew);
+    }
+
+    void writeHeader(String version, long count, XMLEventWriter ew) throws XMLStreamException {
         ew.add(eventFactory.createStartDocument());
         ew.add(eventFactory.createStartElement(SRUConstants.NS_PREFIX, SRUConstants.NS_URI, "searchRetrieveResponse"));
         ew.add(eventFactory.createNamespace(SRUConstants.NS_PREFIX, SRUConstants.NS_URI));
@@ -86,9 +130,13 @@ public class FederatorResponse {
         ew.add(eventFactory.createCharacters(Long.toString(count)));
         ew.add(eventFactory.createEndElement(SRUConstants.NS_PREFIX, SRUConstants.NS_URI, "numberOfRecords"));
         ew.add(eventFactory.createStartElement(SRUConstants.NS_PREFIX, SRUConstants.NS_URI, "records"));
-        int pos = 1;
-        boolean inElement = false;
-        Iterator<XMLEvent> it = events.iterator();
+    }
+
+    /**
+     * Write the events of one or more records. Record positions continue
+     * over all records written to this response.
+     */
+    void writeRecord(Iterator<XMLEvent> it, XMLEventWriter ew) throws XMLStreamException {
         while (it.hasNext()) {
             XMLEvent e = it.next();
             if (e.isProcessingInstruction()) {
@@ -161,8 +209,34 @@ public class FederatorResponse {
                 }
             }
         }
+    }
+
+    void writeFooter(XMLEventWriter ew) throws XMLStreamException {
         ew.add(eventFactory.createEndElement(SRUConstants.NS_PREFIX, SRUConstants.NS_URI, "records"));
+        if (!diagnostics.isEmpty()) {
+            ew.add(eventFactory.createStartElement(SRUConstants.NS_PREFIX, SRUConstants.NS_URI, "diagnostics"));
+            for (Diagnostics d : diagnostics) {
+                ew.add(eventFactory.createStartElement(DIAG_PREFIX, DIAG_NS_URI, "diagnostic"));
+                ew.add(eventFactory.createNamespace(DIAG_PREFIX, DIAG_NS_URI));
+                element(ew, "uri", d.getURI());
+                element(ew, "details", d.getDetails());
+                element(ew, "message", d.getDiagnosticMessage());
+                ew.add(eventFactory.createEndElement(DIAG_PREFIX, DIAG_NS_URI, "diagnostic"));
+            }
+            ew.add(eventFactory.createEndElement(SRUConstants.NS_PREFIX, SRUConstants.NS_URI, "diagnostics"));
+        }
+        ew.add(eventFactory.createEndElement(SRUConstants.NS_PREFIX, SRUConstants.NS_URI, "searchRetrieveResponse"));
         ew.add(eventFactory.createEndDocument());
+        ew.flush();
+    }
+
+    private void element(XMLEventWriter ew, String name, String value) throws XMLStreamException {
+        if (value == null) {
+            return;
+        }
+        ew.add(eventFactory.createStartElement(DIAG_PREFIX, DIAG_NS_URI, name));
+        ew.add(eventFactory.createCharacters(value));
+        ew.add(eventFactory.createEndElement(DIAG_PREFIX, DIAG_NS_URI, name));
     }
     
     /*public void toSRUResponse(String version, Writer writer, StylesheetTransformer transformer, String stylesheet) throws XMLStreamException {
@@ -176,6 +250,10 @@ public class FederatorResponse {
         return eventFactory.createCharacters(INVALID.matcher(e.getData()).replaceAll(""));
     }
     
+    private final static String DIAG_PREFIX = "diag";
+
+    private final static String DIAG_NS_URI = "http://www.loc.gov/zing/srw/diagnostic/";
+
     private final static Pattern INVALID =
             Pattern.compile("[^\\u0009\\u000A\\u000D\\u0020-\\uD7FF\\uE000-\\uFFFD\\uD800\\uDC00-\\uDBFF\\uDFFF]");
 }
\ No newline at end of file
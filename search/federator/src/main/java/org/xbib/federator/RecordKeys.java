@@ -0,0 +1,289 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.federator;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.namespace.QName;
+import org.xbib.grouping.bibliographic.GroupDomain;
+import org.xbib.grouping.bibliographic.GroupKey;
+import org.xbib.grouping.bibliographic.InvalidGroupDomainException;
+import org.xbib.grouping.bibliographic.SegmentedGroupKey;
+import org.xbib.grouping.bibliographic.SimpleComponent;
+import org.xbib.grouping.bibliographic.date.DateComponent;
+import org.xbib.grouping.bibliographic.endeavor.WorkAuthor;
+import org.xbib.grouping.bibliographic.number.StandardNumberComponent;
+import org.xbib.grouping.bibliographic.title.TitleComponent;
+import org.xbib.standardnumber.ISBN;
+import org.xbib.standardnumber.InvalidStandardNumberException;
+import org.xbib.strings.encode.EncoderException;
+
+/**
+ * Group keys of a record, for finding duplicates among the records of
+ * different targets.
+ *
+ * Title, author, date and ISBN are taken from MARC XML (245, 100/110/111/700,
+ * 260/264 or 008, 020), MODS and Dublin Core. Each ISBN gives a key, and
+ * title and date give a key if an author or a date is known, so that
+ * records sharing an ISBN, or a work by the same author of the same year,
+ * share a key.
+ */
+public class RecordKeys {
+
+    private final static QName TAG = new QName("tag");
+
+    private final static QName CODE = new QName("code");
+
+    private final static QName TYPE = new QName("type");
+
+    private final static Pattern YEAR = Pattern.compile("\\d{4}");
+
+    private final static Pattern ISBN_CANDIDATE = Pattern.compile("\\d[\\d\\- ]{8,15}[\\dXx]");
+
+    private final static int TITLE = 1;
+
+    private final static int AUTHOR = 2;
+
+    private final static int DATE = 3;
+
+    private final static int NUMBER = 4;
+
+    private final static int CONTROL = 5;
+
+    private final static int SUBTITLE = 6;
+
+    private String title;
+
+    private String author;
+
+    private String date;
+
+    private final Set<String> numbers = new LinkedHashSet();
+
+    private RecordKeys() {
+    }
+
+    /**
+     * Compute the group keys of a record.
+     *
+     * @param record the events of the record
+     * @return the encoded keys, empty if the record can not be grouped
+     */
+    public static Collection<String> keys(List<XMLEvent> record) {
+        RecordKeys keys = new RecordKeys();
+        keys.parse(record);
+        return keys.encode();
+    }
+
+    private void parse(List<XMLEvent> record) {
+        String tag = null;
+        int field = 0;
+        StringBuilder sb = new StringBuilder();
+        for (XMLEvent e : record) {
+            if (e.isStartElement()) {
+                StartElement element = e.asStartElement();
+                String name = element.getName().getLocalPart();
+                switch (name) {
+                    case "controlfield":
+                        tag = value(element, TAG);
+                        field = "008".equals(tag) ? CONTROL : 0;
+                        break;
+                    case "datafield":
+                        tag = value(element, TAG);
+                        field = 0;
+                        break;
+                    case "subfield":
+                        field = marc(tag, value(element, CODE));
+                        break;
+                    case "title":
+                        field = TITLE;
+                        break;
+                    case "subTitle":
+                        field = SUBTITLE;
+                        break;
+                    case "creator":
+                    case "namePart":
+                        field = AUTHOR;
+                        break;
+                    case "date":
+                    case "dateIssued":
+                        field = DATE;
+                        break;
+                    case "identifier":
+                        String type = value(element, TYPE);
+                        field = type == null || "isbn".equalsIgnoreCase(type) ? NUMBER : 0;
+                        break;
+                    default:
+                        field = 0;
+                        break;
+                }
+                sb.setLength(0);
+            } else if (e.isCharacters() && field != 0) {
+                sb.append(e.asCharacters().getData());
+            } else if (e.isEndElement() && field != 0) {
+                add(field, sb.toString().trim());
+                field = 0;
+            }
+        }
+    }
+
+    private int marc(String tag, String code) {
+        if (tag == null || code == null) {
+            return 0;
+        }
+        switch (tag) {
+            case "245":
+                return "a".equals(code) ? TITLE : "b".equals(code) ? SUBTITLE : 0;
+            case "100":
+            case "110":
+            case "111":
+            case "700":
+                return "a".equals(code) ? AUTHOR : 0;
+            case "260":
+            case "264":
+                return "c".equals(code) ? DATE : 0;
+            case "020":
+                return "a".equals(code) ? NUMBER : 0;
+            default:
+                return 0;
+        }
+    }
+
+    private void add(int field, String value) {
+        if (value.isEmpty()) {
+            return;
+        }
+        switch (field) {
+            case TITLE:
+                if (title == null) {
+                    title = value;
+                }
+                break;
+            case SUBTITLE:
+                if (title != null) {
+                    title = title + " " + value;
+                }
+                break;
+            case AUTHOR:
+                if (author == null) {
+                    author = value;
+                }
+                break;
+            case DATE:
+                if (date == null) {
+                    date = year(value);
+                }
+                break;
+            case CONTROL:
+                // date 1 in positions 7-10
+                if (date == null && value.length() >= 11) {
+                    date = year(value.substring(7, 11));
+                }
+                break;
+            case NUMBER:
+                // skip qualifiers like "(pbk.)" or a leading "ISBN"
+                Matcher m = ISBN_CANDIDATE.matcher(value);
+                if (!m.find()) {
+                    break;
+                }
+                try {
+                    ISBN isbn = new ISBN(m.group(), true);
+                    if (isbn.isValid()) {
+                        numbers.add(isbn.getStandardNumberValue());
+                    }
+                } catch (InvalidStandardNumberException e) {
+                    // not an ISBN
+                }
+                break;
+        }
+    }
+
+    private Collection<String> encode() {
+        Set<String> keys = new LinkedHashSet();
+        try {
+            for (String number : numbers) {
+                StandardNumberComponent component = new StandardNumberComponent();
+                component.add(new ISBN(number, true));
+                GroupKey key = new SegmentedGroupKey();
+                key.add(component);
+                keys.add(key.encodeToString());
+            }
+            if (title != null && (author != null || date != null)) {
+                GroupKey key = new SegmentedGroupKey();
+                TitleComponent titleComponent = new TitleComponent();
+                for (String word : title.split("\\s+")) {
+                    if (word.replaceAll("[^\\p{L}\\p{N}]", "").length() > 0) {
+                        titleComponent.add(word);
+                    }
+                }
+                key.add(titleComponent);
+                if (author != null) {
+                    String id = new WorkAuthor().workName(title).authorName(author).createIdentifier();
+                    if (id == null) {
+                        // blacklisted work name
+                        return keys;
+                    }
+                    key.add(new SimpleComponent(GroupDomain.CREATOR, id));
+                }
+                if (date != null) {
+                    DateComponent dateComponent = new DateComponent();
+                    dateComponent.add(date);
+                    key.add(dateComponent);
+                }
+                if (key.isUsable()) {
+                    keys.add(key.encodeToString());
+                }
+            }
+        } catch (EncoderException | InvalidStandardNumberException | InvalidGroupDomainException
+                | IllegalArgumentException e) {
+            // keep the keys found so far
+        }
+        return keys;
+    }
+
+    private static String value(StartElement element, QName name) {
+        Attribute attr = element.getAttributeByName(name);
+        return attr != null ? attr.getValue() : null;
+    }
+
+    private static String year(String value) {
+        Matcher m = YEAR.matcher(value);
+        return m.find() ? m.group() : null;
+    }
+}
@@ -31,7 +31,9 @@
  */
 package org.xbib.federator.action;
 
+import java.util.List;
 import java.util.Map;
+import javax.xml.stream.events.XMLEvent;
 import org.xbib.sru.searchretrieve.SearchRetrieveResponse;
 import org.xbib.xml.transform.StylesheetTransformer;
 
@@ -49,6 +51,8 @@ public abstract class AbstractAction implements Action {
 
     protected String base;
 
+    protected ActionListener listener;
+
     @Override
     public Action setBase(String base) {
         this.base = base;
@@ -98,6 +102,56 @@ public abstract class AbstractAction implements Action {
         return count;
     }
 
+    @Override
+    public Action setListener(ActionListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    @Override
+    public String getName() {
+        return params != null ? get(params, "name", "default") : "default";
+    }
+
+    @Override
+    public long getTimeout() {
+        return params != null ? get(params, "timeout", 0) : 0L;
+    }
+
+    /**
+     * Set the number of records found and pass it to the listener.
+     */
+    protected void count(long count) {
+        this.count = count;
+        if (listener != null) {
+            listener.count(this, count);
+        }
+    }
+
+    /**
+     * Pass a failure to the listener.
+     */
+    protected void fail(Throwable t) {
+        if (listener != null) {
+            listener.failed(this, t);
+        }
+    }
+
+    /**
+     * Pass a record to the listener, or add it to the response events.
+     */
+    protected void emit(List<XMLEvent> record) {
+        if (listener != null) {
+            try {
+                listener.record(this, record);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (response != null && response.getEvents() != null) {
+            response.getEvents().addAll(record);
+        }
+    }
+
     protected String get(Map<String, Object> map, String key, String defaultValue) {
         return map.containsKey(key) ? map.get(key).toString() : defaultValue;
     }
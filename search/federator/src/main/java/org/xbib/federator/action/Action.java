@@ -48,4 +48,16 @@ public interface Action extends Callable<Action> {
     //Action setTransformer(StylesheetTransformer transformer);
     
     long getCount();
+
+    Action setListener(ActionListener listener);
+
+    /**
+     * The name of the target.
+     */
+    String getName();
+
+    /**
+     * The time in milliseconds the target may take, or 0 for the default.
+     */
+    long getTimeout();
 }
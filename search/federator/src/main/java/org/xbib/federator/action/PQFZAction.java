@@ -41,12 +41,25 @@ import org.xbib.logging.LoggerFactory;
 import org.xbib.sru.iso23950.service.ZSRUService;
 import org.xbib.sru.iso23950.service.ZSRUServiceFactory;
 
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
 
 public class PQFZAction extends AbstractAction {
 
     private final Logger logger = LoggerFactory.getLogger(PQFZAction.class.getName());
 
+    private final static XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+    private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
     @Override
     public Action call() {
         String query = get(params, "query", null);
@@ -54,7 +67,7 @@ public class PQFZAction extends AbstractAction {
             logger.warn("query parameter not set, not executing: {}", params);
             return null;
         }
-        if (response == null) {
+        if (response == null && listener == null) {
             logger.warn("response not set, not executing: {}", params);
             return null;
         }
@@ -74,7 +87,9 @@ public class PQFZAction extends AbstractAction {
                     //.setElementSetName(elementSetName)
                     .setFrom(from)
                     .setSize(size);
-            response.setOrigin(service.getURI());
+            if (response != null) {
+                response.setOrigin(service.getURI());
+            }
             /*service.setRecordIdentifierSetter(new RecordIdentifierSetter() {
 
                 @Override
@@ -85,11 +100,106 @@ public class PQFZAction extends AbstractAction {
             //service.searchRetrieve(request, response, from, size, transformer);
             StringWriter sw = new StringWriter();
             service.searchRetrieve(request, sw);
+            if (listener != null) {
+                records(sw.toString(), name, from, service.getURI().getHost());
+            } else {
+                this.count = -1; // request.getResultCount();
+            }
         } catch (Exception e) {
             logger.error(service.getURI().getHost() + " failure: " + e.getMessage(), e);
+            fail(e);
+        } finally {
+            try {
+                if (client != null) {
+                    client.close();
+                }
+            } catch (Exception e) {
+                logger.warn(e.getMessage(), e);
+            }
         }
-        this.count = -1; // request.getResultCount();
         return this;
     }
-    
+
+    /**
+     * Split the SRU response of the Z service into records, in the form of
+     * the records of SRU actions.
+     */
+    private void records(String xml, String name, int from, String host) throws XMLStreamException {
+        XMLEventReader reader = inputFactory.createXMLEventReader(new StringReader(xml));
+        Map<String, String> fields = new HashMap();
+        LinkedList<XMLEvent> data = null;
+        StringBuilder text = null;
+        int position = from;
+        int depth = 0;
+        while (reader.hasNext()) {
+            XMLEvent e = reader.nextEvent();
+            if (data != null && depth > 0) {
+                // inside record data
+                if (e.isStartElement()) {
+                    depth++;
+                } else if (e.isEndElement()) {
+                    depth--;
+                }
+                if (depth > 0) {
+                    data.add(e);
+                }
+                continue;
+            }
+            if (e.isStartElement()) {
+                String local = e.asStartElement().getName().getLocalPart();
+                switch (local) {
+                    case "record":
+                        fields.clear();
+                        data = new LinkedList();
+                        break;
+                    case "recordData":
+                        depth = 1;
+                        break;
+                    case "numberOfRecords":
+                    case "recordSchema":
+                    case "recordPacking":
+                    case "recordIdentifier":
+                    case "recordPosition":
+                        text = new StringBuilder();
+                        break;
+                }
+            } else if (e.isCharacters() && text != null) {
+                text.append(e.asCharacters().getData());
+            } else if (e.isEndElement()) {
+                String local = e.asEndElement().getName().getLocalPart();
+                if (text != null) {
+                    if ("numberOfRecords".equals(local)) {
+                        count(Long.parseLong(text.toString().trim()));
+                    } else {
+                        fields.put(local, text.toString().trim());
+                    }
+                    text = null;
+                } else if ("record".equals(local) && data != null) {
+                    LinkedList<XMLEvent> record = new LinkedList();
+                    record.add(eventFactory.createStartDocument());
+                    record.add(eventFactory.createNamespace("id", position + "_" + host));
+                    instruction(record, "recordSchema", fields.get("recordSchema"));
+                    instruction(record, "recordPacking", fields.get("recordPacking"));
+                    String id = fields.get("recordIdentifier");
+                    instruction(record, "recordIdentifier", id != null ? getBase() + "/" + name + "#" + id : null);
+                    // the record position opens the record data
+                    String pos = fields.get("recordPosition");
+                    instruction(record, "recordPosition", pos != null ? pos : Integer.toString(position));
+                    position++;
+                    record.addAll(data);
+                    record.add(eventFactory.createEndDocument());
+                    emit(record);
+                    data = null;
+                }
+            }
+        }
+        reader.close();
+    }
+
+    private void instruction(LinkedList<XMLEvent> record, String target, String data) {
+        if (data != null) {
+            // disguised namespaces for SRU.
+            record.add(eventFactory.createProcessingInstruction(target, data));
+        }
+    }
 }
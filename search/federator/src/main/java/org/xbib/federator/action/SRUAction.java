@@ -33,7 +33,7 @@ package org.xbib.federator.action;
 
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedList;
 import java.util.ListIterator;
 import javax.xml.stream.XMLEventFactory;
 import javax.xml.stream.events.XMLEvent;
@@ -62,8 +62,9 @@ public class SRUAction extends AbstractAction {
         final int from = get(params, "from", 1);
         final int size = get(params, "size", 10);
         final SRUService service = SRUServiceFactory.getService(name);
+        SRUClient client = null;
         try {
-            SRUClient client = service.newClient();
+            client = service.newClient();
             SearchRetrieveRequest request = client.newSearchRetrieveRequest();
             request.setQuery(query)
                     .setStartRecord(from)
@@ -71,132 +72,98 @@ public class SRUAction extends AbstractAction {
 
             SearchRetrieveResponseAdapter listener = new SearchRetrieveResponseAdapter() {
                 int position = from;
-                
+
+                // the events of the current record
+                LinkedList<XMLEvent> record;
+
                 @Override
                 public void numberOfRecords(long numberOfRecords) {
-                    count = numberOfRecords;
+                    count(numberOfRecords);
                 }
 
                 @Override
                 public void beginRecord() {
-                    Collection<XMLEvent> events = getResponse().getEvents();
-                    events.add(eventFactory.createStartDocument());
-                    events.add(eventFactory.createNamespace("id", position++ + "_" + service.getURI().getHost()));
+                    record = new LinkedList();
+                    record.add(eventFactory.createStartDocument());
+                    record.add(eventFactory.createNamespace("id", position++ + "_" + service.getURI().getHost()));
                 }
 
                 @Override
-                public void recordData(Collection<XMLEvent> record) {
-                    Collection<XMLEvent> events = getResponse().getEvents();
-                    Iterator<XMLEvent> it = record.iterator();
+                public void recordData(Collection<XMLEvent> data) {
+                    Iterator<XMLEvent> it = data.iterator();
                     while (it.hasNext()) {
                         XMLEvent e = it.next();
                         if (!e.isStartDocument() && !e.isEndDocument()) {
-                            events.add(e);
+                            record.add(e);
                         }
                     }
                 }
 
                 @Override
-                public void extraRecordData(Collection<XMLEvent> record) {
-                    Collection<XMLEvent> events = getResponse().getEvents();
-                    Iterator<XMLEvent> it = record.iterator();
+                public void extraRecordData(Collection<XMLEvent> data) {
+                    Iterator<XMLEvent> it = data.iterator();
                     while (it.hasNext()) {
                         XMLEvent e = it.next();
                         if (!e.isStartDocument() && !e.isEndDocument()) {
-                            events.add(e);
+                            record.add(e);
                         }
                     }
                 }
 
                 @Override
                 public void recordSchema(String recordSchema) {
-                    Collection<XMLEvent> events = getResponse().getEvents();
-                    if (events instanceof List) {
-                        List<XMLEvent> list = (List<XMLEvent>) events;
-                        ListIterator<XMLEvent> it = list.listIterator(events.size());
-                        while (it.hasPrevious()) {
-                            XMLEvent e = it.previous();
-                            if (e.isStartDocument()) {
-                                it.next(); // step to element
-                                it.next();
-                                // disguised namespaces for SRU.
-                                it.add(eventFactory.createProcessingInstruction("recordSchema", recordSchema));
-                                break;
-                            }
-                        }
-                    }
+                    instruction("recordSchema", recordSchema);
                 }
 
                 @Override
                 public void recordPacking(String recordPacking) {
-                    Collection<XMLEvent> events = getResponse().getEvents();
-                    if (events instanceof List) {
-                        List<XMLEvent> list = (List<XMLEvent>) events;
-                        ListIterator<XMLEvent> it = list.listIterator(events.size());
-                        while (it.hasPrevious()) {
-                            XMLEvent e = it.previous();
-                            if (e.isStartDocument()) {
-                                it.next(); // step to element
-                                it.next();
-                                // disguised namespaces for SRU.
-                                it.add(eventFactory.createProcessingInstruction("recordPacking", recordPacking));
-                                break;
-                            }
-                        }
-                    }
+                    instruction("recordPacking", recordPacking);
                 }
 
                 @Override
                 public void recordIdentifier(String recordIdentifier) {
-                    Collection<XMLEvent> events = getResponse().getEvents();
-                    if (events instanceof List) {
-                        List<XMLEvent> list = (List<XMLEvent>) events;
-                        ListIterator<XMLEvent> it = list.listIterator(events.size());
-                        while (it.hasPrevious()) {
-                            XMLEvent e = it.previous();
-                            if (e.isStartDocument()) {
-                                it.next(); // step to element
-                                it.next();
-                                // disguised namespaces for SRU.
-                                it.add(eventFactory.createProcessingInstruction("recordIdentifier",
-                                        getBase() + "/" + name + "#" + recordIdentifier.trim()));
-                                break;
-                            }
-                        }
-                    }
+                    instruction("recordIdentifier", getBase() + "/" + name + "#" + recordIdentifier.trim());
                 }
 
-
                 @Override
                 public void recordPosition(int recordPosition) {
-                    Collection<XMLEvent> events = getResponse().getEvents();
-                    if (events instanceof List) {
-                        List<XMLEvent> list = (List<XMLEvent>) events;
-                        ListIterator<XMLEvent> it = list.listIterator(events.size());
-                        while (it.hasPrevious()) {
-                            XMLEvent e = it.previous();
-                            if (e.isStartDocument()) {
-                                it.next(); // step to element
-                                it.next();
-                                // disguised namespaces for SRU.
-                                it.add(eventFactory.createProcessingInstruction("recordPosition", Integer.toString(recordPosition)));
-                                break;
-                            }
-                        }
-                    }
+                    instruction("recordPosition", Integer.toString(recordPosition));
                 }
 
                 @Override
                 public void endRecord() {
-                    Collection<XMLEvent> events = getResponse().getEvents();
-                    events.add(eventFactory.createEndDocument());
+                    record.add(eventFactory.createEndDocument());
+                    emit(record);
+                    record = null;
+                }
+
+                private void instruction(String target, String data) {
+                    ListIterator<XMLEvent> it = record.listIterator(record.size());
+                    while (it.hasPrevious()) {
+                        XMLEvent e = it.previous();
+                        if (e.isStartDocument()) {
+                            it.next(); // step to element
+                            it.next();
+                            // disguised namespaces for SRU.
+                            it.add(eventFactory.createProcessingInstruction(target, data));
+                            break;
+                        }
+                    }
                 }
             };
             request.addListener(listener);
             client.searchRetrieve(request);
-            client.close();
         } catch (Exception e) {
             logger.error(service.getURI().getHost() + " failure: " + e.getMessage(), e);
+            fail(e);
+        } finally {
+            try {
+                if (client != null) {
+                    client.close();
+                }
+            } catch (Exception e) {
+                logger.warn(e.getMessage(), e);
+            }
         }
         return this;
     }
@@ -79,18 +79,24 @@ public class FederatorService {
                 try {
                     final String base = servletConfig.getInitParameter("federator.base");
                     final int threads = Integer.parseInt(servletConfig.getInitParameter("federator.threads"));
+                    final String timeout = servletConfig.getInitParameter("federator.timeout");
+                    final String deadline = servletConfig.getInitParameter("federator.deadline");
+                    final String merge = servletConfig.getInitParameter("federator.merge");
                     //final String stylesheet = servletConfig.getInitParameter(mediaType);
                     if (federator == null) {
                         federator = Federator.getInstance()
                                 .setBase(base)
-                                .setThreads(threads);
+                                .setThreads(threads)
+                                .setTimeout(timeout != null ? Long.parseLong(timeout) : 0L)
+                                .setDeadline(deadline != null ? Long.parseLong(deadline) : 0L)
+                                .setMerge(merge != null ? Integer.parseInt(merge) : 0);
                                 //.setStylesheetPath("xsl");
                     }
                     // write SRU XML response
                     //StylesheetTransformer transformer = new StylesheetTransformer("xsl");
+                    // write records while the targets respond
                     federator.bibliographic(query)
-                            .execute()
-                            .toSRUResponse("1.2", writer);
+                            .stream("1.2", writer);
                 } catch (Exception e) {
                     logger.error(e.getMessage(), e);
                     throw new IOException(e);
@@ -38,8 +38,8 @@ public class SearchService {
         return new StreamingOutput() {
             @Override
             public void write(OutputStream output) throws IOException, WebApplicationException {
+                ZClient client = ZClientFactory.newZClient(service);
                 try {
-                    ZClient client = ZClientFactory.newZClient(service);
                     ZSearchRetrieveRequest request = client.newCQLSearchRetrieveRequest()
                             .setQuery(query)
                             .setFrom(from)
@@ -49,13 +49,16 @@ public class SearchService {
                     response.setStylesheetTransformer(transformer)
                             .setOutputFormat(OutputFormat.XHTML)
                             .to(new OutputStreamWriter(output, "UTF-8"));
-                    client.close();
                 } catch (Diagnostics d) {
                     logger.error(d.getMessage(), d);
                     throw new IOException(d);
                 } catch (IOException e) {
                     logger.error(e.getMessage(), e);
                     throw new IOException(e);
+                } finally {
+                    if (client != null) {
+                        client.close();
+                    }
                 }
             }
         };
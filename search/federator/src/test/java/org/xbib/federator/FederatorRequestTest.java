@@ -0,0 +1,196 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.federator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.events.XMLEvent;
+import org.testng.annotations.Test;
+import org.xbib.federator.action.AbstractAction;
+import org.xbib.federator.action.Action;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class FederatorRequestTest {
+
+    private final static XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    @Test
+    public void testStream() throws Exception {
+        ExecutorService service = Executors.newFixedThreadPool(3);
+        try {
+            FederatorRequest request = new FederatorRequest("test", service)
+                    .setTimeout(500L)
+                    .setDeadline(2000L)
+                    .add(new TestAction("fast", 0L, false))
+                    .add(new TestAction("slow", 60000L, false))
+                    .add(new TestAction("failing", 0L, true));
+            StringWriter writer = new StringWriter();
+            long t0 = System.currentTimeMillis();
+            FederatorResponse response = request.stream("1.2", writer);
+            long t1 = System.currentTimeMillis();
+            String xml = writer.toString();
+            assertTrue(t1 - t0 < 2000L, "took " + (t1 - t0) + " ms");
+            // both targets reported their number of records
+            assertEquals(response.getCount(), 6L);
+            assertEquals(xml.split("<title>").length - 1, 5);
+            assertTrue(xml.contains("<srw:numberOfRecords>6</srw:numberOfRecords>"), xml);
+            assertTrue(xml.contains("<srw:recordPosition>5</srw:recordPosition>"), xml);
+            assertEquals(response.getDiagnostics().size(), 2);
+            assertTrue(xml.contains("info:srw/diagnostic/1/2</diag:uri><diag:details>slow"), xml);
+            assertTrue(xml.contains("info:srw/diagnostic/1/1</diag:uri><diag:details>failing"), xml);
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        ExecutorService service = Executors.newFixedThreadPool(2);
+        try {
+            FederatorRequest request = new FederatorRequest("test", service)
+                    .setMerge(100)
+                    .add(new BookAction("a", new String[][]{
+                            {"Faust", "Goethe", "1808", "978-3-16-148410-0"},
+                            {"Die Leiden des jungen Werthers", "Goethe", "1774", null},
+                            {"Wilhelm Meisters Lehrjahre", "Goethe", "1795", null}
+                    }))
+                    .add(new BookAction("b", new String[][]{
+                            {"Faust : eine Tragödie", "Goethe, Johann Wolfgang von", "1808", "3-16-148410-X"},
+                            {"Die Räuber", "Schiller", "1781", null},
+                            {"Die Leiden des jungen Werthers", "Goethe", "1774", null},
+                            {"Kabale und Liebe", "Schiller", "1784", null}
+                    }));
+            StringWriter writer = new StringWriter();
+            FederatorResponse response = request.stream("1.2", writer);
+            String xml = writer.toString();
+            assertEquals(response.getCount(), 7L);
+            assertEquals(response.written(), 5);
+            // targets take turns, duplicates are dropped
+            int faust = xml.indexOf("<title>Faust</title>");
+            int raeuber = xml.indexOf("<title>Die Räuber</title>");
+            int werther = xml.indexOf("<title>Die Leiden des jungen Werthers</title>");
+            int kabale = xml.indexOf("<title>Kabale und Liebe</title>");
+            int meister = xml.indexOf("<title>Wilhelm Meisters Lehrjahre</title>");
+            assertTrue(faust >= 0 && faust < raeuber && raeuber < werther
+                    && werther < kabale && kabale < meister, xml);
+            assertEquals(xml.indexOf("Tragödie"), -1);
+            assertEquals(xml.indexOf("<title>Die Leiden", werther + 1), -1);
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    /**
+     * Delivers records with title, creator, date and identifier.
+     */
+    class BookAction extends AbstractAction {
+
+        private final String[][] books;
+
+        BookAction(String name, String[][] books) {
+            Map<String, Object> params = new HashMap();
+            params.put("name", name);
+            setParams(params);
+            this.books = books;
+        }
+
+        @Override
+        public Action call() throws Exception {
+            count(books.length);
+            String[] names = {"title", "creator", "date", "identifier"};
+            for (String[] book : books) {
+                LinkedList<XMLEvent> record = new LinkedList();
+                record.add(eventFactory.createStartDocument());
+                record.add(eventFactory.createProcessingInstruction("recordPosition", "1"));
+                for (int i = 0; i < names.length; i++) {
+                    if (book[i] != null) {
+                        record.add(eventFactory.createStartElement("", "", names[i]));
+                        record.add(eventFactory.createCharacters(book[i]));
+                        record.add(eventFactory.createEndElement("", "", names[i]));
+                    }
+                }
+                record.add(eventFactory.createEndDocument());
+                emit(record);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Delivers three records, then waits, or fails.
+     */
+    class TestAction extends AbstractAction {
+
+        private final long wait;
+
+        private final boolean fail;
+
+        TestAction(String name, long wait, boolean fail) {
+            Map<String, Object> params = new HashMap();
+            params.put("name", name);
+            setParams(params);
+            this.wait = wait;
+            this.fail = fail;
+        }
+
+        @Override
+        public Action call() throws Exception {
+            if (fail) {
+                fail(new IOException("connection refused"));
+                return this;
+            }
+            count(3);
+            for (int i = 0; i < 3; i++) {
+                if (wait > 0 && i == 2) {
+                    Thread.sleep(wait);
+                }
+                LinkedList<XMLEvent> record = new LinkedList();
+                record.add(eventFactory.createStartDocument());
+                record.add(eventFactory.createProcessingInstruction("recordPosition", Integer.toString(i + 1)));
+                record.add(eventFactory.createStartElement("", "", "title"));
+                record.add(eventFactory.createCharacters(getName() + " " + i));
+                record.add(eventFactory.createEndElement("", "", "title"));
+                record.add(eventFactory.createEndDocument());
+                emit(record);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.federator;
+
+import java.io.StringReader;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.events.XMLEvent;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class RecordKeysTest {
+
+    private final static XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+    @Test
+    public void testMARCAndMODS() throws Exception {
+        Collection<String> marc = RecordKeys.keys(events(
+                "<record xmlns='info:lc/xmlns/marcxchange-v1'>"
+                + "<controlfield tag='008'>990101s1808    gw            000 0 ger d</controlfield>"
+                + "<datafield tag='020' ind1=' ' ind2=' '><subfield code='a'>316148410X (pbk.)</subfield></datafield>"
+                + "<datafield tag='100' ind1='1' ind2=' '><subfield code='a'>Goethe, Johann Wolfgang von</subfield></datafield>"
+                + "<datafield tag='245' ind1='1' ind2='0'><subfield code='a'>Faust</subfield>"
+                + "<subfield code='b'>eine Tragödie</subfield></datafield>"
+                + "</record>"));
+        Collection<String> mods = RecordKeys.keys(events(
+                "<mods xmlns='http://www.loc.gov/mods/v3'>"
+                + "<titleInfo><title>Faust</title><subTitle>eine Tragödie</subTitle></titleInfo>"
+                + "<name><namePart>Goethe, Johann Wolfgang von</namePart></name>"
+                + "<originInfo><dateIssued>1808</dateIssued></originInfo>"
+                + "<identifier type='isbn'>978-3-16-148410-0</identifier>"
+                + "<identifier type='uri'>http://example.org/faust</identifier>"
+                + "</mods>"));
+        assertEquals(marc.size(), 2);
+        assertEquals(mods.size(), 2);
+        // the same ISBN, as ISBN-10 and ISBN-13
+        assertEquals(marc.iterator().next(), mods.iterator().next());
+        assertTrue(marc.iterator().next().startsWith("N9783161484100"));
+    }
+
+    @Test
+    public void testNoKeys() throws Exception {
+        assertTrue(RecordKeys.keys(events("<dc><title>Untitled</title></dc>")).isEmpty());
+    }
+
+    private List<XMLEvent> events(String xml) throws Exception {
+        List<XMLEvent> events = new LinkedList();
+        XMLEventReader reader = inputFactory.createXMLEventReader(new StringReader(xml));
+        while (reader.hasNext()) {
+            events.add(reader.nextEvent());
+        }
+        return events;
+    }
+}
@@ -33,8 +33,6 @@ package org.xbib.standardnumber;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * This class is based upon the
@@ -67,14 +65,23 @@ public abstract class AbstractStandardBookNumber implements StandardNumber {
 
     private boolean eanPreferred;
 
-    private static List<String> ranges;
+    private static final ISBNRangeIndex index;
 
     static {
+        List<String> ranges = null;
         try {
             ISBNRangeMessageConfigurator configurator = new ISBNRangeMessageConfigurator();
             ranges = configurator.getRanges();
         } catch (IOException e) {
         }
+        index = new ISBNRangeIndex(ranges);
+    }
+
+    /**
+     * The ISBN ranges, shared with the bulk validator.
+     */
+    static ISBNRangeIndex rangeIndex() {
+        return index;
     }
 
     /**
@@ -149,7 +156,23 @@ public abstract class AbstractStandardBookNumber implements StandardNumber {
      */
     @Override
     public String getStandardNumberPrintableRepresentation() throws InvalidStandardNumberException {
-        return eanPreferred ? fix(eanvalue) : fix("978-" + value);
+        if (eanPreferred) {
+            return fix(eanvalue);
+        }
+        if (value == null || value.length() != 10) {
+            return value;
+        }
+        // hyphenate the first nine digits as ISBN-13, without the prefix,
+        // and keep the ISBN-10 check digit, which may be X
+        char[] digits = ("978" + value).toCharArray();
+        digits[12] = '0';
+        char[] buf = new char[17];
+        int len = index.hyphenate(digits, 0, buf, 0);
+        if (len == 13) {
+            return value;
+        }
+        buf[len - 1] = value.charAt(9);
+        return new String(buf, 4, len - 4);
     }
 
     /**
@@ -234,72 +257,45 @@ public abstract class AbstractStandardBookNumber implements StandardNumber {
         }
         return NUMVALUES.substring(10 - (checksum13 % 10), 11 - (checksum13 % 10));
     }
-    private final static Pattern ISBN_PATTERN = Pattern.compile("[\\p{Digit}xX\\-]+");
-
     /**
-     * Helper method for cleaning values such as "ISBN 3-9803350-5-4 kart. : DM 24.00"
+     * Helper method for cleaning values such as "ISBN 3-9803350-5-4 kart. : DM 24.00".
+     * Takes the first run of digits, X and hyphens, without the hyphens.
      */
     private String purify(String s) {
-        Matcher m = ISBN_PATTERN.matcher(s);
-        return m.find() ? s.substring(m.start(), m.end()).replaceAll("-", "") : ""; // no valid ISBN characters at all
-    }
-
-    private String fix(String isbn) {
-        if (isbn == null) {
-            return null;
+        int len = s.length();
+        int i = 0;
+        while (i < len && !isbnChar(s.charAt(i))) {
+            i++;
         }
-        for (int i = 0; i < ranges.size(); i += 2) {
-            if (isInRange(isbn, ranges.get(i), ranges.get(i + 1)) == 0) {
-                return hyphenate(ranges.get(i), isbn);
+        StringBuilder sb = new StringBuilder(13);
+        while (i < len && isbnChar(s.charAt(i))) {
+            char ch = s.charAt(i++);
+            if (ch != '-') {
+                sb.append(ch);
             }
         }
-        return isbn;
+        return sb.toString(); // empty if no valid ISBN characters at all
     }
 
-    private String hyphenate(String prefix, String isbn) {
-        StringBuilder sb = new StringBuilder(prefix.substring(0, 4)); // '978-', '979-'
-        prefix = prefix.substring(4);
-        isbn = isbn.substring(3); // 978, 979
-        int i = 0;
-        int j = 0;
-        while (i < prefix.length()) {
-            char ch = prefix.charAt(i++);
-            if (ch == '-') {
-                sb.append('-'); // set first hyphen
-            } else {
-                sb.append(isbn.charAt(j++));
-            }
-        }
-        sb.append('-'); // set second hyphen
-        while (j < (isbn.length() - 1)) {
-            sb.append(isbn.charAt(j++));
-        }
-        sb.append('-'); // set third hyphen
-        sb.append(isbn.charAt(isbn.length() - 1));
-        return sb.toString();
+    private static boolean isbnChar(char ch) {
+        return (ch >= '0' && ch <= '9') || ch == 'X' || ch == 'x' || ch == '-';
     }
 
     /**
-     * Check if ISBN is within a given value range
-     * @param isbn ISBN
-     * @param begin
-     * @param end
-     * @return
+     * Hyphenate an ISBN-13 by the range index.
      */
-    private int isInRange(String isbn, String begin, String end) {
-        String b = begin.replaceAll("-", "");
-        int blen = b.length();
-        int c = isbn.substring(0, blen).compareTo(b);
-        if (c < 0) {
-            return -1;
+    private String fix(String isbn) {
+        if (isbn == null || isbn.length() != 13) {
+            return isbn;
         }
-        String e = end.replaceAll("-", "");
-        int elen = e.length();
-        c = e.compareTo(isbn.substring(0, elen));
-        if (c < 0) {
-            return 1;
+        char[] digits = isbn.toCharArray();
+        for (char ch : digits) {
+            if (ch < '0' || ch > '9') {
+                return isbn;
+            }
         }
-        return 0;
+        char[] buf = new char[17];
+        return new String(buf, 0, index.hyphenate(digits, 0, buf, 0));
     }
 
     private void parse(String value) throws InvalidStandardNumberException {
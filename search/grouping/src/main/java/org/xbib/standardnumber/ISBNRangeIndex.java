@@ -0,0 +1,196 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.standardnumber;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The ranges of the ISBN range message as sorted numeric intervals.
+ *
+ * A rule like "978-3-05" to "978-3-09" covers all ISBN-13 whose first
+ * twelve digits, read as a number, lie between 978305000000 and
+ * 978309999999. The intervals of the registration groups do not overlap,
+ * so the range of an ISBN is found by a binary search for the last interval
+ * starting at or below the number, instead of comparing the ISBN with
+ * every range.
+ */
+class ISBNRangeIndex {
+
+    private final static long[] POW10 = new long[13];
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
+
+    private final long[] lo;
+
+    private final long[] hi;
+
+    /**
+     * length of the registration group element
+     */
+    private final byte[] group;
+
+    /**
+     * length of the registrant element
+     */
+    private final byte[] registrant;
+
+    /**
+     * Build the index.
+     *
+     * @param ranges the begin and end of the ranges, as pairs of hyphenated
+     * prefixes, like "978-3-05" and "978-3-09"
+     */
+    ISBNRangeIndex(List<String> ranges) {
+        int n = ranges != null ? ranges.size() / 2 : 0;
+        long[][] rules = new long[n][];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            String begin = ranges.get(2 * i);
+            String end = ranges.get(2 * i + 1);
+            int pos = begin.indexOf('-', 4);
+            int digits = digits(begin);
+            if (pos < 0 || digits > 12 || digits != digits(end)) {
+                continue;
+            }
+            long b = number(begin) * POW10[12 - digits];
+            long e = (number(end) + 1) * POW10[12 - digits] - 1;
+            rules[k++] = new long[]{b, e, pos - 4, digits - (pos - 4) - 3};
+        }
+        rules = Arrays.copyOf(rules, k);
+        Arrays.sort(rules, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] r1, long[] r2) {
+                return r1[0] < r2[0] ? -1 : r1[0] > r2[0] ? 1 : 0;
+            }
+        });
+        this.lo = new long[k];
+        this.hi = new long[k];
+        this.group = new byte[k];
+        this.registrant = new byte[k];
+        for (int i = 0; i < k; i++) {
+            lo[i] = rules[i][0];
+            hi[i] = rules[i][1];
+            group[i] = (byte) rules[i][2];
+            registrant[i] = (byte) rules[i][3];
+        }
+    }
+
+    /**
+     * The number of ranges.
+     */
+    int size() {
+        return lo.length;
+    }
+
+    /**
+     * Find the range of an ISBN-13.
+     *
+     * @param digits the digits of the ISBN-13
+     * @param off the offset of the first digit
+     * @return the range, or -1 if the ISBN is in no range
+     */
+    int find(char[] digits, int off) {
+        long isbn = 0L;
+        for (int i = 0; i < 12; i++) {
+            isbn = isbn * 10L + (digits[off + i] - '0');
+        }
+        int i = Arrays.binarySearch(lo, isbn);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        return i >= 0 && isbn <= hi[i] ? i : -1;
+    }
+
+    /**
+     * Write the hyphenated form of an ISBN-13, like 978-3-551-75213-0. If
+     * the ISBN is in no range, the digits are written without hyphens.
+     *
+     * @param digits the thirteen digits of the ISBN
+     * @param off the offset of the first digit
+     * @param dst the buffer to write to, with room for 17 characters
+     * @param dstoff the offset in the buffer
+     * @return the number of characters written
+     */
+    int hyphenate(char[] digits, int off, char[] dst, int dstoff) {
+        int r = find(digits, off);
+        if (r < 0) {
+            System.arraycopy(digits, off, dst, dstoff, 13);
+            return 13;
+        }
+        int g = group[r];
+        int p = registrant[r];
+        int j = dstoff;
+        System.arraycopy(digits, off, dst, j, 3);
+        j += 3;
+        dst[j++] = '-';
+        System.arraycopy(digits, off + 3, dst, j, g);
+        j += g;
+        dst[j++] = '-';
+        System.arraycopy(digits, off + 3 + g, dst, j, p);
+        j += p;
+        dst[j++] = '-';
+        int rest = 9 - g - p;
+        System.arraycopy(digits, off + 3 + g + p, dst, j, rest);
+        j += rest;
+        dst[j++] = '-';
+        dst[j++] = digits[off + 12];
+        return j - dstoff;
+    }
+
+    private static int digits(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) != '-') {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static long number(String s) {
+        long n = 0L;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch != '-') {
+                n = n * 10L + (ch - '0');
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.standardnumber;
+
+/**
+ * Validates, normalizes and hyphenates standard numbers in bulk.
+ *
+ * The ISBN, ISSN and ISMN classes create several strings for each number.
+ * For checking the numbers of many records, a validator reads a number
+ * from a character sequence or a character array into its own buffers and
+ * creates no objects. Input is cleaned like by the standard number classes,
+ * so "ISBN 3-9803350-5-4 kart. : DM 24.00" is a valid ISBN. After a number
+ * has been accepted, the validator is a character sequence of the
+ * normalized form, and the printable form can be written into a buffer.
+ *
+ * A validator is not thread safe, use one per thread.
+ *
+ * <pre>
+ *     StandardNumberValidator validator = new StandardNumberValidator();
+ *     if (validator.isbn(value)) {
+ *         sb.append(validator);
+ *     }
+ * </pre>
+ */
+public class StandardNumberValidator implements CharSequence {
+
+    private enum Type { ISBN, ISSN, ISMN }
+
+    private final ISBNRangeIndex index = AbstractStandardBookNumber.rangeIndex();
+
+    /**
+     * the cleaned input
+     */
+    private final char[] input = new char[14];
+
+    private int inputLength;
+
+    /**
+     * the normalized number
+     */
+    private final char[] value = new char[13];
+
+    private int length;
+
+    private Type type;
+
+    /**
+     * the printable form, for appending
+     */
+    private final char[] hyphenated = new char[17];
+
+    private final CharArraySequence array = new CharArraySequence();
+
+    /**
+     * Accept an ISBN-10 or ISBN-13. The normalized form is the ISBN-13.
+     *
+     * @param s the ISBN candidate
+     * @return true if the ISBN is valid
+     */
+    public boolean isbn(CharSequence s) {
+        return clean(s, 0, s.length()) && isbn();
+    }
+
+    public boolean isbn(char[] ch, int off, int len) {
+        return clean(array.wrap(ch), off, len) && isbn();
+    }
+
+    /**
+     * Accept an ISSN. The normalized form are the eight characters.
+     *
+     * @param s the ISSN candidate
+     * @return true if the ISSN is valid
+     */
+    public boolean issn(CharSequence s) {
+        return clean(s, 0, s.length()) && issn();
+    }
+
+    public boolean issn(char[] ch, int off, int len) {
+        return clean(array.wrap(ch), off, len) && issn();
+    }
+
+    /**
+     * Accept an ISMN in the form M-xxx or 979-0-xxx. The normalized form is
+     * the thirteen digit form.
+     *
+     * @param s the ISMN candidate
+     * @return true if the ISMN is valid
+     */
+    public boolean ismn(CharSequence s) {
+        return cleanISMN(s, 0, s.length()) && ismn();
+    }
+
+    public boolean ismn(char[] ch, int off, int len) {
+        return cleanISMN(array.wrap(ch), off, len) && ismn();
+    }
+
+    /**
+     * Write the normalized form of the last accepted number.
+     *
+     * @param dst the buffer, with room for 13 characters
+     * @param off the offset in the buffer
+     * @return the number of characters written
+     */
+    public int value(char[] dst, int off) {
+        System.arraycopy(value, 0, dst, off, length);
+        return length;
+    }
+
+    /**
+     * Write the printable, hyphenated form of the last accepted number.
+     *
+     * @param dst the buffer, with room for 17 characters
+     * @param off the offset in the buffer
+     * @return the number of characters written
+     */
+    public int printable(char[] dst, int off) {
+        if (type == null) {
+            return 0;
+        }
+        switch (type) {
+            case ISBN:
+                return index.hyphenate(value, 0, dst, off);
+            case ISSN:
+                System.arraycopy(value, 0, dst, off, 4);
+                dst[off + 4] = '-';
+                System.arraycopy(value, 4, dst, off + 5, 4);
+                return 9;
+            case ISMN:
+                return hyphenateISMN(dst, off);
+        }
+        return 0;
+    }
+
+    /**
+     * Append the printable, hyphenated form of the last accepted number.
+     */
+    public StringBuilder appendPrintable(StringBuilder sb) {
+        return sb.append(hyphenated, 0, printable(hyphenated, 0));
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index >= length) {
+            throw new IndexOutOfBoundsException();
+        }
+        return value[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(value, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(value, 0, length);
+    }
+
+    private boolean isbn() {
+        int n = inputLength;
+        if (n == 10) {
+            int checksum = 0;
+            for (int i = 0; i < 10; i++) {
+                int val = digit(input[i]);
+                if (val < 0 || (val == 10 && i != 9)) {
+                    return reject();
+                }
+                checksum += (10 - i) * val;
+            }
+            if (checksum % 11 != 0) {
+                return reject();
+            }
+            value[0] = '9';
+            value[1] = '7';
+            value[2] = '8';
+            System.arraycopy(input, 0, value, 3, 9);
+            value[12] = checkDigit13(value);
+        } else if (n == 13) {
+            if (input[0] != '9' || input[1] != '7' || (input[2] != '8' && input[2] != '9')) {
+                return reject();
+            }
+            for (int i = 0; i < 13; i++) {
+                if (input[i] < '0' || input[i] > '9') {
+                    return reject();
+                }
+            }
+            if (checkDigit13(input) != input[12]) {
+                return reject();
+            }
+            System.arraycopy(input, 0, value, 0, 13);
+        } else {
+            return reject();
+        }
+        length = 13;
+        type = Type.ISBN;
+        return true;
+    }
+
+    private boolean issn() {
+        if (inputLength != 8) {
+            return reject();
+        }
+        int sum = 0;
+        for (int i = 0; i < 7; i++) {
+            int val = digit(input[i]);
+            if (val < 0 || val > 9) {
+                return reject();
+            }
+            sum += (8 - i) * val;
+        }
+        int mod = sum % 11;
+        mod = mod == 0 ? 0 : 11 - mod;
+        char p = mod == 10 ? 'X' : (char) ('0' + mod);
+        char c = input[7] == 'x' ? 'X' : input[7];
+        if (p != c) {
+            return reject();
+        }
+        System.arraycopy(input, 0, value, 0, 7);
+        value[7] = c;
+        length = 8;
+        type = Type.ISSN;
+        return true;
+    }
+
+    private boolean ismn() {
+        int n = inputLength;
+        if (n == 10 && input[0] == 'M') {
+            value[0] = '9';
+            value[1] = '7';
+            value[2] = '9';
+            value[3] = '0';
+            System.arraycopy(input, 1, value, 4, 9);
+        } else if (n == 13 && input[0] == '9' && input[1] == '7' && input[2] == '9' && input[3] == '0') {
+            System.arraycopy(input, 0, value, 0, 13);
+        } else {
+            return reject();
+        }
+        for (int i = 4; i < 13; i++) {
+            if (value[i] < '0' || value[i] > '9') {
+                return reject();
+            }
+        }
+        // the M of the short form counts like the 9790 of the long form
+        if (checkDigit13(value) != value[12]) {
+            return reject();
+        }
+        length = 13;
+        type = Type.ISMN;
+        return true;
+    }
+
+    /**
+     * Hyphenate the ISMN as 979-0-, publisher, item and check digit. The
+     * length of the publisher identifier depends on its first two digits.
+     */
+    private int hyphenateISMN(char[] dst, int off) {
+        int range = (value[4] - '0') * 10 + (value[5] - '0');
+        int pos = range < 10 ? 3 : range < 40 ? 4 : range < 70 ? 5 : range < 90 ? 6 : 7;
+        int j = off;
+        dst[j++] = '9';
+        dst[j++] = '7';
+        dst[j++] = '9';
+        dst[j++] = '-';
+        dst[j++] = '0';
+        dst[j++] = '-';
+        System.arraycopy(value, 4, dst, j, pos);
+        j += pos;
+        dst[j++] = '-';
+        System.arraycopy(value, 4 + pos, dst, j, 8 - pos);
+        j += 8 - pos;
+        dst[j++] = '-';
+        dst[j++] = value[12];
+        return j - off;
+    }
+
+    private boolean reject() {
+        length = 0;
+        type = null;
+        return false;
+    }
+
+    /**
+     * Take the first run of digits, X and hyphens, without the hyphens.
+     */
+    private boolean clean(CharSequence s, int off, int len) {
+        int end = off + len;
+        int i = off;
+        while (i < end && !numberChar(s.charAt(i))) {
+            i++;
+        }
+        inputLength = 0;
+        while (i < end && numberChar(s.charAt(i))) {
+            char ch = s.charAt(i++);
+            if (ch != '-') {
+                if (inputLength == input.length) {
+                    return reject();
+                }
+                input[inputLength++] = ch;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skip a leading "ISMN ", stop at the first blank, and keep the digits
+     * and the M.
+     */
+    private boolean cleanISMN(CharSequence s, int off, int len) {
+        int end = off + len;
+        int i = off;
+        if (len >= 4 && s.charAt(i) == 'I' && s.charAt(i + 1) == 'S'
+                && s.charAt(i + 2) == 'M' && s.charAt(i + 3) == 'N') {
+            i = Math.min(end, i + 5);
+        }
+        int start = i;
+        inputLength = 0;
+        while (i < end) {
+            char ch = s.charAt(i);
+            if (ch == ' ' && i > start) {
+                break;
+            }
+            if ((ch >= '0' && ch <= '9') || ch == 'M') {
+                if (inputLength == input.length) {
+                    return reject();
+                }
+                input[inputLength++] = ch;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    private static boolean numberChar(char ch) {
+        return (ch >= '0' && ch <= '9') || ch == 'X' || ch == 'x' || ch == '-';
+    }
+
+    private static int digit(char ch) {
+        return ch >= '0' && ch <= '9' ? ch - '0' : ch == 'X' || ch == 'x' ? 10 : -1;
+    }
+
+    private static char checkDigit13(char[] digits) {
+        int checksum = 0;
+        for (int i = 0; i < 12; i++) {
+            checksum += (i % 2 == 0 ? 1 : 3) * (digits[i] - '0');
+        }
+        int mod = checksum % 10;
+        return (char) ('0' + (mod == 0 ? 0 : 10 - mod));
+    }
+
+    /**
+     * A reusable view of a character array.
+     */
+    private static class CharArraySequence implements CharSequence {
+
+        private char[] ch;
+
+        CharArraySequence wrap(char[] ch) {
+            this.ch = ch;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return ch.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return ch[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(ch, start, end - start);
+        }
+    }
+}
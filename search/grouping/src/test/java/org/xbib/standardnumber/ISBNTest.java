@@ -85,4 +85,12 @@ public class ISBNTest extends Assert {
         }
         assertTrue(b);
     }
+
+    @Test
+    public void testHyphenation() throws Exception {
+        assertEquals(new ISBN("9783551752130").getStandardNumberPrintableRepresentation(), "978-3-551-75213-0");
+        assertEquals(new ISBN("3-9803350-5-4", false).getStandardNumberPrintableRepresentation(), "3-9803350-5-4");
+        assertEquals(new ISBN("080442957X", false).getStandardNumberPrintableRepresentation(), "0-8044-2957-X");
+        assertEquals(new ISBN("9783551752130").getCountryAndPublisherCode(), "978-3-551");
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ * 
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses/
+ *
+ */
+package org.xbib.standardnumber;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Test bulk validation of standard numbers
+ *
+ */
+public class StandardNumberValidatorTest extends Assert {
+
+    @Test
+    public void testISBN() throws Exception {
+        StandardNumberValidator validator = new StandardNumberValidator();
+        assertTrue(validator.isbn("ISBN 3-9803350-5-4 kart. : DM 24.00"));
+        assertEquals(validator.toString(), "9783980335058");
+        assertEquals(validator.appendPrintable(new StringBuilder()).toString(), "978-3-9803350-5-8");
+        char[] ch = "xx 978-3-551-75213-0 yy".toCharArray();
+        assertTrue(validator.isbn(ch, 3, 17));
+        assertEquals(new StringBuilder().append(validator).toString(), "9783551752130");
+        char[] buf = new char[17];
+        assertEquals(new String(buf, 0, validator.printable(buf, 0)), "978-3-551-75213-0");
+        assertFalse(validator.isbn("978-3-551-75213-1"));
+        assertEquals(validator.length(), 0);
+        assertFalse(validator.isbn("ISBN ISBN 3-451-4112-X kart. : DM 24.80"));
+    }
+
+    @Test
+    public void testISSN() throws Exception {
+        StandardNumberValidator validator = new StandardNumberValidator();
+        assertTrue(validator.issn("ISSN 1050-124x"));
+        assertEquals(validator.toString(), "1050124X");
+        assertEquals(validator.appendPrintable(new StringBuilder()).toString(), "1050-124X");
+        assertFalse(validator.issn("0317-8472"));
+    }
+
+    @Test
+    public void testISMN() throws Exception {
+        StandardNumberValidator validator = new StandardNumberValidator();
+        assertTrue(validator.ismn("ISMN M-2306-7118-7"));
+        assertEquals(validator.toString(), "9790230671187");
+        assertEquals(validator.appendPrintable(new StringBuilder()).toString(), "979-0-2306-7118-7");
+        assertFalse(validator.ismn("M-2306-7118-8"));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * The interactive user interfaces in modified source and object code
+ * versions of this program must display Appropriate Legal Notices,
+ * as required under Section 5 of the GNU Affero General Public License.
+ *
+ * In accordance with Section 7(b) of the GNU Affero General Public
+ * License, these Appropriate Legal Notices must retain the display of the
+ * "Powered by xbib" logo. If the display of the logo is not reasonably
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package asn1;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of buffers for BER encodings.
+ * <p/>
+ * Buffers come in power-of-two sizes from 4 KB up to 1 MB, with a bounded
+ * number of buffers kept per size. Larger buffers are allocated on demand
+ * and not kept. Direct buffers can be written to a channel without
+ * another copy, and as they are expensive to allocate, they should be
+ * released back to the pool after writing.
+ */
+
+public class BERBufferPool {
+
+    private static final BERBufferPool DIRECT = new BERBufferPool(true, 8);
+
+    private static final int MIN_SHIFT = 12;
+
+    private static final int MAX_SHIFT = 20;
+
+    private final boolean direct;
+
+    private final int max_buffers;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers[];
+
+    private final AtomicInteger counts[];
+
+    public BERBufferPool(boolean direct, int max_buffers) {
+        this.direct = direct;
+        this.max_buffers = max_buffers;
+        int n = MAX_SHIFT - MIN_SHIFT + 1;
+        this.buffers = new ConcurrentLinkedQueue[n];
+        this.counts = new AtomicInteger[n];
+        for (int i = 0; i < n; i++) {
+            buffers[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+            counts[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * The shared pool of direct buffers.
+     */
+
+    public static BERBufferPool direct() {
+        return DIRECT;
+    }
+
+    /**
+     * Returns a cleared buffer with room for at least size octets.
+     * The limit is set to size.
+     *
+     * @param    size - the number of octets
+     */
+
+    public ByteBuffer acquire(int size) {
+        int c = size_class(size);
+        ByteBuffer buffer = null;
+        if (c < buffers.length) {
+            buffer = buffers[c].poll();
+            if (buffer != null) {
+                counts[c].decrementAndGet();
+            }
+        }
+        if (buffer == null) {
+            int capacity = c < buffers.length ? 1 << (c + MIN_SHIFT) : size;
+            buffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool. Buffers not acquired from
+     * this pool are ignored.
+     *
+     * @param    buffer - the buffer
+     */
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.isDirect() != direct) {
+            return;
+        }
+        int c = size_class(buffer.capacity());
+        if (c < buffers.length && buffer.capacity() == 1 << (c + MIN_SHIFT)
+                && counts[c].incrementAndGet() <= max_buffers) {
+            buffers[c].offer(buffer);
+        } else if (c < buffers.length && buffer.capacity() == 1 << (c + MIN_SHIFT)) {
+            counts[c].decrementAndGet();
+        }
+    }
+
+    private static int size_class(int size) {
+        int c = 0;
+        while (c + MIN_SHIFT <= MAX_SHIFT && (1 << (c + MIN_SHIFT)) < size) {
+            c++;
+        }
+        return c;
+    }
+}
@@ -32,6 +32,7 @@
 package asn1;
 
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * BERConstructed
@@ -93,6 +94,13 @@ public class BERConstructed extends BEREncoding {
         }
     }
 
+    public void encode(ByteBuffer dest) {
+        put_head(dest);
+        for (int index = 0; index < content_elements.length; index++) {
+            content_elements[index].encode(dest);
+        }
+    }
+
     /**
      * This method returns the number of BER encoded elements that this
      * object is made up of to be returned.
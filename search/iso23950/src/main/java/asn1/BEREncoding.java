@@ -33,6 +33,7 @@ package asn1;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 /**
@@ -143,7 +144,11 @@ public abstract class BEREncoding {
 
 
     /**
-     * The public wrapping for doInput() method.
+     * Reads the next complete BER encoding from an InputStream.
+     * <p/>
+     * The octets of the whole encoding are read into one array first,
+     * with bulk reads for the contents, and then decoded. The primitives
+     * of the returned object keep their contents as ranges of that array.
      *
      * @param    src - the InputStream to read the raw BER from.
      * @returns Returns the next complete BEREncoding object read
@@ -154,195 +159,277 @@ public abstract class BEREncoding {
      */
 
     public static BEREncoding input(InputStream src) throws ASN1Exception, java.io.IOException {
-        int numBytesRead[] = new int[1];
-
-        numBytesRead[0] = 0;
-
-        return doInput(src, numBytesRead);
+        OctetBuffer buffer = new OctetBuffer();
+        if (!read_element(src, buffer)) {
+            return null;
+        }
+        return input(ByteBuffer.wrap(buffer.data, 0, buffer.length));
     }
 
-
     /**
-     * Constructs a complete BER encoding object from octets read in from
-     * an InputStream.
+     * Decodes the next complete BER encoding from a ByteBuffer, starting
+     * at its position. The position is advanced past the encoding.
      * <p/>
      * This routine handles all forms of encoding, including the
-     * indefite-length method. The length is always known with this
-     * class. With indefinite-length encodings,
+     * indefinite-length method. With indefinite-length encodings,
      * the end-of-contents octets are not included in the returned
      * object (i.e. the returned the raw BER is converted to an object
      * which is in the definite-length form).
+     * <p/>
+     * Heap buffers are not copied, the primitives of the returned object
+     * refer to ranges of the buffer array. Do not modify the buffer
+     * while the object is in use.
      *
-     * @param numBytesRead - a counter for all read bytes.
-     * @param    src - the InputStream to read the raw BER from.
-     * @returns Returns the next complete BEREncoding object read
-     * in from the input stream. Returns null if the
-     * end has been reached.
+     * @param    src - the buffer to decode the raw BER from.
+     * @returns Returns the BEREncoding object, or null if the buffer
+     * has no remaining octets.
      * @exception ASN1Exception If data does not represent a BER encoding
-     * @exception java.io.IOException On input I/O error
      */
 
-    protected static BEREncoding doInput(InputStream src, int numBytesRead[]) throws ASN1Exception, java.io.IOException {
-        // Read in the identifier octets
-        int octet = src.read(); // first octet
-        if (octet < 0) {
-            return null; // end of source reached, return sentinel indicator
+    public static BEREncoding input(ByteBuffer src) throws ASN1Exception {
+        if (!src.hasRemaining()) {
+            return null;
+        }
+        byte data[];
+        int offset;
+        if (src.hasArray()) {
+            data = src.array();
+            offset = src.arrayOffset();
+        } else {
+            data = new byte[src.remaining()];
+            src.duplicate().get(data);
+            offset = -src.position();
         }
+        int pos[] = new int[]{offset + src.position()};
+        BEREncoding ber = decode(data, pos, offset + src.limit());
+        src.position(pos[0] - offset);
+        return ber;
+    }
 
-        numBytesRead[0]++; // icrements bytes read count
+    /**
+     * Decodes one encoding from data, starting at pos[0] and not going
+     * beyond limit. On return, pos[0] is the position after the encoding.
+     */
 
+    private static BEREncoding decode(byte data[], int pos[], int limit) throws ASN1Exception {
+        // Read in the identifier octets
+        int octet = octet(data, pos, limit); // first octet
         int tag_type = (octet & 0xC0); // bits 8 and 7 indicate tag type
-
-        boolean is_cons = false; // is constructed
-        if ((octet & 0x20) != 0) // bit 6 indicates primitive/constructed
-        {
-            is_cons = true;
-        }
-
+        boolean is_cons = (octet & 0x20) != 0; // bit 6 indicates primitive/constructed
         int tag = octet & 0x1F; // bits 5-1 is (possible) the tag number
         if (tag == 0x1F) {
             // Multiple octet form of tag, need to examine following bytes
             // Tag value in base-128, bytes have MSB set except for last byte
-
             tag = 0;
             do {
-                octet = src.read();
-                if (octet < 0) {
-                    throw new ASN1EncodingException("Unexpected end in BER encoding");
-                }
-
-                numBytesRead[0]++; // icrements bytes read count
-
+                octet = octet(data, pos, limit);
                 tag <<= 7;
                 tag |= (octet & 0x7F);
             } while ((octet & 0x80) != 0);
         }
-
-        // Read in length octets
-
-        int length;
-
-        octet = src.read(); // first octet of length octets
-        if (octet < 0) {
-            throw new ASN1EncodingException("Unexpected end in BER encoding");
+        int length = decode_length(octet(data, pos, limit), is_cons, data, pos, limit);
+        if (!is_cons) {
+            // Primitive: the contents is a range of the data array
+            if (limit - pos[0] < length) {
+                throw new ASN1EncodingException("Unexpected end in BER encoding");
+            }
+            BERPrimitive ber = new BERPrimitive(tag_type, tag, data, pos[0], length);
+            pos[0] += length;
+            return ber;
         }
-
-        numBytesRead[0]++; // icrements bytes read count
-
-        if ((octet & 0x80) != 0) {
-            if ((octet & 0x7f) == 0) {
-                // Indefinite length
-                length = -1;
-                if (!is_cons) {
-                    throw new ASN1EncodingException("BER encoding corrupted primitive");
-                }
-
-            } else {
-                // Long form of length, number of octets byte plus tag in base-256
-                if (4 < (octet & 0x7f)) // Can't handle huge numbers!
-                {
-                    throw new ASN1EncodingException("BER encoding too long");
-                }
-
-                length = 0;
-
-                for (int num_bytes = (octet & 0x7f); 0 < num_bytes; num_bytes--) {
-                    octet = src.read();
-                    if (octet < 0) {
-                        throw new ASN1EncodingException("Unexpected end in BER encoding");
-                    }
-
-                    numBytesRead[0]++; // icrements bytes read count
-
-                    length <<= 8;
-                    length |= (octet & 0xff);
-                }
-
-                if (length < 0 || MAX_BER_SIZE < length) {
-                    throw new ASN1EncodingException("BER encoding too long");
-                }
+        // Constructed
+        ArrayList<BEREncoding> chunks = new ArrayList<BEREncoding>();
+        if (0 <= length) {
+            // Definite length, get all encoded components
+            int end = pos[0] + length;
+            if (limit < end) {
+                throw new ASN1EncodingException("Unexpected end in BER encoding");
+            }
+            while (pos[0] < end) {
+                chunks.add(decode(data, pos, end));
             }
         } else {
-            // Short form of length, tag in lower 7 bits
-            length = (octet & 0x7F);
+            // Indefinite length, need to keep reading until end-of-contents octets
+            while (true) {
+                if (limit - pos[0] >= 2 && data[pos[0]] == 0 && data[pos[0] + 1] == 0) {
+                    pos[0] += 2; // end-of-contents marker reached, stop reading
+                    break;
+                }
+                chunks.add(decode(data, pos, limit));
+            }
         }
+        return new BERConstructed(tag_type, tag, chunks.toArray(new BEREncoding[chunks.size()]));
+    }
 
-        // Read in the content octets
+    private static int octet(byte data[], int pos[], int limit) throws ASN1EncodingException {
+        if (pos[0] >= limit) {
+            throw new ASN1EncodingException("Unexpected end in BER encoding");
+        }
+        return data[pos[0]++] & 0xff;
+    }
 
-        if (!is_cons) {
-            // Primitive
+    /**
+     * Decodes the length octets. Returns -1 for the indefinite length.
+     */
 
-            // Indefinite length on a primitive BER
-            // Might be able to handle this, but not in current implementation.
-            if (length < 0) {
+    private static int decode_length(int octet, boolean is_cons, byte data[], int pos[], int limit)
+            throws ASN1EncodingException {
+        if ((octet & 0x80) == 0) {
+            // Short form of length, tag in lower 7 bits
+            return octet & 0x7F;
+        }
+        if ((octet & 0x7f) == 0) {
+            // Indefinite length
+            // Might be able to handle this for primitives, but not in current implementation.
+            if (!is_cons) {
                 throw new ASN1EncodingException("Indefinite length primitive BER");
             }
+            return -1;
+        }
+        // Long form of length, number of octets byte plus tag in base-256
+        if (4 < (octet & 0x7f)) {
+            // Can't handle huge numbers!
+            throw new ASN1EncodingException("BER encoding too long");
+        }
+        int length = 0;
+        for (int num_bytes = (octet & 0x7f); 0 < num_bytes; num_bytes--) {
+            length <<= 8;
+            length |= octet(data, pos, limit);
+        }
+        if (length < 0 || MAX_BER_SIZE < length) {
+            throw new ASN1EncodingException("BER encoding too long");
+        }
+        return length;
+    }
 
-            int contents[] = new int[length];
+    /**
+     * Reads the octets of one complete encoding from an InputStream into
+     * a buffer. Only the identifier and length octets are examined, the
+     * contents of definite-length encodings are read in bulk.
+     *
+     * @return false if the end of the stream is reached before the first octet
+     */
 
-            for (int x = 0; x < length; x++) {
-                octet = src.read();
-                if (octet < 0) {
+    private static boolean read_element(InputStream src, OctetBuffer buffer)
+            throws ASN1Exception, java.io.IOException {
+        int octet = src.read();
+        if (octet < 0) {
+            return false;
+        }
+        buffer.append(octet);
+        boolean is_cons = (octet & 0x20) != 0;
+        if ((octet & 0x1F) == 0x1F) {
+            do {
+                octet = read_octet(src);
+                buffer.append(octet);
+            } while ((octet & 0x80) != 0);
+        }
+        octet = read_octet(src);
+        buffer.append(octet);
+        int length;
+        if ((octet & 0x80) == 0) {
+            length = octet;
+        } else if ((octet & 0x7f) == 0) {
+            if (!is_cons) {
+                throw new ASN1EncodingException("Indefinite length primitive BER");
+            }
+            // indefinite length: read the elements up to the end-of-contents octets
+            while (true) {
+                int start = buffer.length;
+                if (!read_element(src, buffer)) {
                     throw new ASN1EncodingException("Unexpected end in BER encoding");
                 }
-
-                numBytesRead[0]++; // icrements bytes read count
-
-                contents[x] = octet;
+                if (buffer.length - start == 2 && buffer.data[start] == 0 && buffer.data[start + 1] == 0) {
+                    return true;
+                }
             }
-            return new BERPrimitive(tag_type, tag, contents);
         } else {
-            // Constructed
+            if (4 < (octet & 0x7f)) {
+                throw new ASN1EncodingException("BER encoding too long");
+            }
+            length = 0;
+            for (int num_bytes = (octet & 0x7f); 0 < num_bytes; num_bytes--) {
+                octet = read_octet(src);
+                buffer.append(octet);
+                length <<= 8;
+                length |= octet;
+            }
+            if (length < 0 || MAX_BER_SIZE < length) {
+                throw new ASN1EncodingException("BER encoding too long");
+            }
+        }
+        buffer.read(src, length);
+        return true;
+    }
 
-            ArrayList chunks = new ArrayList(); // dynamic storage for parts
-            int total_read = 0;
+    private static int read_octet(InputStream src) throws ASN1Exception, java.io.IOException {
+        int octet = src.read();
+        if (octet < 0) {
+            throw new ASN1EncodingException("Unexpected end in BER encoding");
+        }
+        return octet;
+    }
 
+    /**
+     * A growing array for the octets of an encoding.
+     */
 
-            if (0 <= length) {
-                // Definite length, get all encoded components
-                while (total_read < length) {
-                    int current_read = numBytesRead[0]; // num bytes read until now
-                    BEREncoding chunk = BEREncoding.doInput(src, numBytesRead); // recursive call
-                    if (chunk == null) {
-                        throw new ASN1EncodingException("Unexpected end in BER encoding");
-                    }
+    private static class OctetBuffer {
 
-                    chunks.add(chunk);
-                    //total_read += chunk.i_total_length; // BUG
-                    total_read += numBytesRead[0] - current_read; // adds chunk number bytes read
-                }
-            } else {
+        byte data[] = new byte[1024];
 
-                // Indefinite length, need to keep reading until end-of-contents octets
-                while (true) {
-                    BEREncoding chunk = BEREncoding.doInput(src, numBytesRead); // recursive call
-                    if (chunk == null) {
-                        throw new ASN1EncodingException("Unexpected end in BER encoding");
-                    }
+        int length;
 
+        void append(int octet) {
+            ensure(1);
+            data[length++] = (byte) octet;
+        }
 
-                    if (chunk.i_tag == 0 && chunk.i_tag_type == BEREncoding.UNIVERSAL_TAG && chunk.i_total_length == 2) {
-                        break; // end-of-contents marker reached, stop reading
-                    } else {
-                        chunks.add(chunk); // add to chunks
-                    }
+        void read(InputStream src, int n) throws ASN1Exception, java.io.IOException {
+            ensure(n);
+            while (n > 0) {
+                int len = src.read(data, length, n);
+                if (len < 0) {
+                    throw new ASN1EncodingException("Unexpected end in BER encoding");
                 }
+                length += len;
+                n -= len;
             }
+        }
 
-
-            // Take the chunks and put them in an array of BEREncoding
-
-            int num_elements = chunks.size();
-            BEREncoding parts[] = new BEREncoding[num_elements];
-            for (int x = 0; x < num_elements; x++) {
-                parts[x] = ((BEREncoding) chunks.get(x));
+        private void ensure(int n) {
+            if (length + n > data.length) {
+                byte b[] = new byte[Math.max(length + n, data.length * 2)];
+                System.arraycopy(data, 0, b, 0, length);
+                data = b;
             }
-
-            return new BERConstructed(tag_type, tag, parts);
         }
     }
 
+    /**
+     * Encodes this object into a buffer from the pool. The buffer is
+     * flipped and ready for writing, it should be released to the pool
+     * after use.
+     *
+     * @param    pool - the buffer pool.
+     * @returns the buffer with the encoding.
+     */
 
+    public ByteBuffer encode(BERBufferPool pool) {
+        ByteBuffer buffer = pool.acquire(i_total_length);
+        encode(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Puts the encoding into a buffer, at the buffer position. The buffer
+     * must have at least total_length() octets remaining.
+     *
+     * @param    dest - the buffer to put the encoding to.
+     */
+
+    public abstract void encode(ByteBuffer dest);
 
   /* This is the initialization method used by the subclasses. 
    * The length must be the total length of the encoding of the 
@@ -395,6 +482,22 @@ public abstract class BEREncoding {
         output_bytes(lengthEncoding, dest);
     }
 
+  /*
+   * This is a protected method used to put the encoded identifier
+   * and length octets into a buffer. It is used by the superclasses
+   * to implement the "encode" method.
+   */
+
+    protected void
+    put_head(ByteBuffer dest) {
+        for (int n = 0; n < identifierEncoding.length; n++) {
+            dest.put((byte) identifierEncoding[n]);
+        }
+        for (int n = 0; n < lengthEncoding.length; n++) {
+            dest.put((byte) lengthEncoding[n]);
+        }
+    }
+
   /*
    * Internal protected method fills in the data array (starting from index
    * position offset) with the encoding for the identifier and length.
@@ -31,9 +31,15 @@
  */
 package org.xbib.io.iso23950;
 
+import java.nio.ByteBuffer;
+
 public class ErrorRecord extends Record {
 
     public ErrorRecord(int number, byte[] content) {
         super(number, content);
     }
+
+    public ErrorRecord(int number, ByteBuffer buffer) {
+        super(number, buffer);
+    }
 }
@@ -57,6 +57,7 @@ public class InitOperation {
     private String password;
     private String group;
     private boolean rejected;
+    private boolean concurrentOperations;
 
     public InitOperation(String user, String password, String group) {
         this.user = user;
@@ -92,7 +93,7 @@ public class InitOperation {
         options[10] = false; // extended-services  
         options[11] = false; // level 1 segmentation
         options[12] = false; // level 2 segmentation
-        options[13] = false; // concurrent operations
+        options[13] = true; // concurrent operations
         options[14] = true;// named result sets
         init.s_options = new Options();
         init.s_options.value = new ASN1BitString(options);
@@ -150,6 +151,10 @@ public class InitOperation {
         if (initResp.s_otherInfo != null) {
             targetInfo += "\n" + initResp.s_otherInfo.toString();
         }
+        if (initResp.s_options != null) {
+            boolean[] granted = initResp.s_options.value.get();
+            concurrentOperations = granted.length > 13 && granted[13];
+        }
         targetInfo = targetInfo.replaceAll("\"", "");
         this.rejected =  !initResp.s_result.get();
         if (rejected) {
@@ -168,4 +173,12 @@ public class InitOperation {
     public int getTargetVersion() {
         return targetVersion;
     }
+
+    /**
+     * Whether the target agreed to concurrent operations, so that requests
+     * may be sent before the responses to earlier requests have arrived.
+     */
+    public boolean isConcurrentOperations() {
+        return concurrentOperations;
+    }
 }
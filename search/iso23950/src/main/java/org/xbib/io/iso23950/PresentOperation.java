@@ -36,7 +36,10 @@ import asn1.ASN1External;
 import asn1.ASN1GeneralString;
 import asn1.ASN1Integer;
 import asn1.ASN1ObjectIdentifier;
+import asn1.ASN1OctetString;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.xbib.io.iso23950.exceptions.MessageSizeTooSmallException;
 import org.xbib.io.iso23950.exceptions.NoRecordsReturnedException;
@@ -50,11 +53,17 @@ import z3950.v3.PresentRequest;
 import z3950.v3.PresentRequest_recordComposition;
 import z3950.v3.PresentResponse;
 import z3950.v3.PresentStatus;
+import z3950.v3.ReferenceId;
 import z3950.v3.ResultSetId;
 
 /**
  *  Present operation for Z39.50
  *
+ *  If the target agreed to concurrent operations, large ranges are split
+ *  into chunks, and a window of Present requests is kept in flight on the
+ *  association. The chunks are tagged by reference ids, and the records are
+ *  handed out in order of their positions in the result set.
+ *
  */
 public class PresentOperation {
 
@@ -74,6 +83,10 @@ public class PresentOperation {
 
     private String preferredRecordSyntax;
 
+    private int chunkSize;
+
+    private int window = 4;
+
     public PresentOperation(String resultSetName, String elementSetName,
             String preferredRecordSyntax, int offset, int length) {
         this.resultSetName = resultSetName;
@@ -83,8 +96,129 @@ public class PresentOperation {
         this.length = length;
     }
 
+    /**
+     * Set the number of records per Present request for pipelining.
+     * With 0, the default, the whole range is requested at once.
+     */
+    public PresentOperation setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of Present requests in flight.
+     */
+    public PresentOperation setWindow(int window) {
+        this.window = Math.max(1, window);
+        return this;
+    }
+
     public void execute(ZSession session, RecordHandler handler) throws IOException {
+        if (chunkSize > 0 && length > chunkSize && session.isConcurrentOperations()) {
+            executePipelined(session, handler);
+            return;
+        }
+        PDU pdu = new PDU();
+        pdu.c_presentRequest = newRequest(null, offset, length);
+        this.millis = System.currentTimeMillis();
+        session.getConnection().writePDU(pdu);
+        pdu = session.getConnection().readPDU();
+        this.millis = System.currentTimeMillis() - millis;
+        PresentResponse response = pdu.c_presentResponse;
+        this.nReturned = response.s_numberOfRecordsReturned != null
+                ? response.s_numberOfRecordsReturned.get() : 0;
+        this.status = response.s_presentStatus.value != null
+                ? response.s_presentStatus.value.get() : 0;
+        if (status == PresentStatus.E_success) {
+            records(response, offset, nReturned, handler);
+        } else {
+            throw createZExceptionFrom(status, nReturned, response);
+        }
+    }
+
+    private void executePipelined(ZSession session, RecordHandler handler) throws IOException {
+        ZConnection connection = session.getConnection();
+        int chunks = (length + chunkSize - 1) / chunkSize;
+        Map<Integer, PresentResponse> responses = new HashMap();
+        ZException error = null;
+        int sent = 0;
+        int received = 0;
+        int delivered = 0;
+        this.nReturned = 0;
+        this.status = PresentStatus.E_success;
+        this.millis = System.currentTimeMillis();
+        try {
+            while (received < chunks) {
+                while (sent < chunks && sent - received < window) {
+                    int start = offset + sent * chunkSize;
+                    PDU pdu = new PDU();
+                    pdu.c_presentRequest = newRequest(Integer.toString(sent), start,
+                            Math.min(chunkSize, offset + length - start));
+                    connection.writePDU(pdu);
+                    sent++;
+                }
+                PDU pdu = connection.readPDU();
+                PresentResponse response = pdu.c_presentResponse;
+                if (response == null) {
+                    throw new IOException("Present error: unexpected " + pdu);
+                }
+                // targets not echoing the reference id answer in order
+                int chunk = response.s_referenceId != null ? chunk(response.s_referenceId, sent) : received;
+                if (chunk < delivered || responses.containsKey(chunk)) {
+                    throw new IOException("Present error: duplicate response for chunk " + chunk);
+                }
+                responses.put(chunk, response);
+                received++;
+                // hand out the records of all chunks complete up to here, in order
+                while (error == null && responses.containsKey(delivered)) {
+                    response = responses.remove(delivered);
+                    int n = response.s_numberOfRecordsReturned != null
+                            ? response.s_numberOfRecordsReturned.get() : 0;
+                    int s = response.s_presentStatus.value != null
+                            ? response.s_presentStatus.value.get() : 0;
+                    if (s == PresentStatus.E_success) {
+                        records(response, offset + delivered * chunkSize, n, handler);
+                        this.nReturned += n;
+                    } else {
+                        // keep reading the outstanding responses, the association stays usable
+                        this.status = s;
+                        error = createZExceptionFrom(s, nReturned + n, response);
+                    }
+                    delivered++;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (received < sent) {
+                // responses are outstanding, the association can not be used again
+                connection.fail();
+            }
+            throw e;
+        }
+        this.millis = System.currentTimeMillis() - millis;
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private int chunk(ReferenceId referenceId, int sent) throws IOException {
+        String s = referenceId.value != null ? referenceId.value.get() : null;
+        try {
+            int chunk = Integer.parseInt(s);
+            if (chunk >= 0 && chunk < sent) {
+                return chunk;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new IOException("Present error: unknown reference id " + s);
+    }
+
+    private PresentRequest newRequest(String referenceId, int offset, int length) {
         PresentRequest pr = new PresentRequest();
+        if (referenceId != null) {
+            pr.s_referenceId = new ReferenceId();
+            pr.s_referenceId.value = new ASN1OctetString(referenceId);
+        }
         pr.s_resultSetId = new ResultSetId();
         pr.s_resultSetId.value = new InternationalString();
         pr.s_resultSetId.value.value = new ASN1GeneralString(resultSetName);
@@ -95,41 +229,30 @@ public class PresentOperation {
         pr.s_recordComposition.c_simple.c_genericElementSetName = new InternationalString();
         pr.s_recordComposition.c_simple.c_genericElementSetName.value = new ASN1GeneralString(elementSetName);
         pr.s_preferredRecordSyntax = new ASN1ObjectIdentifier(makeOID(preferredRecordSyntax));
-        PDU pdu = new PDU();
-        pdu.c_presentRequest = pr;
-        this.millis = System.currentTimeMillis();
-        session.getConnection().writePDU(pdu);
-        pdu = session.getConnection().readPDU();
-        this.millis = System.currentTimeMillis() - millis;
+        return pr;
+    }
 
-        PresentResponse response = pdu.c_presentResponse;
-        this.nReturned = response.s_numberOfRecordsReturned != null
-                ? response.s_numberOfRecordsReturned.get() : 0;
-        this.status = response.s_presentStatus.value != null
-                ? response.s_presentStatus.value.get() : 0;
-        if (status == PresentStatus.E_success) {
-            for (int n = 0; n < nReturned; n++) {
-                NamePlusRecord nr = response.s_records.c_responseRecords[n];
-                try {
-                    if (nr.s_record.c_retrievalRecord != null) {
-                        ASN1External asn1External = new ASN1External(nr.s_record.c_retrievalRecord.ber_encode(), true);
-                        Record record = new Record(offset + n, asn1External.c_octetAligned.get_bytes());
-                        if (handler != null) {
-                            handler.receivedRecord(record);
-                        }                        
-                    } else if (nr.s_record.c_surrogateDiagnostic != null) {
-                        ASN1External asn1External = new ASN1External(nr.s_record.c_surrogateDiagnostic.c_defaultFormat.ber_encode(), true);
-                        ErrorRecord record = new ErrorRecord(offset + n, asn1External.c_octetAligned.get_bytes());
-                        if (handler != null) {
-                            handler.receivedRecord(record);
-                        }
+    private void records(PresentResponse response, int offset, int nReturned, RecordHandler handler)
+            throws IOException {
+        for (int n = 0; n < nReturned; n++) {
+            NamePlusRecord nr = response.s_records.c_responseRecords[n];
+            try {
+                if (nr.s_record.c_retrievalRecord != null) {
+                    ASN1External asn1External = new ASN1External(nr.s_record.c_retrievalRecord.ber_encode(), true);
+                    Record record = new Record(offset + n, asn1External.c_octetAligned.get_buffer());
+                    if (handler != null) {
+                        handler.receivedRecord(record);
+                    }                        
+                } else if (nr.s_record.c_surrogateDiagnostic != null) {
+                    ASN1External asn1External = new ASN1External(nr.s_record.c_surrogateDiagnostic.c_defaultFormat.ber_encode(), true);
+                    ErrorRecord record = new ErrorRecord(offset + n, asn1External.c_octetAligned.get_buffer());
+                    if (handler != null) {
+                        handler.receivedRecord(record);
                     }
-                } catch (ASN1Exception e) {
-                    throw new IOException("Present error: " + e.getMessage());
                 }
+            } catch (ASN1Exception e) {
+                throw new IOException("Present error: " + e.getMessage());
             }
-        } else {
-            throw createZExceptionFrom(status, nReturned, response);
         }
     }
 
@@ -31,25 +31,51 @@
  */
 package org.xbib.io.iso23950;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
 /**
  *  A record for Z39.50 presentations
  *
+ *  A record of a present response shares the buffer of the response PDU.
+ *  Use {@link #writeTo(OutputStream)} to write it without a copy.
  */
 public class Record {
 
     private int number;
     private byte[] content;
+    private ByteBuffer buffer;
 
     public Record(int number, byte[] content) {
         this.number = number;
         this.content = content;
     }
 
+    public Record(int number, ByteBuffer buffer) {
+        this.number = number;
+        this.buffer = buffer;
+    }
+
     public int getNumber() {
         return number;
     }
 
     public byte[] getContent() {
+        if (content == null) {
+            content = new byte[buffer.remaining()];
+            buffer.duplicate().get(content);
+        }
         return content;
     }
+
+    public void writeTo(OutputStream out) throws IOException {
+        if (content != null) {
+            out.write(content);
+        } else if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            out.write(getContent());
+        }
+    }
 }
@@ -33,14 +33,16 @@ package org.xbib.io.iso23950;
 
 import asn1.ASN1Exception;
 import asn1.ASN1Integer;
+import asn1.BERBufferPool;
 import asn1.BEREncoding;
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 
 import org.xbib.io.Connection;
 import org.xbib.logging.Logger;
@@ -61,20 +63,22 @@ public class ZConnection implements Connection<ZSession> {
 
     private URI uri;
 
+    private SocketChannel channel;
+
     private Socket socket;
 
     private int targetVersion = 0;
 
     private BufferedInputStream src;
 
-    private BufferedOutputStream dest;
-
     private long timeout;
 
     private long readmillis;
 
     private long writemillis;
 
+    private boolean failed;
+
     public ZConnection() {
     }
 
@@ -130,12 +134,9 @@ public class ZConnection implements Connection<ZSession> {
                     src.close();
                     src = null;
                 }
-                if (dest != null) {
-                    dest.close();
-                    dest = null;
-                }
-                if (socket != null) {
-                    socket.close();
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
                     socket = null;
                 }
             } catch (IOException e) {
@@ -149,17 +150,19 @@ public class ZConnection implements Connection<ZSession> {
             return;
         }
         try {
-            this.socket = new Socket();
+            this.channel = SocketChannel.open();
+            this.socket = channel.socket();
             socket.connect(new InetSocketAddress(uri.getHost(), uri.getPort()), (int) timeout);
             socket.setSoTimeout((int) timeout);
-            // initialize bi-directional communication channel
+            // PDUs are read from the socket stream, which honors the timeout,
+            // and written to the channel straight from pooled direct buffers
             this.src = new BufferedInputStream(socket.getInputStream());
-            this.dest = new BufferedOutputStream(socket.getOutputStream());
+            this.failed = false;
         } catch ( IOException | SecurityException | NullPointerException e) {
             logger.warn(e.getMessage() + ": " + getURI().getHost(), e);
             try {
-                if (socket != null) {
-                    socket.close();
+                if (channel != null) {
+                    channel.close();
                 }
             } catch (IOException ex) {
                 logger.warn(ex.getMessage(), ex);
@@ -171,18 +174,63 @@ public class ZConnection implements Connection<ZSession> {
         return socket != null ? socket.isConnected() : false;
     }
 
+    /**
+     * Check an idle connection. A connection is alive if no PDU failed to
+     * be written or read, and if the target has neither closed the socket
+     * nor sent an unsolicited PDU, which can only be a Close. Must not be
+     * called while a PDU is being read.
+     *
+     * @return true if the connection can be used for another request
+     */
+    public boolean isAlive() {
+        if (failed || channel == null || !channel.isConnected()) {
+            return false;
+        }
+        try {
+            if (src.available() > 0) {
+                return false;
+            }
+            ByteBuffer probe = ByteBuffer.allocate(1);
+            channel.configureBlocking(false);
+            try {
+                return channel.read(probe) == 0;
+            } finally {
+                channel.configureBlocking(true);
+            }
+        } catch (IOException e) {
+            logger.warn("while checking connection: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Mark the connection as failed, for example when responses are still
+     * outstanding after an error. A failed connection is never reused.
+     */
+    void fail() {
+        this.failed = true;
+    }
+
     public void writePDU(PDU pdu) throws IOException {
-        if (dest == null) {
-            throw new IOException("no output stream");
+        if (channel == null) {
+            throw new IOException("no output channel");
         }
+        ByteBuffer buffer = null;
         try {
             long t0 = System.currentTimeMillis();
-            pdu.ber_encode().output(dest);
-            dest.flush();
+            buffer = pdu.ber_encode().encode(BERBufferPool.direct());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
             long t1 = System.currentTimeMillis();
             this.writemillis = t1 - t0;
         } catch (ASN1Exception ex) {
             throw new IOException(ex.getMessage(), ex);
+        } catch (IOException ex) {
+            this.failed = true;
+            throw ex;
+        } finally {
+            BERBufferPool.direct().release(buffer);
         }
     }
 
@@ -200,9 +248,14 @@ public class ZConnection implements Connection<ZSession> {
             this.readmillis = t1 - t0;
             return new PDU(ber, true);
         } catch (ASN1Exception ex) {
+            this.failed = true;
             throw new IOException(ex.getMessage(), ex);
         } catch (NullPointerException ex) {
+            this.failed = true;
             throw new IOException("connection read PDU error", ex);
+        } catch (IOException ex) {
+            this.failed = true;
+            throw ex;
         }
     }
 
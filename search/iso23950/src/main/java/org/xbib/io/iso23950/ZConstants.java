@@ -53,4 +53,10 @@ public interface ZConstants {
 
     String TYPE_PROPERTY = "type";
 
+    String USER_PROPERTY = "user";
+
+    String PASSWORD_PROPERTY = "password";
+
+    String POOL_SIZE_PROPERTY = "poolsize";
+
 }
@@ -55,6 +55,14 @@ public class ZSession implements Session<ZPacket>, ZService {
 
     private boolean auth;
 
+    private boolean concurrentOperations;
+
+    private ZSessionPool pool;
+
+    private long since;
+
+    private boolean borrowed;
+
     /**
      * Creates a new ZSession object.
      */
@@ -94,9 +102,18 @@ public class ZSession implements Session<ZPacket>, ZService {
         this.isOpen = connection.isConnected();
     }
 
+    /**
+     * Close the session. A pooled session is given back to its pool, and
+     * the association stays open for the next request to the target.
+     */
     @Override
     public void close() throws IOException {
-        connection.close();
+        if (pool != null) {
+            pool.release(this);
+        } else {
+            connection.close();
+            this.isOpen = false;
+        }
     }
 
     @Override
@@ -128,6 +145,39 @@ public class ZSession implements Session<ZPacket>, ZService {
         return auth;
     }
 
+    public void setConcurrentOperations(boolean concurrentOperations) {
+        this.concurrentOperations = concurrentOperations;
+    }
+
+    public boolean isConcurrentOperations() {
+        return concurrentOperations;
+    }
+
+    ZSession setPool(ZSessionPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    ZSessionPool getPool() {
+        return pool;
+    }
+
+    void setSince(long since) {
+        this.since = since;
+    }
+
+    long getSince() {
+        return since;
+    }
+
+    void setBorrowed(boolean borrowed) {
+        this.borrowed = borrowed;
+    }
+
+    boolean isBorrowed() {
+        return borrowed;
+    }
+
     public PropertiesZClient newZClient(Properties properties) {
         return new PropertiesZClient(this, properties);
     }
@@ -0,0 +1,477 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.iso23950;
+
+import org.xbib.elements.metrics.Histogram;
+import org.xbib.io.Connection;
+import org.xbib.io.ConnectionService;
+import org.xbib.io.Session;
+import org.xbib.logging.Logger;
+import org.xbib.logging.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of initialized Z sessions, per target.
+ *
+ * Each session holds an association on which the Init handshake is done,
+ * so a borrowed session is ready for Search and Present. The number of
+ * sessions in use is capped per target, idle sessions are checked before
+ * they are handed out, and sessions idle for too long are closed, because
+ * targets drop inactive associations anyway. Closing a borrowed session
+ * gives it back to the pool.
+ *
+ * A pool registers itself at the platform MBean server when it is created,
+ * and unregisters when it is closed.
+ */
+public class ZSessionPool implements ZSessionPoolMBean, ZConstants {
+
+    private final static Logger logger = LoggerFactory.getLogger(ZSessionPool.class.getName());
+
+    private final static AtomicLong ids = new AtomicLong();
+
+    private final static ZSessionPool instance = new ZSessionPool();
+
+    private final long id = ids.incrementAndGet();
+
+    private final ConcurrentMap<String, Target> targets = new ConcurrentHashMap();
+
+    private final ConcurrentMap<ZSession, Target> owners = new ConcurrentHashMap();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final Histogram init = new Histogram();
+
+    private final Histogram wait = new Histogram();
+
+    private int maxSessions = 4;
+
+    private long maxIdleMillis = 60000L;
+
+    private long maxWaitMillis = 30000L;
+
+    private ScheduledExecutorService reaper;
+
+    private ObjectName objectName;
+
+    public ZSessionPool() {
+        register();
+    }
+
+    public static ZSessionPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Set the default number of sessions per target. Targets can override it
+     * with the pool size property.
+     */
+    public ZSessionPool setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+        return this;
+    }
+
+    public ZSessionPool setMaxIdleMillis(long maxIdleMillis) {
+        this.maxIdleMillis = maxIdleMillis;
+        return this;
+    }
+
+    public ZSessionPool setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+        return this;
+    }
+
+    /**
+     * Borrow a session for a target. Waits if all sessions of the target are in use.
+     *
+     * @param properties the target properties, with URI, user, password, and pool size
+     * @return an open and initialized session
+     * @throws IOException if no session was available in time, or the target could not be initialized
+     */
+    public ZSession borrow(Properties properties) throws IOException {
+        Target target = target(properties);
+        long t0 = System.nanoTime();
+        try {
+            if (!target.permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("no session for " + target.uri.getHost() + " within " + maxWaitMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for session");
+        }
+        wait.update(System.nanoTime() - t0);
+        try {
+            ZSession session = target.idle.pollFirst();
+            while (session != null && !usable(session)) {
+                destroy(target, session);
+                session = target.idle.pollFirst();
+            }
+            if (session == null) {
+                session = create(target);
+            }
+            session.setBorrowed(true);
+            session.setSince(System.nanoTime());
+            target.inUse.incrementAndGet();
+            return session;
+        } catch (IOException | RuntimeException e) {
+            target.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Give a borrowed session back. A session with a failed or closed
+     * association is closed instead.
+     *
+     * @param session the session
+     */
+    public void release(ZSession session) {
+        Target target;
+        synchronized (session) {
+            if (!session.isBorrowed()) {
+                return;
+            }
+            session.setBorrowed(false);
+            target = owners.get(session);
+        }
+        if (target == null) {
+            session.getConnection().close();
+            return;
+        }
+        long now = System.nanoTime();
+        target.latency.update(now - session.getSince());
+        target.inUse.decrementAndGet();
+        session.setSince(now);
+        if (targets.get(target.key) == target && session.getConnection().isAlive()) {
+            target.idle.offerFirst(session);
+        } else {
+            destroy(target, session);
+        }
+        target.permits.release();
+    }
+
+    /**
+     * Close the sessions that are idle for too long, and the sessions closed by their target.
+     */
+    public void evict() {
+        long now = System.nanoTime();
+        for (Target target : targets.values()) {
+            for (ZSession session : target.idle) {
+                // remove first, so that no other thread can borrow the session while it is checked
+                if (!target.idle.remove(session)) {
+                    continue;
+                }
+                if (usable(session) && now - session.getSince() < TimeUnit.MILLISECONDS.toNanos(maxIdleMillis)) {
+                    target.idle.offerLast(session);
+                } else {
+                    destroy(target, session);
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Close all idle sessions and stop the eviction. Sessions in use are closed when they are given back.
+     */
+    public synchronized void close() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+            reaper = null;
+        }
+        for (Target target : targets.values()) {
+            targets.remove(target.key);
+            ZSession session;
+            while ((session = target.idle.pollFirst()) != null) {
+                destroy(target, session);
+            }
+        }
+        unregister();
+    }
+
+    /**
+     * Register the pool at the platform MBean server, under a name with the id of this pool.
+     */
+    public synchronized void register() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName("org.xbib.io.iso23950:type=ZSessionPool,id=" + id);
+            server.registerMBean(this, on);
+            this.objectName = on;
+        } catch (JMException e) {
+            logger.warn("can not register metrics: " + e.getMessage());
+        }
+    }
+
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warn("can not unregister metrics: " + e.getMessage());
+        }
+        objectName = null;
+    }
+
+    @Override
+    public int getTargets() {
+        return targets.size();
+    }
+
+    @Override
+    public int getSessions() {
+        int n = 0;
+        for (Target target : targets.values()) {
+            n += target.sessions.get();
+        }
+        return n;
+    }
+
+    @Override
+    public int getSessionsInUse() {
+        int n = 0;
+        for (Target target : targets.values()) {
+            n += target.inUse.get();
+        }
+        return n;
+    }
+
+    @Override
+    public int getSessionsIdle() {
+        int n = 0;
+        for (Target target : targets.values()) {
+            n += target.idle.size();
+        }
+        return n;
+    }
+
+    /**
+     * The sessions in use, relative to the maximum number of sessions of all targets.
+     */
+    @Override
+    public double getUtilization() {
+        int max = 0;
+        for (Target target : targets.values()) {
+            max += target.maxSessions;
+        }
+        return max > 0 ? (double) getSessionsInUse() / max : 0.0;
+    }
+
+    @Override
+    public long getInits() {
+        return init.getCount();
+    }
+
+    @Override
+    public long getInitMeanMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(init.getMeanNanos());
+    }
+
+    @Override
+    public long getBorrowWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(wait.getSumNanos());
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * The time from borrowing a session to giving it back, per target.
+     *
+     * @return the latencies
+     */
+    @Override
+    public String[] getTargetLatencies() {
+        List<String> list = new ArrayList();
+        for (Target target : targets.values()) {
+            list.add(target.key + " sessions=" + target.sessions + " inuse=" + target.inUse + " " + target.latency);
+        }
+        return list.toArray(new String[list.size()]);
+    }
+
+    /**
+     * Write the pool metrics to the log.
+     */
+    public void log() {
+        logger.info("targets={} sessions={} inuse={} idle={} inits={} init={} wait={} evictions={}",
+                getTargets(), getSessions(), getSessionsInUse(), getSessionsIdle(),
+                getInits(), init, wait, getEvictions());
+        for (String s : getTargetLatencies()) {
+            logger.info("{}", s);
+        }
+    }
+
+    private Target target(Properties properties) {
+        URI uri = URI.create(properties.getProperty(ADDRESS_PROPERTY));
+        String user = properties.getProperty(USER_PROPERTY);
+        String key = user != null ? user + "@" + uri : uri.toString();
+        Target target = targets.get(key);
+        if (target == null) {
+            int max = Integer.parseInt(properties.getProperty(POOL_SIZE_PROPERTY, Integer.toString(maxSessions)));
+            target = new Target(key, uri, user, properties.getProperty(PASSWORD_PROPERTY), max);
+            Target t = targets.putIfAbsent(key, target);
+            if (t != null) {
+                target = t;
+            } else {
+                startReaper();
+            }
+        }
+        return target;
+    }
+
+    private ZSession create(Target target) throws IOException {
+        long t0 = System.nanoTime();
+        Connection<ZSession> connection = ConnectionService.getInstance()
+                .getFactory(target.uri)
+                .getConnection(target.uri);
+        ZSession session = connection.createSession();
+        try {
+            session.open(Session.Mode.READ);
+            InitOperation op = new InitOperation(target.user, target.password, null);
+            op.execute(session);
+            // a rejected association is never pooled, the permit is released by borrow()
+            if (op.rejected()) {
+                throw new IOException("could not authenticate at " + target.uri.getHost());
+            }
+            session.setAuthenticated(true);
+            session.setConcurrentOperations(op.isConcurrentOperations());
+        } catch (IOException e) {
+            session.close();
+            throw e;
+        }
+        init.update(System.nanoTime() - t0);
+        target.sessions.incrementAndGet();
+        owners.put(session, target);
+        logger.debug("new session for {}, {} sessions", target.key, target.sessions);
+        return session.setPool(this);
+    }
+
+    private boolean usable(ZSession session) {
+        return System.nanoTime() - session.getSince() < TimeUnit.MILLISECONDS.toNanos(maxIdleMillis)
+                && session.getConnection().isAlive();
+    }
+
+    private void destroy(Target target, ZSession session) {
+        owners.remove(session);
+        target.sessions.decrementAndGet();
+        session.setPool(null);
+        session.getConnection().close();
+    }
+
+    private synchronized void startReaper() {
+        if (reaper != null) {
+            return;
+        }
+        // a pool used again after close() registers again
+        register();
+        reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "zsession-pool-evictor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        long period = Math.max(1000L, maxIdleMillis / 2);
+        reaper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    evict();
+                } catch (Throwable t) {
+                    logger.warn("eviction failed: " + t.getMessage(), t);
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    class Target {
+
+        final String key;
+
+        final URI uri;
+
+        final String user;
+
+        final String password;
+
+        final int maxSessions;
+
+        final Semaphore permits;
+
+        final LinkedBlockingDeque<ZSession> idle = new LinkedBlockingDeque();
+
+        final AtomicInteger sessions = new AtomicInteger();
+
+        final AtomicInteger inUse = new AtomicInteger();
+
+        final Histogram latency = new Histogram();
+
+        Target(String key, URI uri, String user, String password, int maxSessions) {
+            this.key = key;
+            this.uri = uri;
+            this.user = user;
+            this.password = password;
+            this.maxSessions = maxSessions;
+            this.permits = new Semaphore(maxSessions, true);
+        }
+    }
+}
@@ -31,19 +31,20 @@
  */
 package org.xbib.io.iso23950.client;
 
-import org.xbib.io.Connection;
-import org.xbib.io.ConnectionService;
 import org.xbib.io.iso23950.ZConstants;
 import org.xbib.io.iso23950.ZSession;
+import org.xbib.io.iso23950.ZSessionPool;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
 import java.util.Properties;
 
 /**
  *  Factory for Z client
  *
+ *  The clients run on sessions borrowed from the Z session pool, closing
+ *  a client gives the session back.
+ *
  */
 public class ZClientFactory implements ZConstants {
 
@@ -73,11 +74,7 @@ public class ZClientFactory implements ZConstants {
 
     public static ZClient newZClient(Properties properties ) {
         try {
-            URI uri = URI.create(properties.getProperty(ADDRESS_PROPERTY));
-            Connection<ZSession> connection = ConnectionService.getInstance()
-                    .getFactory(uri)
-                    .getConnection(uri);
-            ZSession session = connection.createSession();
+            ZSession session = ZSessionPool.getInstance().borrow(properties);
             return session.newZClient(properties);
         } catch (IOException ex) {
             return null;
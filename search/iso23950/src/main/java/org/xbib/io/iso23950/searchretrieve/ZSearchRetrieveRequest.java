@@ -79,6 +79,8 @@ public abstract class ZSearchRetrieveRequest extends SearchRetrieveRequest {
 
     private long presentMillis;
 
+    private int presentChunkSize = 100;
+
     private final ByteArrayOutputStream records = new ByteArrayOutputStream();
 
     private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
@@ -127,6 +129,15 @@ public abstract class ZSearchRetrieveRequest extends SearchRetrieveRequest {
         return this;
     }
 
+    /**
+     * Set the number of records per Present request. On sessions with concurrent
+     * operations, the chunks of a large range are requested in a pipeline.
+     */
+    public ZSearchRetrieveRequest setPresentChunkSize(int presentChunkSize) {
+        this.presentChunkSize = presentChunkSize;
+        return this;
+    }
+
     public ZSearchRetrieveRequest setPreferredRecordSyntax(String preferredRecordSyntax) {
         this.preferredRecordSyntax = recordSyntaxBundle.containsKey(preferredRecordSyntax)
                 ? recordSyntaxBundle.getString(preferredRecordSyntax.toLowerCase()) : preferredRecordSyntax;
@@ -166,15 +177,16 @@ public abstract class ZSearchRetrieveRequest extends SearchRetrieveRequest {
         } else {
             PresentOperation present = new PresentOperation(
                     resultSetName, elementSetName, preferredRecordSyntax,
-                    offset, length);
+                    offset, length)
+                    .setChunkSize(presentChunkSize);
             RecordHandler handler  = new RecordHandler() {
                 @Override
                 public void receivedRecord(Record record) {
                     try {
                         if (record instanceof ErrorRecord) {
-                            errors.write(record.getContent());
+                            record.writeTo(errors);
                         } else {
-                            records.write(record.getContent());
+                            record.writeTo(records);
                         }
                     } catch (IOException e) {
                         logger.error(e.getMessage(), e);
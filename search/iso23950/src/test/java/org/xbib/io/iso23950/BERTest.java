@@ -0,0 +1,107 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.iso23950;
+
+import asn1.ASN1Any;
+import asn1.ASN1Integer;
+import asn1.ASN1OctetString;
+import asn1.ASN1Sequence;
+import asn1.BERBufferPool;
+import asn1.BEREncoding;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+public class BERTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ASN1Sequence seq = new ASN1Sequence(new ASN1Any[]{
+                new ASN1Integer(4711),
+                new ASN1OctetString(new byte[300])
+        });
+        BEREncoding ber = seq.ber_encode();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ber.output(out);
+        byte[] b = out.toByteArray();
+        ByteBuffer buffer = ber.encode(BERBufferPool.direct());
+        try {
+            assertEquals(buffer.remaining(), b.length);
+            byte[] c = new byte[buffer.remaining()];
+            buffer.get(c);
+            assertEquals(c, b);
+        } finally {
+            BERBufferPool.direct().release(buffer);
+        }
+        ASN1Sequence s1 = new ASN1Sequence(BEREncoding.input(new ByteArrayInputStream(b)), true);
+        ASN1Sequence s2 = new ASN1Sequence(BEREncoding.input(ByteBuffer.wrap(b)), true);
+        assertEquals(new ASN1Integer(s1.get()[0].ber_encode(), true).get(), 4711);
+        assertEquals(new ASN1OctetString(s2.get()[1].ber_encode(), true).get_bytes().length, 300);
+    }
+
+    @Test
+    public void testIndefiniteLength() throws Exception {
+        byte[] b = new byte[]{0x30, (byte) 0x80, 0x04, 0x02, 'a', 'b', 0x00, 0x00};
+        ASN1Sequence seq = new ASN1Sequence(BEREncoding.input(new ByteArrayInputStream(b)), true);
+        assertEquals(new ASN1OctetString(seq.get()[0].ber_encode(), true).get(), "ab");
+        ByteBuffer direct = ByteBuffer.allocateDirect(b.length);
+        direct.put(b).flip();
+        seq = new ASN1Sequence(BEREncoding.input(direct), true);
+        assertEquals(seq.get().length, 1);
+    }
+
+    @Test
+    public void testSharedOctets() throws Exception {
+        ASN1Sequence seq = new ASN1Sequence(new ASN1Any[]{
+                new ASN1Integer(4711),
+                new ASN1OctetString("hello")
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        seq.ber_encode().output(out);
+        byte[] b = out.toByteArray();
+        ASN1Sequence s = new ASN1Sequence(BEREncoding.input(ByteBuffer.wrap(b)), true);
+        ASN1OctetString octets = new ASN1OctetString(s.get()[1].ber_encode(), true);
+        // the octets are a range of the decoded buffer, not a copy
+        ByteBuffer buffer = octets.get_buffer();
+        assertSame(buffer.array(), b);
+        assertEquals(octets.length(), 5);
+        assertEquals(octets.get(), "hello");
+        out.reset();
+        new Record(1, buffer).writeTo(out);
+        assertEquals(out.toString("ISO-8859-1"), "hello");
+        assertEquals(octets.get_bytes(), "hello".getBytes("ISO-8859-1"));
+    }
+}
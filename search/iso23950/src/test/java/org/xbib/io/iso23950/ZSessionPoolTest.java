@@ -0,0 +1,433 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.io.iso23950;
+
+import asn1.ASN1BitString;
+import asn1.ASN1Boolean;
+import asn1.ASN1External;
+import asn1.ASN1Integer;
+import asn1.ASN1OctetString;
+import asn1.BEREncoding;
+import org.testng.annotations.Test;
+import z3950.v3.InitializeResponse;
+import z3950.v3.NamePlusRecord;
+import z3950.v3.NamePlusRecord_record;
+import z3950.v3.Options;
+import z3950.v3.PDU;
+import z3950.v3.PresentRequest;
+import z3950.v3.PresentResponse;
+import z3950.v3.PresentStatus;
+import z3950.v3.ProtocolVersion;
+import z3950.v3.Records;
+import z3950.v3.ReferenceId;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ZSessionPoolTest {
+
+    @Test
+    public void testPooledPipelinedPresent() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        Thread target = new Target(server);
+        target.start();
+        ZSessionPool pool = new ZSessionPool();
+        try {
+            Properties properties = new Properties();
+            properties.setProperty(ZConstants.ADDRESS_PROPERTY, "z3950://localhost:" + server.getLocalPort());
+            ZSession session = pool.borrow(properties);
+            assertTrue(session.isConcurrentOperations());
+            final List<Integer> positions = new ArrayList();
+            RecordHandler handler = new RecordHandler() {
+                @Override
+                public void receivedRecord(Record record) {
+                    positions.add(record.getNumber());
+                    assertEquals(new String(record.getContent()), Integer.toString(record.getNumber()));
+                }
+            };
+            PresentOperation present = new PresentOperation("default", "F", "1.2.840.10003.5.10", 1, 300)
+                    .setChunkSize(100);
+            present.execute(session, handler);
+            assertEquals(present.getNumRecordsReturned(), 300);
+            assertEquals(positions.size(), 300);
+            for (int i = 0; i < positions.size(); i++) {
+                assertEquals(positions.get(i).intValue(), i + 1);
+            }
+            session.close();
+            assertEquals(pool.getSessionsIdle(), 1);
+            // the initialized session is reused
+            assertSame(pool.borrow(properties), session);
+            positions.clear();
+            new PresentOperation("default", "F", "1.2.840.10003.5.10", 11, 10)
+                    .setChunkSize(100)
+                    .execute(session, handler);
+            assertEquals(positions.size(), 10);
+            assertEquals(positions.get(0).intValue(), 11);
+            session.close();
+            assertEquals(pool.getInits(), 1L);
+            assertEquals(pool.getSessions(), 1);
+            assertEquals(pool.getSessionsInUse(), 0);
+        } finally {
+            pool.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void testMaxSessions() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        new Target(server).start();
+        ZSessionPool pool = new ZSessionPool().setMaxSessions(1).setMaxWaitMillis(200L);
+        try {
+            Properties properties = properties(server);
+            ZSession session = pool.borrow(properties);
+            try {
+                pool.borrow(properties);
+                fail("borrowed more sessions than allowed");
+            } catch (IOException e) {
+                // no session within the wait time
+            }
+            session.close();
+            assertSame(pool.borrow(properties), session);
+            session.close();
+            assertEquals(pool.getSessions(), 1);
+        } finally {
+            pool.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void testRejectedInit() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        Target target = new Target(server);
+        target.rejectInit = true;
+        target.start();
+        ZSessionPool pool = new ZSessionPool().setMaxSessions(1).setMaxWaitMillis(200L);
+        try {
+            Properties properties = properties(server);
+            for (int i = 0; i < 2; i++) {
+                try {
+                    pool.borrow(properties);
+                    fail("rejected session was borrowed");
+                } catch (IOException e) {
+                    // rejected, and not timed out waiting for the permit of the first attempt
+                    assertFalse(e.getMessage().contains("within"), e.getMessage());
+                }
+            }
+            assertEquals(pool.getSessions(), 0);
+            assertEquals(pool.getSessionsInUse(), 0);
+            target.rejectInit = false;
+            ZSession session = pool.borrow(properties);
+            assertTrue(session.isAuthenticated());
+            session.close();
+        } finally {
+            pool.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        new Target(server).start();
+        ZSessionPool pool = new ZSessionPool().setMaxIdleMillis(100L);
+        try {
+            pool.borrow(properties(server)).close();
+            assertEquals(pool.getSessionsIdle(), 1);
+            Thread.sleep(300L);
+            pool.evict();
+            assertEquals(pool.getEvictions(), 1L);
+            assertEquals(pool.getSessions(), 0);
+            assertEquals(pool.getSessionsIdle(), 0);
+        } finally {
+            pool.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void testClosedByTarget() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        Target target = new Target(server);
+        target.start();
+        ZSessionPool pool = new ZSessionPool();
+        try {
+            Properties properties = properties(server);
+            ZSession session = pool.borrow(properties);
+            session.close();
+            target.closeConnections();
+            Thread.sleep(200L);
+            // the idle session is checked and replaced
+            ZSession next = pool.borrow(properties);
+            assertNotSame(next, session);
+            next.close();
+            assertEquals(pool.getInits(), 2L);
+            assertEquals(pool.getSessions(), 1);
+        } finally {
+            pool.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void testUnknownReferenceId() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        Target target = new Target(server);
+        target.badReferenceId = true;
+        target.start();
+        ZSessionPool pool = new ZSessionPool();
+        try {
+            ZSession session = pool.borrow(properties(server));
+            try {
+                new PresentOperation("default", "F", "1.2.840.10003.5.10", 1, 300)
+                        .setChunkSize(100)
+                        .execute(session, null);
+                fail("unknown reference id was accepted");
+            } catch (IOException e) {
+                // expected
+            }
+            // responses were outstanding, the session is not given back to the pool
+            session.close();
+            assertEquals(pool.getSessions(), 0);
+            assertEquals(pool.getSessionsIdle(), 0);
+        } finally {
+            pool.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void testHandlerFailure() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        new Target(server).start();
+        ZSessionPool pool = new ZSessionPool();
+        try {
+            ZSession session = pool.borrow(properties(server));
+            RecordHandler handler = new RecordHandler() {
+                @Override
+                public void receivedRecord(Record record) {
+                    throw new IllegalStateException("handler failed");
+                }
+            };
+            try {
+                // six chunks, the handler fails while the fourth is outstanding
+                new PresentOperation("default", "F", "1.2.840.10003.5.10", 1, 600)
+                        .setChunkSize(100)
+                        .execute(session, handler);
+                fail("handler failure was not thrown");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            session.close();
+            assertEquals(pool.getSessions(), 0);
+            assertEquals(pool.getSessionsIdle(), 0);
+        } finally {
+            pool.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+        ZSessionPool pool = new ZSessionPool();
+        ZSessionPool other = new ZSessionPool();
+        assertNotNull(pool.getObjectName());
+        assertNotNull(other.getObjectName());
+        pool.close();
+        assertNull(pool.getObjectName());
+        // closing one pool does not unregister another
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(other.getObjectName()));
+        other.close();
+    }
+
+    private Properties properties(ServerSocket server) {
+        Properties properties = new Properties();
+        properties.setProperty(ZConstants.ADDRESS_PROPERTY, "z3950://localhost:" + server.getLocalPort());
+        return properties;
+    }
+
+    /**
+     * A Z target granting concurrent operations, and answering pipelined
+     * Present requests in reverse order, three at a time.
+     */
+    class Target extends Thread {
+
+        private final ServerSocket server;
+
+        private final List<Socket> sockets = new CopyOnWriteArrayList();
+
+        volatile boolean badReferenceId;
+
+        volatile boolean rejectInit;
+
+        Target(ServerSocket server) {
+            this.server = server;
+            setDaemon(true);
+        }
+
+        void closeConnections() throws IOException {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final Socket socket = server.accept();
+                    sockets.add(socket);
+                    Thread t = new Thread() {
+                        @Override
+                        public void run() {
+                            serve(socket);
+                        }
+                    };
+                    t.setDaemon(true);
+                    t.start();
+                }
+            } catch (IOException e) {
+                // server closed
+            }
+        }
+
+        private void serve(Socket socket) {
+            try {
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                List<PresentRequest> pending = new ArrayList();
+                BEREncoding ber;
+                while ((ber = BEREncoding.input(in)) != null) {
+                    PDU request = new PDU(ber, true);
+                    if (request.c_initRequest != null) {
+                        write(out, initResponse());
+                    } else if (request.c_presentRequest != null) {
+                        PresentRequest pr = request.c_presentRequest;
+                        if (pr.s_referenceId == null) {
+                            write(out, presentResponse(pr));
+                        } else {
+                            pending.add(pr);
+                            if (pending.size() == 3) {
+                                Collections.reverse(pending);
+                                for (PresentRequest p : pending) {
+                                    write(out, presentResponse(p));
+                                }
+                                pending.clear();
+                            }
+                        }
+                    } else if (request.c_close != null) {
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                // connection closed
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+        private void write(OutputStream out, PDU pdu) throws Exception {
+            pdu.ber_encode().output(out);
+            out.flush();
+        }
+
+        private PDU initResponse() {
+            InitializeResponse response = new InitializeResponse();
+            response.s_protocolVersion = new ProtocolVersion();
+            response.s_protocolVersion.value = new ASN1BitString(new boolean[]{true, true, true});
+            boolean[] options = new boolean[15];
+            options[0] = true;
+            options[1] = true;
+            options[13] = true;
+            response.s_options = new Options();
+            response.s_options.value = new ASN1BitString(options);
+            response.s_preferredMessageSize = new ASN1Integer(1024 * 1024);
+            response.s_exceptionalRecordSize = new ASN1Integer(1024 * 1024);
+            response.s_result = new ASN1Boolean(!rejectInit);
+            PDU pdu = new PDU();
+            pdu.c_initResponse = response;
+            return pdu;
+        }
+
+        private PDU presentResponse(PresentRequest request) throws IOException {
+            int start = request.s_resultSetStartPoint.get();
+            int n = request.s_numberOfRecordsRequested.get();
+            PresentResponse response = new PresentResponse();
+            response.s_referenceId = request.s_referenceId;
+            if (badReferenceId && request.s_referenceId != null) {
+                response.s_referenceId = new ReferenceId();
+                response.s_referenceId.value = new ASN1OctetString("x");
+            }
+            response.s_numberOfRecordsReturned = new ASN1Integer(n);
+            response.s_nextResultSetPosition = new ASN1Integer(start + n);
+            response.s_presentStatus = new PresentStatus();
+            response.s_presentStatus.value = new ASN1Integer(PresentStatus.E_success);
+            response.s_records = new Records();
+            response.s_records.c_responseRecords = new NamePlusRecord[n];
+            for (int i = 0; i < n; i++) {
+                ASN1External external = new ASN1External();
+                external.s_direct_reference = request.s_preferredRecordSyntax;
+                external.c_octetAligned = new ASN1OctetString(Integer.toString(start + i));
+                NamePlusRecord record = new NamePlusRecord();
+                record.s_record = new NamePlusRecord_record();
+                record.s_record.c_retrievalRecord = external;
+                response.s_records.c_responseRecords[i] = record;
+            }
+            PDU pdu = new PDU();
+            pdu.c_presentResponse = response;
+            return pdu;
+        }
+    }
+}
@@ -66,6 +66,28 @@ public class Diagnostics extends IOException {
         this.details = details;
     }
 
+    public int getCode() {
+        return diagCode;
+    }
+
+    public String getURI() {
+        return diagnosticBaseURI.toString() + diagCode;
+    }
+
+    /**
+     * The message of this diagnostic, or the registered message of the diagnostic code.
+     */
+    public String getDiagnosticMessage() {
+        return message != null ? message : bundle.getString(Integer.toString(diagCode)).split("\\|")[1];
+    }
+
+    /**
+     * The details of this diagnostic, or the registered details of the diagnostic code.
+     */
+    public String getDetails() {
+        return details != null ? details : bundle.getString(Integer.toString(diagCode)).split("\\|")[2];
+    }
+
     public String getXML() {
         String[] s = bundle.getString(Integer.toString(diagCode)).split("\\|");
         if (message == null) {
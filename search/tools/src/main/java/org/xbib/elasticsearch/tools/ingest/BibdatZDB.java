@@ -91,6 +91,12 @@ public final class BibdatZDB extends AbstractImporter<Long, AtomicLong> {
 
     private static int pipelines;
 
+    private static int batchsize;
+
+    private static int queuesize;
+
+    private static long metricsinterval;
+
     private static String index;
 
     private static String type;
@@ -108,6 +114,9 @@ public final class BibdatZDB extends AbstractImporter<Long, AtomicLong> {
                     accepts("overwrite").withRequiredArg().ofType(Boolean.class).defaultsTo(Boolean.FALSE);
                     accepts("mock").withOptionalArg().ofType(Boolean.class).defaultsTo(Boolean.FALSE);
                     accepts("pipelines").withRequiredArg().ofType(Integer.class).defaultsTo(Runtime.getRuntime().availableProcessors());
+                    accepts("batchsize").withRequiredArg().ofType(Integer.class).defaultsTo(64);
+                    accepts("queuesize").withRequiredArg().ofType(Integer.class).defaultsTo(0);
+                    accepts("metricsinterval").withRequiredArg().ofType(Long.class).defaultsTo(0L);
                     accepts("path").withRequiredArg().ofType(String.class).required();
                     accepts("pattern").withRequiredArg().ofType(String.class).required().defaultsTo("*.xml");
                 }
@@ -119,11 +128,15 @@ public final class BibdatZDB extends AbstractImporter<Long, AtomicLong> {
                         + " --elasticsearch <uri>  Elasticesearch URI" + lf
                         + " --index <index>        Elasticsearch index name" + lf
                         + " --type <type>          Elasticsearch type name" + lf
-                        + " --maxbulkactions <n>   the number of bulk actions per request (optional, default: 100)"
-                        + " --maxconcurrentbulkrequests <n>the number of concurrent bulk requests (optional, default: 10)"
+                        + " --maxbulkactions <n>   the number of bulk actions per request (optional, default: 100)" + lf
+                        + " --maxconcurrentbulkrequests <n>the number of concurrent bulk requests (optional, default: 10)" + lf
                         + " --path <path>          a file path from where the input files are recursively collected (required)" + lf
                         + " --pattern <pattern>    a regex for selecting matching file names for input (default: *.xml)" + lf
-                        + " --threads <n>          the number of threads (optional, default: 1)"
+                        + " --threads <n>          the number of threads (optional, default: 1)" + lf
+                        + " --pipelines <n>        number of pipelines (optional, default: number of cpu cores)" + lf
+                        + " --batchsize <n>        number of records per batch handed to pipelines (optional, default: 64)" + lf
+                        + " --queuesize <n>        number of batches waiting for pipelines (optional, default: 2 * pipelines)" + lf
+                        + " --metricsinterval <n>  seconds between pipeline metrics reports (optional, default: 0 = only at end)"
                 );
                 System.exit(1);
             }
@@ -141,6 +154,9 @@ public final class BibdatZDB extends AbstractImporter<Long, AtomicLong> {
             int maxbulkactions = (Integer) options.valueOf("maxbulkactions");
             int maxconcurrentbulkrequests = (Integer) options.valueOf("maxconcurrentbulkrequests");
             pipelines = (Integer) options.valueOf("pipelines");
+            batchsize = (Integer) options.valueOf("batchsize");
+            queuesize = (Integer) options.valueOf("queuesize");
+            metricsinterval = (Long) options.valueOf("metricsinterval");
             boolean mock = (Boolean) options.valueOf("mock");
 
             final IngestClient es = mock ? new MockIngestClient() : new IngestClient();
@@ -221,6 +237,9 @@ public final class BibdatZDB extends AbstractImporter<Long, AtomicLong> {
 
             PicaElementMapper mapper = new PicaElementMapper("pica/zdb/bib")
                     .pipelines(pipelines)
+                    .batchSize(batchsize)
+                    .queueSize(queuesize)
+                    .metricsInterval(metricsinterval)
                     .detectUnknownKeys(true)
                     .start(factory);
 
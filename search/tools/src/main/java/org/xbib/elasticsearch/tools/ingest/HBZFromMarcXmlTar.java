@@ -90,6 +90,8 @@ public final class HBZFromMarcXmlTar extends AbstractImporter<Long, AtomicLong>
 
     private static boolean detect;
 
+    private static int readahead;
+
     private ElementOutput output;
 
     private boolean done;
@@ -112,6 +114,7 @@ public final class HBZFromMarcXmlTar extends AbstractImporter<Long, AtomicLong>
                     accepts("mock").withOptionalArg().ofType(Boolean.class).defaultsTo(Boolean.FALSE);
                     accepts("pipelines").withRequiredArg().ofType(Integer.class).defaultsTo(Runtime.getRuntime().availableProcessors());
                     accepts("detect").withOptionalArg().ofType(Boolean.class).defaultsTo(Boolean.FALSE);
+                    accepts("readahead").withRequiredArg().ofType(Integer.class).defaultsTo(64);
                 }
             };
             OptionSet options = parser.parse(args);
@@ -131,6 +134,7 @@ public final class HBZFromMarcXmlTar extends AbstractImporter<Long, AtomicLong>
                         + " --mock <bool>          dry run of indexing (optional, default: false)"
                         + " --pipelines <n>        number of pipelines (optional, default: number of cpu cores)"
                         + " --detect <bool>        detect unknown keys (optional, default: false)"
+                        + " --readahead <n>        number of tar entries decompressed ahead, 0 for none (optional, default: 64)"
                 );
                 System.exit(1);
             }
@@ -153,6 +157,7 @@ public final class HBZFromMarcXmlTar extends AbstractImporter<Long, AtomicLong>
             pipelines = (Integer)options.valueOf("pipelines");
             elements = options.valueOf("elements").toString();
             detect = (Boolean)options.valueOf("detect");
+            readahead = (Integer)options.valueOf("readahead");
 
             final IngestClient es = mock ? new MockIngestClient() : new IngestClient();
 
@@ -279,7 +284,8 @@ public final class HBZFromMarcXmlTar extends AbstractImporter<Long, AtomicLong>
             // set up TAR reader
             final MarcXmlTarReader reader = new MarcXmlTarReader()
                             .setURI(uri)
-                            .setListener(kv);
+                            .setListener(kv)
+                            .setReadAhead(readahead);
             while (reader.hasNext()) {
                 reader.next();
             }
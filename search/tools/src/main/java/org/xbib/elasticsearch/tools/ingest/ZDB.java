@@ -32,7 +32,7 @@
 package org.xbib.elasticsearch.tools.ingest;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.text.Normalizer;
@@ -52,13 +52,14 @@ import org.xbib.elements.ElementOutput;
 import org.xbib.importer.AbstractImporter;
 import org.xbib.importer.ImportService;
 import org.xbib.importer.Importer;
-import org.xbib.importer.ImporterFactory;
-import org.xbib.io.InputService;
+import org.xbib.importer.WorkUnit;
+import org.xbib.importer.WorkUnitImporterFactory;
 import org.xbib.io.file.Finder;
 import org.xbib.iri.IRI;
 import org.xbib.logging.Logger;
 import org.xbib.logging.LoggerFactory;
 import org.xbib.marc.Iso2709Reader;
+import org.xbib.marc.Iso2709Splitter;
 import org.xbib.marc.MarcXchange2KeyValue;
 import org.xbib.rdf.Resource;
 import org.xbib.rdf.context.ResourceContext;
@@ -94,9 +95,19 @@ public final class ZDB extends AbstractImporter<Long, AtomicLong> {
 
     private static int buffersize;
 
+    private static int batchsize;
+
+    private static int queuesize;
+
+    private static long metricsinterval;
+
+    private static int parsers;
+
     private static boolean detect;
 
-    private ElementOutput output;
+    private final ElementOutput output;
+
+    private final WorkUnit unit;
 
     private boolean done;
 
@@ -122,7 +133,13 @@ public final class ZDB extends AbstractImporter<Long, AtomicLong> {
                     accepts("mock").withOptionalArg().ofType(Boolean.class).defaultsTo(Boolean.FALSE);
                     accepts("pipelines").withRequiredArg().ofType(Integer.class).defaultsTo(Runtime.getRuntime().availableProcessors());
                     accepts("buffersize").withRequiredArg().ofType(Integer.class).defaultsTo(8192);
+                    accepts("batchsize").withRequiredArg().ofType(Integer.class).defaultsTo(64);
+                    accepts("queuesize").withRequiredArg().ofType(Integer.class).defaultsTo(0);
+                    accepts("metricsinterval").withRequiredArg().ofType(Long.class).defaultsTo(0L);
+                    accepts("parsers").withRequiredArg().ofType(Integer.class).defaultsTo(1);
                     accepts("detect").withOptionalArg().ofType(Boolean.class).defaultsTo(Boolean.FALSE);
+                    accepts("unitsize").withRequiredArg().ofType(Integer.class).defaultsTo(64);
+                    accepts("progress").withRequiredArg().ofType(Long.class).defaultsTo(10L);
                 }
             };
             OptionSet options = parser.parse(args);
@@ -135,14 +152,20 @@ public final class ZDB extends AbstractImporter<Long, AtomicLong> {
                         + " --shards <n>           Elasticsearch number of shards" + lf
                         + " --path <path>          a file path from where the input files are recursively collected (required)" + lf
                         + " --pattern <pattern>    a regex for selecting matching file names for input (default: *.xml)" + lf
-                        + " --threads <n>          the number of threads for import (optional, default: 1)"
-                        + " --maxbulkactions <n>   the number of bulk actions per request (optional, default: 100)"
-                        + " --maxconcurrentbulkrequests <n>the number of concurrent bulk requests (optional, default: 10)"
-                        + " --elements <name>      element set (optional, default: marc)"
-                        + " --mock <bool>          dry run of indexing (optional, default: false)"
-                        + " --pipelines <n>        number of pipelines (optional, default: number of cpu cores)"
-                        + " --buffersize <n>       buffer size in chars for reads (optional, default: 8192)"
-                        + " --detect <bool>        detect unknown keys (optional, default: false)"
+                        + " --threads <n>          the number of threads for import (optional, default: 1)" + lf
+                        + " --maxbulkactions <n>   the number of bulk actions per request (optional, default: 100)" + lf
+                        + " --maxconcurrentbulkrequests <n>the number of concurrent bulk requests (optional, default: 10)" + lf
+                        + " --elements <name>      element set (optional, default: marc)" + lf
+                        + " --mock <bool>          dry run of indexing (optional, default: false)" + lf
+                        + " --pipelines <n>        number of pipelines (optional, default: number of cpu cores)" + lf
+                        + " --buffersize <n>       buffer size in chars for reads (optional, default: 8192)" + lf
+                        + " --batchsize <n>        number of records per batch handed to pipelines (optional, default: 64)" + lf
+                        + " --queuesize <n>        number of batches waiting for pipelines (optional, default: 2 * pipelines)" + lf
+                        + " --metricsinterval <n>  seconds between pipeline metrics reports (optional, default: 0 = only at end)" + lf
+                        + " --parsers <n>          number of threads for parsing ISO 2709 records (optional, default: 1)" + lf
+                        + " --detect <bool>        detect unknown keys (optional, default: false)" + lf
+                        + " --unitsize <n>         split files into units of n MB of records, 0 = no split (optional, default: 64)" + lf
+                        + " --progress <n>         seconds between progress reports (optional, default: 10)"
                 );
                 System.exit(1);
             }
@@ -164,6 +187,10 @@ public final class ZDB extends AbstractImporter<Long, AtomicLong> {
             boolean mock = (Boolean) options.valueOf("mock");
             pipelines = (Integer) options.valueOf("pipelines");
             buffersize = (Integer) options.valueOf("buffersize");
+            batchsize = (Integer) options.valueOf("batchsize");
+            queuesize = (Integer) options.valueOf("queuesize");
+            metricsinterval = (Long) options.valueOf("metricsinterval");
+            parsers = (Integer) options.valueOf("parsers");
             detect = (Boolean) options.valueOf("detect");
 
             final IngestClient es = mock ? new MockIngestClient() : new IngestClient();
@@ -186,11 +213,16 @@ public final class ZDB extends AbstractImporter<Long, AtomicLong> {
             // do the import
             long t0 = System.currentTimeMillis();
 
-            ImportService service = new ImportService().threads(threads).factory(
-                    new ImporterFactory() {
+            // compressed files are not split
+            long unitsize = (Integer) options.valueOf("unitsize") * 1024L * 1024L;
+            ImportService service = new ImportService().threads(threads)
+                    .units(input)
+                    .split(unitsize, Iso2709Splitter.RECORD_TERMINATOR)
+                    .progress((Long) options.valueOf("progress"))
+                    .factory(new WorkUnitImporterFactory() {
                         @Override
-                        public Importer newImporter() {
-                            return new ZDB(sink);
+                        public Importer newImporter(WorkUnit unit) {
+                            return new ZDB(sink, unit);
                         }
                     }).execute();
 
@@ -221,31 +253,30 @@ public final class ZDB extends AbstractImporter<Long, AtomicLong> {
         System.exit(0);
     }
 
-    private ZDB(ElementOutput output) {
+    private ZDB(ElementOutput output, WorkUnit unit) {
         this.output = output;
+        this.unit = unit;
         this.done = false;
     }
 
     @Override
     public void close() throws IOException {
-        input.clear();
     }
 
     @Override
     public boolean hasNext() {
-        return !done && !input.isEmpty();
+        return !done;
     }
 
     @Override
     public AtomicLong next() {
-        URI uri = input.poll();
-        done = uri == null;
-        if (done) {
-            return fileCounter;
-        }
+        done = true;
         try {
             final MARCElementMapper mapper = new MARCElementMapper(elements)
                     .pipelines(pipelines)
+                    .batchSize(batchsize)
+                    .queueSize(queuesize)
+                    .metricsInterval(metricsinterval)
                     .detectUnknownKeys(detect)
                     .start(buildFactory);
 
@@ -269,10 +300,14 @@ public final class ZDB extends AbstractImporter<Long, AtomicLong> {
             reader.setProperty(Iso2709Reader.FATAL_ERRORS, false);
             reader.setProperty(Iso2709Reader.SILENT_ERRORS, true);
             reader.setProperty(Iso2709Reader.BUFFER_SIZE, buffersize);
-            InputStreamReader r = new InputStreamReader(InputService.getInputStream(uri), ISO88591);
-            InputSource source = new InputSource(r);
+            reader.setProperty(Iso2709Reader.PARALLEL, parsers);
+            // records are parsed on bytes, field data is decoded and transformed only if it is mapped
+            reader.setProperty(Iso2709Reader.LAZY_DECODING, true);
+            InputStream in = unit.open();
+            InputSource source = new InputSource(in);
+            source.setEncoding(ISO88591.name());
             reader.parse(source);
-            r.close();
+            in.close();
             fileCounter.incrementAndGet();
             logger.info("unknown keys={}", mapper.unknownKeys());
             mapper.close();
@@ -310,6 +345,7 @@ public final class ZDB extends AbstractImporter<Long, AtomicLong> {
                         .fragment(Long.toString(outputCounter.incrementAndGet())).build();
                 context.resource().id(id);
                 output.output(context, contentBuilder);
+                unit.record();
             }
         }
 
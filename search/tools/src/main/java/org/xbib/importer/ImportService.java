@@ -31,28 +31,76 @@
  */
 package org.xbib.importer;
 
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.xbib.logging.Logger;
+import org.xbib.logging.LoggerFactory;
+import org.xbib.tools.util.FormatUtil;
+
+/**
+ * The import service runs importers on a number of threads.
+ *
+ * With an importer factory, each thread runs an importer, and the importers
+ * take their input from a shared queue.
+ *
+ * With a work unit importer factory, each importer imports a unit of work. The units
+ * are balanced by size: large files are split into ranges of records if a record separator
+ * is given, and the units are run on a work-stealing pool, largest first, so threads
+ * do not idle while a single large file is still imported. The progress of the units
+ * can be logged at a fixed interval.
+ *
+ * @param <T>
+ * @param <R>
+ */
 public class ImportService<T, R> {
 
+    private final static Logger logger = LoggerFactory.getLogger(ImportService.class.getName());
+
     private ExecutorService executorService;
 
     private Collection<Callable<T>> tasks;
 
     private ImporterFactory<T, R> factory;
 
+    private WorkUnitImporterFactory<T, R> unitFactory;
+
+    private List<WorkUnit> units;
+
+    private ForkJoinPool pool;
+
+    private long unitSize;
+
+    private byte separator;
+
+    private long progressInterval;
+
+    private ScheduledExecutorService reporter;
+
+    private long started;
+
+    private final AtomicReference<Throwable> failure = new AtomicReference();
+
     private int threadnum = 1;
 
-    private Map<Long, T> results = new HashMap();
+    private Map<Long, T> results = Collections.synchronizedMap(new HashMap<Long, T>());
 
     public ImportService() {
     }
@@ -67,6 +115,56 @@ public class ImportService<T, R> {
         return this;
     }
 
+    public ImportService factory(WorkUnitImporterFactory<T, R> factory) {
+        this.unitFactory = factory;
+        return this;
+    }
+
+    /**
+     * Set the input of the work unit importers, one unit for each URI
+     *
+     * @param uris the URIs
+     * @return this service
+     */
+    public ImportService units(Collection<URI> uris) {
+        List<WorkUnit> list = new ArrayList();
+        for (URI uri : uris) {
+            list.add(new WorkUnit(uri));
+        }
+        this.units = list;
+        return this;
+    }
+
+    /**
+     * Split files larger than the given size into ranges of records.
+     * Only use this if the importer can read records from a range,
+     * such as ISO 2709 records which end with a record terminator.
+     *
+     * @param unitSize the size of a range in bytes, 0 for no splitting
+     * @param separator the byte which ends records
+     * @return this service
+     */
+    public ImportService split(long unitSize, byte separator) {
+        this.unitSize = unitSize;
+        this.separator = separator;
+        return this;
+    }
+
+    /**
+     * Log the progress of the work units
+     *
+     * @param seconds the interval in seconds, 0 for no progress reports
+     * @return this service
+     */
+    public ImportService progress(long seconds) {
+        this.progressInterval = seconds;
+        return this;
+    }
+
+    public List<WorkUnit> units() {
+        return units;
+    }
+
     /**
      * Submit tasks and wait for results
      * @throws InterruptedException
@@ -81,6 +179,9 @@ public class ImportService<T, R> {
      * Submit tasks for later invocation
      */
     public ImportService submit() {
+        if (unitFactory != null) {
+            return submitUnits();
+        }
         if (factory == null) {
             throw new IllegalArgumentException("no factory set");
         }
@@ -96,6 +197,33 @@ public class ImportService<T, R> {
         return this;
     }
 
+    private ImportService submitUnits() {
+        if (units == null) {
+            throw new IllegalArgumentException("no units set");
+        }
+        List<WorkUnit> list = new ArrayList();
+        for (WorkUnit unit : units) {
+            list.addAll(unit.split(unitSize, separator));
+        }
+        // largest first, units of unknown size last
+        Collections.sort(list, new Comparator<WorkUnit>() {
+            @Override
+            public int compare(WorkUnit u1, WorkUnit u2) {
+                return Long.compare(u2.getLength(), u1.getLength());
+            }
+        });
+        for (int i = 0; i < list.size(); i++) {
+            list.get(i).number(i + 1, list.size());
+        }
+        this.units = list;
+        if (pool == null) {
+            this.pool = new ForkJoinPool(threadnum);
+        }
+        logger.info("{} work units on {} threads, {}", list.size(), threadnum,
+                FormatUtil.convertFileSize(totalLength()));
+        return this;
+    }
+
     /**
      * Invoke all tasks and wait for all results
      * @return
@@ -103,6 +231,9 @@ public class ImportService<T, R> {
      * @throws ExecutionException 
      */
     public ImportService waitFor() throws InterruptedException, ExecutionException {
+        if (pool != null) {
+            return waitForUnits();
+        }
         for (Future<T> f : executorService.invokeAll(tasks)) {
             // save results with the time returned
             results.put(System.currentTimeMillis(), f.get());
@@ -110,6 +241,39 @@ public class ImportService<T, R> {
         return this;
     }
 
+    private ImportService waitForUnits() throws ExecutionException {
+        this.started = System.nanoTime();
+        if (progressInterval > 0 && reporter == null) {
+            this.reporter = Executors.newSingleThreadScheduledExecutor();
+            reporter.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    logProgress();
+                }
+            }, progressInterval, progressInterval, TimeUnit.SECONDS);
+        }
+        try {
+            if (!units.isEmpty()) {
+                pool.invoke(new UnitTask(0, units.size()));
+            }
+        } finally {
+            if (reporter != null) {
+                reporter.shutdownNow();
+                reporter = null;
+            }
+        }
+        logProgress();
+        if (failure.get() != null) {
+            throw new ExecutionException(failure.get());
+        }
+        return this;
+    }
+
+    /**
+     * The results. Importers of work units save their results with the unit number.
+     *
+     * @return the results
+     */
     public Map<Long, T> results() {
         return results;
     }
@@ -120,10 +284,107 @@ public class ImportService<T, R> {
 
     public ImportService shutdown(long millisToWait) throws InterruptedException {
         if (executorService != null) {
-            executorService.awaitTermination(millisToWait, TimeUnit.MILLISECONDS);
             executorService.shutdown();
+            if (!executorService.awaitTermination(millisToWait, TimeUnit.MILLISECONDS)) {
+                executorService.shutdownNow();
+            }
+        }
+        if (pool != null) {
+            pool.shutdown();
+            if (!pool.awaitTermination(millisToWait, TimeUnit.MILLISECONDS)) {
+                pool.shutdownNow();
+            }
         }
         return this;
     }
 
+    private long totalLength() {
+        long total = 0L;
+        for (WorkUnit unit : units) {
+            total += Math.max(0L, unit.getLength());
+        }
+        return total;
+    }
+
+    private void logProgress() {
+        long total = totalLength();
+        long count = 0L;
+        long records = 0L;
+        int finished = 0;
+        for (WorkUnit unit : units) {
+            count += unit.getCount();
+            records += unit.getRecords();
+            if (unit.isFinished()) {
+                finished++;
+            }
+        }
+        long nanos = System.nanoTime() - started;
+        double rate = nanos > 0L ? count * 1e9 / nanos : 0.0;
+        long recordRate = nanos > 0L ? Math.round(records * 1e9 / nanos) : 0L;
+        // the record total is not known before the end, so the ETA is estimated from the bytes
+        String eta = rate > 0.0 && total > count ?
+                FormatUtil.formatMillis(TimeUnit.SECONDS.toMillis((long) ((total - count) / rate))) : "-";
+        logger.info("{}/{} units, {} of {}, {}/s, {} records, {} records/s, ETA {}", finished, units.size(),
+                FormatUtil.convertFileSize(count), FormatUtil.convertFileSize(total),
+                FormatUtil.convertFileSize(rate), records, recordRate, eta);
+        for (WorkUnit unit : units) {
+            if (unit.isRunning()) {
+                logger.info("unit {}", unit);
+            }
+        }
+    }
+
+    private void run(WorkUnit unit) {
+        unit.begin();
+        try {
+            T result = unitFactory.newImporter(unit).call();
+            if (result != null) {
+                results.put((long) unit.getNumber(), result);
+            }
+        } catch (Throwable t) {
+            logger.error("unit " + unit + " failed: " + t.getMessage(), t);
+            failure.compareAndSet(null, t);
+        } finally {
+            unit.end();
+        }
+        logger.info("unit {} done", unit);
+    }
+
+    /**
+     * Run a slice of the units. A slice is split where half of its bytes are,
+     * the forked half is taken by idle threads.
+     */
+    private class UnitTask extends RecursiveAction {
+
+        private final int from;
+
+        private final int to;
+
+        UnitTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                run(units.get(from));
+                return;
+            }
+            long total = 0L;
+            for (int i = from; i < to; i++) {
+                total += Math.max(1L, units.get(i).getLength());
+            }
+            long half = 0L;
+            int mid = from + 1;
+            for (int i = from; i < to - 1; i++) {
+                half += Math.max(1L, units.get(i).getLength());
+                mid = i + 1;
+                if (2 * half >= total) {
+                    break;
+                }
+            }
+            invokeAll(new UnitTask(from, mid), new UnitTask(mid, to));
+        }
+    }
 }
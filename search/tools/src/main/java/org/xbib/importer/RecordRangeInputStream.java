@@ -0,0 +1,155 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.importer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An input stream over the records of a byte range of a file, where records end
+ * with a separator byte.
+ *
+ * A record belongs to the range in which it begins. So the stream skips the
+ * record which began in the previous range, and reads beyond the end of the range
+ * up to the separator of the last record. Reading consecutive ranges of a file gives
+ * every record exactly once.
+ */
+public class RecordRangeInputStream extends InputStream {
+
+    private final static int BUFFER_SIZE = 65536;
+
+    private final FileChannel channel;
+
+    private final long limit;
+
+    private final byte separator;
+
+    private final AtomicLong counter;
+
+    private final ByteBuffer buffer;
+
+    private final byte[] single = new byte[1];
+
+    /**
+     * The file position of the next byte to read
+     */
+    private long position;
+
+    private boolean eof;
+
+    public RecordRangeInputStream(Path path, long offset, long length, byte separator, AtomicLong counter)
+            throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.limit = offset + length;
+        this.separator = separator;
+        this.counter = counter;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+        this.position = offset;
+        if (offset > 0) {
+            // the previous range ends with the first separator at or after offset - 1
+            this.position = offset - 1;
+            skipRecord();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int n = read(single, 0, 1);
+        return n < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (eof) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining() && fill() < 0) {
+            eof = true;
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        // this range ends with the first separator at or after limit - 1
+        if (position + n > limit - 1) {
+            int base = buffer.position();
+            for (int i = (int) Math.max(0L, limit - 1 - position); i < n; i++) {
+                if (buffer.get(base + i) == separator) {
+                    n = i + 1;
+                    eof = true;
+                    break;
+                }
+            }
+        }
+        buffer.get(b, off, n);
+        position += n;
+        if (counter != null) {
+            counter.addAndGet(n);
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void skipRecord() throws IOException {
+        while (true) {
+            if (!buffer.hasRemaining() && fill() < 0) {
+                eof = true;
+                return;
+            }
+            byte b = buffer.get();
+            position++;
+            if (b == separator) {
+                // a record spanning the whole range belongs to the previous range
+                eof = position - 1 >= limit - 1;
+                return;
+            }
+        }
+    }
+
+    private int fill() throws IOException {
+        buffer.clear();
+        int n = channel.read(buffer, position);
+        buffer.flip();
+        return n;
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.importer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xbib.io.InputService;
+import org.xbib.io.StreamCodec;
+import org.xbib.io.StreamCodecService;
+import org.xbib.tools.util.FormatUtil;
+
+/**
+ * A unit of work for an importer: a file, or a range of records of a file.
+ *
+ * The bytes read from the unit are counted, so the throughput and the
+ * estimated time of arrival can be reported while the unit is imported.
+ * Compressed files count the compressed bytes. Importers count the records
+ * of the unit with {@link #record()}.
+ */
+public class WorkUnit {
+
+    private final URI uri;
+
+    private final long offset;
+
+    private final long length;
+
+    private final Byte separator;
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong records = new AtomicLong();
+
+    private int number;
+
+    private int total;
+
+    private volatile long started;
+
+    private volatile long finished;
+
+    /**
+     * A unit for the whole input of an URI
+     *
+     * @param uri the URI
+     */
+    public WorkUnit(URI uri) {
+        this(uri, 0L, size(uri), null);
+    }
+
+    /**
+     * A unit for the records of a range of a file
+     *
+     * @param uri the file URI
+     * @param offset the offset of the range
+     * @param length the length of the range, or -1 if unknown
+     * @param separator the byte which ends records, or null if the unit can not be split
+     */
+    public WorkUnit(URI uri, long offset, long length, Byte separator) {
+        this.uri = uri;
+        this.offset = offset;
+        this.length = length;
+        this.separator = separator;
+    }
+
+    public URI getURI() {
+        return uri;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the length of the unit in bytes, or -1 if unknown
+     */
+    public long getLength() {
+        return length;
+    }
+
+    public boolean isSplittable() {
+        return "file".equals(uri.getScheme()) && length > 0 && codec(uri.getSchemeSpecificPart()) == null;
+    }
+
+    /**
+     * Split this unit into ranges of records.
+     *
+     * @param size the size of a range
+     * @param separator the byte which ends records
+     * @return the units, or this unit if it can not be split or is not larger than the size
+     */
+    public List<WorkUnit> split(long size, byte separator) {
+        if (size <= 0 || length <= size || !isSplittable()) {
+            return Collections.singletonList(this);
+        }
+        List<WorkUnit> units = new ArrayList();
+        for (long pos = offset; pos < offset + length; pos += size) {
+            units.add(new WorkUnit(uri, pos, Math.min(size, offset + length - pos), separator));
+        }
+        return units;
+    }
+
+    WorkUnit number(int number, int total) {
+        this.number = number;
+        this.total = total;
+        return this;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Open the unit for reading. Compressed files are decompressed by the stream codec
+     * which is registered for the file name suffix.
+     *
+     * @return the input stream
+     * @throws IOException if the unit can not be opened
+     */
+    public InputStream open() throws IOException {
+        if (separator != null) {
+            return new RecordRangeInputStream(Paths.get(uri), offset, length, separator, count);
+        }
+        if (!"file".equals(uri.getScheme())) {
+            return InputService.getInputStream(uri);
+        }
+        InputStream in = new CountingInputStream(Files.newInputStream(Paths.get(uri)), count);
+        StreamCodec codec = codec(uri.getSchemeSpecificPart());
+        return codec != null ? codec.decode(in) : in;
+    }
+
+    void begin() {
+        this.started = System.nanoTime();
+    }
+
+    void end() {
+        this.finished = System.nanoTime();
+    }
+
+    public boolean isRunning() {
+        return started > 0L && finished == 0L;
+    }
+
+    public boolean isFinished() {
+        return finished > 0L;
+    }
+
+    /**
+     * @return the number of bytes read so far
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Count a record of this unit
+     */
+    public void record() {
+        records.incrementAndGet();
+    }
+
+    /**
+     * @return the number of records counted so far
+     */
+    public long getRecords() {
+        return records.get();
+    }
+
+    /**
+     * @return the records per second since the unit was started
+     */
+    public double getRecordsPerSecond() {
+        return perSecond(records.get());
+    }
+
+    /**
+     * @return the bytes per second since the unit was started
+     */
+    public double getBytesPerSecond() {
+        return perSecond(count.get());
+    }
+
+    /**
+     * @return the estimated milliseconds until the unit is finished, or -1 if unknown
+     */
+    public long getETA() {
+        if (finished > 0L) {
+            return 0L;
+        }
+        double rate = getBytesPerSecond();
+        if (length < 0 || rate <= 0.0) {
+            return -1L;
+        }
+        return (long) (Math.max(0L, length - count.get()) * 1000.0 / rate);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[').append(number).append('/').append(total).append("] ").append(uri);
+        if (separator != null) {
+            sb.append(" @").append(offset);
+        }
+        if (length >= 0) {
+            sb.append(' ').append(FormatUtil.convertFileSize(count.get()))
+                    .append(" of ").append(FormatUtil.convertFileSize(length))
+                    .append(" (").append(length > 0 ? count.get() * 100 / length : 100).append("%)");
+        } else {
+            sb.append(' ').append(FormatUtil.convertFileSize(count.get()));
+        }
+        sb.append(", ").append(FormatUtil.convertFileSize(getBytesPerSecond())).append("/s");
+        sb.append(", ").append(records.get()).append(" records, ")
+                .append(Math.round(getRecordsPerSecond())).append(" records/s");
+        long eta = getETA();
+        if (isRunning() && eta >= 0L) {
+            sb.append(", ETA ").append(FormatUtil.formatMillis(TimeUnit.MILLISECONDS.toSeconds(eta) * 1000L));
+        }
+        return sb.toString();
+    }
+
+    private static long size(URI uri) {
+        if (!"file".equals(uri.getScheme())) {
+            return -1L;
+        }
+        try {
+            return Files.size(Paths.get(uri));
+        } catch (IOException | IllegalArgumentException e) {
+            return -1L;
+        }
+    }
+
+    private double perSecond(long n) {
+        if (started == 0L) {
+            return 0.0;
+        }
+        long nanos = (finished > 0L ? finished : System.nanoTime()) - started;
+        return nanos > 0L ? n * 1e9 / nanos : 0.0;
+    }
+
+    private static StreamCodec codec(String path) {
+        int pos = path.lastIndexOf('.');
+        if (pos < 0 || pos < path.lastIndexOf('/')) {
+            return null;
+        }
+        String suffix = path.substring(pos + 1);
+        return StreamCodecService.getCodecs().contains(suffix) ?
+                StreamCodecService.getInstance().getCodec(suffix) : null;
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong count;
+
+        CountingInputStream(InputStream in, AtomicLong count) {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count.addAndGet(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count.addAndGet(skipped);
+            return skipped;
+        }
+    }
+}
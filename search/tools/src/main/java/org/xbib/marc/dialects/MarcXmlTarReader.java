@@ -88,6 +88,8 @@ public class MarcXmlTarReader<P extends Packet> extends AbstractImporter<Object,
 
     private MarcXchangeListener listener;
 
+    private int readAhead;
+
     public MarcXmlTarReader() {
     }
 
@@ -106,6 +108,17 @@ public class MarcXmlTarReader<P extends Packet> extends AbstractImporter<Object,
         return this;
     }
 
+    /**
+     * Decompress the tar archive ahead on a dedicated thread while records are parsed.
+     *
+     * @param entries the maximum number of entries read ahead, 0 for no read ahead
+     * @return this reader
+     */
+    public MarcXmlTarReader setReadAhead(int entries) {
+        this.readAhead = entries;
+        return this;
+    }
+
     @Override
     public void beginRecord(String format, String type) {
         if (listener != null) {
@@ -365,6 +378,7 @@ public class MarcXmlTarReader<P extends Packet> extends AbstractImporter<Object,
                 .getFactory(uri)
                 .getConnection(uri);
         this.session = connection.createSession();
+        session.setReadAhead(readAhead);
         session.open(Session.Mode.READ);
         if (!session.isOpen()) {
             throw new IOException("session could not be opened");
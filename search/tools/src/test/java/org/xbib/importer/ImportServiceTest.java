@@ -0,0 +1,195 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ *
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU Affero General Public License as published 
+ * by the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the 
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses 
+ * or write to the Free Software Foundation, Inc., 51 Franklin Street, 
+ * Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * The interactive user interfaces in modified source and object code 
+ * versions of this program must display Appropriate Legal Notices, 
+ * as required under Section 5 of the GNU Affero General Public License.
+ * 
+ * In accordance with Section 7(b) of the GNU Affero General Public 
+ * License, these Appropriate Legal Notices must retain the display of the 
+ * "Powered by xbib" logo. If the display of the logo is not reasonably 
+ * feasible for technical reasons, the Appropriate Legal Notices must display
+ * the words "Powered by xbib".
+ */
+package org.xbib.importer;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+public class ImportServiceTest extends Assert {
+
+    private final static byte SEPARATOR = 0x1d;
+
+    @Test
+    public void testRecordRanges() throws Exception {
+        File file = createRecords(1000, 17L);
+        byte[] expected = Files.readAllBytes(file.toPath());
+        WorkUnit unit = new WorkUnit(file.toURI());
+        assertEquals(unit.getLength(), (long) expected.length);
+        // range sizes smaller than, around and larger than records
+        for (long size : new long[]{1L, 7L, 100L, 333L, 4096L, expected.length}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long count = 0L;
+            for (WorkUnit range : unit.split(size, SEPARATOR)) {
+                InputStream in = range.open();
+                byte[] buf = new byte[50];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    out.write(buf, 0, n);
+                }
+                in.close();
+                count += range.getCount();
+            }
+            assertEquals(out.toByteArray(), expected, "size " + size);
+            assertEquals(count, (long) expected.length);
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testUnits() throws Exception {
+        List<URI> uris = new ArrayList();
+        long total = 0L;
+        long records = 0L;
+        for (int i = 0; i < 5; i++) {
+            records += 200 * (i + 1);
+            File file = createRecords(200 * (i + 1), i);
+            total += file.length();
+            uris.add(file.toURI());
+        }
+        final AtomicLong bytes = new AtomicLong();
+        ImportService<Long, Long> service = new ImportService<Long, Long>()
+                .threads(3)
+                .units(uris)
+                .split(4096L, SEPARATOR)
+                .factory(new WorkUnitImporterFactory<Long, Long>() {
+                    @Override
+                    public Importer<Long, Long> newImporter(final WorkUnit unit) {
+                        return new AbstractImporter<Long, Long>() {
+                            @Override
+                            public Long call() throws Exception {
+                                InputStream in = unit.open();
+                                long n = 0L;
+                                int b;
+                                while ((b = in.read()) != -1) {
+                                    if (b == SEPARATOR) {
+                                        unit.record();
+                                    }
+                                    n++;
+                                }
+                                in.close();
+                                bytes.addAndGet(n);
+                                return n;
+                            }
+
+                            @Override
+                            public boolean hasNext() {
+                                return false;
+                            }
+
+                            @Override
+                            public Long next() {
+                                return null;
+                            }
+
+                            @Override
+                            public void close() {
+                            }
+                        };
+                    }
+                })
+                .execute();
+        service.shutdown();
+        List<WorkUnit> units = service.units();
+        assertTrue(units.size() > uris.size());
+        long sum = 0L;
+        long recordSum = 0L;
+        for (WorkUnit unit : units) {
+            assertTrue(unit.isFinished());
+            sum += service.results().get((long) unit.getNumber());
+            recordSum += unit.getRecords();
+        }
+        assertEquals(sum, total);
+        assertEquals(recordSum, records);
+        assertEquals(bytes.get(), total);
+        // largest first
+        for (int i = 1; i < units.size(); i++) {
+            assertTrue(units.get(i - 1).getLength() >= units.get(i).getLength());
+        }
+        for (URI uri : uris) {
+            new File(uri).delete();
+        }
+    }
+
+    @Test
+    public void testCompressedUnit() throws Exception {
+        File file = createRecords(500, 3L);
+        byte[] expected = Files.readAllBytes(file.toPath());
+        File gz = new File(file.getPath() + ".gz");
+        OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz.toPath()));
+        out.write(expected);
+        out.close();
+        WorkUnit unit = new WorkUnit(gz.toURI());
+        // the codec is found by the suffix, compressed files are not split
+        assertFalse(unit.isSplittable());
+        assertEquals(unit.split(100L, SEPARATOR).size(), 1);
+        InputStream in = unit.open();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            bytes.write(buf, 0, n);
+        }
+        in.close();
+        assertEquals(bytes.toByteArray(), expected);
+        assertEquals(unit.getCount(), gz.length());
+        gz.delete();
+        file.delete();
+    }
+
+    private File createRecords(int records, long seed) throws IOException {
+        Random random = new Random(seed);
+        File file = File.createTempFile("records", ".mrc");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < records; i++) {
+            int length = 1 + random.nextInt(60);
+            for (int j = 0; j < length; j++) {
+                out.write('a' + random.nextInt(26));
+            }
+            out.write(SEPARATOR);
+        }
+        Files.write(file.toPath(), out.toByteArray());
+        return file;
+    }
+}
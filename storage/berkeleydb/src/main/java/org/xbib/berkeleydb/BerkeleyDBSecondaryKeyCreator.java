@@ -28,7 +28,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- *  Create a key for a secondary database. Read secondary URI from resource.
+ *  Create a key for a secondary database. Read secondary URI from resource,
+ *  either from a binary entry or from the Turtle prefix declaration.
  *
  */
 public class BerkeleyDBSecondaryKeyCreator implements SecondaryKeyCreator {
@@ -49,6 +50,14 @@ public class BerkeleyDBSecondaryKeyCreator implements SecondaryKeyCreator {
     public boolean createSecondaryKey(SecondaryDatabase secondaryDatabase,
             DatabaseEntry keyEntry, DatabaseEntry dataEntry, DatabaseEntry resultEntry) throws DatabaseException {
         try {
+            if (BinaryResourceTupleBinding.isBinary(dataEntry)) {
+                String result = BinaryResourceTupleBinding.secondaryKey(dataEntry);
+                if (result != null) {
+                    resultEntry.setData(result.getBytes("UTF-8"));
+                    return true;
+                }
+                return false;
+            }
             String buffer = new String(dataEntry.getData(), "UTF-8").trim();
             Matcher m = pattern.matcher(buffer);
             if (m.matches()) {
@@ -103,6 +103,18 @@ public class BerkeleyDBSession implements Session {
      * Key creator for secondary database
      */
     private BerkeleyDBSecondaryKeyCreator keyCreator;
+    /**
+     * Cache size in bytes, 0 for the default
+     */
+    private long cacheSize;
+    /**
+     * Maximum log file size in bytes, 0 for the default
+     */
+    private long logFileSize;
+    /**
+     * IRI dictionary database of the binary binding
+     */
+    private Database dictionarydb;
     /**
      * Container for database iterators
      */
@@ -130,13 +142,21 @@ public class BerkeleyDBSession implements Session {
         if ("bdb".equals(uri.getScheme())) {
             setBinding(new StringBinding());
         } else if ("bdbresource".equals(uri.getScheme())) {
-            ResourceTupleBinding resourceBinding = new ResourceTupleBinding(uri);
-            setBinding(resourceBinding);
+            setBinding(new BinaryResourceTupleBinding(uri, new IRIDictionary()));
+        } else if ("bdbturtle".equals(uri.getScheme())) {
+            // the old Turtle text entries, for readers that do not know the binary form
+            setBinding(new ResourceTupleBinding(uri));
         }
         EnvironmentConfig envConfig = new EnvironmentConfig();
         envConfig.setAllowCreate(true);
         envConfig.setReadOnly(false);
         envConfig.setTransactional(true);
+        if (cacheSize > 0) {
+            envConfig.setCacheSize(cacheSize);
+        }
+        if (logFileSize > 0) {
+            envConfig.setConfigParam(EnvironmentConfig.LOG_FILE_MAX, Long.toString(logFileSize));
+        }
         // primary database config
         config = new DatabaseConfig();
         config.setAllowCreate(true);
@@ -144,7 +164,7 @@ public class BerkeleyDBSession implements Session {
         config.setTransactional(true);
         // duplicates are not allowed with a secondary database
         config.setSortedDuplicates(false);
-        if (binding instanceof ResourceTupleBinding) {
+        if (binding instanceof ResourceTupleBinding || binding instanceof BinaryResourceTupleBinding) {
             // secondary database config
             secondaryconfig = new SecondaryConfig();
             secondaryconfig.setAllowCreate(true);
@@ -156,8 +176,17 @@ public class BerkeleyDBSession implements Session {
         }
         switch (mode) {
             case DEFERRED_WRITE:
+                // bulk load: no transactions, no log cleaning while loading,
+                // the secondary database is built after the load
+                envConfig.setTransactional(false);
+                envConfig.setConfigParam(EnvironmentConfig.ENV_RUN_CLEANER, "false");
                 config.setTransactional(false);
                 config.setDeferredWrite(true);
+                if (secondaryconfig != null) {
+                    secondaryconfig.setTransactional(false);
+                    secondaryconfig.setDeferredWrite(true);
+                    secondaryconfig.setAllowPopulate(true);
+                }
                 /* fall-through here */
             case WRITE:
                 try {
@@ -169,9 +198,12 @@ public class BerkeleyDBSession implements Session {
                     }
                     this.env = new Environment(f, envConfig);
                     this.db = env.openDatabase(null, "entries", config);
-                    if (secondaryconfig != null) {
+                    // an existing secondary database must be kept up to date while loading
+                    if (secondaryconfig != null && (!config.getDeferredWrite()
+                            || env.getDatabaseNames().contains("secondary"))) {
                         this.secondarydb = env.openSecondaryDatabase(null, "secondary", db, secondaryconfig);
                     }
+                    openDictionary();
                     this.isOpen = true;
                 } catch (DatabaseException e) {
                     logger.error(e.getMessage(), e);
@@ -185,6 +217,7 @@ public class BerkeleyDBSession implements Session {
                     if (secondaryconfig != null) {
                         this.secondarydb = env.openSecondaryDatabase(null, "secondary", db, secondaryconfig);
                     }
+                    openDictionary();
                     this.isOpen = true;
                 } catch (DatabaseException e) {
                     logger.error(e.getMessage(), e);
@@ -193,6 +226,21 @@ public class BerkeleyDBSession implements Session {
         }
     }
 
+    /**
+     * Open the IRI dictionary of a binary resource binding. The dictionary
+     * is never deferred, its entries must be on disk before entries using them.
+     */
+    private void openDictionary() throws DatabaseException {
+        if (binding instanceof BinaryResourceTupleBinding) {
+            DatabaseConfig dictionaryconfig = new DatabaseConfig();
+            dictionaryconfig.setAllowCreate(true);
+            dictionaryconfig.setReadOnly(false);
+            dictionaryconfig.setTransactional(env.getConfig().getTransactional());
+            this.dictionarydb = env.openDatabase(null, "dictionary", dictionaryconfig);
+            ((BinaryResourceTupleBinding) binding).getDictionary().load(dictionarydb);
+        }
+    }
+
     /**
      * Close Berkeley DB
      *
@@ -211,6 +259,10 @@ public class BerkeleyDBSession implements Session {
                 for (BerkeleyDBIterator it : iterators) {
                     it.close();
                 }
+                if (config.getDeferredWrite()) {
+                    buildSecondaryDatabase();
+                    sync();
+                }
                 logger.info("cleaning up ...");
                 // let's clean up the database
                 boolean anyCleaned = false;
@@ -226,6 +278,9 @@ public class BerkeleyDBSession implements Session {
                 if (secondarydb != null) {
                     secondarydb.close();
                 }
+                if (dictionarydb != null) {
+                    dictionarydb.close();
+                }
                 db.close();
             } catch (DatabaseException e) {
                 throw new IOException(e.getMessage());
@@ -284,6 +339,60 @@ public class BerkeleyDBSession implements Session {
         return this.secondarydb;
     }
 
+    public Environment getEnvironment() {
+        return env;
+    }
+
+    /**
+     * Set the cache size of the environment. Takes effect at open.
+     *
+     * @param cacheSize the cache size in bytes
+     */
+    public void setCacheSize(long cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Set the maximum size of the log files of the environment.
+     * Takes effect at open. Larger files mean fewer files to open and clean.
+     *
+     * @param logFileSize the log file size in bytes
+     */
+    public void setLogFileSize(long logFileSize) {
+        this.logFileSize = logFileSize;
+    }
+
+    /**
+     * Write deferred entries to disk.
+     *
+     * @throws DatabaseException
+     */
+    public void sync() throws DatabaseException {
+        if (config.getDeferredWrite()) {
+            db.sync();
+            if (secondarydb != null) {
+                secondarydb.sync();
+            }
+        }
+    }
+
+    /**
+     * Build the secondary database after a bulk load. The secondary keys
+     * are created from all primary entries in one pass.
+     *
+     * @return the secondary database, or null if there is none
+     * @throws DatabaseException
+     */
+    public SecondaryDatabase buildSecondaryDatabase() throws DatabaseException {
+        if (secondarydb == null && secondaryconfig != null) {
+            long t0 = System.currentTimeMillis();
+            this.secondarydb = env.openSecondaryDatabase(null, "secondary", db, secondaryconfig);
+            secondarydb.sync();
+            logger.info("secondary database built in {} ms", System.currentTimeMillis() - t0);
+        }
+        return secondarydb;
+    }
+
     /**
      * Set data entry binding class for Berkeley DB
      *
@@ -0,0 +1,346 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ * 
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses/
+ *
+ */
+package org.xbib.berkeleydb;
+
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.je.DatabaseEntry;
+import java.util.Collection;
+import java.util.Map;
+import org.xbib.iri.IRI;
+import org.xbib.rdf.IdentifiableNode;
+import org.xbib.rdf.Identifier;
+import org.xbib.rdf.Literal;
+import org.xbib.rdf.Node;
+import org.xbib.rdf.Property;
+import org.xbib.rdf.Resource;
+import org.xbib.rdf.context.IRINamespaceContext;
+import org.xbib.rdf.simple.SimpleLiteral;
+import org.xbib.rdf.simple.SimpleResource;
+
+/**
+ * A tuple-binding for resources in a Berkeley DB, stored in a compact binary form.
+ *
+ * An entry is a format byte, the secondary key, the resource ID and the
+ * properties. Predicates and literal types are numbers from an
+ * {@link IRIDictionary}, lengths and counts are packed integers, and
+ * integer, long, float, double and boolean literals keep their value type.
+ * Blank nodes are written inline and get new blank node IDs on read,
+ * as with Turtle.
+ *
+ * Entries without the format byte are Turtle text of {@link ResourceTupleBinding}
+ * and are decoded by it, so old databases stay readable and can be
+ * rewritten with {@link Migrate}.
+ */
+public class BinaryResourceTupleBinding extends TupleBinding {
+
+    /**
+     * The first byte of a binary entry. Turtle entries never start with it.
+     */
+    public static final int FORMAT = 0x01;
+
+    private static final int BLANK = 0x01;
+
+    private static final int RESOURCE = 0x02;
+
+    private static final int IRI_NODE = 0x03;
+
+    private static final int STRING = 0x04;
+
+    private static final int INT = 0x05;
+
+    private static final int LONG = 0x06;
+
+    private static final int FLOAT = 0x07;
+
+    private static final int DOUBLE = 0x08;
+
+    private static final int BOOLEAN = 0x09;
+
+    private static final int KIND = 0x1f;
+
+    private static final int LANG = 0x20;
+
+    private static final int TYPED = 0x40;
+
+    private final IRIDictionary dictionary;
+
+    private final ResourceTupleBinding turtle;
+
+    private long writtenBytes;
+
+    private long readBytes;
+
+    private long turtleReads;
+
+    private String secondaryKey;
+
+    public BinaryResourceTupleBinding(IRI baseURI, IRIDictionary dictionary) {
+        this.dictionary = dictionary;
+        this.turtle = new ResourceTupleBinding(baseURI);
+    }
+
+    public BinaryResourceTupleBinding context(IRINamespaceContext context) {
+        turtle.context(context);
+        return this;
+    }
+
+    public IRIDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Check if a database entry is in binary form.
+     *
+     * @param entry the entry
+     * @return true if binary, false if Turtle
+     */
+    public static boolean isBinary(DatabaseEntry entry) {
+        return entry.getSize() > 0 && entry.getData()[entry.getOffset()] == FORMAT;
+    }
+
+    /**
+     * Read the secondary key of a binary entry.
+     *
+     * @param entry the entry
+     * @return the secondary key, or null
+     */
+    public static String secondaryKey(DatabaseEntry entry) {
+        TupleInput ti = entryToInput(entry);
+        ti.skipFast(1);
+        return ti.readString();
+    }
+
+    @Override
+    public void objectToEntry(Object object, TupleOutput to) {
+        // the same secondary key as the Turtle "secondary" prefix
+        write((Resource) object, turtle.context().getNamespaceURI("secondary"), to);
+    }
+
+    /**
+     * Write a resource with a given secondary key, for example the key of the
+     * entry the resource was decoded from.
+     *
+     * @param object the resource
+     * @param secondaryKey the secondary key, or null
+     * @param entry the database entry
+     */
+    public void objectToEntry(Object object, String secondaryKey, DatabaseEntry entry) {
+        TupleOutput to = getTupleOutput(object);
+        write((Resource) object, secondaryKey, to);
+        outputToEntry(to, entry);
+    }
+
+    @Override
+    public Object entryToObject(TupleInput ti) {
+        readBytes += ti.available();
+        ti.mark(0);
+        if (ti.readFast() != FORMAT) {
+            ti.reset();
+            turtleReads++;
+            Object object = turtle.entryToObject(ti);
+            secondaryKey = turtle.getSecondaryKey();
+            return object;
+        }
+        secondaryKey = ti.readString();
+        Resource resource = new SimpleResource();
+        String id = ti.readString();
+        if (id != null) {
+            resource.id(IRI.create(id));
+        }
+        readProperties(resource, ti);
+        return resource;
+    }
+
+    /**
+     * The secondary key of the last decoded entry, in binary or in Turtle form.
+     *
+     * @return the secondary key, or null
+     */
+    public String getSecondaryKey() {
+        return secondaryKey;
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    /**
+     * The number of entries that were read as Turtle text.
+     *
+     * @return the number of Turtle entries
+     */
+    public long getTurtleReads() {
+        return turtleReads;
+    }
+
+    private void write(Resource resource, String secondaryKey, TupleOutput to) {
+        int start = to.size();
+        to.writeByte(FORMAT);
+        to.writeString(secondaryKey);
+        to.writeString(resource.id() != null ? resource.id().toString() : null);
+        writeProperties(resource, to);
+        writtenBytes += to.size() - start;
+    }
+
+    private void writeProperties(Resource resource, TupleOutput to) {
+        Map<Property, Collection<Node>> map = resource.nodeMap();
+        to.writePackedInt(map.size());
+        for (Map.Entry<Property, Collection<Node>> me : map.entrySet()) {
+            to.writePackedInt(dictionary.id(me.getKey().id()));
+            to.writePackedInt(me.getValue().size());
+            for (Node node : me.getValue()) {
+                writeNode(node, to);
+            }
+        }
+    }
+
+    private void writeNode(Node node, TupleOutput to) {
+        if (node instanceof Resource) {
+            Resource resource = (Resource) node;
+            if (isBlank(resource)) {
+                to.writeByte(BLANK);
+            } else {
+                to.writeByte(RESOURCE);
+                to.writeString(resource.id().toString());
+            }
+            writeProperties(resource, to);
+        } else if (node instanceof Literal) {
+            writeLiteral((Literal) node, to);
+        } else if (node instanceof Identifier && ((Identifier) node).id() != null) {
+            to.writeByte(IRI_NODE);
+            to.writeString(((Identifier) node).id().toString());
+        } else {
+            to.writeByte(STRING);
+            to.writeString(node.toString());
+        }
+    }
+
+    private void writeLiteral(Literal literal, TupleOutput to) {
+        Object value = literal.object();
+        int kind = value instanceof Integer ? INT
+                : value instanceof Long ? LONG
+                : value instanceof Float ? FLOAT
+                : value instanceof Double ? DOUBLE
+                : value instanceof Boolean ? BOOLEAN
+                : STRING;
+        IRI type = literal.type();
+        String lang = literal.language();
+        to.writeByte(kind | (type != null ? TYPED : 0) | (lang != null ? LANG : 0));
+        if (type != null) {
+            to.writePackedInt(dictionary.id(type));
+        }
+        if (lang != null) {
+            to.writeString(lang);
+        }
+        switch (kind) {
+            case INT:
+                to.writePackedInt((Integer) value);
+                break;
+            case LONG:
+                to.writePackedLong((Long) value);
+                break;
+            case FLOAT:
+                to.writeFloat((Float) value);
+                break;
+            case DOUBLE:
+                to.writeDouble((Double) value);
+                break;
+            case BOOLEAN:
+                to.writeBoolean((Boolean) value);
+                break;
+            default:
+                to.writeString(value != null ? value.toString() : null);
+                break;
+        }
+    }
+
+    private void readProperties(Resource resource, TupleInput ti) {
+        int n = ti.readPackedInt();
+        for (int i = 0; i < n; i++) {
+            Property predicate = dictionary.property(ti.readPackedInt());
+            int m = ti.readPackedInt();
+            for (int j = 0; j < m; j++) {
+                readNode(resource, predicate, ti);
+            }
+        }
+    }
+
+    private void readNode(Resource resource, Property predicate, TupleInput ti) {
+        int tag = ti.readUnsignedByte();
+        int kind = tag & KIND;
+        switch (kind) {
+            case BLANK:
+                readProperties(resource.newResource(predicate), ti);
+                return;
+            case RESOURCE: {
+                Resource r = new SimpleResource().id(IRI.create(ti.readString()));
+                readProperties(r, ti);
+                resource.add(predicate, r);
+                return;
+            }
+            case IRI_NODE:
+                resource.add(predicate, IRI.create(ti.readString()));
+                return;
+            default:
+                break;
+        }
+        SimpleLiteral literal = new SimpleLiteral();
+        if ((tag & TYPED) != 0) {
+            literal.type(dictionary.iri(ti.readPackedInt()));
+        }
+        if ((tag & LANG) != 0) {
+            literal.language(ti.readString());
+        }
+        switch (kind) {
+            case INT:
+                literal.object(ti.readPackedInt());
+                break;
+            case LONG:
+                literal.object(ti.readPackedLong());
+                break;
+            case FLOAT:
+                literal.object(ti.readFloat());
+                break;
+            case DOUBLE:
+                literal.object(ti.readDouble());
+                break;
+            case BOOLEAN:
+                literal.object(ti.readBoolean());
+                break;
+            case STRING:
+                literal.object(ti.readString());
+                break;
+            default:
+                throw new IllegalArgumentException("unknown node tag " + tag);
+        }
+        resource.add(predicate, (Literal) literal);
+    }
+
+    private boolean isBlank(Resource resource) {
+        return resource.id() == null
+                || (resource instanceof IdentifiableNode && ((IdentifiableNode) resource).isBlank());
+    }
+}
@@ -19,19 +19,306 @@
  */
 package org.xbib.berkeleydb;
 
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.OperationStatus;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import org.xbib.io.Session;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.xbib.logging.Logger;
+import org.xbib.logging.LoggerFactory;
+import org.xbib.rdf.Resource;
 
+/**
+ * Bulk load into a Berkeley DB.
+ *
+ * Resources are serialized and collected in memory. When the collected
+ * entries exceed the run size, they are sorted by key and written to a run
+ * file in the environment directory. At flush, the runs are merged and the
+ * entries are inserted in key order, which fills the B-tree nodes in sequence.
+ * If a key is written more than once, the last resource wins.
+ *
+ * Use it with a session opened in {@link org.xbib.io.Session.Mode#DEFERRED_WRITE}
+ * mode, where the database is not transactional and the secondary database
+ * is built after the load.
+ */
 public class BulkWrite extends AbstractWrite {
 
+    private static final Logger logger = LoggerFactory.getLogger(BulkWrite.class.getName());
+
+    /**
+     * Estimated memory per entry besides key and value
+     */
+    private static final int ENTRY_OVERHEAD = 48;
+
+    private static final Comparator<byte[][]> ORDER = new Comparator<byte[][]>() {
+        @Override
+        public int compare(byte[][] e1, byte[][] e2) {
+            return compareKeys(e1[0], e2[0]);
+        }
+    };
+
+    private final long runSize;
+
+    private final List<byte[][]> entries;
+
+    private final List<File> runs;
+
+    private long entrySize;
+
+    private long counter;
+
+    private long bytes;
+
+    public BulkWrite() {
+        this(64L * 1024L * 1024L);
+    }
+
+    /**
+     * @param runSize the memory for entries before they are sorted into a run file
+     */
+    public BulkWrite(long runSize) {
+        this.runSize = runSize;
+        this.entries = new ArrayList();
+        this.runs = new ArrayList();
+    }
+
     @Override
     public boolean isTransactionalWrite() {
         return false;
     }
 
-    public void flush(Session session) throws IOException {
-        // not required
+    @Override
+    public void write(BerkeleyDBSession session, Resource resource) throws IOException {
+        if (session == null || !session.isOpen()) {
+            return;
+        }
+        if (resource == null) {
+            return;
+        }
+        byte[] key = resource.id().toString().getBytes("UTF-8");
+        session.getBinding().objectToEntry(resource, valueEntry);
+        byte[] value = new byte[valueEntry.getSize()];
+        System.arraycopy(valueEntry.getData(), valueEntry.getOffset(), value, 0, value.length);
+        entries.add(new byte[][]{key, value});
+        entrySize += key.length + value.length + ENTRY_OVERHEAD;
+        if (entrySize >= runSize) {
+            spill(session);
+        }
+    }
+
+    @Override
+    public void execute(BerkeleyDBSession session) throws IOException {
+        flush(session);
+    }
+
+    /**
+     * Insert all collected entries in key order.
+     *
+     * @param session the session
+     * @throws IOException
+     */
+    public void flush(BerkeleyDBSession session) throws IOException {
+        if (entries.isEmpty() && runs.isEmpty()) {
+            return;
+        }
+        long t0 = System.currentTimeMillis();
+        long n = counter;
+        long b = bytes;
+        Collections.sort(entries, ORDER);
+        PriorityQueue<Run> queue = new PriorityQueue();
+        List<Run> open = new LinkedList();
+        try {
+            int i = 0;
+            for (File file : runs) {
+                Run run = new FileRun(file, i++);
+                open.add(run);
+                if (run.next()) {
+                    queue.add(run);
+                }
+            }
+            Run memory = new MemoryRun(entries.iterator(), i);
+            if (memory.next()) {
+                queue.add(memory);
+            }
+            Database db = session.getDatabase();
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                keyEntry.setData(run.key);
+                valueEntry.setData(run.value);
+                OperationStatus status = db.put(null, keyEntry, valueEntry);
+                if (status != OperationStatus.SUCCESS) {
+                    throw new IOException("value insertion got status " + status);
+                }
+                counter++;
+                bytes += run.key.length + run.value.length;
+                if (run.next()) {
+                    queue.add(run);
+                }
+            }
+            session.sync();
+        } catch (DatabaseException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            for (Run run : open) {
+                run.close();
+            }
+            for (File file : runs) {
+                if (!file.delete()) {
+                    logger.warn("could not delete run file {}", file);
+                }
+            }
+            runs.clear();
+            entries.clear();
+            entrySize = 0L;
+        }
+        long t = Math.max(1L, System.currentTimeMillis() - t0);
+        logger.info("bulk load: {} entries, {} bytes in {} ms, {} entries/s, {} KB/s",
+                counter - n, bytes - b, t, (counter - n) * 1000L / t, (bytes - b) * 1000L / 1024L / t);
     }
 
-    
+    /**
+     * The number of inserted entries.
+     *
+     * @return the number of entries
+     */
+    public long getCounter() {
+        return counter;
+    }
+
+    /**
+     * The number of inserted key and value bytes.
+     *
+     * @return the number of bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    private void spill(BerkeleyDBSession session) throws IOException {
+        long t0 = System.currentTimeMillis();
+        Collections.sort(entries, ORDER);
+        File dir = session.getEnvironment() != null ? session.getEnvironment().getHome() : null;
+        File file = File.createTempFile("bulkwrite", ".run", dir);
+        runs.add(file);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 64 * 1024))) {
+            for (byte[][] entry : entries) {
+                out.writeInt(entry[0].length);
+                out.write(entry[0]);
+                out.writeInt(entry[1].length);
+                out.write(entry[1]);
+            }
+        }
+        logger.info("run {} with {} entries written in {} ms",
+                runs.size(), entries.size(), System.currentTimeMillis() - t0);
+        entries.clear();
+        entrySize = 0L;
+    }
+
+    /**
+     * Unsigned byte-by-byte comparison, the default key order of Berkeley DB.
+     */
+    static int compareKeys(byte[] k1, byte[] k2) {
+        int len = Math.min(k1.length, k2.length);
+        for (int i = 0; i < len; i++) {
+            int d = (k1[i] & 0xff) - (k2[i] & 0xff);
+            if (d != 0) {
+                return d;
+            }
+        }
+        return k1.length - k2.length;
+    }
+
+    /**
+     * A sorted sequence of entries. Equal keys are ordered by run number,
+     * so the later entry is inserted last.
+     */
+    private abstract static class Run implements Comparable<Run> {
+
+        final int number;
+
+        byte[] key;
+
+        byte[] value;
+
+        Run(int number) {
+            this.number = number;
+        }
+
+        abstract boolean next() throws IOException;
+
+        void close() throws IOException {
+        }
+
+        @Override
+        public int compareTo(Run run) {
+            int d = compareKeys(key, run.key);
+            return d != 0 ? d : number - run.number;
+        }
+    }
+
+    private static class MemoryRun extends Run {
+
+        private final Iterator<byte[][]> it;
+
+        MemoryRun(Iterator<byte[][]> it, int number) {
+            super(number);
+            this.it = it;
+        }
+
+        @Override
+        boolean next() {
+            if (!it.hasNext()) {
+                return false;
+            }
+            byte[][] entry = it.next();
+            key = entry[0];
+            value = entry[1];
+            return true;
+        }
+    }
+
+    private static class FileRun extends Run {
+
+        private final DataInputStream in;
+
+        FileRun(File file, int number) throws IOException {
+            super(number);
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        }
+
+        @Override
+        boolean next() throws IOException {
+            int len;
+            try {
+                len = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            key = new byte[len];
+            in.readFully(key);
+            value = new byte[in.readInt()];
+            in.readFully(value);
+            return true;
+        }
+
+        @Override
+        void close() throws IOException {
+            in.close();
+        }
+    }
 }
@@ -0,0 +1,151 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ * 
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses/
+ *
+ */
+package org.xbib.berkeleydb;
+
+import com.sleepycat.bind.tuple.IntegerBinding;
+import com.sleepycat.bind.tuple.StringBinding;
+import com.sleepycat.je.Cursor;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.LockMode;
+import com.sleepycat.je.OperationStatus;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.xbib.iri.IRI;
+import org.xbib.rdf.IdentifiableProperty;
+
+/**
+ * A dictionary of the IRIs used as predicates and literal types.
+ *
+ * Every IRI gets a small integer, in the order of first use. Entries store
+ * this integer instead of the IRI string, and decoding picks the ready-made
+ * IRI or property instance from the table, so there is no IRI parsing on read.
+ *
+ * If a database is attached, new IRIs are written through to it
+ * before they are used in an entry, and the whole table is loaded at open.
+ */
+public class IRIDictionary {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap();
+
+    private volatile IRI[] iris = new IRI[64];
+
+    private volatile IdentifiableProperty[] properties = new IdentifiableProperty[64];
+
+    private volatile int size;
+
+    private Database db;
+
+    /**
+     * Attach a database and load all IRIs from it.
+     *
+     * @param db the dictionary database
+     * @return this dictionary
+     * @throws DatabaseException
+     */
+    public synchronized IRIDictionary load(Database db) throws DatabaseException {
+        this.db = db;
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry value = new DatabaseEntry();
+        Cursor cursor = db.openCursor(null, null);
+        try {
+            while (cursor.getNext(key, value, LockMode.DEFAULT) == OperationStatus.SUCCESS) {
+                put(IntegerBinding.entryToInt(key), StringBinding.entryToString(value));
+            }
+        } finally {
+            cursor.close();
+        }
+        return this;
+    }
+
+    /**
+     * Get the number of an IRI, assign a new number if the IRI is not known yet.
+     *
+     * @param iri the IRI
+     * @return the number of the IRI
+     */
+    public int id(IRI iri) {
+        String s = iri.toString();
+        Integer id = ids.get(s);
+        return id != null ? id : add(s);
+    }
+
+    public IRI iri(int id) {
+        check(id);
+        return iris[id];
+    }
+
+    public IdentifiableProperty property(int id) {
+        check(id);
+        return properties[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void check(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("unknown IRI dictionary entry " + id);
+        }
+    }
+
+    private synchronized int add(String s) {
+        Integer id = ids.get(s);
+        if (id != null) {
+            return id;
+        }
+        int n = size;
+        if (db != null) {
+            DatabaseEntry key = new DatabaseEntry();
+            DatabaseEntry value = new DatabaseEntry();
+            IntegerBinding.intToEntry(n, key);
+            StringBinding.stringToEntry(s, value);
+            OperationStatus status = db.putNoOverwrite(null, key, value);
+            if (status != OperationStatus.SUCCESS) {
+                throw new IllegalStateException("IRI dictionary entry " + n + " got status " + status);
+            }
+        }
+        put(n, s);
+        return n;
+    }
+
+    private void put(int n, String s) {
+        IRI[] i = iris;
+        IdentifiableProperty[] p = properties;
+        if (n >= i.length) {
+            int len = Math.max(n + 1, i.length * 2);
+            i = Arrays.copyOf(i, len);
+            p = Arrays.copyOf(p, len);
+        }
+        IRI iri = IRI.create(s);
+        i[n] = iri;
+        p[n] = new IdentifiableProperty(iri);
+        // publish the tables before the number
+        this.iris = i;
+        this.properties = p;
+        if (n >= size) {
+            this.size = n + 1;
+        }
+        ids.put(s, n);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ * 
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses/
+ *
+ */
+package org.xbib.berkeleydb;
+
+import com.sleepycat.je.Cursor;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.LockMode;
+import com.sleepycat.je.OperationStatus;
+import java.io.IOException;
+import java.util.Arrays;
+import org.xbib.logging.Logger;
+import org.xbib.logging.LoggerFactory;
+
+/**
+ * Migrate a database of Turtle entries to binary entries.
+ *
+ * The entries are rewritten in place, in key order, with a commit after
+ * each batch, so a migration can be interrupted and started again.
+ * Entries that are already binary are left alone.
+ */
+public class Migrate {
+
+    private static final Logger logger = LoggerFactory.getLogger(Migrate.class.getName());
+
+    protected final DatabaseEntry keyEntry = new DatabaseEntry();
+    protected final DatabaseEntry valueEntry = new DatabaseEntry();
+
+    private long counter;
+
+    /**
+     * Migrate all Turtle entries of a session with a binary binding.
+     *
+     * @param session the session
+     * @param batchSize the number of entries in a transaction
+     * @return the number of migrated entries
+     * @throws IOException
+     */
+    public long migrate(BerkeleyDBSession session, int batchSize) throws IOException {
+        if (session == null || !session.isOpen()) {
+            return 0L;
+        }
+        if (!(session.getBinding() instanceof BinaryResourceTupleBinding)) {
+            throw new IOException("session has no binary resource binding: " + session.getBinding());
+        }
+        BinaryResourceTupleBinding binding = (BinaryResourceTupleBinding) session.getBinding();
+        byte[] lastKey = null;
+        boolean more = true;
+        while (more) {
+            session.beginTransaction();
+            try {
+                Cursor cursor = session.getCursor();
+                OperationStatus status;
+                if (lastKey == null) {
+                    status = cursor.getFirst(keyEntry, valueEntry, LockMode.RMW);
+                } else {
+                    keyEntry.setData(lastKey);
+                    status = cursor.getSearchKeyRange(keyEntry, valueEntry, LockMode.RMW);
+                    if (status == OperationStatus.SUCCESS && Arrays.equals(lastKey, key(keyEntry))) {
+                        status = cursor.getNext(keyEntry, valueEntry, LockMode.RMW);
+                    }
+                }
+                int n = 0;
+                while (status == OperationStatus.SUCCESS && n < batchSize) {
+                    if (!BinaryResourceTupleBinding.isBinary(valueEntry)) {
+                        Object resource = binding.entryToObject(valueEntry);
+                        if (resource != null) {
+                            // keep the secondary key of the Turtle entry, not of the session context
+                            binding.objectToEntry(resource, binding.getSecondaryKey(), valueEntry);
+                            status = cursor.putCurrent(valueEntry);
+                            if (status != OperationStatus.SUCCESS) {
+                                throw new IOException("entry migration got status " + status);
+                            }
+                            counter++;
+                        }
+                    }
+                    lastKey = key(keyEntry);
+                    n++;
+                    status = cursor.getNext(keyEntry, valueEntry, LockMode.RMW);
+                }
+                more = status == OperationStatus.SUCCESS;
+                session.commitTransaction();
+            } catch (DatabaseException e) {
+                session.abortTransaction();
+                throw new IOException(e.getMessage(), e);
+            } catch (IOException e) {
+                session.abortTransaction();
+                throw e;
+            }
+            logger.info("{} entries migrated", counter);
+        }
+        return counter;
+    }
+
+    public long getCounter() {
+        return counter;
+    }
+
+    private static byte[] key(DatabaseEntry entry) {
+        return Arrays.copyOfRange(entry.getData(), entry.getOffset(), entry.getOffset() + entry.getSize());
+    }
+}
@@ -25,45 +25,69 @@ import com.sleepycat.bind.tuple.TupleOutput;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
 import org.xbib.iri.IRI;
 import org.xbib.logging.Logger;
 import org.xbib.logging.LoggerFactory;
+import org.xbib.rdf.IdentifiableNode;
+import org.xbib.rdf.Node;
+import org.xbib.rdf.Property;
 import org.xbib.rdf.Resource;
-import org.xbib.rdf.Statement;
-import org.xbib.rdf.io.StatementListener;
+import org.xbib.rdf.Triple;
+import org.xbib.rdf.context.IRINamespaceContext;
+import org.xbib.rdf.io.TripleListener;
 import org.xbib.rdf.io.turtle.TurtleReader;
 import org.xbib.rdf.io.turtle.TurtleWriter;
 import org.xbib.rdf.simple.SimpleResource;
 
 /**
- * A tuple-binding for resources in a Berkeley DB
+ * A tuple-binding for resources in a Berkeley DB, stored as Turtle text.
  *
+ * This is the original entry format. New databases use
+ * {@link BinaryResourceTupleBinding}, which still reads this format
+ * for entries that have not been migrated.
  */
 public class ResourceTupleBinding extends TupleBinding
-        implements StatementListener {
+        implements TripleListener {
 
     private static final Logger logger = LoggerFactory.getLogger(ResourceTupleBinding.class.getName());
-    private final TurtleWriter writer;
     private final TurtleReader reader;
+    private final Map<Object, Resource> blanks;
+    private IRINamespaceContext context;
     private long writtenChars;
     private long readChars;
     private Resource resource;
+    private String secondaryKey;
 
     public ResourceTupleBinding(IRI baseURI) {
-        this.writer = new TurtleWriter();
         this.reader = new TurtleReader(baseURI);
+        this.blanks = new HashMap();
+        this.context = IRINamespaceContext.newInstance();
         this.writtenChars = 0;
         this.readChars = 0;
     }
 
+    public ResourceTupleBinding context(IRINamespaceContext context) {
+        this.context = context;
+        return this;
+    }
+
+    public IRINamespaceContext context() {
+        return context;
+    }
+
     @Override
     public void objectToEntry(Object object, TupleOutput to) {
         try {
             StringWriter sw = new StringWriter();
-            writer.write((Resource) object, false, sw);
+            new TurtleWriter()
+                    .setContext(context)
+                    .output(sw)
+                    .writeNamespaces()
+                    .write((Resource) object);
             String s = sw.toString();
-            int len = s.length();
-            writtenChars += len;
+            writtenChars += s.length();
             to.writeString(s);
         } catch (IOException ex) {
             logger.error(ex.getMessage(), ex);
@@ -74,7 +98,9 @@ public class ResourceTupleBinding extends TupleBinding
     public Object entryToObject(TupleInput ti) {
         try {
             resource = new SimpleResource();
-            reader.setListener(this);
+            secondaryKey = null;
+            blanks.clear();
+            reader.setTripleListener(this);
             String s = ti.readString();
             readChars += s.length();
             reader.parse(new StringReader(s));
@@ -93,14 +119,70 @@ public class ResourceTupleBinding extends TupleBinding
         return readChars;
     }
 
+    /**
+     * The secondary key of the last decoded entry, declared by its "secondary" prefix.
+     *
+     * @return the secondary key, or null
+     */
+    public String getSecondaryKey() {
+        return secondaryKey;
+    }
+
+    @Override
+    public ResourceTupleBinding startPrefixMapping(String prefix, String uri) {
+        if ("secondary".equals(prefix)) {
+            secondaryKey = uri;
+        }
+        return this;
+    }
+
+    @Override
+    public ResourceTupleBinding endPrefixMapping(String prefix) {
+        return this;
+    }
 
     @Override
-    public void statement(Statement statement) {
-        resource.add(statement);
+    public ResourceTupleBinding newIdentifier(IRI identifier) {
+        if (resource.id() == null) {
+            resource.id(identifier);
+        }
+        return this;
     }
 
     @Override
-    public void newIdentifier(IRI identifier) {
-        // ignore
+    public ResourceTupleBinding triple(Triple triple) {
+        Resource r = isBlank(triple.subject()) ? blank(triple.subject()) : resource;
+        Property predicate = (Property) triple.predicate();
+        Object object = triple.object();
+        if (isBlank(object)) {
+            // blank node objects are the embedded resources
+            r.add(predicate, blank(object));
+        } else {
+            r.add(predicate, (Node) object);
+        }
+        return this;
+    }
+
+    private boolean isBlank(Object node) {
+        if (!(node instanceof IdentifiableNode)) {
+            return false;
+        }
+        IdentifiableNode n = (IdentifiableNode) node;
+        return n.id() == null || n.isBlank();
+    }
+
+    /**
+     * The embedded resource of a blank node. Blank nodes of the parser
+     * may not have an ID yet, those are told apart by instance.
+     */
+    private Resource blank(Object node) {
+        IRI id = ((IdentifiableNode) node).id();
+        Object key = id != null ? id : node;
+        Resource r = blanks.get(key);
+        if (r == null) {
+            r = new SimpleResource().id(new IdentifiableNode().blank().id());
+            blanks.put(key, r);
+        }
+        return r;
     }
 }
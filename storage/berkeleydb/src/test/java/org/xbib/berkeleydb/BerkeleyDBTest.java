@@ -19,6 +19,10 @@
  */
 package org.xbib.berkeleydb;
 
+import com.sleepycat.je.Cursor;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.LockMode;
+import com.sleepycat.je.OperationStatus;
 import org.testng.annotations.Test;
 import org.xbib.io.Session;
 import org.xbib.iri.IRI;
@@ -31,6 +35,9 @@ import org.xbib.rdf.Property;
 import org.xbib.rdf.Resource;
 import org.xbib.rdf.simple.SimpleResource;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
 public class BerkeleyDBTest<S extends Identifier, P extends Property, O extends Node> {
 
     private static final Logger logger = LoggerFactory.getLogger(BerkeleyDBTest.class.getName());
@@ -55,6 +62,83 @@ public class BerkeleyDBTest<S extends Identifier, P extends Property, O extends
         session.close();
     }
     
+    @Test
+    public void testBulkWrite() throws Exception {
+        IRI uri = IRI.create("bdbresource:target/localhost/bulkdb");
+        BerkeleyDBSession session = new BerkeleyDBSession(uri);
+        session.setCacheSize(16L * 1024L * 1024L);
+        session.open(Session.Mode.DEFERRED_WRITE);
+        // a small run size for some run files
+        BulkWrite write = new BulkWrite(4096L);
+        for (int i = 999; i >= 0; i--) {
+            Resource resource = new SimpleResource();
+            resource.id(IRI.create("urn:resource" + i));
+            resource.add("dc:title", "Hello " + i);
+            write.write(session, resource);
+        }
+        write.execute(session);
+        assertEquals(write.getCounter(), 1000L);
+        session.close();
+        session.open(Session.Mode.READ);
+        Read read = new Read();
+        read.query(session, "urn:resource42");
+        assertEquals(read.getResource().id(), IRI.create("urn:resource42"));
+        BerkeleyDBIterator it = session.createIterator();
+        String last = "";
+        int n = 0;
+        while (it.hasNext()) {
+            String key = it.getKey();
+            assertTrue(key.compareTo(last) > 0);
+            last = key;
+            n++;
+        }
+        assertEquals(n, 1000);
+        session.close();
+    }
+
+    @Test
+    public void testMigrate() throws Exception {
+        // Turtle entries, each with its own secondary key
+        BerkeleyDBSession session = new BerkeleyDBSession(IRI.create("bdbturtle:target/localhost/migratedb"));
+        session.open(Session.Mode.WRITE);
+        ResourceTupleBinding turtle = (ResourceTupleBinding) session.getBinding();
+        Write write = new Write();
+        for (int i = 0; i < 10; i++) {
+            turtle.context().addNamespace("secondary", "urn:secondary" + (i % 2));
+            Resource resource = new SimpleResource();
+            resource.id(IRI.create("urn:resource" + i));
+            resource.add("dc:title", "Hello " + i);
+            write.write(session, resource);
+        }
+        write.execute(session);
+        session.close();
+        // the context of the binary session does not know the secondary keys
+        session = new BerkeleyDBSession(IRI.create("bdbresource:target/localhost/migratedb"));
+        session.open(Session.Mode.WRITE);
+        Migrate migrate = new Migrate();
+        assertEquals(migrate.migrate(session, 3), 10L);
+        session.close();
+        session.open(Session.Mode.READ);
+        for (int k = 0; k < 2; k++) {
+            DatabaseEntry keyEntry = new DatabaseEntry(("urn:secondary" + k).getBytes("UTF-8"));
+            DatabaseEntry valueEntry = new DatabaseEntry();
+            Cursor cursor = session.getSecondaryDatabase().openCursor(null, null);
+            int n = 0;
+            OperationStatus status = cursor.getSearchKey(keyEntry, valueEntry, LockMode.DEFAULT);
+            while (status == OperationStatus.SUCCESS) {
+                assertTrue(BinaryResourceTupleBinding.isBinary(valueEntry));
+                Resource resource = (Resource) session.getBinding().entryToObject(valueEntry);
+                String id = resource.id().toString();
+                assertEquals(Integer.parseInt(id.substring("urn:resource".length())) % 2, k);
+                n++;
+                status = cursor.getNextDup(keyEntry, valueEntry, LockMode.DEFAULT);
+            }
+            cursor.close();
+            assertEquals(n, 5);
+        }
+        session.close();
+    }
+
     private Resource<S,P,O> createResource() {
         Resource<S,P,O> resource = new SimpleResource();
         resource.id(IRI.create("urn:resource"));
@@ -0,0 +1,111 @@
+/*
+ * Licensed to Jörg Prante and xbib under one or more contributor 
+ * license agreements. See the NOTICE.txt file distributed with this work
+ * for additional information regarding copyright ownership.
+ * 
+ * Copyright (C) 2012 Jörg Prante and xbib
+ * 
+ * This program is free software; you can redistribute it and/or modify 
+ * it under the terms of the GNU General Public License as published by 
+ * the Free Software Foundation; either version 3 of the License, or 
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, 
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License 
+ * along with this program; if not, see http://www.gnu.org/licenses/
+ *
+ */
+package org.xbib.berkeleydb;
+
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import java.util.Collection;
+import java.util.Map;
+import org.testng.annotations.Test;
+import org.xbib.iri.IRI;
+import org.xbib.rdf.Literal;
+import org.xbib.rdf.Node;
+import org.xbib.rdf.Property;
+import org.xbib.rdf.Resource;
+import org.xbib.rdf.simple.SimpleLiteral;
+import org.xbib.rdf.simple.SimpleResource;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class BinaryResourceTupleBindingTest {
+
+    private static final String DC = "http://purl.org/dc/elements/1.1/";
+
+    private final IRI base = IRI.create("bdbresource:target/localhost/testdb");
+
+    @Test
+    public void testBinary() throws Exception {
+        BinaryResourceTupleBinding binding = new BinaryResourceTupleBinding(base, new IRIDictionary());
+        Resource resource = createResource();
+        resource.add("xbib:count", 42)
+                .add(DC + "title", new SimpleLiteral("Welt", "de"))
+                .add(DC + "source", IRI.create("urn:other"));
+        TupleOutput to = new TupleOutput();
+        binding.objectToEntry(resource, to);
+        assertEquals(to.getBufferBytes()[0], BinaryResourceTupleBinding.FORMAT);
+        Resource r = (Resource) binding.entryToObject(new TupleInput(to.getBufferBytes(), 0, to.getBufferLength()));
+        assertEquals(r.id(), resource.id());
+        assertEquals(dump(r), dump(resource));
+        Literal count = (Literal) r.literal("xbib:count");
+        assertEquals(count.object(), 42);
+        assertEquals(count.type(), Literal.INT);
+        assertEquals(binding.getTurtleReads(), 0L);
+    }
+
+    @Test
+    public void testTurtle() throws Exception {
+        ResourceTupleBinding turtle = new ResourceTupleBinding(base);
+        BinaryResourceTupleBinding binding = new BinaryResourceTupleBinding(base, new IRIDictionary());
+        Resource resource = createResource();
+        TupleOutput to = new TupleOutput();
+        turtle.objectToEntry(resource, to);
+        Resource r = (Resource) binding.entryToObject(new TupleInput(to.getBufferBytes(), 0, to.getBufferLength()));
+        assertEquals(binding.getTurtleReads(), 1L);
+        assertEquals(dump(r), dump(resource));
+        // migrate to binary
+        to = new TupleOutput();
+        binding.objectToEntry(r, to);
+        assertTrue(to.getBufferLength() < turtle.getWrittenChars());
+        r = (Resource) binding.entryToObject(new TupleInput(to.getBufferBytes(), 0, to.getBufferLength()));
+        assertEquals(binding.getTurtleReads(), 1L);
+        assertEquals(dump(r), dump(resource));
+    }
+
+    private Resource createResource() {
+        Resource resource = new SimpleResource();
+        resource.id(IRI.create("urn:resource"));
+        resource.add(DC + "title", "Hello")
+                .add(DC + "title", "World")
+                .add(DC + "creator", "Jörg Prante")
+                .add("http://purl.org/dc/terms/spatial", "Köln");
+        Resource r1 = resource.newResource(DC + "relation");
+        r1.add(DC + "identifier", "value1");
+        r1.add(DC + "type", "value2");
+        Resource r2 = r1.newResource(DC + "relation");
+        r2.add(DC + "identifier", "value3");
+        return resource;
+    }
+
+    /**
+     * The properties of a resource without blank node IDs.
+     */
+    private String dump(Resource resource) {
+        StringBuilder sb = new StringBuilder("{");
+        Map<Property, Collection<Node>> map = resource.nodeMap();
+        for (Map.Entry<Property, Collection<Node>> me : map.entrySet()) {
+            sb.append(me.getKey().id()).append('=');
+            for (Node node : me.getValue()) {
+                sb.append(node instanceof Resource ? dump((Resource) node) : node.toString()).append(' ');
+            }
+        }
+        return sb.append('}').toString();
+    }
+}